@@ -1,6 +1,7 @@
 package com.cryptoplatform.api.config;
 
-import com.cryptoplatform.api.redis.TickerStreamListener;
+import com.cryptoplatform.api.redis.TickHistoryListener;
+import com.cryptoplatform.api.redis.TickerChannelListener;
 import com.cryptoplatform.api.redis.TradeEngineListener;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.annotation.Bean;
@@ -11,12 +12,13 @@ import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.StreamOffset;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.stream.StreamMessageListenerContainer;
 import org.springframework.data.redis.stream.Subscription;
 
 import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class RedisConfig implements DisposableBean {
@@ -28,48 +30,19 @@ public class RedisConfig implements DisposableBean {
         this.redisTemplate = redisTemplate;
     }
 
+    /**
+     * Pub/sub container for the per-symbol ticker channels. {@link TickerChannelListener}
+     * adds and removes channels as local WebSocket sessions come and go, so every
+     * instance sees the ticks its own clients watch without a consumer group per instance.
+     */
     @Bean
-    public Subscription subscription(RedisConnectionFactory connectionFactory, TickerStreamListener streamListener) {
-        
-        // Ensure consumer group exists
-        String streamKey = "stream:market_ticks";
-        String group = "api-ws";
-        try {
-            redisTemplate.opsForStream().createGroup(streamKey, group);
-        } catch (Exception e) {
-            // Group likely already exists, ignore
-        }
-
-        StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
-                StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
-                        .pollTimeout(Duration.ofMillis(100))
-                        .build();
-
-        listenerContainer = StreamMessageListenerContainer.create(connectionFactory, options);
-
-        // Random consumer name for fan-out (actually we want all APIs to get all messages if they serve different websockets? 
-        // No, Redis Streams with Groups load balance.
-        // Wait, if we have 2 API instances, and 1 client connected to Instance A and 1 to Instance B..
-        // We want ALL instances to receive ALL ticks so they can fan out to their local websockets.
-        // So we should NOT use the same Consumer Group for all instances if we want broadcast.
-        // Or we use fan-out pattern (PubSub) but requirement said "Redis Streams".
-        // With Streams, to broadcast to all nodes, each node needs its own consumer group or simply read from $ without group (but then how to track offset if restart? maybe just latest).
-        // Let's us a unique group name per instance for now to ensure broadcast behavior across instances (if we ever scale up).
-        
-        String instanceGroup = "api-ws-" + UUID.randomUUID().toString();
-        try {
-            redisTemplate.opsForStream().createGroup(streamKey, instanceGroup);
-        } catch (Exception e) {
-            // ignore
-        }
-
-        Subscription subscription = listenerContainer.receive(
-                Consumer.from(instanceGroup, "instance-1"),
-                StreamOffset.create(streamKey, ReadOffset.lastConsumed()),
-                streamListener);
-
-        listenerContainer.start();
-        return subscription;
+    public RedisMessageListenerContainer tickerChannelContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // A single dispatch thread keeps each symbol's ticks in order; the handler only enqueues
+        container.setTaskExecutor(Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("ticker-channel").daemon().factory()));
+        return container;
     }
 
     @Bean
@@ -89,19 +62,7 @@ public class RedisConfig implements DisposableBean {
             // Group exists
         }
 
-        StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
-                StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
-                        .pollTimeout(Duration.ofMillis(100))
-                        .build();
-
-        // Note: reusing the same listenerContainer bean if possible, or creating new one?
-        // Ideally we should reuse one container for all subscriptions. 
-        // But `listenerContainer` field above is created inside `subscription()` method which is a @Bean.
-        // Let's refactor to make container a separate Bean or just create a new one here.
-        // Creating a second container is fine for now to avoid breaking existing code structure too much.
-        
-        StreamMessageListenerContainer<String, MapRecord<String, String, String>> container =
-                StreamMessageListenerContainer.create(connectionFactory, options);
+        StreamMessageListenerContainer<String, MapRecord<String, String, String>> container = streamContainer(connectionFactory);
 
         Subscription subscription = container.receive(
                 Consumer.from(group, "consumer-" + UUID.randomUUID()), // Unique consumer name to avoid clashes within group? No, consumer name must be unique per thread/connection usually.
@@ -112,6 +73,36 @@ public class RedisConfig implements DisposableBean {
         return subscription;
     }
 
+    /**
+     * Every instance records the full tick feed into its own price history, so this
+     * reads the stream with plain XREAD from the newest entry instead of joining a group.
+     */
+    @Bean
+    public Subscription tickHistorySubscription(RedisConnectionFactory connectionFactory,
+                                                TickHistoryListener tickHistoryListener) {
+        StreamMessageListenerContainer<String, MapRecord<String, String, String>> container = streamContainer(connectionFactory);
+
+        Subscription subscription = container.receive(
+                StreamOffset.create("stream:market_ticks", ReadOffset.latest()),
+                tickHistoryListener);
+
+        container.start();
+        return subscription;
+    }
+
+    private synchronized StreamMessageListenerContainer<String, MapRecord<String, String, String>> streamContainer(
+            RedisConnectionFactory connectionFactory) {
+        if (listenerContainer == null) {
+            StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
+                    StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
+                            .pollTimeout(Duration.ofMillis(100))
+                            .build();
+
+            listenerContainer = StreamMessageListenerContainer.create(connectionFactory, options);
+        }
+        return listenerContainer;
+    }
+
     @Override
     public void destroy() {
         if (listenerContainer != null) {
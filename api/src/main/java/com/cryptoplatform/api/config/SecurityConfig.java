@@ -28,7 +28,7 @@ public class SecurityConfig {
         http
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/auth/**", "/markets", "/prices/**", "/ws/**", "/", "/index.html", "/app.js", "/style.css", "/test-ws.html", "/favicon.ico").permitAll()
+                .requestMatchers("/auth/**", "/markets", "/prices/**", "/ws/**", "/", "/index.html", "/app.js", "/style.css", "/test-ws.html", "/favicon.ico", "/actuator/health", "/actuator/metrics/**").permitAll()
                 .requestMatchers("/account/**", "/trade/**", "/ai/**").authenticated()
                 .anyRequest().authenticated()
             )
@@ -2,9 +2,16 @@ package com.cryptoplatform.api.controller;
 
 import com.cryptoplatform.api.dto.TradingModeRequest;
 import com.cryptoplatform.api.dto.TradingModeResponse;
+import com.cryptoplatform.api.model.AccountPnl;
+import com.cryptoplatform.api.model.EquityPoint;
 import com.cryptoplatform.api.model.User;
 import com.cryptoplatform.api.repository.UserRepository;
+import com.cryptoplatform.api.security.AuthenticatedUser;
+import com.cryptoplatform.api.security.JwtUtil;
+import com.cryptoplatform.api.service.EquitySnapshotService;
 import com.cryptoplatform.api.service.KrakenApiService;
+import com.cryptoplatform.api.service.PnlService;
+import com.cryptoplatform.api.service.UserContextCache;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,10 +19,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
-import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -24,21 +32,38 @@ public class AccountController {
 
     private final UserRepository userRepository;
     private final KrakenApiService krakenApiService;
+    private final UserContextCache userContextCache;
+    private final PnlService pnlService;
+    private final EquitySnapshotService equitySnapshotService;
+    private final JwtUtil jwtUtil;
 
-    public AccountController(UserRepository userRepository, KrakenApiService krakenApiService) {
+    public AccountController(UserRepository userRepository, KrakenApiService krakenApiService,
+                             UserContextCache userContextCache, PnlService pnlService,
+                             EquitySnapshotService equitySnapshotService, JwtUtil jwtUtil) {
         this.userRepository = userRepository;
         this.krakenApiService = krakenApiService;
+        this.userContextCache = userContextCache;
+        this.pnlService = pnlService;
+        this.equitySnapshotService = equitySnapshotService;
+        this.jwtUtil = jwtUtil;
     }
 
-    @GetMapping("/balance")
-    public ResponseEntity<Map<String, BigDecimal>> getBalance() {
+    private Long getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = (String) auth.getPrincipal();
+        return ((AuthenticatedUser) auth.getPrincipal()).userId();
+    }
 
-        User user = userRepository.findByEmail(email)
+    private User getCurrentUser() {
+        return userRepository.findById(getCurrentUserId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+
+    @GetMapping("/balance")
+    public ResponseEntity<Map<String, BigDecimal>> getBalance() {
+        User user = getCurrentUser();
         
         BigDecimal balance;
+        BigDecimal reserved = BigDecimal.ZERO;
         
         // If in LIVE mode, fetch balance from Kraken
         if (user.getTradingMode() == User.TradingMode.LIVE) {
@@ -50,23 +75,50 @@ public class AccountController {
                     BigDecimal.ZERO;
             } catch (Exception e) {
                 // Fallback to paper balance if Kraken fetch fails
-                balance = user.getAccount().getBalance();
+                balance = user.getAccount().getAvailableBalance();
             }
         } else {
-            // PAPER mode - use paper trading balance
-            balance = user.getAccount().getBalance();
+            // PAPER mode - available paper balance, with funds held for open limit orders reported separately
+            reserved = user.getAccount().getReserved();
+            balance = user.getAccount().getAvailableBalance();
         }
 
-        return ResponseEntity.ok(Collections.singletonMap("balance", balance));
+        return ResponseEntity.ok(Map.of("balance", balance, "reserved", reserved));
     }
     
+    /**
+     * Paper account marked to the latest prices, from the state kept current by ticks.
+     */
+    @GetMapping("/pnl")
+    public ResponseEntity<?> getPnl() {
+        try {
+            AccountPnl pnl = pnlService.getPnl(getCurrentUserId());
+            return ResponseEntity.ok(pnl);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Equity curve of the paper account, from and to in epoch ms (default: all of it).
+     * Minute points cover the last day, hourly points the last 31 days, daily points the rest.
+     */
+    @GetMapping("/equity")
+    public ResponseEntity<?> getEquityCurve(@RequestParam(required = false) Long from,
+                                            @RequestParam(required = false) Long to) {
+        Long accountId = userContextCache.getById(getCurrentUserId()).accountId();
+        try {
+            List<EquityPoint> curve = equitySnapshotService.getCurve(accountId,
+                from != null ? from : 0L, to != null ? to : System.currentTimeMillis());
+            return ResponseEntity.ok(curve);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/trading-mode")
     public ResponseEntity<TradingModeResponse> getTradingMode() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = (String) auth.getPrincipal();
-        
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = getCurrentUser();
         
         boolean krakenConnected = false;
         if (user.getTradingMode() == User.TradingMode.LIVE) {
@@ -82,11 +134,7 @@ public class AccountController {
     
     @PostMapping("/trading-mode")
     public ResponseEntity<TradingModeResponse> setTradingMode(@RequestBody TradingModeRequest request) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = (String) auth.getPrincipal();
-        
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = getCurrentUser();
         
         // Parse and validate mode
         User.TradingMode newMode;
@@ -119,11 +167,15 @@ public class AccountController {
         // Update mode
         user.setTradingMode(newMode);
         userRepository.save(user);
+        userContextCache.invalidate(user.getId());
         
         String message = newMode == User.TradingMode.PAPER
             ? "Switched to paper trading mode (simulated trades)"
             : "⚠️ Switched to LIVE trading mode. All trades will execute with REAL MONEY on Kraken!";
         
-        return ResponseEntity.ok(new TradingModeResponse(newMode, newMode == User.TradingMode.LIVE, message));
+        // Re-issue the token so its mode claim matches
+        TradingModeResponse response = new TradingModeResponse(newMode, newMode == User.TradingMode.LIVE, message);
+        response.setToken(jwtUtil.generateToken(user));
+        return ResponseEntity.ok(response);
     }
 }
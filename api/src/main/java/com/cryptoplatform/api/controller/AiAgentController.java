@@ -2,18 +2,28 @@ package com.cryptoplatform.api.controller;
 
 import com.cryptoplatform.api.dto.AiCommandRequest;
 import com.cryptoplatform.api.dto.AiCommandResponse;
+import com.cryptoplatform.api.dto.BacktestRequest;
+import com.cryptoplatform.api.dto.BacktestSweepRequest;
 import com.cryptoplatform.api.model.AgentRule;
 import com.cryptoplatform.api.model.Order;
-import com.cryptoplatform.api.model.User;
 import com.cryptoplatform.api.repository.AgentRuleRepository;
-import com.cryptoplatform.api.repository.UserRepository;
+import com.cryptoplatform.api.security.AuthenticatedUser;
+import com.cryptoplatform.api.service.AgentRuleEvent;
 import com.cryptoplatform.api.service.AiAgentService;
+import com.cryptoplatform.api.service.BacktestService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/ai")
@@ -21,22 +31,25 @@ public class AiAgentController {
 
     private final AiAgentService aiAgentService;
     private final AgentRuleRepository ruleRepository;
-    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BacktestService backtestService;
+    private final ObjectMapper objectMapper;
 
     public AiAgentController(AiAgentService aiAgentService,
                             AgentRuleRepository ruleRepository,
-                            UserRepository userRepository) {
+                            ApplicationEventPublisher eventPublisher,
+                            BacktestService backtestService,
+                            ObjectMapper objectMapper) {
         this.aiAgentService = aiAgentService;
         this.ruleRepository = ruleRepository;
-        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.backtestService = backtestService;
+        this.objectMapper = objectMapper;
     }
 
     private Long getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = (String) auth.getPrincipal();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return user.getId();
+        return ((AuthenticatedUser) auth.getPrincipal()).userId();
     }
 
     @PostMapping("/command")
@@ -120,10 +133,56 @@ public class AiAgentController {
         
         rule.setIsActive(false);
         ruleRepository.save(rule);
+        eventPublisher.publishEvent(new AgentRuleEvent(rule));
         
         return ResponseEntity.ok().build();
     }
     
+    /**
+     * Replay saved and/or inline rules over recorded ticks against a sandbox account.
+     */
+    @PostMapping("/rules/backtest")
+    public ResponseEntity<?> backtestRules(@RequestBody BacktestRequest request) {
+        try {
+            return ResponseEntity.ok(backtestService.run(getCurrentUserId(), request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Backtest rule templates over a grid of parameter values. Streams NDJSON: one
+     * line per run as it finishes, then a last line with the ranked best runs.
+     */
+    @PostMapping("/rules/optimize")
+    public ResponseEntity<?> optimizeRules(@RequestBody BacktestSweepRequest request) {
+        BacktestService.Sweep sweep;
+        try {
+            sweep = backtestService.planSweep(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                Object ranking = backtestService.sweep(sweep, run -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(run));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.write(objectMapper.writeValueAsBytes(ranking));
+                out.write('\n');
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PostMapping("/confirm/{confirmationId}")
     public ResponseEntity<AiCommandResponse> confirmCommand(@PathVariable String confirmationId) {
         try {
@@ -162,10 +221,9 @@ public class AiAgentController {
             } else if (result instanceof AgentRule) {
                 AgentRule rule = (AgentRule) result;
                 return ResponseEntity.ok(AiCommandResponse.withRule(rule, 
-                    String.format("✅ Rule created: Will %s %s when price %s $%s", 
+                    String.format("✅ Rule created: Will %s %s when %s", 
                         rule.getAction(), rule.getSymbol().replace("-USD", ""),
-                        rule.getCondition().equals(AgentRule.Condition.PRICE_ABOVE) ? "goes above" : "goes below",
-                        rule.getTargetPrice())));
+                        rule.describeCondition())));
             }
             
             return ResponseEntity.ok(AiCommandResponse.success("✅ Command executed successfully"));
@@ -54,7 +54,7 @@ public class AuthController {
                 .orElse(null);
 
         if (user != null && passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            String token = jwtUtil.generateToken(user.getEmail());
+            String token = jwtUtil.generateToken(user);
             return ResponseEntity.ok(new AuthResponse(token));
         }
 
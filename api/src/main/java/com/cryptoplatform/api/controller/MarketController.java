@@ -1,11 +1,20 @@
 package com.cryptoplatform.api.controller;
 
+import com.cryptoplatform.api.history.PriceHistoryService;
 import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.LatestPricesSnapshot;
+import com.cryptoplatform.api.service.MarketCatalog;
 import com.cryptoplatform.api.service.MarketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -14,9 +23,19 @@ import java.util.Map;
 public class MarketController {
 
     private final MarketService marketService;
+    private final MarketCatalog marketCatalog;
+    private final LatestPricesSnapshot latestPricesSnapshot;
+    private final PriceHistoryService priceHistoryService;
+    private final boolean gzipEnabled;
 
-    public MarketController(MarketService marketService) {
+    public MarketController(MarketService marketService, MarketCatalog marketCatalog,
+                            LatestPricesSnapshot latestPricesSnapshot, PriceHistoryService priceHistoryService,
+                            @Value("${market.prices-latest.gzip:true}") boolean gzipEnabled) {
         this.marketService = marketService;
+        this.marketCatalog = marketCatalog;
+        this.latestPricesSnapshot = latestPricesSnapshot;
+        this.priceHistoryService = priceHistoryService;
+        this.gzipEnabled = gzipEnabled;
     }
 
     @GetMapping("/markets")
@@ -24,13 +43,67 @@ public class MarketController {
         return marketService.getSupportedMarkets();
     }
 
+    /**
+     * Latest prices, all markets or one. Both honour If-None-Match / If-Modified-Since;
+     * the all-markets body is served from a pre-serialized snapshot, gzipped if accepted.
+     */
     @GetMapping("/prices/latest")
-    public ResponseEntity<?> getLatestPrices(@RequestParam(required = false) String symbol) {
+    public ResponseEntity<?> getLatestPrices(@RequestParam(required = false) String symbol,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                             WebRequest request) {
         if (symbol != null) {
-            return marketService.getLatestPrice(symbol)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+            Ticker ticker = marketService.getLatestPrice(symbol).orElse(null);
+            if (ticker == null) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = "\"" + Long.toHexString(ticker.tsEpochMs()) + "\"";
+            if (request.checkNotModified(etag, ticker.tsEpochMs())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).lastModified(ticker.tsEpochMs()).body(ticker);
+        }
+
+        LatestPricesSnapshot.Snapshot snapshot = latestPricesSnapshot.get();
+        if (request.checkNotModified(snapshot.etag(), snapshot.lastModifiedMs())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.etag()).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(snapshot.etag())
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (snapshot.lastModifiedMs() > 0) {
+            response.lastModified(snapshot.lastModifiedMs());
+        }
+        if (gzipEnabled && LatestPricesSnapshot.acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(latestPricesSnapshot.gzip(snapshot));
+        }
+        return response.body(snapshot.json());
+    }
+
+    /**
+     * Recorded ticks, or candles when an interval (1m, 5m, 15m, 1h, 4h, 1d) is given.
+     * from and to are epoch milliseconds and default to the last 24 hours.
+     */
+    @GetMapping("/prices/history")
+    public ResponseEntity<?> getPriceHistory(@RequestParam String symbol,
+                                             @RequestParam(required = false) Long from,
+                                             @RequestParam(required = false) Long to,
+                                             @RequestParam(required = false) String interval) {
+        if (!marketCatalog.isSupported(symbol)) {
+            return ResponseEntity.notFound().build();
+        }
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 24 * 60 * 60 * 1000L;
+
+        try {
+            if (interval == null) {
+                return ResponseEntity.ok(priceHistoryService.getTicks(symbol, start, end));
+            }
+            return ResponseEntity.ok(priceHistoryService.getCandles(symbol, start, end,
+                PriceHistoryService.Interval.parse(interval)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
-        return ResponseEntity.ok(marketService.getAllLatestPrices());
     }
 }
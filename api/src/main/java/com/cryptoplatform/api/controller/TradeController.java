@@ -2,8 +2,7 @@ package com.cryptoplatform.api.controller;
 
 import com.cryptoplatform.api.model.Order;
 import com.cryptoplatform.api.model.Position;
-import com.cryptoplatform.api.model.User;
-import com.cryptoplatform.api.repository.UserRepository;
+import com.cryptoplatform.api.security.AuthenticatedUser;
 import com.cryptoplatform.api.service.TradeRequest;
 import com.cryptoplatform.api.service.TradingServiceRouter;
 import org.springframework.http.ResponseEntity;
@@ -18,18 +17,14 @@ import java.util.List;
 public class TradeController {
 
     private final TradingServiceRouter tradingService;
-    private final UserRepository userRepository;
 
-    public TradeController(TradingServiceRouter tradingService, UserRepository userRepository) {
+    public TradeController(TradingServiceRouter tradingService) {
         this.tradingService = tradingService;
-        this.userRepository = userRepository;
     }
 
     private Long getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = (String) auth.getPrincipal();
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
-        return user.getId();
+        return ((AuthenticatedUser) auth.getPrincipal()).userId();
     }
 
     @PostMapping("/orders")
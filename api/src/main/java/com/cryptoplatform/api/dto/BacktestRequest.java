@@ -0,0 +1,33 @@
+package com.cryptoplatform.api.dto;
+
+import com.cryptoplatform.api.model.AgentRule;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class BacktestRequest {
+    // Saved rules of the caller, active or not
+    private List<Long> ruleIds;
+    // Rules that aren't saved, in the stored form (symbol, condition, targetPrice, ...)
+    private List<AgentRule> rules;
+    private Long from;
+    private Long to;
+    private BigDecimal startingCash;
+
+    public BacktestRequest() {}
+
+    public List<Long> getRuleIds() { return ruleIds; }
+    public void setRuleIds(List<Long> ruleIds) { this.ruleIds = ruleIds; }
+
+    public List<AgentRule> getRules() { return rules; }
+    public void setRules(List<AgentRule> rules) { this.rules = rules; }
+
+    public Long getFrom() { return from; }
+    public void setFrom(Long from) { this.from = from; }
+
+    public Long getTo() { return to; }
+    public void setTo(Long to) { this.to = to; }
+
+    public BigDecimal getStartingCash() { return startingCash; }
+    public void setStartingCash(BigDecimal startingCash) { this.startingCash = startingCash; }
+}
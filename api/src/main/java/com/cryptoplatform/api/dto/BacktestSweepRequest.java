@@ -0,0 +1,68 @@
+package com.cryptoplatform.api.dto;
+
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.BacktestSweep;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class BacktestSweepRequest {
+    // Rules in the stored form; the parameters overwrite fields of them
+    private List<AgentRule> rules;
+    private List<Parameter> parameters;
+    private Long from;
+    private Long to;
+    private BigDecimal startingCash;
+    private BacktestSweep.RankBy rankBy;
+    private Integer top;
+
+    /**
+     * Values to try for one field of one template rule.
+     */
+    public static class Parameter {
+        // Name in the results; defaults to rules[rule].field
+        private String name;
+        // Index into rules
+        private int rule;
+        // targetPrice, amount or period
+        private String field;
+        private List<BigDecimal> values;
+
+        public Parameter() {}
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public int getRule() { return rule; }
+        public void setRule(int rule) { this.rule = rule; }
+
+        public String getField() { return field; }
+        public void setField(String field) { this.field = field; }
+
+        public List<BigDecimal> getValues() { return values; }
+        public void setValues(List<BigDecimal> values) { this.values = values; }
+    }
+
+    public BacktestSweepRequest() {}
+
+    public List<AgentRule> getRules() { return rules; }
+    public void setRules(List<AgentRule> rules) { this.rules = rules; }
+
+    public List<Parameter> getParameters() { return parameters; }
+    public void setParameters(List<Parameter> parameters) { this.parameters = parameters; }
+
+    public Long getFrom() { return from; }
+    public void setFrom(Long from) { this.from = from; }
+
+    public Long getTo() { return to; }
+    public void setTo(Long to) { this.to = to; }
+
+    public BigDecimal getStartingCash() { return startingCash; }
+    public void setStartingCash(BigDecimal startingCash) { this.startingCash = startingCash; }
+
+    public BacktestSweep.RankBy getRankBy() { return rankBy; }
+    public void setRankBy(BacktestSweep.RankBy rankBy) { this.rankBy = rankBy; }
+
+    public Integer getTop() { return top; }
+    public void setTop(Integer top) { this.top = top; }
+}
@@ -6,6 +6,7 @@ public class TradingModeResponse {
     private String mode; // "PAPER" or "LIVE"
     private boolean krakenConnected;
     private String message;
+    private String token; // Re-issued JWT after a mode change, null otherwise
     
     public TradingModeResponse() {}
     
@@ -23,4 +24,7 @@ public class TradingModeResponse {
     
     public String getMessage() { return message; }
     public void setMessage(String message) { this.message = message; }
+    
+    public String getToken() { return token; }
+    public void setToken(String token) { this.token = token; }
 }
@@ -0,0 +1,195 @@
+package com.cryptoplatform.api.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * On-disk block of rows of longs, stored column by column.
+ *
+ * Layout (big-endian):
+ *   int    length     bytes following this field
+ *   int    rows
+ *   long   firstTs    timestamp (column 0) of the first row
+ *   long   lastTs     timestamp of the last row
+ *   byte   columns
+ *   byte[] scales     decimal scale of each column (0 for timestamps and counts)
+ *   int[]  sizes      encoded size of each column
+ *   column data
+ *
+ * Every column is a run of zig-zag varints, each the difference to the previous
+ * row (the first row against 0). Timestamps a few ms apart and prices moving by a
+ * few ticks take one or two bytes. Values are scaled longs, so 50000.1 at scale 1
+ * is 500001 and prices stay exact.
+ *
+ * Readers skip whole blocks on firstTs/lastTs and only decode the columns they ask
+ * for. A block cut short by a crash fails the length check and ends the file until
+ * the store cuts it off, see {@link #validLength}.
+ */
+final class ColumnBlock {
+
+    private ColumnBlock() {}
+
+    /**
+     * Receives decoded rows. Columns left out of the mask keep whatever value they had.
+     */
+    interface RowVisitor {
+        void row(long[] values, byte[] scales);
+    }
+
+    static ByteBuffer encode(long[][] columns, int rows, byte[] scales) {
+        int count = columns.length;
+        byte[][] encoded = new byte[count][];
+        int dataSize = 0;
+        for (int c = 0; c < count; c++) {
+            encoded[c] = encodeColumn(columns[c], rows);
+            dataSize += encoded[c].length;
+        }
+
+        int length = 4 + 8 + 8 + 1 + count + 4 * count + dataSize;
+        ByteBuffer block = ByteBuffer.allocate(4 + length);
+        block.putInt(length);
+        block.putInt(rows);
+        block.putLong(columns[0][0]);
+        block.putLong(columns[0][rows - 1]);
+        block.put((byte) count);
+        block.put(scales, 0, count);
+        for (byte[] column : encoded) {
+            block.putInt(column.length);
+        }
+        for (byte[] column : encoded) {
+            block.put(column);
+        }
+        return block.flip();
+    }
+
+    /**
+     * Visit the rows of every block in the file with from <= ts <= to, in order.
+     *
+     * @param columnMask bit c set = decode column c (the timestamp column is always decoded)
+     */
+    static void scan(ByteBuffer file, long from, long to, long columnMask, int columns, RowVisitor visitor) {
+        ByteBuffer in = file.duplicate();
+        long[] values = new long[columns];
+        while (in.remaining() >= 4) {
+            int start = in.position();
+            int length = in.getInt();
+            if (length <= 0 || length > in.remaining()) return; // Torn tail
+
+            int rows = in.getInt();
+            long firstTs = in.getLong();
+            long lastTs = in.getLong();
+            int end = start + 4 + length;
+            if (lastTs < from || firstTs > to) {
+                in.position(end);
+                continue;
+            }
+
+            int count = in.get();
+            byte[] scales = new byte[count];
+            in.get(scales);
+            int[] sizes = new int[count];
+            for (int c = 0; c < count; c++) {
+                sizes[c] = in.getInt();
+            }
+
+            // Decode the wanted columns of the whole block, then walk the rows
+            long[][] decoded = new long[count][];
+            int offset = in.position();
+            for (int c = 0; c < count; c++) {
+                if (c == 0 || (columnMask & (1L << c)) != 0) {
+                    decoded[c] = decodeColumn(in.duplicate().position(offset), rows);
+                }
+                offset += sizes[c];
+            }
+            in.position(end);
+
+            for (int r = 0; r < rows; r++) {
+                long ts = decoded[0][r];
+                if (ts < from) continue;
+                if (ts > to) return;
+                for (int c = 0; c < Math.min(count, columns); c++) {
+                    if (decoded[c] != null) values[c] = decoded[c][r];
+                }
+                visitor.row(values, scales);
+            }
+        }
+    }
+
+    /**
+     * Rows in blocks overlapping [from, to]; an upper bound on what {@link #scan} visits.
+     */
+    static long countRows(ByteBuffer file, long from, long to) {
+        ByteBuffer in = file.duplicate();
+        long total = 0;
+        while (in.remaining() >= 4) {
+            int start = in.position();
+            int length = in.getInt();
+            if (length <= 0 || length > in.remaining()) break;
+            int rows = in.getInt();
+            long firstTs = in.getLong();
+            long lastTs = in.getLong();
+            if (lastTs >= from && firstTs <= to) {
+                total += rows;
+            }
+            in.position(start + 4 + length);
+        }
+        return total;
+    }
+
+    /**
+     * Bytes taken by the complete blocks at the start of the file; anything after them
+     * is a block cut short by a crash.
+     */
+    static long validLength(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(4);
+        long position = 0;
+        while (size - position >= 4) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, position + header.position()) < 0) return position;
+            }
+            int length = header.getInt(0);
+            if (length <= 0 || length > size - position - 4) break;
+            position += 4 + length;
+        }
+        return position;
+    }
+
+    private static byte[] encodeColumn(long[] column, int rows) {
+        byte[] out = new byte[rows * 10];
+        int pos = 0;
+        long previous = 0;
+        for (int r = 0; r < rows; r++) {
+            long delta = column[r] - previous;
+            previous = column[r];
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            out[pos++] = (byte) zigzag;
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    private static long[] decodeColumn(ByteBuffer in, int rows) {
+        long[] column = new long[rows];
+        long previous = 0;
+        for (int r = 0; r < rows; r++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            column[r] = previous;
+        }
+        return column;
+    }
+}
@@ -0,0 +1,280 @@
+package com.cryptoplatform.api.history;
+
+import com.cryptoplatform.api.history.TimeSeriesStore.Series;
+import com.cryptoplatform.api.model.Candle;
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.PricePoint;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.MarketCatalog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records ticks and one-minute bars into the {@link TimeSeriesStore} and answers
+ * history queries from it.
+ *
+ * Prices are stored as longs at the market's price scale and volumes at its lot
+ * scale. Candles of any interval are rolled up from the stored one-minute bars
+ * plus the bar still being built, so even months of candles only read a few
+ * hundred thousand rows.
+ */
+@Service
+public class PriceHistoryService {
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long ALL_COLUMNS = -1L;
+
+    public enum Interval {
+        M1("1m", MINUTE_MS),
+        M5("5m", 5 * MINUTE_MS),
+        M15("15m", 15 * MINUTE_MS),
+        H1("1h", 60 * MINUTE_MS),
+        H4("4h", 240 * MINUTE_MS),
+        D1("1d", 1440 * MINUTE_MS);
+
+        private final String label;
+        private final long millis;
+
+        Interval(String label, long millis) {
+            this.label = label;
+            this.millis = millis;
+        }
+
+        public static Interval parse(String label) {
+            for (Interval interval : values()) {
+                if (interval.label.equals(label)) return interval;
+            }
+            throw new IllegalArgumentException("Unsupported interval: " + label + ". Use 1m, 5m, 15m, 1h, 4h or 1d");
+        }
+    }
+
+    private final TimeSeriesStore store;
+    private final MarketCatalog marketCatalog;
+    private final int maxPoints;
+
+    // Symbol -> Minute bar being built, written out once a tick of a later minute arrives
+    private final Map<String, MinuteBar> openBars = new ConcurrentHashMap<>();
+
+    public PriceHistoryService(TimeSeriesStore store, MarketCatalog marketCatalog,
+                               @Value("${history.max-points:10000}") int maxPoints) {
+        this.store = store;
+        this.marketCatalog = marketCatalog;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Append a tick from the market stream. Ticks of unknown symbols are ignored.
+     */
+    public void record(Ticker ticker) {
+        Market market = marketCatalog.find(ticker.symbol()).orElse(null);
+        if (market == null) return;
+
+        byte priceScale = (byte) market.priceDecimals();
+        byte volumeScale = (byte) market.lotDecimals();
+        long ts = ticker.tsEpochMs();
+        long last = scaled(ticker.last(), priceScale);
+        long volume = scaled(ticker.volume24h(), volumeScale);
+
+        store.append(ticker.symbol(), Series.TICKS,
+            new long[] { ts, last, scaled(ticker.bid(), priceScale), scaled(ticker.ask(), priceScale), volume },
+            new byte[] { 0, priceScale, priceScale, priceScale, volumeScale });
+
+        MinuteBar bar = openBars.computeIfAbsent(ticker.symbol(), s -> new MinuteBar());
+        long[] finished;
+        byte[] finishedScales;
+        synchronized (bar) {
+            finishedScales = bar.scales();
+            finished = bar.add(Math.floorDiv(ts, MINUTE_MS) * MINUTE_MS, last, volume, priceScale, volumeScale);
+        }
+        if (finished != null) {
+            store.append(ticker.symbol(), Series.BARS_1M, finished, finishedScales);
+        }
+    }
+
+    /**
+     * Raw ticks with from <= ts <= to. Rejects ranges holding more than history.max-points ticks.
+     */
+    public List<PricePoint> getTicks(String symbol, long from, long to) {
+        if (store.estimateRows(symbol, Series.TICKS, from, to) > maxPoints) {
+            throw new IllegalArgumentException("Range holds more than " + maxPoints + " ticks; narrow it or pass an interval");
+        }
+
+        List<PricePoint> points = new ArrayList<>();
+        store.scan(symbol, Series.TICKS, from, to, ALL_COLUMNS, (values, scales) -> points.add(new PricePoint(
+            values[0],
+            BigDecimal.valueOf(values[2], scales[2]),
+            BigDecimal.valueOf(values[3], scales[3]),
+            BigDecimal.valueOf(values[1], scales[1]),
+            BigDecimal.valueOf(values[4], scales[4]))));
+        return points;
+    }
+
+    /**
+     * Upper bound on the ticks recorded with from <= ts <= to, from block headers only.
+     */
+    public long estimateTicks(String symbol, long from, long to) {
+        return store.estimateRows(symbol, Series.TICKS, from, to);
+    }
+
+    /**
+     * Raw ticks with from <= ts <= to in columnar form, for replays. Unlike getTicks
+     * this isn't bounded by history.max-points; callers check estimateTicks first.
+     */
+    public TickSeries loadTicks(String symbol, long from, long to) {
+        TickSeries.Builder ticks = new TickSeries.Builder(symbol);
+        store.scan(symbol, Series.TICKS, from, to, ALL_COLUMNS, ticks::add);
+        return ticks.build();
+    }
+
+    /**
+     * Candles whose start falls in [from, to], aligned to the interval (UTC).
+     */
+    public List<Candle> getCandles(String symbol, long from, long to, Interval interval) {
+        long start = Math.floorDiv(from, interval.millis) * interval.millis;
+        if ((to - start) / interval.millis >= maxPoints) {
+            throw new IllegalArgumentException("Range spans more than " + maxPoints + " candles; narrow it or use a larger interval");
+        }
+
+        CandleBuilder candles = new CandleBuilder(interval.millis, start);
+        long end = Math.floorDiv(to, interval.millis) * interval.millis + interval.millis - 1;
+        long[] lastStored = { Long.MIN_VALUE };
+        // From one minute early: that bar's closing 24h volume is the base of the first one's volume
+        store.scan(symbol, Series.BARS_1M, start - MINUTE_MS, end, ALL_COLUMNS, (values, scales) -> {
+            candles.add(values, scales);
+            lastStored[0] = values[0];
+        });
+
+        // The bar still being built isn't in the store yet
+        MinuteBar bar = openBars.get(symbol);
+        if (bar != null) {
+            long[] open;
+            byte[] scales;
+            synchronized (bar) {
+                open = bar.row();
+                scales = bar.scales();
+            }
+            if (open != null && open[0] > lastStored[0] && open[0] >= start && open[0] <= end) {
+                candles.add(open, scales);
+            }
+        }
+        return candles.finish();
+    }
+
+    private static long scaled(BigDecimal value, int scale) {
+        return value.movePointRight(scale).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    // Bring a scaled long from one scale to another (scales only change when Kraken changes a pair)
+    private static long rescale(long value, int from, int to) {
+        return scaled(BigDecimal.valueOf(value, from), to);
+    }
+
+    // One-minute bar of a symbol, guarded by synchronizing on the instance
+    private static final class MinuteBar {
+        private long minute = Long.MIN_VALUE;
+        private long open, high, low, close, volume, ticks;
+        private byte priceScale, volumeScale;
+
+        // Returns the finished previous bar when this tick starts a new minute
+        long[] add(long tickMinute, long last, long volume24h, byte tickPriceScale, byte tickVolumeScale) {
+            if (tickMinute < minute) return null; // Late tick
+
+            long[] finished = null;
+            if (ticks > 0 && (tickMinute > minute || tickPriceScale != priceScale || tickVolumeScale != volumeScale)) {
+                finished = row();
+                ticks = 0;
+            }
+            if (ticks == 0) {
+                minute = tickMinute;
+                priceScale = tickPriceScale;
+                volumeScale = tickVolumeScale;
+                open = high = low = last;
+            }
+            high = Math.max(high, last);
+            low = Math.min(low, last);
+            close = last;
+            volume = volume24h;
+            ticks++;
+            return finished;
+        }
+
+        long[] row() {
+            return ticks == 0 ? null : new long[] { minute, open, high, low, close, volume, ticks };
+        }
+
+        byte[] scales() {
+            return new byte[] { 0, priceScale, priceScale, priceScale, priceScale, volumeScale, 0 };
+        }
+    }
+
+    // Rolls ordered minute bars up into candles of a larger interval
+    private static final class CandleBuilder {
+        private final long intervalMs;
+        private final long start;
+        private final List<Candle> candles = new ArrayList<>();
+        private long bucket = Long.MIN_VALUE;
+        private long open, high, low, close, volume, ticks;
+        private int priceScale, volumeScale;
+        private long lastVolume24h = -1; // Closing 24h volume of the previous bar, -1 before the first
+        private int lastVolumeScale;
+
+        CandleBuilder(long intervalMs, long start) {
+            this.intervalMs = intervalMs;
+            this.start = start;
+        }
+
+        void add(long[] bar, byte[] scales) {
+            // Rise of the rolling 24h volume since the previous bar (at this bar's scale)
+            long traded = lastVolume24h < 0 ? 0
+                : Math.max(bar[5] - rescale(lastVolume24h, lastVolumeScale, scales[5]), 0);
+            lastVolume24h = bar[5];
+            lastVolumeScale = scales[5];
+            if (bar[0] < start) return; // Only read for its volume
+
+            long barBucket = Math.floorDiv(bar[0], intervalMs) * intervalMs;
+            if (barBucket != bucket) {
+                emit();
+                bucket = barBucket;
+                priceScale = scales[1];
+                volumeScale = scales[5];
+                open = bar[1];
+                high = bar[2];
+                low = bar[3];
+                volume = 0;
+                ticks = 0;
+            } else if (scales[1] != priceScale || scales[5] != volumeScale) {
+                bar = bar.clone();
+                for (int c = 1; c <= 4; c++) bar[c] = rescale(bar[c], scales[1], priceScale);
+                traded = rescale(traded, scales[5], volumeScale);
+            }
+            high = Math.max(high, bar[2]);
+            low = Math.min(low, bar[3]);
+            close = bar[4];
+            volume += traded;
+            ticks += bar[6];
+        }
+
+        List<Candle> finish() {
+            emit();
+            return candles;
+        }
+
+        private void emit() {
+            if (bucket == Long.MIN_VALUE) return;
+            candles.add(new Candle(bucket,
+                BigDecimal.valueOf(open, priceScale),
+                BigDecimal.valueOf(high, priceScale),
+                BigDecimal.valueOf(low, priceScale),
+                BigDecimal.valueOf(close, priceScale),
+                BigDecimal.valueOf(volume, volumeScale),
+                ticks));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.cryptoplatform.api.history;
+
+import com.cryptoplatform.api.model.Ticker;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Recorded ticks of one symbol decoded into columns of scaled longs, for replaying
+ * a range many times without going back to the store.
+ *
+ * Immutable once built, so one instance can be read by any number of threads. A
+ * tick costs 42 bytes here against a few hundred as a {@link Ticker}, which is only
+ * built when a replay asks for it.
+ */
+public final class TickSeries {
+
+    private static final double[] POW10 = new double[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final String symbol;
+    private final int size;
+    private final long[] ts;
+    private final long[] last;
+    private final long[] bid;
+    private final long[] ask;
+    private final long[] volume;
+    private final byte[] priceScale;
+    private final byte[] volumeScale;
+
+    private TickSeries(Builder builder) {
+        this.symbol = builder.symbol;
+        this.size = builder.size;
+        this.ts = Arrays.copyOf(builder.ts, size);
+        this.last = Arrays.copyOf(builder.last, size);
+        this.bid = Arrays.copyOf(builder.bid, size);
+        this.ask = Arrays.copyOf(builder.ask, size);
+        this.volume = Arrays.copyOf(builder.volume, size);
+        this.priceScale = Arrays.copyOf(builder.priceScale, size);
+        this.volumeScale = Arrays.copyOf(builder.volumeScale, size);
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long ts(int i) {
+        return ts[i];
+    }
+
+    public BigDecimal last(int i) {
+        return BigDecimal.valueOf(last[i], priceScale[i]);
+    }
+
+    // Cheap approximation of last(i) for marking positions
+    public double lastValue(int i) {
+        return last[i] / POW10[priceScale[i]];
+    }
+
+    public Ticker ticker(int i) {
+        byte scale = priceScale[i];
+        return new Ticker(symbol, ts[i],
+            BigDecimal.valueOf(bid[i], scale),
+            BigDecimal.valueOf(ask[i], scale),
+            BigDecimal.valueOf(last[i], scale),
+            BigDecimal.valueOf(volume[i], volumeScale[i]),
+            BigDecimal.ZERO);
+    }
+
+    static final class Builder {
+
+        private final String symbol;
+        private int size;
+        private long[] ts = new long[1024];
+        private long[] last = new long[1024];
+        private long[] bid = new long[1024];
+        private long[] ask = new long[1024];
+        private long[] volume = new long[1024];
+        private byte[] priceScale = new byte[1024];
+        private byte[] volumeScale = new byte[1024];
+
+        Builder(String symbol) {
+            this.symbol = symbol;
+        }
+
+        // A row of the TICKS series: ts, last, bid, ask, volume24h
+        void add(long[] values, byte[] scales) {
+            if (size == ts.length) {
+                int capacity = size * 2;
+                ts = Arrays.copyOf(ts, capacity);
+                last = Arrays.copyOf(last, capacity);
+                bid = Arrays.copyOf(bid, capacity);
+                ask = Arrays.copyOf(ask, capacity);
+                volume = Arrays.copyOf(volume, capacity);
+                priceScale = Arrays.copyOf(priceScale, capacity);
+                volumeScale = Arrays.copyOf(volumeScale, capacity);
+            }
+            ts[size] = values[0];
+            last[size] = values[1];
+            bid[size] = values[2];
+            ask[size] = values[3];
+            volume[size] = values[4];
+            priceScale[size] = scales[1];
+            volumeScale[size] = scales[4];
+            size++;
+        }
+
+        TickSeries build() {
+            return new TickSeries(this);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.cryptoplatform.api.history;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedded append-only store of per-symbol time series.
+ *
+ * Each series of each symbol gets one file per UTC day, history.dir/SYMBOL/yyyy-MM-dd.series,
+ * made of {@link ColumnBlock}s. Rows are buffered in memory and written as a block once
+ * history.block-rows have piled up, the day rolls over, or history.flush-ms passed.
+ * Queries map the day files of the range read-only, skip blocks by their time bounds,
+ * then visit the rows still in the buffer, so reads see everything appended so far.
+ * The buffer is copied first, together with how far its day file reached at that
+ * moment, and the files are only read up to there: a flush racing the query can
+ * neither hide rows from it nor show them twice.
+ *
+ * A block cut short by a crash is truncated off its file the first time this process
+ * touches the file, before appending to or mapping it.
+ *
+ * Day files older than history.retention-days are deleted hourly (<= 0 keeps everything).
+ *
+ * Rows must arrive in timestamp order per symbol and series; older rows are dropped.
+ */
+@Component
+public class TimeSeriesStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesStore.class);
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final int MAX_MAPPED_FILES = 4096;
+    private static final long NO_DAY = Long.MAX_VALUE;
+
+    /**
+     * Kinds of series kept per symbol; column 0 is always the timestamp.
+     */
+    public enum Series {
+        // ts, last, bid, ask, volume24h
+        TICKS("ticks", 5),
+        // minute start, open, high, low, close, closing volume24h, tick count
+        BARS_1M("bars-1m", 7);
+
+        final String extension;
+        final int columns;
+
+        Series(String extension, int columns) {
+            this.extension = extension;
+            this.columns = columns;
+        }
+    }
+
+    private final Path dir;
+    private final int blockRows;
+    private final long flushMs;
+    private final int retentionDays;
+
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+    // Path -> Read-only mapping, remapped when the file has grown
+    private final Map<Path, Mapped> mapped = new ConcurrentHashMap<>();
+    // Day files checked for a torn tail since startup
+    private final Set<Path> repaired = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public TimeSeriesStore(@Value("${history.dir:./data/history}") String dir,
+                           @Value("${history.block-rows:1024}") int blockRows,
+                           @Value("${history.flush-ms:5000}") long flushMs,
+                           @Value("${history.retention-days:365}") int retentionDays) {
+        this.dir = Path.of(dir);
+        this.blockRows = Math.max(1, blockRows);
+        this.flushMs = flushMs;
+        this.retentionDays = retentionDays;
+    }
+
+    // Keeps every day, for tests
+    public TimeSeriesStore(String dir, int blockRows, long flushMs) {
+        this(dir, blockRows, flushMs, 0);
+    }
+
+    /**
+     * Append one row. The caller must not reuse the arrays.
+     */
+    void append(String symbol, Series series, long[] row, byte[] scales) {
+        Buffer buffer = buffers.computeIfAbsent(key(symbol, series), k -> new Buffer(symbol, series, blockRows));
+        synchronized (buffer) {
+            if (buffer.rows > 0) {
+                if (row[0] < buffer.columns[0][buffer.rows - 1]) return;
+                if (day(row[0]) != buffer.day || !Arrays.equals(scales, buffer.scales)) {
+                    flush(buffer);
+                }
+            }
+            if (buffer.rows == 0) {
+                buffer.day = day(row[0]);
+                buffer.scales = scales;
+                buffer.startedAtMs = System.currentTimeMillis();
+            }
+            for (int c = 0; c < series.columns; c++) {
+                buffer.columns[c][buffer.rows] = row[c];
+            }
+            buffer.rows++;
+            if (buffer.rows == blockRows) {
+                flush(buffer);
+            }
+        }
+    }
+
+    /**
+     * Visit the rows with from <= ts <= to in timestamp order.
+     *
+     * @param columnMask bit c set = column c is needed; unneeded columns may not be decoded
+     */
+    void scan(String symbol, Series series, long from, long to, long columnMask, ColumnBlock.RowVisitor visitor) {
+        if (from > to) return;
+
+        // The cut: buffered rows, and what had been flushed for their day when they were copied
+        Buffer buffer = buffers.get(key(symbol, series));
+        long[][] rows = null;
+        byte[] scales = null;
+        int count = 0;
+        long cutDay = NO_DAY;
+        long cutSize = 0;
+        if (buffer != null) {
+            synchronized (buffer) {
+                count = buffer.rows;
+                rows = new long[series.columns][];
+                for (int c = 0; c < series.columns; c++) {
+                    rows[c] = Arrays.copyOf(buffer.columns[c], count);
+                }
+                scales = buffer.scales;
+                if (buffer.day != NO_DAY) {
+                    cutDay = buffer.day;
+                    cutSize = flushedSize(file(symbol, series, cutDay));
+                }
+            }
+        }
+
+        // Days after the buffer's only get files from flushes after the cut
+        long lastDay = Math.min(day(to), cutDay);
+        for (long day = day(from); day <= lastDay; day++) {
+            ByteBuffer file = map(file(symbol, series, day));
+            if (file == null) continue;
+            if (day == cutDay) {
+                file = file.slice(0, (int) Math.min(cutSize, file.limit()));
+            }
+            ColumnBlock.scan(file, from, to, columnMask, series.columns, visitor);
+        }
+
+        long[] values = new long[series.columns];
+        for (int r = 0; r < count; r++) {
+            long ts = rows[0][r];
+            if (ts < from) continue;
+            if (ts > to) break;
+            for (int c = 0; c < series.columns; c++) {
+                values[c] = rows[c][r];
+            }
+            visitor.row(values, scales);
+        }
+    }
+
+    /**
+     * Upper bound on the rows {@link #scan} would visit, from block headers only.
+     */
+    long estimateRows(String symbol, Series series, long from, long to) {
+        long total = 0;
+        for (long day = day(from); day <= day(to); day++) {
+            ByteBuffer file = map(file(symbol, series, day));
+            if (file != null) {
+                total += ColumnBlock.countRows(file, from, to);
+            }
+        }
+        Buffer buffer = buffers.get(key(symbol, series));
+        if (buffer != null) {
+            synchronized (buffer) {
+                total += buffer.rows;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Write out buffers that have been open longer than history.flush-ms.
+     */
+    @Scheduled(fixedDelayString = "${history.flush-ms:5000}")
+    public void flushIdle() {
+        long now = System.currentTimeMillis();
+        for (Buffer buffer : buffers.values()) {
+            synchronized (buffer) {
+                if (buffer.rows > 0 && now - buffer.startedAtMs >= flushMs) {
+                    flush(buffer);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 3_600_000)
+    public void deleteExpired() {
+        deleteExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Delete the day files of every symbol and series whose UTC day is more than
+     * history.retention-days before the day of nowMs.
+     */
+    void deleteExpired(long nowMs) {
+        if (retentionDays <= 0 || !Files.isDirectory(dir)) return;
+        long firstKept = day(nowMs) - retentionDays;
+        List<Path> files;
+        try (var paths = Files.walk(dir, 2)) {
+            files = paths.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            logger.error("Failed to list {} for retention", dir, e);
+            return;
+        }
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            int dot = name.indexOf('.');
+            long day;
+            try {
+                day = LocalDate.parse(dot < 0 ? name : name.substring(0, dot)).toEpochDay();
+            } catch (DateTimeParseException e) {
+                continue; // Not a day file
+            }
+            if (day >= firstKept) continue;
+            // Open mappings stay readable until released; queries just stop finding the file
+            mapped.remove(path);
+            try {
+                Files.deleteIfExists(path);
+                repaired.remove(path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete expired {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        for (Buffer buffer : buffers.values()) {
+            synchronized (buffer) {
+                flush(buffer);
+            }
+        }
+    }
+
+    // Called with the buffer's lock held
+    private void flush(Buffer buffer) {
+        if (buffer.rows == 0) return;
+        ByteBuffer block = ColumnBlock.encode(buffer.columns, buffer.rows, buffer.scales);
+        Path path = file(buffer.symbol, buffer.series, buffer.day);
+        try {
+            Files.createDirectories(path.getParent());
+            repair(path);
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long size = channel.size();
+                try {
+                    while (block.hasRemaining()) {
+                        channel.write(block);
+                    }
+                } catch (IOException e) {
+                    // Don't leave a partial block for the next one to land behind
+                    channel.truncate(size);
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            // The buffer is needed for the next rows (possibly of another day), so these are lost
+            logger.error("Failed to write {} rows to {}, dropping them", buffer.rows, path, e);
+        }
+        buffer.rows = 0;
+    }
+
+    /**
+     * Cut a block left incomplete by a crash off the end of the file, once per file and
+     * process. Blocks appended after it would be unreachable, since readers stop at the
+     * first bad block. Runs before the file is first mapped, so no mapping covers the
+     * bytes cut off.
+     */
+    private void repair(Path path) throws IOException {
+        if (repaired.contains(path)) return;
+        synchronized (repaired) {
+            if (repaired.contains(path)) return;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                long valid = ColumnBlock.validLength(channel);
+                if (valid < size) {
+                    logger.warn("Truncating torn block at the end of {} ({} of {} bytes kept)", path, valid, size);
+                    channel.truncate(valid);
+                }
+            } catch (NoSuchFileException e) {
+                // Not written yet; this process only ever appends whole blocks
+            }
+            repaired.add(path);
+        }
+    }
+
+    // Bytes of whole blocks in the file
+    private long flushedSize(Path path) {
+        try {
+            repair(path);
+            return Files.size(path);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to stat " + path, e);
+        }
+    }
+
+    private ByteBuffer map(Path path) {
+        try {
+            repair(path);
+            long size = Files.size(path);
+            Mapped current = mapped.get(path);
+            if (current != null && current.size() == size) {
+                return current.buffer();
+            }
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            if (mapped.size() >= MAX_MAPPED_FILES) {
+                mapped.clear(); // Mappings are released once unreachable
+            }
+            mapped.put(path, new Mapped(size, buffer));
+            return buffer;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map " + path, e);
+        }
+    }
+
+    private Path file(String symbol, Series series, long day) {
+        return dir.resolve(symbol).resolve(LocalDate.ofEpochDay(day) + "." + series.extension);
+    }
+
+    private static long day(long tsEpochMs) {
+        return Math.floorDiv(tsEpochMs, DAY_MS);
+    }
+
+    private static String key(String symbol, Series series) {
+        return symbol + "/" + series.extension;
+    }
+
+    private record Mapped(long size, ByteBuffer buffer) {}
+
+    // Rows not yet written, guarded by synchronizing on the instance
+    private static final class Buffer {
+        final String symbol;
+        final Series series;
+        final long[][] columns;
+        byte[] scales;
+        long day = NO_DAY; // Until the first row
+        int rows;
+        long startedAtMs;
+
+        Buffer(String symbol, Series series, int blockRows) {
+            this.symbol = symbol;
+            this.series = series;
+            this.columns = new long[series.columns][blockRows];
+        }
+    }
+}
@@ -14,6 +14,11 @@ public class Account {
     @Column(nullable = false)
     private BigDecimal balance;
 
+    // Funds held for open limit buys, changed only through FundReservationLedger.
+    // Defaulted in the DDL as well, since ddl-auto won't apply V6's default.
+    @Column(name = "reserved", nullable = false, columnDefinition = "numeric(38,2) default 0 not null")
+    private BigDecimal reserved = BigDecimal.ZERO;
+
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @com.fasterxml.jackson.annotation.JsonIgnore
@@ -31,6 +36,11 @@ public class Account {
     public BigDecimal getBalance() { return balance; }
     public void setBalance(BigDecimal balance) { this.balance = balance; }
 
+    public BigDecimal getReserved() { return reserved != null ? reserved : BigDecimal.ZERO; }
+    public void setReserved(BigDecimal reserved) { this.reserved = reserved; }
+
+    public BigDecimal getAvailableBalance() { return balance.subtract(getReserved()); }
+
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 }
@@ -0,0 +1,40 @@
+package com.cryptoplatform.api.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Mark-to-market valuation of a paper account at the latest prices.
+ *
+ * @param cash          account balance, including funds reserved for open limit buys
+ * @param marketValue   positions at their mark prices
+ * @param equity        cash + marketValue
+ * @param unrealizedPnl marketValue less the positions' cost at their average entry
+ * @param realizedPnl   sum of the positions' realized PnL, net of fees
+ * @param updatedAt     time of the latest tick or account change reflected
+ */
+public record AccountPnl(
+    Long accountId,
+    BigDecimal cash,
+    BigDecimal marketValue,
+    BigDecimal equity,
+    BigDecimal unrealizedPnl,
+    BigDecimal realizedPnl,
+    List<PositionPnl> positions,
+    long updatedAt
+) {
+
+    /**
+     * @param quantity  held quantity, including what is locked by open limit sells
+     * @param markPrice last price the position is valued at
+     */
+    public record PositionPnl(
+        String symbol,
+        BigDecimal quantity,
+        BigDecimal avgEntryPrice,
+        BigDecimal markPrice,
+        BigDecimal marketValue,
+        BigDecimal unrealizedPnl,
+        BigDecimal realizedPnl
+    ) {}
+}
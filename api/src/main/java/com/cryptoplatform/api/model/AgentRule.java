@@ -8,10 +8,44 @@ import java.time.LocalDateTime;
 @Table(name = "agent_rules")
 public class AgentRule {
 
+    /**
+     * When a rule fires. Price conditions compare the last price with targetPrice;
+     * the others read targetPrice as their threshold and conditionPeriod as noted.
+     */
     public enum Condition {
         PRICE_ABOVE,
         PRICE_BELOW,
-        PRICE_EQUALS
+        PRICE_EQUALS,
+        // Last price is targetPrice percent below the high of the past conditionPeriod minutes
+        PERCENT_DROP,
+        // Last price is targetPrice percent above the low of the past conditionPeriod minutes
+        PERCENT_RISE,
+        // Last price crosses the conditionPeriod-period EMA of one-minute closes; targetPrice is unused
+        CROSS_ABOVE_EMA,
+        CROSS_BELOW_EMA,
+        // 24h volume (in the base asset) reaches targetPrice
+        VOLUME_ABOVE,
+        // expression holds, e.g. BTC-USD < 60000 AND ETH-USD / BTC-USD > 0.05; targetPrice is unused
+        EXPRESSION;
+
+        public boolean hasPeriod() {
+            return this == PERCENT_DROP || this == PERCENT_RISE
+                    || this == CROSS_ABOVE_EMA || this == CROSS_BELOW_EMA;
+        }
+
+        public String describe(BigDecimal threshold, Integer period) {
+            return switch (this) {
+                case PRICE_ABOVE -> "price goes above $" + threshold;
+                case PRICE_BELOW -> "price goes below $" + threshold;
+                case PRICE_EQUALS -> "price reaches $" + threshold;
+                case PERCENT_DROP -> "price drops " + threshold + "% within " + period + " minutes";
+                case PERCENT_RISE -> "price rises " + threshold + "% within " + period + " minutes";
+                case CROSS_ABOVE_EMA -> "price crosses above its " + period + "-minute EMA";
+                case CROSS_BELOW_EMA -> "price crosses below its " + period + "-minute EMA";
+                case VOLUME_ABOVE -> "24h volume goes above " + threshold;
+                case EXPRESSION -> "its expression holds";
+            };
+        }
     }
 
     public enum Action {
@@ -47,6 +81,12 @@ public class AgentRule {
     @Column(nullable = false)
     private BigDecimal targetPrice;
 
+    @Column(name = "condition_period")
+    private Integer conditionPeriod; // Minutes or EMA periods, for conditions that take one
+
+    @Column(length = 500)
+    private String expression; // Canonical text, for EXPRESSION rules
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private Action action;
@@ -104,6 +144,16 @@ public class AgentRule {
     public BigDecimal getTargetPrice() { return targetPrice; }
     public void setTargetPrice(BigDecimal targetPrice) { this.targetPrice = targetPrice; }
 
+    public Integer getConditionPeriod() { return conditionPeriod; }
+    public void setConditionPeriod(Integer conditionPeriod) { this.conditionPeriod = conditionPeriod; }
+
+    public String getExpression() { return expression; }
+    public void setExpression(String expression) { this.expression = expression; }
+
+    public String describeCondition() {
+        return condition == Condition.EXPRESSION ? expression : condition.describe(targetPrice, conditionPeriod);
+    }
+
     public Action getAction() { return action; }
     public void setAction(Action action) { this.action = action; }
 
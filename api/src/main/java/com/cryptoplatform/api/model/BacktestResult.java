@@ -0,0 +1,48 @@
+package com.cryptoplatform.api.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Outcome of replaying rules over recorded ticks against a sandbox account.
+ *
+ * @param endingEquity cash plus positions at the last recorded prices
+ * @param totalPnl     endingEquity - startingCash, the sum of realized and unrealized PnL
+ * @param realizedPnl  gains on what was sold, net of every fee paid
+ * @param maxDrawdown  largest fall of equity from a prior peak as a fraction of the peak,
+ *                     sampled at each minute's closing prices
+ * @param ticks        recorded ticks replayed
+ * @param fills        every triggered rule in time order, including rejected orders
+ */
+public record BacktestResult(
+    long from,
+    long to,
+    BigDecimal startingCash,
+    BigDecimal endingEquity,
+    BigDecimal totalPnl,
+    BigDecimal realizedPnl,
+    BigDecimal unrealizedPnl,
+    BigDecimal fees,
+    double maxDrawdown,
+    long ticks,
+    long elapsedMs,
+    List<Fill> fills
+) {
+
+    /**
+     * @param rule           position of the rule in the backtested list
+     * @param ruleId         id of a saved rule, null for one passed inline
+     * @param rejectedReason why the order couldn't fill, null when it did
+     */
+    public record Fill(
+        long tsEpochMs,
+        int rule,
+        Long ruleId,
+        String symbol,
+        Order.Side side,
+        BigDecimal quantity,
+        BigDecimal price,
+        BigDecimal fee,
+        String rejectedReason
+    ) {}
+}
@@ -0,0 +1,48 @@
+package com.cryptoplatform.api.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of backtesting every point of a parameter grid over the same ticks.
+ *
+ * @param runs   grid points backtested
+ * @param ticks  recorded ticks each run replayed
+ * @param ranked the best runs, best first
+ */
+public record BacktestSweep(
+    int runs,
+    long ticks,
+    long elapsedMs,
+    RankBy rankBy,
+    List<Run> ranked
+) {
+
+    public enum RankBy {
+        TOTAL_PNL,
+        // Smallest drawdown first
+        MAX_DRAWDOWN,
+        // Total PnL per unit of drawdown
+        PNL_OVER_DRAWDOWN
+    }
+
+    /**
+     * One grid point and how its rules did.
+     *
+     * @param run        position of the grid point, the last parameter varying fastest
+     * @param parameters parameter name -> value used
+     * @param fills      orders filled
+     * @param rejected   triggered orders that couldn't fill
+     */
+    public record Run(
+        int run,
+        Map<String, BigDecimal> parameters,
+        BigDecimal totalPnl,
+        BigDecimal realizedPnl,
+        BigDecimal fees,
+        double maxDrawdown,
+        int fills,
+        int rejected
+    ) {}
+}
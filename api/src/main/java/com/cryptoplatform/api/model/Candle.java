@@ -0,0 +1,22 @@
+package com.cryptoplatform.api.model;
+
+import java.math.BigDecimal;
+
+/**
+ * OHLC bar of last prices.
+ *
+ * The ticker feed carries no trade sizes, so volume is estimated from the rolling
+ * 24h volume: how much it rose over the bar, never below zero. It misses trades offset
+ * by older ones leaving the window. Ticks is how many ticks the bar was built from.
+ *
+ * @param tsEpochMs bar start
+ */
+public record Candle(
+    long tsEpochMs,
+    BigDecimal open,
+    BigDecimal high,
+    BigDecimal low,
+    BigDecimal close,
+    BigDecimal volume,
+    long ticks
+) {}
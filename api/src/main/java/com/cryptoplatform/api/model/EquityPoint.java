@@ -0,0 +1,8 @@
+package com.cryptoplatform.api.model;
+
+import java.math.BigDecimal;
+
+/**
+ * One sample of an account's equity curve: cash plus positions at the prices of the time.
+ */
+public record EquityPoint(long tsEpochMs, BigDecimal equity) {}
@@ -0,0 +1,17 @@
+package com.cryptoplatform.api.model;
+
+import java.util.List;
+
+/**
+ * Market catalog entry, published by the market gateway.
+ *
+ * @param id            small dense integer id, usable as an array index for per-market state
+ * @param wsSymbol      symbol on the Kraken WS v2 feed (BTC/USD)
+ * @param krakenPair    Kraken REST pair name (XXBTZUSD)
+ * @param assetCodes    Kraken asset codes of the base currency, as seen in balances
+ * @param priceDecimals price scale
+ * @param lotDecimals   quantity scale
+ * @param names         names users may call the asset by
+ */
+public record Market(int id, String symbol, String wsSymbol, String krakenPair, List<String> assetCodes,
+                     int priceDecimals, int lotDecimals, List<String> names) {}
@@ -25,6 +25,10 @@ public class Position {
     @Column(name = "avg_entry_price")
     private BigDecimal avgEntryPrice; // Optional: track average entry
 
+    // Sell gains over the average entry, net of every fee paid on the symbol
+    @Column(name = "realized_pnl", nullable = false)
+    private BigDecimal realizedPnl = BigDecimal.ZERO;
+
     public Position() {}
 
     public Position(Account account, String symbol, BigDecimal quantity) {
@@ -48,4 +52,7 @@ public class Position {
 
     public BigDecimal getAvgEntryPrice() { return avgEntryPrice; }
     public void setAvgEntryPrice(BigDecimal avgEntryPrice) { this.avgEntryPrice = avgEntryPrice; }
+
+    public BigDecimal getRealizedPnl() { return realizedPnl != null ? realizedPnl : BigDecimal.ZERO; }
+    public void setRealizedPnl(BigDecimal realizedPnl) { this.realizedPnl = realizedPnl; }
 }
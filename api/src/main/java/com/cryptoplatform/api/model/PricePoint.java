@@ -0,0 +1,14 @@
+package com.cryptoplatform.api.model;
+
+import java.math.BigDecimal;
+
+/**
+ * A recorded tick, as returned by the price history API.
+ */
+public record PricePoint(
+    long tsEpochMs,
+    BigDecimal bid,
+    BigDecimal ask,
+    BigDecimal last,
+    BigDecimal volume24h
+) {}
@@ -0,0 +1,12 @@
+package com.cryptoplatform.api.model;
+
+/**
+ * The parts of a user the trading path needs, resolved once and cached
+ * instead of loading the User entity on every call.
+ */
+public record UserContext(
+    Long userId,
+    String email,
+    User.TradingMode tradingMode,
+    Long accountId
+) {}
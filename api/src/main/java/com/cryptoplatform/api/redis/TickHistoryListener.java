@@ -1,8 +1,7 @@
 package com.cryptoplatform.api.redis;
 
+import com.cryptoplatform.api.history.PriceHistoryService;
 import com.cryptoplatform.api.model.Ticker;
-import com.cryptoplatform.api.websocket.PriceWebSocketHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.stream.MapRecord;
@@ -12,22 +11,28 @@ import org.springframework.stereotype.Component;
 import java.math.BigDecimal;
 import java.util.Map;
 
+/**
+ * Feeds every market tick into the local price history.
+ *
+ * Unlike {@link TradeEngineListener} this reads the stream without a consumer group,
+ * so each instance records the full feed into its own store.
+ */
 @Component
-public class TickerStreamListener implements StreamListener<String, MapRecord<String, String, String>> {
+public class TickHistoryListener implements StreamListener<String, MapRecord<String, String, String>> {
 
-    private static final Logger logger = LoggerFactory.getLogger(TickerStreamListener.class);
-    private final PriceWebSocketHandler webSocketHandler;
+    private static final Logger logger = LoggerFactory.getLogger(TickHistoryListener.class);
+    private final PriceHistoryService priceHistoryService;
 
-    public TickerStreamListener(PriceWebSocketHandler webSocketHandler) {
-        this.webSocketHandler = webSocketHandler;
+    public TickHistoryListener(PriceHistoryService priceHistoryService) {
+        this.priceHistoryService = priceHistoryService;
     }
 
     @Override
     public void onMessage(MapRecord<String, String, String> message) {
         try {
             Map<String, String> map = message.getValue();
-            
-            Ticker ticker = new Ticker(
+
+            priceHistoryService.record(new Ticker(
                 map.get("symbol"),
                 Long.parseLong(map.getOrDefault("ts", "0")),
                 new BigDecimal(map.getOrDefault("bid", "0")),
@@ -35,12 +40,9 @@ public class TickerStreamListener implements StreamListener<String, MapRecord<St
                 new BigDecimal(map.getOrDefault("last", "0")),
                 new BigDecimal(map.getOrDefault("volume24h", "0")),
                 new BigDecimal(map.getOrDefault("change24h", "0"))
-            );
-            
-            webSocketHandler.onTick(ticker);
-            
+            ));
         } catch (Exception e) {
-            logger.error("Failed to process stream message", e);
+            logger.error("Failed to record tick history", e);
         }
     }
 }
@@ -0,0 +1,115 @@
+package com.cryptoplatform.api.redis;
+
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.MarketService;
+import com.cryptoplatform.api.websocket.PriceFeed;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Feeds the {@link PriceFeed}s (price WebSocket endpoints, rule monitor) from the
+ * per-symbol pub/sub channels ("ticks:<symbol>") published by the market gateway.
+ *
+ * The instance is only subscribed to channels of symbols some local feed watches,
+ * so it receives nothing for the rest. When a symbol becomes
+ * watched, the endpoints are seeded with the latest ticker from {@link MarketService}
+ * so the first subscribers don't wait for the next tick. Received ticks also keep
+ * the MarketService cache fresh.
+ */
+@Component
+public class TickerChannelListener implements MessageListener, PriceFeed.WatchListener {
+
+    public static final String CHANNEL_PREFIX = "ticks:";
+
+    private static final Logger logger = LoggerFactory.getLogger(TickerChannelListener.class);
+    private static final TypeReference<Map<String, String>> FIELDS = new TypeReference<>() {};
+
+    private final List<PriceFeed> feeds;
+    private final RedisMessageListenerContainer container;
+    private final MarketService marketService;
+    private final ObjectMapper objectMapper;
+
+    // Symbols whose channel we're subscribed to, guarded by this
+    private final Set<String> subscribedSymbols = new HashSet<>();
+
+    public TickerChannelListener(List<PriceFeed> feeds,
+                                 RedisMessageListenerContainer tickerChannelContainer,
+                                 MarketService marketService,
+                                 ObjectMapper objectMapper) {
+        this.feeds = feeds;
+        this.container = tickerChannelContainer;
+        this.marketService = marketService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void register() {
+        feeds.forEach(feed -> feed.setWatchListener(this));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Ticker ticker = toTicker(objectMapper.readValue(message.getBody(), FIELDS));
+            marketService.onTick(ticker);
+            feeds.forEach(feed -> feed.onTick(ticker));
+        } catch (Exception e) {
+            logger.error("Failed to process ticker message", e);
+        }
+    }
+
+    /**
+     * Reconciles the channel subscription with whether the symbol is watched right now,
+     * so out-of-order notifications for the same symbol still end in the right state.
+     */
+    @Override
+    public synchronized void onWatchChanged(String symbol) {
+        ChannelTopic topic = new ChannelTopic(CHANNEL_PREFIX + symbol);
+        if (feeds.stream().anyMatch(feed -> feed.isWatched(symbol))) {
+            if (subscribedSymbols.add(symbol)) {
+                container.addMessageListener(this, topic);
+                logger.info("Subscribed to {}", topic.getTopic());
+            }
+            // Another endpoint may have started watching an already subscribed symbol
+            seedLatest(symbol);
+        } else if (subscribedSymbols.remove(symbol)) {
+            container.removeMessageListener(this, topic);
+            logger.info("Unsubscribed from {}", topic.getTopic());
+        }
+    }
+
+    private void seedLatest(String symbol) {
+        try {
+            marketService.getLatestPrice(symbol)
+                    .ifPresent(ticker -> feeds.forEach(feed -> feed.onTick(ticker)));
+        } catch (Exception e) {
+            logger.warn("Failed to seed latest ticker for {}: {}", symbol, e.getMessage());
+        }
+    }
+
+    private Ticker toTicker(Map<String, String> map) {
+        return new Ticker(
+            map.get("symbol"),
+            Long.parseLong(map.getOrDefault("ts", "0")),
+            new BigDecimal(map.getOrDefault("bid", "0")),
+            new BigDecimal(map.getOrDefault("ask", "0")),
+            new BigDecimal(map.getOrDefault("last", "0")),
+            new BigDecimal(map.getOrDefault("volume24h", "0")),
+            new BigDecimal(map.getOrDefault("change24h", "0"))
+        );
+    }
+}
@@ -1,6 +1,7 @@
 package com.cryptoplatform.api.redis;
 
 import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.MarketService;
 import com.cryptoplatform.api.service.PaperTradingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,9 +17,11 @@ public class TradeEngineListener implements StreamListener<String, MapRecord<Str
 
     private static final Logger logger = LoggerFactory.getLogger(TradeEngineListener.class);
     private final PaperTradingService tradingService;
+    private final MarketService marketService;
 
-    public TradeEngineListener(PaperTradingService tradingService) {
+    public TradeEngineListener(PaperTradingService tradingService, MarketService marketService) {
         this.tradingService = tradingService;
+        this.marketService = marketService;
     }
 
     @Override
@@ -36,6 +39,7 @@ public class TradeEngineListener implements StreamListener<String, MapRecord<Str
                 new BigDecimal(map.getOrDefault("change24h", "0"))
             );
             
+            marketService.onTick(ticker);
             tradingService.processLimitOrders(ticker);
             
         } catch (Exception e) {
@@ -1,9 +1,17 @@
 package com.cryptoplatform.api.repository;
 
 import com.cryptoplatform.api.model.Account;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByUserId(Long userId);
+
+    // SELECT ... FOR UPDATE: balance and holds can't change under the caller until it commits
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id = :accountId")
+    Optional<Account> findByIdForUpdate(Long accountId);
 }
@@ -1,10 +1,16 @@
 package com.cryptoplatform.api.repository;
 
 import com.cryptoplatform.api.model.User;
+import com.cryptoplatform.api.model.UserContext;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    @Query("SELECT new com.cryptoplatform.api.model.UserContext(u.id, u.email, u.tradingMode, a.id) " +
+           "FROM User u LEFT JOIN u.account a WHERE u.id = :userId")
+    Optional<UserContext> findContextById(Long userId);
 }
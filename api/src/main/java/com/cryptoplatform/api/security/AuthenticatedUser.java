@@ -0,0 +1,23 @@
+package com.cryptoplatform.api.security;
+
+import com.cryptoplatform.api.model.User;
+
+import java.security.Principal;
+
+/**
+ * Principal built from the JWT claims, so controllers get the user id without a DB lookup.
+ * tradingMode is the mode at the time the token was issued; routing trades still goes
+ * through UserContextCache so a stale token can never pick the wrong mode.
+ */
+public record AuthenticatedUser(
+    Long userId,
+    String email,
+    User.TradingMode tradingMode,
+    Long accountId
+) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -1,53 +1,91 @@
 package com.cryptoplatform.api.security;
 
+import com.cryptoplatform.api.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.util.Collections;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Component
 public class JwtUtil {
 
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_TRADING_MODE = "mode";
+    private static final String CLAIM_ACCOUNT_ID = "aid";
+
+    private static final int MAX_VERIFIED_TOKENS = 10_000;
+
     private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
     private final long EXPIRATION_TIME = 86400000; // 24 hours
 
-    public String generateToken(String email) {
+    // Tokens whose signature was already checked (LRU, keyed by the full token string)
+    private final Map<String, VerifiedToken> verifiedTokens = Collections.synchronizedMap(
+            new LinkedHashMap<String, VerifiedToken>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                    return size() > MAX_VERIFIED_TOKENS;
+                }
+            });
+
+    public String generateToken(User user) {
         return Jwts.builder()
-                .setSubject(email)
+                .setSubject(user.getEmail())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_TRADING_MODE, user.getTradingMode().name())
+                .claim(CLAIM_ACCOUNT_ID, user.getAccount() != null ? user.getAccount().getId() : null)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
                 .signWith(key)
                 .compact();
     }
 
-    public boolean validateToken(String token, String email) {
-        final String extractedEmail = extractEmail(token);
-        return (extractedEmail.equals(email) && !isTokenExpired(token));
-    }
+    /**
+     * Verify a token and return its principal, or null if it is invalid, expired or
+     * missing the user claims. Each distinct token is parsed once; repeats are served
+     * from the verified-token cache until they expire.
+     */
+    public AuthenticatedUser authenticate(String token) {
+        VerifiedToken cached = verifiedTokens.get(token);
+        if (cached != null) {
+            if (cached.expiresAtMs() > System.currentTimeMillis()) {
+                return cached.user();
+            }
+            verifiedTokens.remove(token);
+            return null;
+        }
 
-    public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
+        Claims claims;
+        try {
+            // Checks signature and expiration in one parse
+            claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
 
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
+        Number userId = claims.get(CLAIM_USER_ID, Number.class);
+        String mode = claims.get(CLAIM_TRADING_MODE, String.class);
+        if (userId == null || mode == null) {
+            return null; // Issued before the claims existed, log in again
+        }
+        Number accountId = claims.get(CLAIM_ACCOUNT_ID, Number.class);
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
+        AuthenticatedUser user = new AuthenticatedUser(
+                userId.longValue(),
+                claims.getSubject(),
+                User.TradingMode.valueOf(mode),
+                accountId != null ? accountId.longValue() : null);
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        verifiedTokens.put(token, new VerifiedToken(user, claims.getExpiration().getTime()));
+        return user;
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
+    private record VerifiedToken(AuthenticatedUser user, long expiresAtMs) {}
 }
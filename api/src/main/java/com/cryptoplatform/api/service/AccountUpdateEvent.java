@@ -0,0 +1,17 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Order;
+import com.cryptoplatform.api.model.Position;
+
+import java.math.BigDecimal;
+
+/**
+ * Published by {@link PaperTradingService} when an order is placed, filled or cancelled.
+ * Listeners receive it after the transaction commits.
+ *
+ * @param balance  account cash balance after the change (before reservations)
+ * @param reserved funds held for open limit buys after the change
+ * @param position position touched by the change, or null if none was
+ */
+public record AccountUpdateEvent(Long userId, Long accountId, Order order, BigDecimal balance, BigDecimal reserved,
+                                 Position position) {}
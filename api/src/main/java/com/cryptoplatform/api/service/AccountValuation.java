@@ -0,0 +1,157 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AccountPnl;
+import com.cryptoplatform.api.model.Position;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Running mark-to-market state of one paper account, kept by {@link PnlService}.
+ *
+ * A tick of a held symbol moves the market value by quantity * price change, so
+ * the cost of a tick doesn't depend on how many positions the account has. Marks
+ * and values are doubles for that reason; each {@link #reset} recomputes them from
+ * the database rows, so rounding drift never outlives the next reload. Cash and
+ * realized PnL change only with trades and stay exact.
+ *
+ * Guarded by this.
+ */
+final class AccountValuation {
+
+    private static final class Holding {
+        final BigDecimal quantity;
+        final BigDecimal avgEntryPrice;
+        final BigDecimal realizedPnl;
+        final double qty;
+        final double avg;
+        double mark;
+
+        Holding(BigDecimal quantity, BigDecimal avgEntryPrice, BigDecimal realizedPnl, double mark) {
+            this.quantity = quantity;
+            this.avgEntryPrice = avgEntryPrice;
+            this.realizedPnl = realizedPnl;
+            this.qty = quantity.doubleValue();
+            this.avg = avgEntryPrice.doubleValue();
+            this.mark = Double.isNaN(mark) ? avg : mark;
+        }
+    }
+
+    final Long userId;
+    final Long accountId;
+
+    private BigDecimal cash = BigDecimal.ZERO;
+    private BigDecimal realizedPnl = BigDecimal.ZERO;
+    private Map<String, Holding> holdings = Map.of();
+    private Set<String> held = Set.of();
+    private double marketValue;
+    private double cost;
+    private long updatedAt;
+    private boolean changed;
+    private volatile long lastReadMs;
+
+    AccountValuation(Long userId, Long accountId, long now) {
+        this.userId = userId;
+        this.accountId = accountId;
+        this.lastReadMs = now;
+    }
+
+    /**
+     * Replace the state with freshly loaded rows.
+     *
+     * @param locked quantity per symbol held by open limit sells, which the
+     *               position rows no longer include
+     * @param marks  price to value a symbol at, NaN if none is known yet
+     */
+    synchronized void reset(BigDecimal cash, List<Position> positions, Map<String, BigDecimal> locked,
+                            ToDoubleFunction<String> marks, long now) {
+        Map<String, Holding> next = new LinkedHashMap<>();
+        Set<String> nextHeld = new HashSet<>();
+        BigDecimal realized = BigDecimal.ZERO;
+        double value = 0;
+        double totalCost = 0;
+        for (Position position : positions) {
+            String symbol = position.getSymbol();
+            BigDecimal quantity = position.getQuantity().add(locked.getOrDefault(symbol, BigDecimal.ZERO));
+            BigDecimal avgEntryPrice = position.getAvgEntryPrice() != null ? position.getAvgEntryPrice() : BigDecimal.ZERO;
+            Holding holding = new Holding(quantity, avgEntryPrice, position.getRealizedPnl(), marks.applyAsDouble(symbol));
+            next.put(symbol, holding);
+            realized = realized.add(holding.realizedPnl);
+            if (quantity.signum() > 0) {
+                nextHeld.add(symbol);
+                value += holding.qty * holding.mark;
+                totalCost += holding.qty * holding.avg;
+            }
+        }
+        this.cash = cash;
+        this.realizedPnl = realized;
+        this.holdings = next;
+        this.held = nextHeld;
+        this.marketValue = value;
+        this.cost = totalCost;
+        this.updatedAt = now;
+        this.changed = true;
+    }
+
+    /**
+     * Symbols with a quantity to value; a tick of any other symbol can't change this account.
+     */
+    synchronized Set<String> heldSymbols() {
+        return held;
+    }
+
+    synchronized void mark(String symbol, double price, long ts) {
+        Holding holding = holdings.get(symbol);
+        if (holding == null || holding.mark == price) return;
+        marketValue += holding.qty * (price - holding.mark);
+        holding.mark = price;
+        updatedAt = ts;
+        changed = true;
+    }
+
+    synchronized AccountPnl snapshot() {
+        List<AccountPnl.PositionPnl> positions = new ArrayList<>(holdings.size());
+        for (Map.Entry<String, Holding> entry : holdings.entrySet()) {
+            Holding holding = entry.getValue();
+            positions.add(new AccountPnl.PositionPnl(
+                entry.getKey(),
+                holding.quantity,
+                holding.avgEntryPrice,
+                BigDecimal.valueOf(holding.mark),
+                money(holding.qty * holding.mark),
+                money(holding.qty * (holding.mark - holding.avg)),
+                holding.realizedPnl));
+        }
+        BigDecimal value = money(marketValue);
+        return new AccountPnl(accountId, cash, value, cash.add(value), money(marketValue - cost),
+            realizedPnl, positions, updatedAt);
+    }
+
+    /**
+     * The snapshot if anything changed since the last call, else null.
+     */
+    synchronized AccountPnl takeChanged() {
+        if (!changed) return null;
+        changed = false;
+        return snapshot();
+    }
+
+    void touch(long now) {
+        lastReadMs = now;
+    }
+
+    long lastReadMs() {
+        return lastReadMs;
+    }
+
+    private static BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,10 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AgentRule;
+
+/**
+ * Published when a rule is created or deactivated, so {@link RuleMonitorService} can
+ * start or stop watching it without waiting for its next reload.
+ * Listeners receive it after the transaction commits.
+ */
+public record AgentRuleEvent(AgentRule rule) {}
@@ -9,6 +9,7 @@ import com.cryptoplatform.api.model.User;
 import com.cryptoplatform.api.repository.AgentRuleRepository;
 import com.cryptoplatform.api.repository.UserRepository;
 import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,18 +26,23 @@ public class AiAgentService {
     private final MarketService marketService;
     private final AgentRuleRepository ruleRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RuleValidator ruleValidator;
     
     // In-memory cache for pending confirmations (in production, use Redis)
     private final java.util.Map<String, PendingCommand> pendingCommands = new java.util.concurrent.ConcurrentHashMap<>();
 
     public AiAgentService(OpenAiClient openAiClient, TradingServiceRouter tradingService,
                           MarketService marketService, AgentRuleRepository ruleRepository,
-                          UserRepository userRepository) {
+                          UserRepository userRepository, ApplicationEventPublisher eventPublisher,
+                          RuleValidator ruleValidator) {
         this.openAiClient = openAiClient;
         this.tradingService = tradingService;
         this.marketService = marketService;
         this.ruleRepository = ruleRepository;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.ruleValidator = ruleValidator;
     }
 
     @Transactional
@@ -135,7 +141,7 @@ public class AiAgentService {
     private AgentRule createRule(User user, String ruleText, JsonNode args) {
         String symbol = args.path("symbol").asText();
         String conditionStr = args.path("condition").asText();
-        BigDecimal targetPrice = new BigDecimal(args.path("targetPrice").asText());
+        BigDecimal targetPrice = new BigDecimal(args.path("targetPrice").asText("0"));
         String action = args.path("action").asText();
         String amountTypeStr = args.path("amount_type").asText();
         BigDecimal amount = new BigDecimal(args.path("amount").asText("0")); // Default 0 for ALL
@@ -144,8 +150,15 @@ public class AiAgentService {
         AgentRule.Action ruleAction = AgentRule.Action.valueOf(action);
         AgentRule.AmountType amountType = AgentRule.AmountType.valueOf(amountTypeStr);
         
-        AgentRule rule = new AgentRule(user, ruleText, symbol, condition, targetPrice, ruleAction, amountType, amount);
-        return ruleRepository.save(rule);
+        AgentRule newRule = new AgentRule(user, ruleText, symbol, condition, targetPrice, ruleAction, amountType, amount);
+        if (condition.hasPeriod()) {
+            newRule.setConditionPeriod(args.path("period").asInt(0));
+        }
+        newRule.setExpression(args.path("expression").asText(null));
+        ruleValidator.validate(newRule);
+        AgentRule rule = ruleRepository.save(newRule);
+        eventPublisher.publishEvent(new AgentRuleEvent(rule));
+        return rule;
     }
 
     @Transactional
@@ -313,13 +326,15 @@ public class AiAgentService {
                     
                 case "create_rule":
                     String ruleSymbol = args.path("symbol").asText().replace("-USD", "");
-                    String condition = args.path("condition").asText();
-                    String targetPrice = args.path("targetPrice").asText();
+                    AgentRule.Condition condition = AgentRule.Condition.valueOf(args.path("condition").asText());
+                    BigDecimal targetPrice = new BigDecimal(args.path("targetPrice").asText("0"));
                     String ruleAction = args.path("action").asText();
                     
-                    String conditionText = condition.equals("PRICE_ABOVE") ? "goes above" : "goes below";
-                    return String.format("Do you want to create a rule to %s %s when price %s $%s?", 
-                        ruleAction.toLowerCase(), ruleSymbol, conditionText, targetPrice);
+                    String conditionText = condition == AgentRule.Condition.EXPRESSION
+                        ? args.path("expression").asText()
+                        : condition.describe(targetPrice, args.path("period").asInt(0));
+                    return String.format("Do you want to create a rule to %s %s when %s?", 
+                        ruleAction.toLowerCase(), ruleSymbol, conditionText);
                     
                 default:
                     return "Do you want to execute this command?";
@@ -0,0 +1,606 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.dto.BacktestRequest;
+import com.cryptoplatform.api.dto.BacktestSweepRequest;
+import com.cryptoplatform.api.history.PriceHistoryService;
+import com.cryptoplatform.api.history.TickSeries;
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.BacktestResult;
+import com.cryptoplatform.api.model.BacktestSweep;
+import com.cryptoplatform.api.model.Order;
+import com.cryptoplatform.api.repository.AgentRuleRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Replays recorded ticks through agent rules and trades what they trigger against a
+ * {@link SandboxAccount}, so a user can see how rules would have done.
+ *
+ * Ticks go through the same {@link RuleTriggerIndex} live evaluation uses, with
+ * indicators seeded from the bars before the range. Rules are split into groups
+ * that share no symbol (an expression ties together the symbols it reads and the
+ * one it trades) and each group replays its own ticks on the fork-join pool. The
+ * fires of all groups are then applied to the account in time order on one thread,
+ * and equity is sampled at every minute's closing prices for the drawdown.
+ *
+ * As live, a rule fires once. A fired rule whose order is rejected stays fired
+ * instead of re-arming at the next reload.
+ *
+ * A sweep backtests every point of a parameter grid. The ticks are loaded once into
+ * immutable {@link TickSeries} that all runs read, and each run replays on a single
+ * pool thread, so the pool parallelises across runs rather than within one.
+ */
+@Service
+public class BacktestService {
+
+    private static final Logger log = LoggerFactory.getLogger(BacktestService.class);
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long DAY_MS = 86_400_000L;
+    static final BigDecimal DEFAULT_STARTING_CASH = new BigDecimal("10000.00");
+
+    // A triggered rule and the last price of the symbol it trades at that moment
+    private record Fire(long ts, int rule, BigDecimal price) {}
+
+    // What a group's replay hands to the fill phase
+    private record Replay(List<Fire> fires, Map<String, double[]> closes, Map<String, BigDecimal> lastPrices, long ticks) {}
+
+    private final PriceHistoryService priceHistoryService;
+    private final AgentRuleRepository ruleRepository;
+    private final RuleValidator ruleValidator;
+    private final int maxRangeDays;
+    private final long maxTicks;
+    private final int maxRules;
+    private final int maxSweepRuns;
+    private final ForkJoinPool pool;
+
+    public BacktestService(PriceHistoryService priceHistoryService, AgentRuleRepository ruleRepository,
+                           RuleValidator ruleValidator,
+                           @Value("${backtest.max-range-days:92}") int maxRangeDays,
+                           @Value("${backtest.max-ticks:50000000}") long maxTicks,
+                           @Value("${backtest.max-rules:500}") int maxRules,
+                           @Value("${backtest.max-sweep-runs:1000}") int maxSweepRuns,
+                           @Value("${backtest.parallelism:0}") int parallelism) {
+        this.priceHistoryService = priceHistoryService;
+        this.ruleRepository = ruleRepository;
+        this.ruleValidator = ruleValidator;
+        this.maxRangeDays = maxRangeDays;
+        this.maxTicks = maxTicks;
+        this.maxRules = maxRules;
+        this.maxSweepRuns = maxSweepRuns;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Backtest the caller's saved rules named in the request plus the inline ones.
+     *
+     * @throws IllegalArgumentException when a rule, the range or the cash is invalid
+     */
+    public BacktestResult run(Long userId, BacktestRequest request) {
+        List<AgentRule> rules = new ArrayList<>();
+        if (request.getRuleIds() != null) {
+            Map<Long, AgentRule> saved = new HashMap<>();
+            for (AgentRule rule : ruleRepository.findAllById(request.getRuleIds())) {
+                if (rule.getUser().getId().equals(userId)) {
+                    saved.put(rule.getId(), rule);
+                }
+            }
+            for (Long id : request.getRuleIds()) {
+                AgentRule rule = saved.get(id);
+                if (rule == null) {
+                    throw new IllegalArgumentException("Rule not found: " + id);
+                }
+                rules.add(rule);
+            }
+        }
+        if (request.getRules() != null) {
+            for (AgentRule rule : request.getRules()) {
+                rule.setId(null);
+                ruleValidator.validate(rule);
+                rules.add(rule);
+            }
+        }
+        if (request.getFrom() == null || request.getTo() == null) {
+            throw new IllegalArgumentException("from and to are required");
+        }
+        BigDecimal cash = request.getStartingCash() != null ? request.getStartingCash() : DEFAULT_STARTING_CASH;
+        return run(rules, request.getFrom(), request.getTo(), cash);
+    }
+
+    /**
+     * A validated parameter grid, ready to {@link #sweep}.
+     */
+    public static final class Sweep {
+        private final List<List<AgentRule>> runs;
+        private final List<Map<String, BigDecimal>> parameters;
+        private final long from;
+        private final long to;
+        private final BigDecimal startingCash;
+        private final BacktestSweep.RankBy rankBy;
+        private final int top;
+
+        private Sweep(List<List<AgentRule>> runs, List<Map<String, BigDecimal>> parameters, long from, long to,
+                      BigDecimal startingCash, BacktestSweep.RankBy rankBy, int top) {
+            this.runs = runs;
+            this.parameters = parameters;
+            this.from = from;
+            this.to = to;
+            this.startingCash = startingCash;
+            this.rankBy = rankBy;
+            this.top = top;
+        }
+
+        public int size() {
+            return runs.size();
+        }
+    }
+
+    /**
+     * Expand the request's grid into one rule set per point and validate them all,
+     * so a bad grid fails before anything runs.
+     *
+     * @throws IllegalArgumentException when a rule, parameter, the range or the grid size is invalid
+     */
+    public Sweep planSweep(BacktestSweepRequest request) {
+        List<AgentRule> template = request.getRules() == null ? List.of() : request.getRules();
+        List<BacktestSweepRequest.Parameter> parameters = request.getParameters() == null ? List.of() : request.getParameters();
+        long size = 1;
+        List<String> names = new ArrayList<>(parameters.size());
+        for (BacktestSweepRequest.Parameter parameter : parameters) {
+            if (parameter.getRule() < 0 || parameter.getRule() >= template.size()) {
+                throw new IllegalArgumentException("Parameter refers to rule " + parameter.getRule() + " of " + template.size());
+            }
+            if (parameter.getValues() == null || parameter.getValues().isEmpty()) {
+                throw new IllegalArgumentException("Parameter " + parameter.getField() + " has no values");
+            }
+            names.add(parameter.getName() != null ? parameter.getName()
+                    : "rules[" + parameter.getRule() + "]." + parameter.getField());
+            size *= parameter.getValues().size();
+            if (size > maxSweepRuns) {
+                throw new IllegalArgumentException("Grid has more than " + maxSweepRuns + " points");
+            }
+        }
+        if (request.getFrom() == null || request.getTo() == null) {
+            throw new IllegalArgumentException("from and to are required");
+        }
+        BigDecimal cash = request.getStartingCash() != null ? request.getStartingCash() : DEFAULT_STARTING_CASH;
+
+        List<List<AgentRule>> runs = new ArrayList<>((int) size);
+        List<Map<String, BigDecimal>> points = new ArrayList<>((int) size);
+        for (int run = 0; run < size; run++) {
+            List<AgentRule> rules = new ArrayList<>(template.size());
+            for (AgentRule rule : template) {
+                rules.add(copy(rule));
+            }
+            Map<String, BigDecimal> point = new LinkedHashMap<>();
+            // Mixed radix over the value lists, the last parameter varying fastest
+            int rest = run;
+            for (int p = parameters.size() - 1; p >= 0; p--) {
+                BacktestSweepRequest.Parameter parameter = parameters.get(p);
+                BigDecimal value = parameter.getValues().get(rest % parameter.getValues().size());
+                rest /= parameter.getValues().size();
+                set(rules.get(parameter.getRule()), parameter.getField(), value);
+                point.put(names.get(p), value);
+            }
+            for (AgentRule rule : rules) {
+                ruleValidator.validate(rule);
+            }
+            runs.add(rules);
+            points.add(reverse(point));
+        }
+        checkRun(runs.get(0), request.getFrom(), request.getTo(), cash);
+        int top = request.getTop() != null ? Math.max(1, request.getTop()) : 10;
+        BacktestSweep.RankBy rankBy = request.getRankBy() != null ? request.getRankBy() : BacktestSweep.RankBy.TOTAL_PNL;
+        return new Sweep(runs, points, request.getFrom(), request.getTo(), cash, rankBy, top);
+    }
+
+    /**
+     * Backtest every point of the grid, each on one pool thread, over ticks loaded
+     * once and shared by all of them. Runs are handed to onRun as they finish, from
+     * the calling thread; an exception thrown by it cancels the runs left.
+     *
+     * @return the best runs by the sweep's ranking
+     */
+    public BacktestSweep sweep(Sweep sweep, Consumer<BacktestSweep.Run> onRun) {
+        long start = System.currentTimeMillis();
+        // Parameters can't change symbols, so every run reads the same ones
+        Map<String, TickSeries> ticks = load(symbols(sweep.runs.get(0)), sweep.from, sweep.to);
+
+        ExecutorCompletionService<BacktestSweep.Run> completion = new ExecutorCompletionService<>(pool);
+        List<Future<BacktestSweep.Run>> futures = new ArrayList<>(sweep.size());
+        for (int i = 0; i < sweep.size(); i++) {
+            int run = i;
+            futures.add(completion.submit(() -> summary(run, sweep.parameters.get(run), simulate(sweep.runs.get(run),
+                    sweep.from, sweep.to, sweep.startingCash, ticks, false, start))));
+        }
+
+        List<BacktestSweep.Run> done = new ArrayList<>(sweep.size());
+        try {
+            while (done.size() < sweep.size()) {
+                BacktestSweep.Run run = completion.take().get();
+                done.add(run);
+                onRun.accept(run);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Sweep interrupted", e);
+        } catch (ExecutionException e) {
+            throw failure(e);
+        } finally {
+            for (Future<BacktestSweep.Run> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        done.sort(ranking(sweep.rankBy));
+        long replayed = 0;
+        for (TickSeries series : ticks.values()) {
+            replayed += series.size();
+        }
+        long elapsedMs = System.currentTimeMillis() - start;
+        log.info("Swept {} backtests over {} ticks in {} ms", sweep.size(), replayed, elapsedMs);
+        return new BacktestSweep(sweep.size(), replayed, elapsedMs, sweep.rankBy,
+                List.copyOf(done.subList(0, Math.min(sweep.top, done.size()))));
+    }
+
+    private static AgentRule copy(AgentRule rule) {
+        AgentRule copy = new AgentRule(null, rule.getRuleText() != null ? rule.getRuleText() : "sweep", rule.getSymbol(),
+                rule.getCondition(), rule.getTargetPrice(), rule.getAction(), rule.getAmountType(), rule.getAmount());
+        copy.setConditionPeriod(rule.getConditionPeriod());
+        copy.setExpression(rule.getExpression());
+        return copy;
+    }
+
+    private static void set(AgentRule rule, String field, BigDecimal value) {
+        switch (field == null ? "" : field) {
+            case "targetPrice" -> rule.setTargetPrice(value);
+            case "amount" -> rule.setAmount(value);
+            case "period" -> {
+                try {
+                    rule.setConditionPeriod(value.intValueExact());
+                } catch (ArithmeticException e) {
+                    throw new IllegalArgumentException("period must be a whole number: " + value);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown parameter field: " + field + ". Use targetPrice, amount or period");
+        }
+    }
+
+    // Filled last parameter first; results read better in request order
+    private static Map<String, BigDecimal> reverse(Map<String, BigDecimal> point) {
+        List<Map.Entry<String, BigDecimal>> entries = new ArrayList<>(point.entrySet());
+        Map<String, BigDecimal> ordered = new LinkedHashMap<>();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            ordered.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return ordered;
+    }
+
+    private static BacktestSweep.Run summary(int run, Map<String, BigDecimal> parameters, BacktestResult result) {
+        int rejected = 0;
+        for (BacktestResult.Fill fill : result.fills()) {
+            if (fill.rejectedReason() != null) rejected++;
+        }
+        return new BacktestSweep.Run(run, parameters, result.totalPnl(), result.realizedPnl(), result.fees(),
+                result.maxDrawdown(), result.fills().size() - rejected, rejected);
+    }
+
+    private static Comparator<BacktestSweep.Run> ranking(BacktestSweep.RankBy rankBy) {
+        Comparator<BacktestSweep.Run> best = switch (rankBy) {
+            case TOTAL_PNL -> Comparator.comparing(BacktestSweep.Run::totalPnl).reversed();
+            case MAX_DRAWDOWN -> Comparator.comparingDouble(BacktestSweep.Run::maxDrawdown);
+            case PNL_OVER_DRAWDOWN -> Comparator.comparingDouble(BacktestService::pnlOverDrawdown).reversed();
+        };
+        return best.thenComparingInt(BacktestSweep.Run::run);
+    }
+
+    // Without any drawdown a gain ranks above every other run and a loss below
+    private static double pnlOverDrawdown(BacktestSweep.Run run) {
+        double pnl = run.totalPnl().doubleValue();
+        if (run.maxDrawdown() == 0) {
+            return pnl == 0 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, pnl);
+        }
+        return pnl / run.maxDrawdown();
+    }
+
+    /**
+     * Backtest validated rules over from <= ts <= to.
+     */
+    BacktestResult run(List<AgentRule> rules, long from, long to, BigDecimal startingCash) {
+        checkRun(rules, from, to, startingCash);
+        long start = System.currentTimeMillis();
+        Map<String, TickSeries> ticks = load(symbols(rules), from, to);
+        BacktestResult result = simulate(rules, from, to, startingCash, ticks, true, start);
+        log.info("Backtested {} rules over {} ticks in {} ms", rules.size(), result.ticks(), result.elapsedMs());
+        return result;
+    }
+
+    private void checkRun(List<AgentRule> rules, long from, long to, BigDecimal startingCash) {
+        if (rules.isEmpty() || rules.size() > maxRules) {
+            throw new IllegalArgumentException("Backtest 1 to " + maxRules + " rules");
+        }
+        if (from > to || to - from > maxRangeDays * DAY_MS) {
+            throw new IllegalArgumentException("Range must be ordered and span at most " + maxRangeDays + " days");
+        }
+        if (startingCash.signum() <= 0) {
+            throw new IllegalArgumentException("startingCash must be positive");
+        }
+    }
+
+    // Each symbol's ticks, loaded in parallel; read-only from here on, so any number of replays can share them
+    private Map<String, TickSeries> load(Set<String> symbols, long from, long to) {
+        long estimated = 0;
+        for (String symbol : symbols) {
+            estimated += priceHistoryService.estimateTicks(symbol, from, to);
+        }
+        if (estimated > maxTicks) {
+            throw new IllegalArgumentException("Range holds more than " + maxTicks + " ticks for these rules; narrow it");
+        }
+
+        List<Callable<TickSeries>> tasks = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            tasks.add(() -> priceHistoryService.loadTicks(symbol, from, to));
+        }
+        Map<String, TickSeries> ticks = new HashMap<>();
+        for (TickSeries series : invokeAll(tasks)) {
+            ticks.put(series.symbol(), series);
+        }
+        return ticks;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Backtest interrupted", e);
+        } catch (ExecutionException e) {
+            throw failure(e);
+        }
+        return results;
+    }
+
+    private static RuntimeException failure(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException cause) return cause;
+        return new RuntimeException("Backtest failed", e.getCause());
+    }
+
+    /**
+     * @param parallel replay independent symbol groups on the pool; a sweep already
+     *                 runs one simulation per pool thread
+     */
+    private BacktestResult simulate(List<AgentRule> rules, long from, long to, BigDecimal startingCash,
+                                    Map<String, TickSeries> ticks, boolean parallel, long start) {
+        int minutes = (int) ((to - from) / MINUTE_MS) + 1;
+        List<List<Integer>> groups = groupBySymbols(rules);
+        List<Replay> replays;
+        if (parallel && groups.size() > 1) {
+            List<Callable<Replay>> tasks = new ArrayList<>(groups.size());
+            for (List<Integer> group : groups) {
+                tasks.add(() -> replay(rules, group, from, minutes, ticks));
+            }
+            replays = invokeAll(tasks);
+        } else {
+            replays = new ArrayList<>(groups.size());
+            for (List<Integer> group : groups) {
+                replays.add(replay(rules, group, from, minutes, ticks));
+            }
+        }
+        return settle(rules, replays, from, to, minutes, startingCash, start);
+    }
+
+    // Rule indexes grouped so that no two groups need the same symbol's ticks
+    private static List<List<Integer>> groupBySymbols(List<AgentRule> rules) {
+        Map<String, String> parent = new HashMap<>();
+        for (AgentRule rule : rules) {
+            String root = find(parent, rule.getSymbol());
+            for (String symbol : symbols(rule)) {
+                String other = find(parent, symbol);
+                if (!other.equals(root)) {
+                    parent.put(other, root);
+                }
+            }
+        }
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            groups.computeIfAbsent(find(parent, rules.get(i).getSymbol()), s -> new ArrayList<>()).add(i);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static String find(Map<String, String> parent, String symbol) {
+        String root = symbol;
+        String next;
+        while ((next = parent.get(root)) != null) {
+            root = next;
+        }
+        return root;
+    }
+
+    // Symbols a rule reads, plus the one it trades
+    private static Set<String> symbols(AgentRule rule) {
+        Set<String> symbols = new LinkedHashSet<>();
+        symbols.add(rule.getSymbol());
+        if (rule.getCondition() == AgentRule.Condition.EXPRESSION) {
+            symbols.addAll(expression(rule).symbols());
+        }
+        return symbols;
+    }
+
+    private static Set<String> symbols(List<AgentRule> rules) {
+        Set<String> symbols = new LinkedHashSet<>();
+        for (AgentRule rule : rules) {
+            symbols.addAll(symbols(rule));
+        }
+        return symbols;
+    }
+
+    private static Set<String> symbols(List<AgentRule> rules, List<Integer> group) {
+        Set<String> symbols = new LinkedHashSet<>();
+        for (int i : group) {
+            symbols.addAll(symbols(rules.get(i)));
+        }
+        return symbols;
+    }
+
+    // Validated and stored expressions are canonical, with resolved symbols
+    private static RuleExpression expression(AgentRule rule) {
+        return RuleExpression.parse(rule.getExpression(), symbol -> symbol);
+    }
+
+    private Replay replay(List<AgentRule> rules, List<Integer> group, long from, int minutes, Map<String, TickSeries> loaded) {
+        RuleTriggerIndex index = new RuleTriggerIndex((symbol, barsFrom, barsTo) ->
+                priceHistoryService.getCandles(symbol, barsFrom, barsTo, PriceHistoryService.Interval.M1),
+                () -> from);
+        for (int i : group) {
+            AgentRule rule = rules.get(i);
+            index.add(new RuleTriggerIndex.Trigger(i, 0, rule.getSymbol(), rule.getCondition(), rule.getTargetPrice(),
+                    rule.getConditionPeriod() == null ? 0 : rule.getConditionPeriod(),
+                    rule.getCondition() == AgentRule.Condition.EXPRESSION ? expression(rule) : null));
+        }
+
+        List<String> symbols = new ArrayList<>(symbols(rules, group));
+        Map<String, Integer> position = new HashMap<>();
+        TickSeries[] series = new TickSeries[symbols.size()];
+        double[][] closes = new double[symbols.size()][];
+        for (int s = 0; s < series.length; s++) {
+            position.put(symbols.get(s), s);
+            series[s] = loaded.get(symbols.get(s));
+            closes[s] = new double[minutes];
+            Arrays.fill(closes[s], Double.NaN);
+        }
+
+        // Merge the symbols' ticks by timestamp; groups hold a handful of symbols
+        List<Fire> fires = new ArrayList<>();
+        int[] cursor = new int[series.length];
+        long ticks = 0;
+        while (true) {
+            int next = -1;
+            long ts = Long.MAX_VALUE;
+            for (int s = 0; s < series.length; s++) {
+                if (cursor[s] < series[s].size() && series[s].ts(cursor[s]) < ts) {
+                    next = s;
+                    ts = series[s].ts(cursor[s]);
+                }
+            }
+            if (next < 0) break;
+            int i = cursor[next]++;
+            // A sweep cancels the runs left once its client goes away
+            if ((++ticks & 0xFFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Backtest cancelled");
+            }
+            closes[next][(int) ((ts - from) / MINUTE_MS)] = series[next].lastValue(i);
+            // Once every rule has fired the rest only feeds the marks
+            if (index.size() == 0) continue;
+
+            for (RuleTriggerIndex.Trigger trigger : index.fire(series[next].ticker(i))) {
+                int traded = position.get(trigger.symbol());
+                BigDecimal price = cursor[traded] > 0 ? series[traded].last(cursor[traded] - 1) : null;
+                fires.add(new Fire(ts, (int) trigger.ruleId(), price));
+            }
+        }
+
+        Map<String, double[]> closesBySymbol = new HashMap<>();
+        Map<String, BigDecimal> lastPrices = new HashMap<>();
+        for (int s = 0; s < series.length; s++) {
+            closesBySymbol.put(symbols.get(s), closes[s]);
+            if (series[s].size() > 0) {
+                lastPrices.put(symbols.get(s), series[s].last(series[s].size() - 1));
+            }
+        }
+        return new Replay(fires, closesBySymbol, lastPrices, ticks);
+    }
+
+    private static BacktestResult settle(List<AgentRule> rules, List<Replay> replays, long from, long to, int minutes,
+                                         BigDecimal startingCash, long start) {
+        List<Fire> fires = new ArrayList<>();
+        Map<String, double[]> closes = new HashMap<>();
+        Map<String, BigDecimal> lastPrices = new HashMap<>();
+        long ticks = 0;
+        for (Replay replay : replays) {
+            fires.addAll(replay.fires());
+            closes.putAll(replay.closes());
+            lastPrices.putAll(replay.lastPrices());
+            ticks += replay.ticks();
+        }
+        fires.sort(Comparator.comparingLong(Fire::ts).thenComparingInt(Fire::rule));
+
+        SandboxAccount account = new SandboxAccount(startingCash);
+        List<BacktestResult.Fill> fills = new ArrayList<>(fires.size());
+        // Symbol -> Latest minute close seen, carried over minutes without ticks
+        Map<String, Double> marks = new HashMap<>();
+        double peak = startingCash.doubleValue();
+        double maxDrawdown = 0;
+        int f = 0;
+        for (int m = 0; m < minutes; m++) {
+            long minuteEnd = from + (m + 1) * MINUTE_MS;
+            while (f < fires.size() && fires.get(f).ts() < minuteEnd) {
+                fills.add(fill(account, rules, fires.get(f++)));
+            }
+            for (Map.Entry<String, double[]> entry : closes.entrySet()) {
+                double close = entry.getValue()[m];
+                if (!Double.isNaN(close)) {
+                    marks.put(entry.getKey(), close);
+                }
+            }
+            double equity = account.equity(symbol -> marks.get(symbol));
+            peak = Math.max(peak, equity);
+            maxDrawdown = Math.max(maxDrawdown, (peak - equity) / peak);
+        }
+
+        BigDecimal endingEquity = account.equity(lastPrices);
+        return new BacktestResult(from, to, startingCash, endingEquity, endingEquity.subtract(startingCash),
+                account.realizedPnl(), account.unrealizedPnl(lastPrices), account.fees(), maxDrawdown, ticks,
+                System.currentTimeMillis() - start, fills);
+    }
+
+    private static BacktestResult.Fill fill(SandboxAccount account, List<AgentRule> rules, Fire fire) {
+        AgentRule rule = rules.get(fire.rule());
+        Order.Side side = rule.getAction() == AgentRule.Action.BUY ? Order.Side.BUY : Order.Side.SELL;
+        if (fire.price() == null) {
+            return new BacktestResult.Fill(fire.ts(), fire.rule(), rule.getId(), rule.getSymbol(), side, null, null, null,
+                    "Market data unavailable for " + rule.getSymbol());
+        }
+        BigDecimal quantity = null;
+        try {
+            quantity = RuleMonitorService.orderQuantity(rule, fire.price(), account::held);
+            BigDecimal fee = side == Order.Side.BUY
+                    ? account.buy(rule.getSymbol(), quantity, fire.price())
+                    : account.sell(rule.getSymbol(), quantity, fire.price());
+            return new BacktestResult.Fill(fire.ts(), fire.rule(), rule.getId(), rule.getSymbol(), side, quantity,
+                    fire.price(), fee, null);
+        } catch (RuntimeException e) {
+            return new BacktestResult.Fill(fire.ts(), fire.rule(), rule.getId(), rule.getSymbol(), side, quantity,
+                    fire.price(), null, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.EquityPoint;
+import com.cryptoplatform.api.model.Ticker;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Equity curve of every account (GET /account/equity): cash plus positions marked at
+ * the latest prices, sampled each minute into equity_snapshots.
+ *
+ * Points are downsampled as they age: every minute sample is kept for a day, the
+ * first sample of each hour for 31 days and the first sample of each UTC day after
+ * that. The rollups copy rows within the table at hour and day boundaries, so a
+ * coarser point is always a sample that was actually taken.
+ *
+ * One instance takes each minute, claimed through Redis. It values all accounts in
+ * one query and writes the samples with COPY, falling back to JDBC batch inserts
+ * where COPY isn't available or the minute was already written.
+ */
+@Service
+public class EquitySnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(EquitySnapshotService.class);
+
+    static final short MINUTE = 0;
+    static final short HOUR = 1;
+    static final short DAY = 2;
+
+    static final long MINUTE_MS = 60_000L;
+    static final long HOUR_MS = 3_600_000L;
+    static final long DAY_MS = 86_400_000L;
+    static final long MINUTE_RETENTION_MS = DAY_MS;
+    static final long HOUR_RETENTION_MS = 31 * DAY_MS;
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String CLAIM_KEY = "equity:snapshot:";
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    // One row per position (or one with a null symbol), ordered by account. Open limit
+    // sells have taken their quantity out of the position until they fill.
+    private static final String VALUATION_SQL =
+        "SELECT a.id, a.balance, p.symbol, p.quantity + COALESCE(l.locked, 0), p.avg_entry_price " +
+        "FROM accounts a " +
+        "LEFT JOIN positions p ON p.account_id = a.id " +
+        "LEFT JOIN (SELECT user_id, symbol, SUM(quantity) AS locked FROM orders " +
+        "           WHERE status = 'OPEN' AND side = 'SELL' GROUP BY user_id, symbol) l " +
+        "  ON l.user_id = a.user_id AND l.symbol = p.symbol " +
+        "ORDER BY a.id";
+
+    static final String COPY_SQL =
+        "COPY equity_snapshots (account_id, resolution, ts, equity) FROM STDIN WITH (FORMAT csv)";
+
+    static final String INSERT_SQL =
+        "INSERT INTO equity_snapshots (account_id, resolution, ts, equity) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT DO NOTHING";
+
+    private static final String PRUNE_SQL = "DELETE FROM equity_snapshots WHERE resolution = ? AND ts < ?";
+
+    private static final String CURVE_SQL =
+        "SELECT ts, equity FROM equity_snapshots " +
+        "WHERE account_id = ? AND ts >= ? AND ts <= ? " +
+        "AND ((resolution = ? AND ts >= ?) OR (resolution = ? AND ts >= ? AND ts < ?) OR (resolution = ? AND ts < ?)) " +
+        "ORDER BY ts";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MarketService marketService;
+    private final StringRedisTemplate redisTemplate;
+
+    public EquitySnapshotService(JdbcTemplate jdbcTemplate, MarketService marketService,
+                                 StringRedisTemplate redisTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.marketService = marketService;
+        this.redisTemplate = redisTemplate;
+    }
+
+    record Sample(long accountId, BigDecimal equity) {}
+
+    /**
+     * Sample every account for the current minute, then roll up and prune the tiers
+     * whose boundary this minute is.
+     */
+    @Scheduled(cron = "${equity.snapshot-cron:0 * * * * *}")
+    public void snapshot() {
+        long minute = Math.floorDiv(System.currentTimeMillis(), MINUTE_MS) * MINUTE_MS;
+        if (!claim(minute)) return;
+
+        long start = System.nanoTime();
+        try {
+            List<Sample> samples = valueAccounts();
+            write(minute, samples);
+            if (minute % HOUR_MS == 0) {
+                // Two buckets back, in case the previous boundary was missed
+                rollup(MINUTE, HOUR, HOUR_MS, minute - 2 * HOUR_MS, minute);
+                jdbcTemplate.update(PRUNE_SQL, MINUTE, minute - MINUTE_RETENTION_MS);
+            }
+            if (minute % DAY_MS == 0) {
+                rollup(HOUR, DAY, DAY_MS, minute - 2 * DAY_MS, minute);
+                jdbcTemplate.update(PRUNE_SQL, HOUR, minute - HOUR_RETENTION_MS);
+            }
+            log.info("Snapshotted equity of {} accounts in {} ms", samples.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Failed to snapshot equity for minute {}", minute, e);
+        }
+    }
+
+    /**
+     * Equity points of an account between from and to (epoch ms, inclusive), at the
+     * finest resolution still kept for each part of the range.
+     */
+    public List<EquityPoint> getCurve(Long accountId, long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        long now = System.currentTimeMillis();
+        long minutesFrom = now - MINUTE_RETENTION_MS;
+        long hoursFrom = now - HOUR_RETENTION_MS;
+        return jdbcTemplate.query(CURVE_SQL,
+            (rs, rowNum) -> new EquityPoint(rs.getLong(1), rs.getBigDecimal(2)),
+            accountId, from, to, MINUTE, minutesFrom, HOUR, hoursFrom, minutesFrom, DAY, hoursFrom);
+    }
+
+    // Whether this instance takes the minute; without Redis every instance does and the primary key dedups
+    private boolean claim(long minute) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(CLAIM_KEY + minute, "1", Duration.ofHours(1)));
+        } catch (RuntimeException e) {
+            log.warn("Could not claim equity snapshot {}: {}", minute, e.getMessage());
+            return true;
+        }
+    }
+
+    List<Sample> valueAccounts() {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (Ticker ticker : marketService.getAllLatestPrices().values()) {
+            prices.put(ticker.symbol(), ticker.last());
+        }
+        Valuation valuation = new Valuation(prices);
+        jdbcTemplate.query(VALUATION_SQL, valuation);
+        return valuation.finish();
+    }
+
+    void write(long ts, List<Sample> samples) {
+        if (samples.isEmpty()) return;
+        Boolean copied = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> copy(connection, ts, samples));
+        if (Boolean.TRUE.equals(copied)) return;
+        jdbcTemplate.batchUpdate(INSERT_SQL, samples, BATCH_SIZE, (ps, sample) -> {
+            ps.setLong(1, sample.accountId());
+            ps.setShort(2, MINUTE);
+            ps.setLong(3, ts);
+            ps.setBigDecimal(4, sample.equity());
+        });
+    }
+
+    // False where COPY isn't available, or when a row of the minute exists and COPY rolled back
+    private static boolean copy(Connection connection, long ts, List<Sample> samples) throws SQLException {
+        if (!connection.isWrapperFor(PGConnection.class)) return false;
+        StringBuilder csv = new StringBuilder(samples.size() * 32);
+        for (Sample sample : samples) {
+            csv.append(sample.accountId()).append(',').append(MINUTE).append(',').append(ts).append(',')
+                .append(sample.equity().toPlainString()).append('\n');
+        }
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(csv.toString()));
+            return true;
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION.equals(e.getSQLState())) return false;
+            throw e;
+        } catch (IOException e) {
+            throw new SQLException("COPY of equity snapshots failed", e);
+        }
+    }
+
+    // The first point of each coarser bucket in [from, to), kept at its own timestamp
+    private void rollup(short fromResolution, short toResolution, long bucketMs, long from, long to) {
+        String sql =
+            "INSERT INTO equity_snapshots (account_id, resolution, ts, equity) " +
+            "SELECT DISTINCT ON (account_id, ts / " + bucketMs + ") account_id, ?, ts, equity " +
+            "FROM equity_snapshots WHERE resolution = ? AND ts >= ? AND ts < ? " +
+            "ORDER BY account_id, ts / " + bucketMs + ", ts " +
+            "ON CONFLICT DO NOTHING";
+        jdbcTemplate.update(sql, toResolution, fromResolution, from, to);
+    }
+
+    /**
+     * Folds the valuation rows, ordered by account, into one sample per account.
+     * Positions without a live price are valued at their average entry.
+     */
+    static final class Valuation implements RowCallbackHandler {
+        private final Map<String, BigDecimal> prices;
+        private final List<Sample> samples = new ArrayList<>();
+        private long accountId;
+        private BigDecimal equity;
+
+        Valuation(Map<String, BigDecimal> prices) {
+            this.prices = prices;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong(1);
+            if (equity == null || id != accountId) {
+                finishAccount();
+                accountId = id;
+                equity = rs.getBigDecimal(2);
+            }
+            String symbol = rs.getString(3);
+            BigDecimal quantity = rs.getBigDecimal(4);
+            if (symbol == null || quantity == null || quantity.signum() == 0) return;
+            BigDecimal price = prices.get(symbol);
+            if (price == null) price = rs.getBigDecimal(5);
+            if (price != null) {
+                equity = equity.add(quantity.multiply(price));
+            }
+        }
+
+        List<Sample> finish() {
+            finishAccount();
+            return samples;
+        }
+
+        private void finishAccount() {
+            if (equity != null) {
+                samples.add(new Sample(accountId, equity.setScale(2, RoundingMode.HALF_UP)));
+                equity = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Ticker;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EXPRESSION rules, keyed by every symbol their expression reads, so a tick only
+ * evaluates the rules that depend on its symbol.
+ *
+ * The latest values of the referenced symbols sit in one double[] ({@link
+ * RuleExpression.Field#COUNT} slots per symbol) that the compiled expressions read
+ * directly. A rule isn't evaluated until each of its symbols has ticked at least once.
+ *
+ * Guarded by synchronizing on the instance; evaluations are cheap next to a tick's
+ * delivery, and one lock keeps every rule's view of the values consistent.
+ */
+class ExpressionTriggers {
+
+    private record Compiled(RuleTriggerIndex.Trigger trigger, RuleExpression.Evaluator evaluator, int[] baseSlots) {}
+
+    // Symbol -> First slot of its values
+    private final Map<String, Integer> slots = new HashMap<>();
+    private double[] values = new double[0];
+    // Symbol -> Rules reading it
+    private final Map<String, Map<Long, Compiled>> bySymbol = new HashMap<>();
+    private final Map<Long, Compiled> byId = new HashMap<>();
+
+    synchronized void add(RuleTriggerIndex.Trigger trigger) {
+        remove(trigger.ruleId());
+        RuleExpression expression = trigger.expression();
+        int[] baseSlots = expression.symbols().stream().mapToInt(this::slot).toArray();
+        Compiled compiled = new Compiled(trigger, expression.compile(this::slot), baseSlots);
+        byId.put(trigger.ruleId(), compiled);
+        for (String symbol : expression.symbols()) {
+            bySymbol.computeIfAbsent(symbol, s -> new LinkedHashMap<>()).put(trigger.ruleId(), compiled);
+        }
+    }
+
+    synchronized void remove(long ruleId) {
+        Compiled compiled = byId.remove(ruleId);
+        if (compiled == null) return;
+        for (String symbol : compiled.trigger().expression().symbols()) {
+            Map<Long, Compiled> rules = bySymbol.get(symbol);
+            if (rules != null && rules.remove(ruleId) != null && rules.isEmpty()) {
+                bySymbol.remove(symbol);
+                // Nothing reads it now; don't let a later rule see a stale value
+                Arrays.fill(values, slots.get(symbol), slots.get(symbol) + RuleExpression.Field.COUNT, Double.NaN);
+            }
+        }
+    }
+
+    synchronized boolean reads(String symbol) {
+        return bySymbol.containsKey(symbol);
+    }
+
+    synchronized boolean contains(long ruleId) {
+        return byId.containsKey(ruleId);
+    }
+
+    /**
+     * Store the tick's values, then remove and return the rules reading its symbol
+     * whose expression now holds.
+     */
+    synchronized List<RuleTriggerIndex.Trigger> fire(Ticker ticker) {
+        Map<Long, Compiled> rules = bySymbol.get(ticker.symbol());
+        if (rules == null) return Collections.emptyList();
+
+        int base = slots.get(ticker.symbol());
+        values[base + RuleExpression.Field.LAST.ordinal()] = value(ticker.last());
+        values[base + RuleExpression.Field.BID.ordinal()] = value(ticker.bid());
+        values[base + RuleExpression.Field.ASK.ordinal()] = value(ticker.ask());
+        values[base + RuleExpression.Field.VOLUME.ordinal()] = value(ticker.volume24h());
+
+        List<Compiled> holding = null;
+        for (Compiled compiled : rules.values()) {
+            if (ready(compiled) && compiled.evaluator().test(values)) {
+                if (holding == null) holding = new ArrayList<>();
+                holding.add(compiled);
+            }
+        }
+        if (holding == null) return Collections.emptyList();
+
+        List<RuleTriggerIndex.Trigger> fired = new ArrayList<>(holding.size());
+        for (Compiled compiled : holding) {
+            remove(compiled.trigger().ruleId());
+            fired.add(compiled.trigger());
+        }
+        return fired;
+    }
+
+    private boolean ready(Compiled compiled) {
+        for (int base : compiled.baseSlots()) {
+            // Only a symbol that never ticked (or went unread) has a NaN last price
+            if (Double.isNaN(values[base])) return false;
+        }
+        return true;
+    }
+
+    // Called with the lock held
+    private int slot(String symbol) {
+        Integer base = slots.get(symbol);
+        if (base == null) {
+            base = values.length;
+            slots.put(symbol, base);
+            values = Arrays.copyOf(values, base + RuleExpression.Field.COUNT);
+            Arrays.fill(values, base, values.length, Double.NaN);
+        }
+        return base;
+    }
+
+    private static double value(BigDecimal value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+}
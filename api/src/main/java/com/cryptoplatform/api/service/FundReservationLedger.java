@@ -0,0 +1,49 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Account;
+import com.cryptoplatform.api.model.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Funds held for open paper LIMIT BUY orders, kept in accounts.reserved.
+ *
+ * Account.balance is the cash the user owns; the amount held for each open order
+ * (limit price * quantity + fee) is added to reserved, so available = balance - reserved.
+ * Holds change on an account row locked for the order transaction
+ * ({@link com.cryptoplatform.api.repository.AccountRepository#findByIdForUpdate}), so
+ * checks against the available balance can't race another order on any instance, and
+ * the hold is written together with any balance change in the one row update.
+ */
+@Component
+public class FundReservationLedger {
+
+    /**
+     * Funds a LIMIT BUY order has to hold: limit price * quantity plus the trading fee,
+     * rounded up to the cent the column stores. The fill price can only be at or below
+     * the limit, so this always covers the fill.
+     */
+    public static BigDecimal requiredFunds(Order order) {
+        BigDecimal notional = order.getLimitPrice().multiply(order.getQuantity());
+        return notional.add(notional.multiply(PaperTradingService.FEE_RATE)).setScale(2, RoundingMode.UP);
+    }
+
+    /**
+     * Hold funds for an order, failing if the locked account does not have enough available.
+     */
+    public void reserve(Account account, BigDecimal amount) {
+        if (account.getAvailableBalance().compareTo(amount) < 0) {
+            throw new RuntimeException("Insufficient funds for limit order");
+        }
+        account.setReserved(account.getReserved().add(amount));
+    }
+
+    /**
+     * Drop a hold taken by {@link #reserve} when its order fills or is cancelled.
+     */
+    public void release(Account account, BigDecimal amount) {
+        account.setReserved(account.getReserved().subtract(amount).max(BigDecimal.ZERO));
+    }
+}
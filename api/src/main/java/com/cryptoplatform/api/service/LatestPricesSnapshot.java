@@ -0,0 +1,171 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Ticker;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized body of GET /prices/latest.
+ *
+ * The JSON (and its gzip form, built on first use) is kept as bytes together with
+ * an ETag and Last-Modified derived from the newest tick. It is rebuilt only when
+ * {@link MarketService#getVersion()} moved since the last build, so a burst of ticks
+ * costs one rebuild on the next request, and otherwise serving it is a version check.
+ * A snapshot older than market.ticker-cache.max-staleness-ms is also rebuilt, which
+ * lets MarketService pick up ticks this instance didn't receive from Redis.
+ */
+@Service
+public class LatestPricesSnapshot {
+
+    /**
+     * One immutable build of the response body.
+     *
+     * @param etag           strong ETag: newest tick time plus a checksum of the body
+     * @param lastModifiedMs newest tick timestamp, 0 if there are no prices
+     */
+    public record Snapshot(byte[] json, String etag, long lastModifiedMs, long version, long builtAtMs) {}
+
+    private record Compressed(Snapshot of, byte[] gzip) {}
+
+    private final MarketService marketService;
+    private final ObjectMapper objectMapper;
+    private final long maxAgeMs;
+    private final Counter rebuilds;
+
+    private volatile Snapshot current;
+    private volatile Compressed compressed; // Gzip of the current snapshot's JSON, built lazily
+
+    public LatestPricesSnapshot(MarketService marketService, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                @Value("${market.ticker-cache.max-staleness-ms:2000}") long maxAgeMs) {
+        this.marketService = marketService;
+        this.objectMapper = objectMapper;
+        this.maxAgeMs = maxAgeMs;
+        this.rebuilds = Counter.builder("market.prices.snapshot.rebuilds")
+            .description("Rebuilds of the serialized /prices/latest body")
+            .register(meterRegistry);
+    }
+
+    /**
+     * The current snapshot, rebuilt first if prices changed since it was built.
+     */
+    public Snapshot get() {
+        Snapshot snapshot = current;
+        if (snapshot != null && isCurrent(snapshot)) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = current;
+            if (snapshot == null || !isCurrent(snapshot)) {
+                snapshot = build();
+                current = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows gzip: listed (or covered by "*") with a
+     * q-value above zero. "gzip;q=0" refuses it, even next to "*".
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Double gzip = null;
+        Double wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim();
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0; // Unreadable weight: don't bet the body on it
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals("*")) {
+                wildcard = q;
+            }
+        }
+        if (gzip != null) return gzip > 0;
+        return wildcard != null && wildcard > 0;
+    }
+
+    /**
+     * Gzip-compressed body of the given snapshot, compressed once per snapshot.
+     */
+    public byte[] gzip(Snapshot snapshot) {
+        Compressed cached = compressed;
+        if (cached != null && cached.of() == snapshot) {
+            return cached.gzip();
+        }
+        // Racing requests may both compress; they produce the same bytes
+        byte[] gzip = compress(snapshot.json());
+        if (current == snapshot) {
+            compressed = new Compressed(snapshot, gzip);
+        }
+        return gzip;
+    }
+
+    private boolean isCurrent(Snapshot snapshot) {
+        return snapshot.version() == marketService.getVersion()
+            && System.currentTimeMillis() - snapshot.builtAtMs() <= maxAgeMs;
+    }
+
+    // Called with the lock held
+    private Snapshot build() {
+        long builtAt = System.currentTimeMillis();
+        // Read the version first: a tick landing during the build just triggers another one
+        long version = marketService.getVersion();
+
+        Map<String, Ticker> prices = new LinkedHashMap<>();
+        long newest = 0;
+        for (String symbol : marketService.getSupportedMarkets()) {
+            Ticker ticker = marketService.getLatestPrice(symbol).orElse(null);
+            if (ticker == null) continue;
+            prices.put(symbol, ticker);
+            newest = Math.max(newest, ticker.tsEpochMs());
+        }
+
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(prices);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize latest prices", e);
+        }
+
+        // The checksum tells apart bodies with the same newest tick, and matches across instances
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        String etag = "\"" + Long.toHexString(newest) + "-" + Long.toHexString(crc.getValue()) + "\"";
+
+        rebuilds.increment();
+        return new Snapshot(json, etag, newest, version, builtAt);
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
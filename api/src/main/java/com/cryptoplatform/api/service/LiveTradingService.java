@@ -1,5 +1,6 @@
 package com.cryptoplatform.api.service;
 
+import com.cryptoplatform.api.model.Market;
 import com.cryptoplatform.api.model.Order;
 import com.cryptoplatform.api.model.Position;
 import com.cryptoplatform.api.model.User;
@@ -22,20 +23,23 @@ public class LiveTradingService implements TradingServiceInterface {
     private final KrakenApiService krakenApiService;
     private final UserRepository userRepository;
     private final com.cryptoplatform.api.repository.OrderRepository orderRepository;
+    private final MarketCatalog marketCatalog;
     
     public LiveTradingService(KrakenApiService krakenApiService, 
                              UserRepository userRepository,
-                             com.cryptoplatform.api.repository.OrderRepository orderRepository) {
+                             com.cryptoplatform.api.repository.OrderRepository orderRepository,
+                             MarketCatalog marketCatalog) {
         this.krakenApiService = krakenApiService;
         this.userRepository = userRepository;
         this.orderRepository =orderRepository;
+        this.marketCatalog = marketCatalog;
     }
     
     @Override
     public Order placeOrder(Long userId, TradeRequest request) {
         try {
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // Router already resolved the user; the order only needs a reference
+            User user = userRepository.getReferenceById(userId);
             
             // Map symbol (BTC-USD → XBTUSDT for Kraken)
             String krakenPair = mapSymbolToKraken(request.getSymbol());
@@ -225,41 +229,26 @@ public class LiveTradingService implements TradingServiceInterface {
         }
     }
     
-    // Symbol mapping helpers
+    // Symbol mapping helpers, backed by the market catalog
     private String mapSymbolToKraken(String symbol) {
-        // Map our symbols to Kraken pairs
-        switch (symbol) {
-            case "BTC-USD": return "XXBTZUSD";
-            case "ETH-USD": return "XETHZUSD";
-            case "SOL-USD": return "SOLUSD";
-            case "XRP-USD": return "XXRPZUSD";
-            default:
-                throw new IllegalArgumentException("Unsupported symbol for Kraken: " + symbol);
-        }
+        return marketCatalog.find(symbol)
+            .map(Market::krakenPair)
+            .orElseThrow(() -> new IllegalArgumentException("Unsupported symbol for Kraken: " + symbol));
     }
     
     private String mapKrakenAssetToSymbol(String krakenAsset) {
-        // Map Kraken asset names to our symbols
-        switch (krakenAsset) {
-            case "XXBT":
-            case "XBT": return "BTC-USD";
-            case "XETH":
-            case "ETH": return "ETH-USD";
-            case "SOL": return "SOL-USD";
-            case "XXRP":
-            case "XRP": return "XRP-USD";
-            case "ZUSD":
-            case "USD": return null; // USD is not a position, it's balance
-            default: return null;
-        }
+        // USD and unknown assets are not positions
+        return marketCatalog.findByKrakenAsset(krakenAsset).map(Market::symbol).orElse(null);
     }
     
     private String mapKrakenPairToSymbol(String krakenPair) {
-        // Map Kraken pairs back to our symbols
-        if (krakenPair.contains("XBT")) return "BTC-USD";
-        if (krakenPair.contains("ETH")) return "ETH-USD";
-        if (krakenPair.contains("SOL")) return "SOL-USD";
-        if (krakenPair.contains("XRP")) return "XRP-USD";
+        // Trade history may use the REST pair name or an alternate one containing the asset code
+        for (Market market : marketCatalog.getMarkets()) {
+            if (market.krakenPair().equals(krakenPair)
+                    || market.assetCodes().stream().anyMatch(krakenPair::startsWith)) {
+                return market.symbol();
+            }
+        }
         return krakenPair; // fallback
     }
 }
@@ -0,0 +1,155 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Market;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The markets we support: symbol, Kraken pair and asset codes, integer id and scales.
+ *
+ * Published by the market gateway as JSON under "markets:catalog" and re-announced
+ * on the channel of the same name whenever it reloads. Until the gateway has
+ * published one, the bundled markets.json is used. Lookups are hash or array reads
+ * on an immutable snapshot.
+ */
+@Component
+public class MarketCatalog implements MessageListener {
+
+    public static final String CATALOG_KEY = "markets:catalog";
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketCatalog.class);
+    private static final TypeReference<List<Market>> MARKET_LIST = new TypeReference<>() {};
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer container;
+
+    private volatile Snapshot snapshot = Snapshot.of(List.of());
+
+    public MarketCatalog(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                         RedisMessageListenerContainer tickerChannelContainer) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.container = tickerChannelContainer;
+    }
+
+    // Fixed catalog, for tests
+    MarketCatalog(List<Market> markets) {
+        this(null, null, null);
+        this.snapshot = Snapshot.of(markets);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!loadFromRedis()) {
+            loadBundled();
+        }
+        container.addMessageListener(this, new ChannelTopic(CATALOG_KEY));
+    }
+
+    public List<Market> getMarkets() {
+        return snapshot.markets();
+    }
+
+    public List<String> getSymbols() {
+        return snapshot.symbols();
+    }
+
+    public boolean isSupported(String symbol) {
+        return snapshot.bySymbol().containsKey(symbol);
+    }
+
+    public Optional<Market> find(String symbol) {
+        return Optional.ofNullable(snapshot.bySymbol().get(symbol));
+    }
+
+    public Optional<Market> findByKrakenAsset(String assetCode) {
+        return Optional.ofNullable(snapshot.byAssetCode().get(assetCode));
+    }
+
+    /**
+     * Upper bound (exclusive) of market ids, for sizing id-indexed arrays.
+     */
+    public int idLimit() {
+        return snapshot.idLimit();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            update(objectMapper.readValue(message.getBody(), MARKET_LIST), "gateway update");
+        } catch (IOException e) {
+            logger.error("Ignoring malformed market catalog update", e);
+        }
+    }
+
+    private boolean loadFromRedis() {
+        try {
+            String json = redisTemplate.opsForValue().get(CATALOG_KEY);
+            if (json == null) return false;
+            update(objectMapper.readValue(json, MARKET_LIST), "Redis");
+            return true;
+        } catch (Exception e) {
+            logger.warn("Market catalog not readable from Redis: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void loadBundled() {
+        try (InputStream in = new ClassPathResource("markets.json").getInputStream()) {
+            List<Market> entries = objectMapper.readValue(in, MARKET_LIST);
+            // The file has no ids; like the gateway, a market's id is its position
+            List<Market> markets = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                Market m = entries.get(i);
+                markets.add(new Market(i, m.symbol(), m.wsSymbol(), m.krakenPair(),
+                        m.assetCodes(), m.priceDecimals(), m.lotDecimals(), m.names()));
+            }
+            update(markets, "bundled markets.json");
+        } catch (IOException e) {
+            throw new IllegalStateException("No market catalog in Redis and bundled markets.json is unreadable", e);
+        }
+    }
+
+    private void update(List<Market> markets, String source) {
+        snapshot = Snapshot.of(markets);
+        logger.info("Loaded {} markets from {}", markets.size(), source);
+    }
+
+    private record Snapshot(List<Market> markets, List<String> symbols, Map<String, Market> bySymbol,
+                            Map<String, Market> byAssetCode, int idLimit) {
+
+        static Snapshot of(List<Market> markets) {
+            Map<String, Market> bySymbol = new HashMap<>();
+            Map<String, Market> byAssetCode = new HashMap<>();
+            int idLimit = 0;
+            for (Market market : markets) {
+                bySymbol.put(market.symbol(), market);
+                if (market.assetCodes() != null) {
+                    market.assetCodes().forEach(code -> byAssetCode.put(code, market));
+                }
+                idLimit = Math.max(idLimit, market.id() + 1);
+            }
+            return new Snapshot(List.copyOf(markets), markets.stream().map(Market::symbol).toList(),
+                    bySymbol, byAssetCode, idLimit);
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.cryptoplatform.api.service;
 
+import com.cryptoplatform.api.model.Market;
 import com.cryptoplatform.api.model.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -8,34 +13,104 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 
+/**
+ * Market list and latest prices.
+ *
+ * Latest tickers are kept in memory in an array indexed by market id, updated by
+ * the tick listeners through {@link #onTick(Ticker)}, so a price read is a catalog
+ * lookup plus one volatile array read. An entry that hasn't
+ * been refreshed for market.ticker-cache.max-staleness-ms (e.g. a quiet symbol,
+ * or ticks going to another instance) is reloaded from its Redis "latest:" hash.
+ * A catalog update may hand a market's id to another symbol, so an entry only counts
+ * for the symbol it was stored for.
+ */
 @Service
 public class MarketService {
 
-    // Hardcoded allowed symbols as per requirements
-    private static final List<String> SUPPORTED_SYMBOLS = List.of(
-        "BTC-USD", "ETH-USD", 
-        "XRP-USD", "SOL-USD", 
-        "USDT-USD", "BNB-USD", 
-        "USDC-USD"
-    );
-    
     private final StringRedisTemplate redisTemplate;
+    private final MarketCatalog marketCatalog;
+    private final long maxStalenessMs;
 
-    public MarketService(StringRedisTemplate redisTemplate) {
+    // Market id -> Latest ticker and when it was last confirmed (from a tick or from Redis).
+    // Replaced by a larger copy when the catalog grows.
+    private volatile AtomicReferenceArray<CachedTicker> latest = new AtomicReferenceArray<>(0);
+
+    // Bumped whenever a newer ticker is stored, so readers can tell if anything changed
+    private final AtomicLong version = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final DistributionSummary servedAge;
+
+    public MarketService(StringRedisTemplate redisTemplate, MarketCatalog marketCatalog, MeterRegistry meterRegistry,
+                         @Value("${market.ticker-cache.max-staleness-ms:2000}") long maxStalenessMs) {
         this.redisTemplate = redisTemplate;
+        this.marketCatalog = marketCatalog;
+        this.maxStalenessMs = maxStalenessMs;
+        this.hits = cacheCounter(meterRegistry, "hit");
+        this.misses = cacheCounter(meterRegistry, "miss");
+        this.servedAge = DistributionSummary.builder("market.ticker.cache.age")
+            .description("Age of served tickers (now - tick timestamp)")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("market.ticker.cache.requests")
+            .description("Latest-price reads served from memory (hit) or Redis (miss)")
+            .tag("result", result)
+            .register(meterRegistry);
     }
 
     public List<String> getSupportedMarkets() {
-        return SUPPORTED_SYMBOLS;
+        return marketCatalog.getSymbols();
+    }
+
+    /**
+     * Counter that changes whenever a stored ticker is replaced by a newer one.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Feed a tick from the market stream. Out-of-order ticks and unknown symbols are ignored.
+     */
+    public void onTick(Ticker ticker) {
+        Optional<Market> market = marketCatalog.find(ticker.symbol());
+        if (market.isEmpty()) return;
+
+        int id = market.get().id();
+        CachedTicker fed = new CachedTicker(ticker, System.currentTimeMillis());
+        CachedTicker stored = slots(id).accumulateAndGet(id, fed,
+            (current, next) -> !holds(current, next.ticker().symbol()) || next.ticker().tsEpochMs() >= current.ticker().tsEpochMs()
+                ? next : current);
+        if (stored == fed) {
+            version.incrementAndGet();
+        }
     }
 
     public Optional<Ticker> getLatestPrice(String symbol) {
-        if (!SUPPORTED_SYMBOLS.contains(symbol)) {
+        Optional<Market> market = marketCatalog.find(symbol);
+        if (market.isEmpty()) {
             return Optional.empty();
         }
 
+        int id = market.get().id();
+        long now = System.currentTimeMillis();
+        AtomicReferenceArray<CachedTicker> slots = slots(id);
+        CachedTicker cached = slots.get(id);
+        if (holds(cached, symbol) && now - cached.refreshedAtMs() <= maxStalenessMs) {
+            hits.increment();
+            servedAge.record(Math.max(0, now - cached.ticker().tsEpochMs()));
+            return Optional.of(cached.ticker());
+        }
+        misses.increment();
+
         String key = "latest:" + symbol;
         Map<Object, Object> rawHash = redisTemplate.opsForHash().entries(key);
 
@@ -43,20 +118,48 @@ public class MarketService {
             return Optional.empty();
         }
 
-        return Optional.of(mapToTicker(rawHash));
+        // Marks the entry fresh even if Redis had nothing newer: it's the best there is until the next tick
+        Ticker fromRedis = mapToTicker(symbol, rawHash);
+        CachedTicker loaded = slots.accumulateAndGet(id, new CachedTicker(fromRedis, now),
+            (current, next) -> !holds(current, symbol) || next.ticker().tsEpochMs() >= current.ticker().tsEpochMs()
+                ? next : new CachedTicker(current.ticker(), now));
+        if (loaded.ticker() == fromRedis) {
+            version.incrementAndGet();
+        }
+        return Optional.of(loaded.ticker());
     }
 
     public Map<String, Ticker> getAllLatestPrices() {
-        return SUPPORTED_SYMBOLS.stream()
+        return marketCatalog.getSymbols().stream()
             .map(this::getLatestPrice)
             .filter(Optional::isPresent)
             .map(Optional::get)
             .collect(Collectors.toMap(Ticker::symbol, ticker -> ticker));
     }
 
-    private Ticker mapToTicker(Map<Object, Object> hash) {
+    // The slot array covering this id, grown if the catalog added markets
+    private AtomicReferenceArray<CachedTicker> slots(int id) {
+        AtomicReferenceArray<CachedTicker> slots = latest;
+        if (id < slots.length()) return slots;
+        synchronized (this) {
+            slots = latest;
+            if (id >= slots.length()) {
+                // An update racing the copy may land in the old array; that only costs a cache miss
+                AtomicReferenceArray<CachedTicker> grown =
+                    new AtomicReferenceArray<>(Math.max(id + 1, marketCatalog.idLimit()));
+                for (int i = 0; i < slots.length(); i++) {
+                    grown.set(i, slots.get(i));
+                }
+                latest = grown;
+                slots = grown;
+            }
+            return slots;
+        }
+    }
+
+    private Ticker mapToTicker(String symbol, Map<Object, Object> hash) {
         return new Ticker(
-            (String) hash.get("symbol"),
+            symbol,
             Long.parseLong((String) hash.getOrDefault("ts", "0")),
             new BigDecimal((String) hash.getOrDefault("bid", "0")),
             new BigDecimal((String) hash.getOrDefault("ask", "0")),
@@ -73,4 +176,11 @@ public class MarketService {
         }
         return ticker.get().last();
     }
+
+    // Whether the slot holds a ticker of this symbol, not of the market that had its id before
+    private static boolean holds(CachedTicker cached, String symbol) {
+        return cached != null && cached.ticker().symbol().equals(symbol);
+    }
+
+    private record CachedTicker(Ticker ticker, long refreshedAtMs) {}
 }
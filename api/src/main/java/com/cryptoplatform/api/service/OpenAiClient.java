@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.cryptoplatform.api.model.Market;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -13,6 +14,7 @@ public class OpenAiClient {
 
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final MarketCatalog marketCatalog;
 
     @Value("${ai.api.key}")
     private String apiKey;
@@ -20,8 +22,9 @@ public class OpenAiClient {
     @Value("${ai.api.url:https://api.openai.com/v1/chat/completions}")
     private String apiUrl;
 
-    public OpenAiClient(ObjectMapper objectMapper) {
+    public OpenAiClient(ObjectMapper objectMapper, MarketCatalog marketCatalog) {
         this.objectMapper = objectMapper;
+        this.marketCatalog = marketCatalog;
         this.webClient = WebClient.builder().build();
     }
 
@@ -53,10 +56,7 @@ public class OpenAiClient {
                 "- Spread across multiple assets: diversify_portfolio\n" +
                 "- Automated price triggers: create_rule\n\n" +
                 "SYMBOL MAPPING (be flexible):\n" +
-                "- BTC, Bitcoin, bitcoin → BTC-USD\n" +
-                "- ETH, Ethereum, ethereum, ether → ETH-USD\n" +
-                "- SOL, Solana, solana → SOL-USD\n" +
-                "- XRP, Ripple, ripple → XRP-USD\n\n" +
+                symbolMapping() + "\n" +
                 "ERROR HANDLING:\n" +
                 "If user asks something you cannot do (e.g., check news, predict prices, non-trading tasks), respond with a plain text message explaining you can only help with trading. DO NOT call any function.\n\n" +
                 "If user command is unclear or missing information, respond with a plain text message asking for clarification. DO NOT guess.");
@@ -140,15 +140,31 @@ public class OpenAiClient {
             ArrayNode conditionEnum = objectMapper.createArrayNode();
             conditionEnum.add("PRICE_ABOVE");
             conditionEnum.add("PRICE_BELOW");
+            conditionEnum.add("PERCENT_DROP");
+            conditionEnum.add("PERCENT_RISE");
+            conditionEnum.add("CROSS_ABOVE_EMA");
+            conditionEnum.add("CROSS_BELOW_EMA");
+            conditionEnum.add("VOLUME_ABOVE");
+            conditionEnum.add("EXPRESSION");
             conditionProp.set("enum", conditionEnum);
-            conditionProp.put("description", "Price condition type");
+            conditionProp.put("description", "Condition type. PRICE_ABOVE/PRICE_BELOW compare the price with targetPrice. PERCENT_DROP/PERCENT_RISE fire when the price moves targetPrice percent from the high/low of the last period minutes (e.g. 'drops 5% within 1h' = PERCENT_DROP, targetPrice 5, period 60). CROSS_ABOVE_EMA/CROSS_BELOW_EMA fire when the price crosses the period-period EMA of 1-minute closes (targetPrice 0). VOLUME_ABOVE fires when 24h volume in the base asset reaches targetPrice. EXPRESSION fires when the expression holds (targetPrice 0); use it for compound conditions");
             ruleProperties.set("condition", conditionProp);
             
             ObjectNode targetPriceProp = objectMapper.createObjectNode();
             targetPriceProp.put("type", "number");
-            targetPriceProp.put("description", "Target price for the condition");
+            targetPriceProp.put("description", "Target price, percentage or volume threshold for the condition");
             ruleProperties.set("targetPrice", targetPriceProp);
             
+            ObjectNode periodProp = objectMapper.createObjectNode();
+            periodProp.put("type", "integer");
+            periodProp.put("description", "Window in minutes (1-1440) for PERCENT_DROP/PERCENT_RISE, or EMA periods (2-1000) for CROSS_ABOVE_EMA/CROSS_BELOW_EMA. Omit for other conditions");
+            ruleProperties.set("period", periodProp);
+            
+            ObjectNode expressionProp = objectMapper.createObjectNode();
+            expressionProp.put("type", "string");
+            expressionProp.put("description", "For EXPRESSION only: comparisons of symbols (last price, or .bid/.ask/.volume) and numbers with + - * / < <= > >=, joined by AND, OR, NOT and parentheses, e.g. 'BTC-USD < 60000 AND ETH-USD / BTC-USD > 0.05'. The rule still trades the symbol parameter");
+            ruleProperties.set("expression", expressionProp);
+            
             ruleProperties.set("action", actionProp);
             
             ObjectNode ruleAmountTypeProp = objectMapper.createObjectNode();
@@ -322,4 +338,14 @@ public class OpenAiClient {
             return null;
         }
     }
+
+    // One "- names → SYMBOL" line per catalog market
+    private String symbolMapping() {
+        StringBuilder mapping = new StringBuilder();
+        for (Market market : marketCatalog.getMarkets()) {
+            mapping.append("- ").append(String.join(", ", market.names()))
+                .append(" → ").append(market.symbol()).append("\n");
+        }
+        return mapping.toString();
+    }
 }
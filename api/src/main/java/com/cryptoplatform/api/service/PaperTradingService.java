@@ -3,13 +3,13 @@ package com.cryptoplatform.api.service;
 import com.cryptoplatform.api.model.*;
 import com.cryptoplatform.api.repository.*;
 import jakarta.transaction.Transactional;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class PaperTradingService implements TradingServiceInterface {
@@ -18,44 +18,45 @@ public class PaperTradingService implements TradingServiceInterface {
     private final PositionRepository positionRepository;
     private final UserRepository userRepository;
     private final AccountRepository accountRepository;
-    private final StringRedisTemplate redisTemplate;
+    private final MarketService marketService;
+    private final FundReservationLedger reservationLedger;
+    private final UserContextCache userContextCache;
+    private final ApplicationEventPublisher eventPublisher;
 
-    private static final BigDecimal FEE_RATE = new BigDecimal("0.002"); // 0.2%
+    static final BigDecimal FEE_RATE = new BigDecimal("0.002"); // 0.2%
 
     public PaperTradingService(OrderRepository orderRepository, PositionRepository positionRepository,
                           UserRepository userRepository, AccountRepository accountRepository, 
-                          StringRedisTemplate redisTemplate) {
+                          MarketService marketService, FundReservationLedger reservationLedger,
+                          UserContextCache userContextCache, ApplicationEventPublisher eventPublisher) {
         this.orderRepository = orderRepository;
         this.positionRepository = positionRepository;
         this.userRepository = userRepository;
         this.accountRepository = accountRepository;
-        this.redisTemplate = redisTemplate;
+        this.marketService = marketService;
+        this.reservationLedger = reservationLedger;
+        this.userContextCache = userContextCache;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
     public Order placeOrder(Long userId, TradeRequest request) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        Account account = user.getAccount();
-        if (account == null) throw new RuntimeException("Account not found");
+        // User comes from the cached context; the order only needs a reference to it
+        Account account = lockAccount(userId);
+        User user = userRepository.getReferenceById(userId);
 
         Order order = new Order(user, request.getSymbol(), request.getSide(), request.getType(), request.getQuantity(), request.getLimitPrice());
 
+        Position touched = null;
         if (request.getType() == Order.Type.MARKET) {
-            executeMarketOrder(order, account);
+            touched = executeMarketOrder(order, account);
         } else {
-            // For LIMIT, we just save it as OPEN (in a real system we'd lock funds here)
-            // Validating funds for LIMIT buy
+            // For LIMIT, we save it as OPEN and hold what it needs until it fills or is cancelled
             if (request.getSide() == Order.Side.BUY) {
-                 BigDecimal estimatedCost = request.getLimitPrice().multiply(request.getQuantity());
-                 if (account.getBalance().compareTo(estimatedCost) < 0) {
-                     throw new RuntimeException("Insufficient funds for limit order");
-                 }
-                 // Lock funds (deduct from balance now, refund if cancelled? Or separate 'locked' balance)
-                 // For simplicity, we deduct now.
-                 account.setBalance(account.getBalance().subtract(estimatedCost));
-                 accountRepository.save(account);
+                // Funds are held (cost + fee at the limit price); the balance is untouched
+                reservationLedger.reserve(account, FundReservationLedger.requiredFunds(order));
+                accountRepository.save(account);
+                orderRepository.save(order);
             } else {
                 // Validate asset execution for SELL
                 Position position = positionRepository.findByAccountIdAndSymbol(account.getId(), request.getSymbol())
@@ -66,37 +67,35 @@ public class PaperTradingService implements TradingServiceInterface {
                 // Lock assets
                 position.setQuantity(position.getQuantity().subtract(request.getQuantity()));
                 positionRepository.save(position);
+                orderRepository.save(order);
+                touched = position;
             }
-            orderRepository.save(order);
         }
 
+        publishUpdate(userId, account, order, touched);
         return order;
     }
 
-    private void executeMarketOrder(Order order, Account account) {
-        // Fetch latest price from Redis
-        String key = "latest:" + order.getSymbol(); // Ensure this matches what MarketGateway writes
-        // MarketGateway writes to "latest:BTC-USD"
-        
-        Map<Object, Object> tickerData = redisTemplate.opsForHash().entries(key);
-        if (tickerData.isEmpty()) {
-            throw new RuntimeException("Market data unavailable for " + order.getSymbol());
-        }
-
-        BigDecimal price = new BigDecimal((String) tickerData.get("last"));
+    private Position executeMarketOrder(Order order, Account account) {
+        // Latest price from the in-memory ticker cache (falls back to Redis when stale)
+        BigDecimal price = marketService.getLatestPrice(order.getSymbol())
+                .orElseThrow(() -> new RuntimeException("Market data unavailable for " + order.getSymbol()))
+                .last();
         // Apply slippage? For now just use last price.
         
-        executeTrade(order, account, price);
+        return executeTrade(order, account, price);
     }
     
-    // Core trade execution (atomic update of balance/inventory)
-    private void executeTrade(Order order, Account account, BigDecimal price) {
+    // Core trade execution (atomic update of balance/inventory); returns the position it changed
+    private Position executeTrade(Order order, Account account, BigDecimal price) {
         BigDecimal totalValue = price.multiply(order.getQuantity());
         BigDecimal fee = totalValue.multiply(FEE_RATE);
+        Position touched;
         
         if (order.getSide() == Order.Side.BUY) {
             BigDecimal totalCost = totalValue.add(fee);
-            if (account.getBalance().compareTo(totalCost) < 0) {
+            // Funds held for open limit orders can't be spent; the row is locked, so no hold can sneak in
+            if (account.getAvailableBalance().compareTo(totalCost) < 0) {
                 throw new RuntimeException("Insufficient funds");
             }
             
@@ -118,7 +117,9 @@ public class PaperTradingService implements TradingServiceInterface {
                  position.setAvgEntryPrice(oldVal.add(newVal).divide(totalQty, 8, RoundingMode.HALF_UP));
             }
             position.setQuantity(totalQty);
+            position.setRealizedPnl(position.getRealizedPnl().subtract(fee));
             positionRepository.save(position);
+            touched = position;
             
         } else {
             // SELL
@@ -139,7 +140,11 @@ public class PaperTradingService implements TradingServiceInterface {
                     throw new RuntimeException("Insufficient quantity");
                 }
                 position.setQuantity(position.getQuantity().subtract(order.getQuantity()));
+                recordSale(position, order.getQuantity(), price, fee);
                 positionRepository.save(position);
+                touched = position;
+            } else {
+                touched = null;
             }
             
             // Add Proceeds
@@ -153,12 +158,15 @@ public class PaperTradingService implements TradingServiceInterface {
         order.setFilledPrice(price);
         order.setFee(fee);
         orderRepository.save(order);
+        return touched;
     }
     
     @Transactional
     public void processLimitOrders(Ticker ticker) {
-        // Find OPEN orders for this symbol
+        // Find OPEN orders for this symbol. Accounts get locked as their orders fill, always
+        // in user id order, so concurrent batches can't deadlock on each other's accounts.
         List<Order> openOrders = orderRepository.findBySymbolAndStatus(ticker.symbol(), Order.Status.OPEN);
+        openOrders.sort(Comparator.comparing((Order order) -> order.getUser().getId()));
         
         for (Order order : openOrders) {
             boolean filled = false;
@@ -177,37 +185,27 @@ public class PaperTradingService implements TradingServiceInterface {
             }
             
             if (filled) {
-                // For LIMIT orders, funds/assets were deducted at placement.
-                // For BUY: We deducted Cost = LimitPrice * Qty.
-                // Now we fill at MarketPrice (which is better or equal).
-                // Actual Cost = MarketPrice * Qty.
-                // Refund = (LimitPrice - MarketPrice) * Qty.
+                // For LIMIT orders, funds were reserved (BUY) or assets deducted (SELL) at placement.
+                // We fill at MarketPrice (which is better or equal), so the reservation covers the cost.
                 
-                Account account = order.getUser().getAccount();
-                executeTradeFromLocked(order, account, marketPrice);
+                Account account = lockAccount(order.getUser().getId());
+                Position touched = executeTradeFromLocked(order, account, marketPrice);
+                publishUpdate(order.getUser().getId(), account, order, touched);
             }
         }
     }
     
-    private void executeTradeFromLocked(Order order, Account account, BigDecimal price) {
+    private Position executeTradeFromLocked(Order order, Account account, BigDecimal price) {
         BigDecimal totalValue = price.multiply(order.getQuantity());
         BigDecimal fee = totalValue.multiply(FEE_RATE);
+        Position touched = null;
         
         if (order.getSide() == Order.Side.BUY) {
-            // Funds were already deducted based on Limit Price.
-            BigDecimal initialCost = order.getLimitPrice().multiply(order.getQuantity());
+            // Funds (LimitPrice * Qty + fee) were reserved at placement and cover the actual cost.
+            // Pay for the fill from the balance and drop the hold in the same transaction.
             BigDecimal actualCost = totalValue.add(fee);
-            
-            // Refund the difference (if any)
-            // Warning: We didn't account for Fee in the initial deduction of Limit Order?
-            // In placeOrder: account.setBalance(account.getBalance().subtract(estimatedCost)); where estimatedCost = limitPrice * qty.
-            // So we didn't deduct fee.
-            // If actualCost > initialCost (due to fee), we might go negative?
-            // Let's assume user has margin or small float. Correct way is to reserve (Price + Fee).
-            // For this 'Paper Trading' MVP, we just adjust balance.
-            
-            BigDecimal balanceAdjustment = initialCost.subtract(actualCost);
-            account.setBalance(account.getBalance().add(balanceAdjustment));
+            account.setBalance(account.getBalance().subtract(actualCost));
+            reservationLedger.release(account, FundReservationLedger.requiredFunds(order));
             
             // Update Position
              Position position = positionRepository.findByAccountIdAndSymbol(account.getId(), order.getSymbol())
@@ -226,13 +224,24 @@ public class PaperTradingService implements TradingServiceInterface {
                  position.setAvgEntryPrice(oldVal.add(newVal).divide(totalQty, 8, RoundingMode.HALF_UP));
              }
              position.setQuantity(totalQty);
+             position.setRealizedPnl(position.getRealizedPnl().subtract(fee));
              positionRepository.save(position);
+             touched = position;
              
         } else {
             // SELL
             // Assets were locked (deducted). We just add proceeds.
             BigDecimal proceeds = totalValue.subtract(fee);
             account.setBalance(account.getBalance().add(proceeds));
+
+            // The position row outlives the locked quantity; it keeps the entry price to realize against
+            Position position = positionRepository.findByAccountIdAndSymbol(account.getId(), order.getSymbol())
+                    .orElse(null);
+            if (position != null) {
+                recordSale(position, order.getQuantity(), price, fee);
+                positionRepository.save(position);
+                touched = position;
+            }
         }
         
         accountRepository.save(account);
@@ -241,15 +250,21 @@ public class PaperTradingService implements TradingServiceInterface {
         order.setFilledPrice(price);
         order.setFee(fee);
         orderRepository.save(order);
+        return touched;
     }
     
+    // Realized PnL of a sale: gain over the average entry, less the fee
+    private static void recordSale(Position position, BigDecimal quantity, BigDecimal price, BigDecimal fee) {
+        BigDecimal gain = price.subtract(position.getAvgEntryPrice()).multiply(quantity);
+        position.setRealizedPnl(position.getRealizedPnl().add(gain).subtract(fee));
+    }
+
     public List<Order> getOrderHistory(Long userId) {
         return orderRepository.findByUserIdOrderByTimestampDesc(userId);
     }
     
     public List<Position> getPortfolio(Long userId) {
-        User user = userRepository.findById(userId).orElseThrow();
-        return positionRepository.findByAccountId(user.getAccount().getId());
+        return positionRepository.findByAccountId(getAccountId(userId));
     }
     
     @Override
@@ -258,6 +273,7 @@ public class PaperTradingService implements TradingServiceInterface {
     }
     
     @Override
+    @Transactional
     public void cancelOrder(Long userId, Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
@@ -270,28 +286,52 @@ public class PaperTradingService implements TradingServiceInterface {
             throw new RuntimeException("Cannot cancel order that is not OPEN");
         }
         
-        // Refund locked funds/assets
-        Account account = order.getUser().getAccount();
+        // Release reserved funds / refund locked assets
+        Account account = lockAccount(userId);
+        Position touched = null;
         if (order.getSide() == Order.Side.BUY) {
-            // Refund USD
-            BigDecimal refund = order.getLimitPrice().multiply(order.getQuantity());
-            account.setBalance(account.getBalance().add(refund));
+            // Funds were only reserved, so the balance itself is untouched
+            reservationLedger.release(account, FundReservationLedger.requiredFunds(order));
+            accountRepository.save(account);
         } else {
             // Refund crypto
             Position position = positionRepository.findByAccountIdAndSymbol(account.getId(), order.getSymbol())
                     .orElse(new Position(account, order.getSymbol(), BigDecimal.ZERO));
             position.setQuantity(position.getQuantity().add(order.getQuantity()));
             positionRepository.save(position);
+            touched = position;
         }
-        accountRepository.save(account);
         
         order.setStatus(Order.Status.CANCELLED);
         orderRepository.save(order);
+        publishUpdate(userId, account, order, touched);
     }
     
     @Override
     public BigDecimal getBalance(Long userId) {
-        User user = userRepository.findById(userId).orElseThrow();
-        return user.getAccount().getBalance();
+        return getAccount(userId).getAvailableBalance();
+    }
+    
+    // Pushed to the user's private WebSocket once the transaction commits
+    private void publishUpdate(Long userId, Account account, Order order, Position position) {
+        eventPublisher.publishEvent(new AccountUpdateEvent(userId, account.getId(), order, account.getBalance(),
+            account.getReserved(), position));
+    }
+    
+    private Long getAccountId(Long userId) {
+        Long accountId = userContextCache.getById(userId).accountId();
+        if (accountId == null) throw new RuntimeException("Account not found");
+        return accountId;
+    }
+    
+    private Account getAccount(Long userId) {
+        return accountRepository.findById(getAccountId(userId))
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+    }
+
+    // The account row locked until the order transaction ends
+    private Account lockAccount(Long userId) {
+        return accountRepository.findByIdForUpdate(getAccountId(userId))
+                .orElseThrow(() -> new RuntimeException("Account not found"));
     }
 }
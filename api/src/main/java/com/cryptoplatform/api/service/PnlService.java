@@ -0,0 +1,290 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Account;
+import com.cryptoplatform.api.model.AccountPnl;
+import com.cryptoplatform.api.model.Order;
+import com.cryptoplatform.api.model.Position;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.model.User;
+import com.cryptoplatform.api.model.UserContext;
+import com.cryptoplatform.api.repository.AccountRepository;
+import com.cryptoplatform.api.repository.OrderRepository;
+import com.cryptoplatform.api.repository.PositionRepository;
+import com.cryptoplatform.api.websocket.PriceFeed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Live mark-to-market valuation of paper accounts (GET /account/pnl and the "pnl"
+ * message of the account WebSocket).
+ *
+ * An account is tracked from the first time it is read until it goes unread for
+ * pnl.idle-ms. Tracked accounts are indexed by the symbols they hold, so a tick
+ * only touches the accounts holding its symbol, and as a {@link PriceFeed} this
+ * instance subscribes to exactly those symbols. Trades on this instance reload the
+ * account after they commit; every pnl.reload-ms all tracked accounts are reloaded
+ * in a few batched queries, which picks up trades made on other instances.
+ */
+@Service
+public class PnlService implements PriceFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(PnlService.class);
+
+    // Accounts reloaded per query in the periodic refresh
+    private static final int RELOAD_BATCH = 500;
+
+    private final AccountRepository accountRepository;
+    private final PositionRepository positionRepository;
+    private final OrderRepository orderRepository;
+    private final UserContextCache userContextCache;
+    private final MarketService marketService;
+    private final long idleMs;
+    private final Executor reloader;
+    private final ExecutorService ownedReloader;
+
+    // User -> Valuation of their paper account
+    private final Map<Long, AccountValuation> accounts = new ConcurrentHashMap<>();
+    // Symbol -> Tracked accounts holding it
+    private final Map<String, Set<AccountValuation>> holders = new ConcurrentHashMap<>();
+    // Symbol -> Last price seen on the feed
+    private final Map<String, Double> marks = new ConcurrentHashMap<>();
+    private volatile WatchListener watchListener;
+
+    @Autowired
+    public PnlService(AccountRepository accountRepository, PositionRepository positionRepository,
+                      OrderRepository orderRepository, UserContextCache userContextCache,
+                      MarketService marketService, MeterRegistry meterRegistry,
+                      @Value("${pnl.idle-ms:600000}") long idleMs) {
+        this(accountRepository, positionRepository, orderRepository, userContextCache, marketService,
+            meterRegistry, idleMs, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    PnlService(AccountRepository accountRepository, PositionRepository positionRepository,
+               OrderRepository orderRepository, UserContextCache userContextCache,
+               MarketService marketService, MeterRegistry meterRegistry, long idleMs, Executor reloader) {
+        this.accountRepository = accountRepository;
+        this.positionRepository = positionRepository;
+        this.orderRepository = orderRepository;
+        this.userContextCache = userContextCache;
+        this.marketService = marketService;
+        this.idleMs = idleMs;
+        this.reloader = reloader;
+        this.ownedReloader = reloader instanceof ExecutorService executorService ? executorService : null;
+        Gauge.builder("pnl.accounts", accounts, Map::size)
+            .description("Paper accounts whose PnL is kept up to date")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ownedReloader != null) {
+            ownedReloader.shutdownNow();
+        }
+    }
+
+    /**
+     * Current valuation of the user's paper account, tracking it from now on.
+     */
+    public AccountPnl getPnl(Long userId) {
+        return track(userId).snapshot();
+    }
+
+    /**
+     * The valuation if it changed since the last call, else null; for pushing
+     * updates no more often than the caller polls.
+     */
+    public AccountPnl takeChanged(Long userId) {
+        return track(userId).takeChanged();
+    }
+
+    private AccountValuation track(Long userId) {
+        if (userContextCache.getById(userId).tradingMode() != User.TradingMode.PAPER) {
+            throw new IllegalArgumentException("PnL is only tracked for paper trading accounts");
+        }
+        AccountValuation valuation = accounts.get(userId);
+        if (valuation == null) {
+            reload(List.of(userId));
+            valuation = accounts.get(userId);
+            if (valuation == null) {
+                throw new RuntimeException("Account not found");
+            }
+        }
+        valuation.touch(System.currentTimeMillis());
+        return valuation;
+    }
+
+    @Override
+    public void onTick(Ticker ticker) {
+        double price = ticker.last().doubleValue();
+        marks.put(ticker.symbol(), price);
+        Set<AccountValuation> accountsHolding = holders.get(ticker.symbol());
+        if (accountsHolding == null) return;
+        for (AccountValuation valuation : accountsHolding) {
+            valuation.mark(ticker.symbol(), price, ticker.tsEpochMs());
+        }
+    }
+
+    @Override
+    public boolean isWatched(String symbol) {
+        return holders.containsKey(symbol);
+    }
+
+    @Override
+    public void setWatchListener(WatchListener watchListener) {
+        this.watchListener = watchListener;
+    }
+
+    /**
+     * Reload a tracked account once its trade commits; off the committing thread,
+     * which is the request or rule execution that placed the order.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountUpdate(AccountUpdateEvent event) {
+        if (!accounts.containsKey(event.userId())) return;
+        reloader.execute(() -> {
+            try {
+                reload(List.of(event.userId()));
+            } catch (RuntimeException e) {
+                log.warn("Failed to reload PnL of user {}: {}", event.userId(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stop tracking accounts nobody read for pnl.idle-ms and reload the others.
+     */
+    @Scheduled(fixedDelayString = "${pnl.reload-ms:30000}")
+    public void refresh() {
+        long idleBefore = System.currentTimeMillis() - idleMs;
+        List<Long> active = new ArrayList<>();
+        for (AccountValuation valuation : accounts.values()) {
+            if (valuation.lastReadMs() < idleBefore) {
+                untrack(valuation);
+            } else {
+                active.add(valuation.userId);
+            }
+        }
+        for (int from = 0; from < active.size(); from += RELOAD_BATCH) {
+            try {
+                reload(active.subList(from, Math.min(active.size(), from + RELOAD_BATCH)));
+            } catch (RuntimeException e) {
+                log.error("Failed to reload PnL of {} accounts", Math.min(RELOAD_BATCH, active.size() - from), e);
+            }
+        }
+    }
+
+    /**
+     * Load balances, positions and open limit sells of the users' paper accounts in
+     * three queries and reset their valuations.
+     */
+    void reload(Collection<Long> userIds) {
+        Map<Long, Long> accountIdsByUser = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            UserContext context = userContextCache.getById(userId);
+            if (context.accountId() != null) {
+                accountIdsByUser.put(userId, context.accountId());
+            }
+        }
+        if (accountIdsByUser.isEmpty()) return;
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (Account account : accountRepository.findAllById(accountIdsByUser.values())) {
+            balances.put(account.getId(), account.getBalance());
+        }
+        Map<Long, List<Position>> positionsByAccount = new HashMap<>();
+        for (Position position : positionRepository.findByAccountIdIn(accountIdsByUser.values())) {
+            positionsByAccount.computeIfAbsent(position.getAccount().getId(), id -> new ArrayList<>()).add(position);
+        }
+        // Open limit sells have taken their quantity out of the position until they fill
+        Map<Long, Map<String, BigDecimal>> lockedByUser = new HashMap<>();
+        for (Order order : orderRepository.findByUserIdInAndSideAndStatus(accountIdsByUser.keySet(),
+                Order.Side.SELL, Order.Status.OPEN)) {
+            lockedByUser.computeIfAbsent(order.getUser().getId(), id -> new HashMap<>())
+                .merge(order.getSymbol(), order.getQuantity(), BigDecimal::add);
+        }
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Long> entry : accountIdsByUser.entrySet()) {
+            Long userId = entry.getKey();
+            Long accountId = entry.getValue();
+            BigDecimal balance = balances.get(accountId);
+            if (balance == null) continue;
+            AccountValuation valuation = accounts.computeIfAbsent(userId, id -> new AccountValuation(id, accountId, now));
+            synchronized (valuation) {
+                Set<String> before = valuation.heldSymbols();
+                valuation.reset(balance, positionsByAccount.getOrDefault(accountId, List.of()),
+                    lockedByUser.getOrDefault(userId, Map.of()), this::markOf, now);
+                // A concurrent refresh may have evicted it while it loaded
+                if (accounts.get(userId) == valuation) {
+                    updateHolders(valuation, before, valuation.heldSymbols());
+                }
+            }
+        }
+    }
+
+    private void untrack(AccountValuation valuation) {
+        synchronized (valuation) {
+            accounts.remove(valuation.userId, valuation);
+            updateHolders(valuation, valuation.heldSymbols(), Set.of());
+        }
+    }
+
+    private void updateHolders(AccountValuation valuation, Set<String> before, Set<String> after) {
+        Set<String> watchChanged = new HashSet<>();
+        for (String symbol : after) {
+            if (before.contains(symbol)) continue;
+            holders.compute(symbol, (s, accountsHolding) -> {
+                if (accountsHolding == null) {
+                    accountsHolding = ConcurrentHashMap.newKeySet();
+                    watchChanged.add(s);
+                }
+                accountsHolding.add(valuation);
+                return accountsHolding;
+            });
+        }
+        for (String symbol : before) {
+            if (after.contains(symbol)) continue;
+            holders.computeIfPresent(symbol, (s, accountsHolding) -> {
+                accountsHolding.remove(valuation);
+                if (!accountsHolding.isEmpty()) return accountsHolding;
+                watchChanged.add(s);
+                return null;
+            });
+        }
+        WatchListener listener = watchListener;
+        if (listener != null) {
+            watchChanged.forEach(listener::onWatchChanged);
+        }
+    }
+
+    // Last tick seen here, else the shared latest price; NaN values the position at cost
+    private double markOf(String symbol) {
+        Double mark = marks.get(symbol);
+        if (mark != null) return mark;
+        return marketService.getLatestPrice(symbol)
+            .map(ticker -> ticker.last().doubleValue())
+            .orElse(Double.NaN);
+    }
+}
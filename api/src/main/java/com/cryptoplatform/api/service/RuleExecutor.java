@@ -0,0 +1,119 @@
+package com.cryptoplatform.api.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs triggered rules off the tick thread.
+ *
+ * Each account has its own queue drained by one task at a time, so an account's
+ * rules execute in the order they fired, while different accounts run in
+ * parallel on virtual threads (live orders block on Kraken HTTP calls). A
+ * semaphore caps how many executions run at once across all accounts
+ * (rules.execution.max-concurrency); keep it within the database pool size,
+ * as each execution holds a transaction.
+ */
+@Component
+public class RuleExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleExecutor.class);
+
+    private final Executor threads;
+    private final ExecutorService ownedThreads;
+    private final Semaphore permits;
+
+    // Account -> Executions waiting behind the running one, guarded by this
+    private final Map<Long, ArrayDeque<Runnable>> queues = new HashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @Autowired
+    public RuleExecutor(MeterRegistry meterRegistry,
+                        @Value("${rules.execution.max-concurrency:8}") int maxConcurrency) {
+        this(meterRegistry, maxConcurrency, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    RuleExecutor(MeterRegistry meterRegistry, int maxConcurrency, Executor threads) {
+        this.threads = threads;
+        this.ownedThreads = threads instanceof ExecutorService executorService ? executorService : null;
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        Gauge.builder("rules.execution.queue", pending, AtomicInteger::get)
+            .description("Triggered rules waiting for or in execution")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queue an execution behind any earlier ones of the same account.
+     */
+    public void submit(Long accountKey, Runnable execution) {
+        pending.incrementAndGet();
+        synchronized (this) {
+            ArrayDeque<Runnable> queue = queues.get(accountKey);
+            if (queue != null) {
+                queue.add(execution);
+                return;
+            }
+            queue = new ArrayDeque<>();
+            queue.add(execution);
+            queues.put(accountKey, queue);
+        }
+        threads.execute(() -> drain(accountKey));
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void drain(Long accountKey) {
+        while (true) {
+            Runnable execution;
+            synchronized (this) {
+                ArrayDeque<Runnable> queue = queues.get(accountKey);
+                execution = queue.peek();
+                if (execution == null) {
+                    queues.remove(accountKey);
+                    return;
+                }
+            }
+
+            permits.acquireUninterruptibly();
+            try {
+                execution.run();
+            } catch (RuntimeException e) {
+                log.error("Rule execution for account {} failed: {}", accountKey, e.getMessage());
+            } finally {
+                permits.release();
+                pending.decrementAndGet();
+                synchronized (this) {
+                    queues.get(accountKey).poll();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (ownedThreads != null) {
+            ownedThreads.shutdown();
+            // Let executions that already placed orders finish recording them
+            if (!ownedThreads.awaitTermination(30, TimeUnit.SECONDS)) {
+                ownedThreads.shutdownNow();
+            }
+        }
+    }
+}
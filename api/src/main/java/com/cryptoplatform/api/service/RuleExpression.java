@@ -0,0 +1,454 @@
+package com.cryptoplatform.api.service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Boolean expression over live market values, the condition of EXPRESSION rules.
+ *
+ * <pre>
+ *   BTC-USD &lt; 60000 AND ETH-USD / BTC-USD &gt; 0.05
+ *   NOT (SOL-USD.volume &lt;= 100000) OR (SOL-USD.ask - SOL-USD.bid) / SOL-USD.last &gt; 0.01
+ * </pre>
+ *
+ * A symbol reads its last price, or one of its fields with .last, .bid, .ask or .volume
+ * (24h, base asset). Numbers combine with + - * / and compare with &lt; &lt;= &gt; &gt;=;
+ * comparisons combine with AND, OR and NOT. A '-' right after a symbol is part of the
+ * symbol, so write subtraction with spaces.
+ *
+ * An expression is parsed once into a tree of nodes, which {@link #compile} turns into
+ * nested evaluators with constants folded. Evaluation reads values from a double[]
+ * laid out by a {@link SlotResolver} and allocates nothing.
+ */
+final class RuleExpression {
+
+    static final int MAX_LENGTH = 500;
+
+    /**
+     * Fields of a symbol an expression can read; a symbol's fields occupy consecutive slots.
+     */
+    enum Field {
+        LAST, BID, ASK, VOLUME;
+
+        static final int COUNT = values().length;
+    }
+
+    /**
+     * The first of the consecutive value slots of a symbol.
+     */
+    interface SlotResolver {
+        int baseSlot(String symbol);
+    }
+
+    interface Evaluator {
+        boolean test(double[] values);
+    }
+
+    private interface NumberEvaluator {
+        double eval(double[] values);
+    }
+
+    private final Node root;
+    private final Set<String> symbols;
+
+    private RuleExpression(Node root, Set<String> symbols) {
+        this.root = root;
+        this.symbols = Collections.unmodifiableSet(symbols);
+    }
+
+    /**
+     * Parse the text, mapping each symbol token through the resolver (which may
+     * canonicalize it, e.g. BTC to BTC-USD, and throws IllegalArgumentException for
+     * unknown ones).
+     */
+    static RuleExpression parse(String text, UnaryOperator<String> symbolResolver) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Expression is empty");
+        }
+        if (text.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Expression is longer than " + MAX_LENGTH + " characters");
+        }
+        Parser parser = new Parser(text, symbolResolver);
+        Node root = parser.parseOr();
+        if (parser.peek() != null) {
+            throw parser.error("Unexpected '" + parser.peek() + "'");
+        }
+        if (!root.isBoolean()) {
+            throw new IllegalArgumentException("Expression must be a comparison, e.g. BTC-USD < 60000");
+        }
+        return new RuleExpression(root, parser.symbols);
+    }
+
+    /**
+     * Symbols the expression reads, in order of first use.
+     */
+    Set<String> symbols() {
+        return symbols;
+    }
+
+    Evaluator compile(SlotResolver slots) {
+        return compileBoolean(root, slots);
+    }
+
+    /**
+     * Canonical text: resolved symbols, explicit fields other than last, minimal parentheses.
+     */
+    @Override
+    public String toString() {
+        return root.render(0);
+    }
+
+    private static Evaluator compileBoolean(Node node, SlotResolver slots) {
+        return switch (node) {
+            case Compare c -> {
+                NumberEvaluator l = compileNumber(c.left(), slots);
+                if (c.right() instanceof Num n) {
+                    double constant = n.value();
+                    yield switch (c.op()) {
+                        case "<" -> values -> l.eval(values) < constant;
+                        case "<=" -> values -> l.eval(values) <= constant;
+                        case ">" -> values -> l.eval(values) > constant;
+                        default -> values -> l.eval(values) >= constant;
+                    };
+                }
+                NumberEvaluator r = compileNumber(c.right(), slots);
+                yield switch (c.op()) {
+                    case "<" -> values -> l.eval(values) < r.eval(values);
+                    case "<=" -> values -> l.eval(values) <= r.eval(values);
+                    case ">" -> values -> l.eval(values) > r.eval(values);
+                    default -> values -> l.eval(values) >= r.eval(values);
+                };
+            }
+            case Logic g -> {
+                Evaluator l = compileBoolean(g.left(), slots);
+                Evaluator r = compileBoolean(g.right(), slots);
+                yield g.and()
+                        ? values -> l.test(values) && r.test(values)
+                        : values -> l.test(values) || r.test(values);
+            }
+            case Not n -> {
+                Evaluator operand = compileBoolean(n.operand(), slots);
+                yield values -> !operand.test(values);
+            }
+            default -> throw new IllegalStateException("Not a boolean node: " + node);
+        };
+    }
+
+    private static NumberEvaluator compileNumber(Node node, SlotResolver slots) {
+        return switch (node) {
+            case Num n -> {
+                double value = n.value();
+                yield values -> value;
+            }
+            case Ref ref -> {
+                int slot = slots.baseSlot(ref.symbol()) + ref.field().ordinal();
+                yield values -> values[slot];
+            }
+            case Neg neg -> {
+                NumberEvaluator operand = compileNumber(neg.operand(), slots);
+                yield values -> -operand.eval(values);
+            }
+            case Arith a -> {
+                NumberEvaluator l = compileNumber(a.left(), slots);
+                NumberEvaluator r = compileNumber(a.right(), slots);
+                yield switch (a.op()) {
+                    case '+' -> values -> l.eval(values) + r.eval(values);
+                    case '-' -> values -> l.eval(values) - r.eval(values);
+                    case '*' -> values -> l.eval(values) * r.eval(values);
+                    default -> values -> l.eval(values) / r.eval(values);
+                };
+            }
+            default -> throw new IllegalStateException("Not a number node: " + node);
+        };
+    }
+
+    // Syntax tree; render(precedence) parenthesizes when the parent binds tighter
+
+    private sealed interface Node permits Num, Ref, Neg, Arith, Compare, Logic, Not {
+        boolean isBoolean();
+
+        String render(int parentPrecedence);
+    }
+
+    private record Num(double value) implements Node {
+        public boolean isBoolean() { return false; }
+
+        public String render(int parentPrecedence) {
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private record Ref(String symbol, Field field) implements Node {
+        public boolean isBoolean() { return false; }
+
+        public String render(int parentPrecedence) {
+            return field == Field.LAST ? symbol : symbol + "." + field.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private record Neg(Node operand) implements Node {
+        public boolean isBoolean() { return false; }
+
+        public String render(int parentPrecedence) {
+            return "-" + operand.render(7);
+        }
+    }
+
+    private record Arith(char op, Node left, Node right) implements Node {
+        public boolean isBoolean() { return false; }
+
+        public String render(int parentPrecedence) {
+            int precedence = op == '+' || op == '-' ? 5 : 6;
+            // Left-associative: the right operand needs parentheses at equal precedence
+            String text = left.render(precedence) + " " + op + " " + right.render(precedence + 1);
+            return precedence < parentPrecedence ? "(" + text + ")" : text;
+        }
+    }
+
+    private record Compare(String op, Node left, Node right) implements Node {
+        public boolean isBoolean() { return true; }
+
+        public String render(int parentPrecedence) {
+            String text = left.render(5) + " " + op + " " + right.render(5);
+            return 4 < parentPrecedence ? "(" + text + ")" : text;
+        }
+    }
+
+    private record Logic(boolean and, Node left, Node right) implements Node {
+        public boolean isBoolean() { return true; }
+
+        public String render(int parentPrecedence) {
+            int precedence = and ? 2 : 1;
+            String text = left.render(precedence) + (and ? " AND " : " OR ") + right.render(precedence + 1);
+            return precedence < parentPrecedence ? "(" + text + ")" : text;
+        }
+    }
+
+    private record Not(Node operand) implements Node {
+        public boolean isBoolean() { return true; }
+
+        public String render(int parentPrecedence) {
+            return "NOT " + operand.render(3);
+        }
+    }
+
+    // Recursive descent over the raw text:
+    //   or := and (OR and)*        and := not (AND not)*      not := NOT not | compare
+    //   compare := sum [(< | <= | > | >=) sum]
+    //   sum := product ((+ | -) product)*                     product := unary ((* | /) unary)*
+    //   unary := - unary | NUMBER | SYMBOL[.field] | ( or )
+    private static final class Parser {
+        private final String text;
+        private final UnaryOperator<String> symbolResolver;
+        private final Set<String> symbols = new LinkedHashSet<>();
+        private int pos;
+
+        Parser(String text, UnaryOperator<String> symbolResolver) {
+            this.text = text;
+            this.symbolResolver = symbolResolver;
+        }
+
+        Node parseOr() {
+            Node left = parseAnd();
+            while (acceptWord("OR")) {
+                left = new Logic(false, requireBoolean(left, "OR"), requireBoolean(parseAnd(), "OR"));
+            }
+            return left;
+        }
+
+        private Node parseAnd() {
+            Node left = parseNot();
+            while (acceptWord("AND")) {
+                left = new Logic(true, requireBoolean(left, "AND"), requireBoolean(parseNot(), "AND"));
+            }
+            return left;
+        }
+
+        private Node parseNot() {
+            if (acceptWord("NOT")) {
+                return new Not(requireBoolean(parseNot(), "NOT"));
+            }
+            return parseCompare();
+        }
+
+        private Node parseCompare() {
+            Node left = parseSum();
+            String op = acceptComparison();
+            if (op == null) return left;
+            Node right = parseSum();
+            return new Compare(op, requireNumber(left, op), requireNumber(right, op));
+        }
+
+        private Node parseSum() {
+            Node left = parseProduct();
+            char op;
+            while ((op = acceptOperator("+-")) != 0) {
+                left = fold(new Arith(op, requireNumber(left, op), requireNumber(parseProduct(), op)));
+            }
+            return left;
+        }
+
+        private Node parseProduct() {
+            Node left = parseUnary();
+            char op;
+            while ((op = acceptOperator("*/")) != 0) {
+                left = fold(new Arith(op, requireNumber(left, op), requireNumber(parseUnary(), op)));
+            }
+            return left;
+        }
+
+        private Node parseUnary() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw error("Expression ends early");
+            }
+            char c = text.charAt(pos);
+            if (c == '-') {
+                pos++;
+                Node operand = requireNumber(parseUnary(), '-');
+                return operand instanceof Num n ? new Num(-n.value()) : new Neg(operand);
+            }
+            if (c == '(') {
+                pos++;
+                Node inner = parseOr();
+                skipSpaces();
+                if (pos >= text.length() || text.charAt(pos) != ')') {
+                    throw error("Missing ')'");
+                }
+                pos++;
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return parseNumber();
+            }
+            if (Character.isLetter(c)) {
+                return parseRef();
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+
+        private Node parseNumber() {
+            int start = pos;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                pos++;
+            }
+            try {
+                return new Num(Double.parseDouble(text.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw error("Bad number '" + text.substring(start, pos) + "'");
+            }
+        }
+
+        private Node parseRef() {
+            int start = pos;
+            pos = wordEnd(pos);
+            // BTC-USD: a '-' directly followed by a letter continues the symbol
+            if (pos + 1 < text.length() && text.charAt(pos) == '-' && Character.isLetter(text.charAt(pos + 1))) {
+                pos = wordEnd(pos + 1);
+            }
+            String token = text.substring(start, pos).toUpperCase(Locale.ROOT);
+            if (token.equals("AND") || token.equals("OR") || token.equals("NOT")) {
+                throw error("Expected a value before " + token);
+            }
+            String symbol = symbolResolver.apply(token);
+
+            Field field = Field.LAST;
+            if (pos < text.length() && text.charAt(pos) == '.') {
+                int fieldStart = ++pos;
+                pos = wordEnd(pos);
+                String name = text.substring(fieldStart, pos).toUpperCase(Locale.ROOT);
+                try {
+                    field = Field.valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    throw error("Unknown field '" + name.toLowerCase(Locale.ROOT) + "', use last, bid, ask or volume");
+                }
+            }
+            symbols.add(symbol);
+            return new Ref(symbol, field);
+        }
+
+        String peek() {
+            skipSpaces();
+            return pos < text.length() ? text.substring(pos, wordEnd(pos) == pos ? pos + 1 : wordEnd(pos)) : null;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (pos + 1) + " of expression");
+        }
+
+        private boolean acceptWord(String word) {
+            skipSpaces();
+            int end = wordEnd(pos);
+            if (end - pos == word.length() && text.regionMatches(true, pos, word, 0, word.length())) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        private String acceptComparison() {
+            skipSpaces();
+            if (pos >= text.length()) return null;
+            char c = text.charAt(pos);
+            if (c == '=' || c == '!') {
+                throw error("Equality isn't supported on prices; use <= / >= or a range");
+            }
+            if (c != '<' && c != '>') return null;
+            boolean orEqual = pos + 1 < text.length() && text.charAt(pos + 1) == '=';
+            pos += orEqual ? 2 : 1;
+            return orEqual ? c + "=" : String.valueOf(c);
+        }
+
+        private char acceptOperator(String operators) {
+            skipSpaces();
+            if (pos < text.length() && operators.indexOf(text.charAt(pos)) >= 0) {
+                return text.charAt(pos++);
+            }
+            return 0;
+        }
+
+        private int wordEnd(int from) {
+            int end = from;
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) end++;
+            return end;
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        private Node requireBoolean(Node node, String operator) {
+            if (!node.isBoolean()) {
+                throw error(operator + " needs comparisons on both sides");
+            }
+            return node;
+        }
+
+        private Node requireNumber(Node node, Object operator) {
+            if (node.isBoolean()) {
+                throw error("'" + operator + "' needs numbers on both sides");
+            }
+            return node;
+        }
+
+        private Node fold(Arith arith) {
+            if (arith.left() instanceof Num l && arith.right() instanceof Num r) {
+                double value = switch (arith.op()) {
+                    case '+' -> l.value() + r.value();
+                    case '-' -> l.value() - r.value();
+                    case '*' -> l.value() * r.value();
+                    default -> l.value() / r.value();
+                };
+                if (!Double.isFinite(value)) {
+                    throw error("Constant part doesn't evaluate to a number");
+                }
+                return new Num(value);
+            }
+            return arith;
+        }
+    }
+}
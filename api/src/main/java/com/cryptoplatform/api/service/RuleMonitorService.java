@@ -1,150 +1,295 @@
 package com.cryptoplatform.api.service;
 
+import com.cryptoplatform.api.history.PriceHistoryService;
 import com.cryptoplatform.api.model.AgentRule;
 import com.cryptoplatform.api.model.Order;
 import com.cryptoplatform.api.model.Position;
+import com.cryptoplatform.api.model.Ticker;
 import com.cryptoplatform.api.repository.AgentRuleRepository;
+import com.cryptoplatform.api.websocket.PriceFeed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
+/**
+ * Fires agent rules as ticks arrive, on price thresholds or on the rolling indicators
+ * (percent moves, EMA crosses) the index keeps per symbol.
+ *
+ * Rules are split into shards by id and each instance only watches the rules of the
+ * shards it leases through {@link RuleShardLeases}. Those rules live in a
+ * {@link RuleTriggerIndex}, so each tick only touches the rules whose threshold it
+ * crosses and a rule fires on the first tick that meets it. As a {@link PriceFeed},
+ * the monitor gets the ticks of every symbol it has rules for from the per-symbol
+ * Redis channels, independently of which instance consumes the trade stream.
+ *
+ * The index is rebuilt from the database whenever the owned shards change and every
+ * rules.reload-ms, which picks up rules changed on other instances and re-arms rules
+ * whose execution failed; changes made here apply immediately through {@link AgentRuleEvent}.
+ *
+ * Fired rules are handed to the {@link RuleExecutor}, so a slow order never holds up the
+ * tick thread; they run one at a time per account. Before placing an order the monitor
+ * claims the rule's idempotency key in Redis, so a rule caught by two owners during a shard
+ * handover still executes once. The order is placed outside any transaction of the monitor
+ * (a live order is an HTTP call to Kraken that can't be rolled back), and only once it is
+ * in is the rule marked executed, in a transaction of its own.
+ */
 @Service
-public class RuleMonitorService {
+public class RuleMonitorService implements PriceFeed {
 
     private static final Logger log = LoggerFactory.getLogger(RuleMonitorService.class);
 
+    private static final String EXECUTION_PREFIX = "rules:execution:";
+    // Outlives any retry of a rule that executed but couldn't be marked inactive
+    private static final Duration EXECUTION_KEY_TTL = Duration.ofDays(1);
+
     private final AgentRuleRepository ruleRepository;
-    private final MarketService marketService;
     private final TradingServiceRouter tradingService;
+    private final RuleShardLeases leases;
+    private final StringRedisTemplate redisTemplate;
+    private final RuleExecutor ruleExecutor;
+    private final MarketService marketService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final RuleTriggerIndex index;
+    // Symbols with rules as of the last reload, guarded by this
+    private Set<String> watchedSymbols = new HashSet<>();
+    // Rules fired and not yet done executing; a reload must not re-arm them
+    private final Set<Long> executing = ConcurrentHashMap.newKeySet();
+
+    private volatile WatchListener watchListener;
 
     public RuleMonitorService(AgentRuleRepository ruleRepository, 
-                             MarketService marketService,
-                             TradingServiceRouter tradingService) {
+                             TradingServiceRouter tradingService,
+                             RuleShardLeases leases,
+                             StringRedisTemplate redisTemplate,
+                             RuleExecutor ruleExecutor,
+                             PlatformTransactionManager transactionManager,
+                             PriceHistoryService priceHistoryService,
+                             MarketService marketService) {
         this.ruleRepository = ruleRepository;
-        this.marketService = marketService;
         this.tradingService = tradingService;
+        this.leases = leases;
+        this.redisTemplate = redisTemplate;
+        this.ruleExecutor = ruleExecutor;
+        this.marketService = marketService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.index = new RuleTriggerIndex((symbol, from, to) ->
+                priceHistoryService.getCandles(symbol, from, to, PriceHistoryService.Interval.M1),
+                System::currentTimeMillis);
+        leases.setListener(owned -> reloadRules());
+    }
+
+    @Override
+    public void setWatchListener(WatchListener watchListener) {
+        this.watchListener = watchListener;
+    }
+
+    @Override
+    public boolean isWatched(String symbol) {
+        return index.hasRules(symbol);
     }
 
-    @Scheduled(fixedDelay = 10000) // Run every 10 seconds
-    @Transactional
-    public void checkAndExecuteRules() {
+    @Scheduled(fixedDelayString = "${rules.reload-ms:30000}")
+    public synchronized void reloadRules() {
         try {
-            List<AgentRule> activeRules = ruleRepository.findByIsActive(true);
-            
-            log.info("Checking {} active trading rules", activeRules.size());
-            
-            for (AgentRule rule : activeRules) {
+            List<RuleTriggerIndex.Trigger> triggers = ruleRepository.findByIsActive(true).stream()
+                    .filter(rule -> leases.owns(rule.getId()) && !executing.contains(rule.getId()))
+                    .map(this::toTrigger)
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            index.replaceAll(triggers);
+            Set<String> previous = watchedSymbols;
+            watchedSymbols = new HashSet<>();
+            triggers.forEach(trigger -> watchedSymbols.addAll(trigger.symbols()));
+
+            // Follow symbols that gained or lost all their rules
+            Set<String> changed = new HashSet<>(previous);
+            changed.addAll(watchedSymbols);
+            changed.removeIf(symbol -> previous.contains(symbol) && watchedSymbols.contains(symbol));
+            changed.forEach(this::notifyWatchChanged);
+
+            log.debug("Watching {} active trading rules in shards {}", triggers.size(), leases.getOwnedShards());
+        } catch (Exception e) {
+            log.error("Error reloading trading rules: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRuleChanged(AgentRuleEvent event) {
+        AgentRule rule = event.rule();
+        RuleTriggerIndex.Trigger trigger;
+        if (Boolean.TRUE.equals(rule.getIsActive()) && leases.owns(rule.getId())
+                && (trigger = toTrigger(rule)) != null) {
+            List<String> newSymbols = trigger.symbols().stream().filter(symbol -> !index.hasRules(symbol)).toList();
+            index.add(trigger);
+            if (!newSymbols.isEmpty()) {
+                synchronized (this) {
+                    watchedSymbols.addAll(newSymbols);
+                }
+                newSymbols.forEach(this::notifyWatchChanged);
+            }
+        } else {
+            index.remove(rule.getId());
+        }
+    }
+
+    /**
+     * Queue the rules the tick satisfies for execution. They leave the index
+     * as they fire, so a rule runs at most once per arming.
+     */
+    @Override
+    public void onTick(Ticker ticker) {
+        if (ticker.last().signum() <= 0) return; // Missing price, not a crash to zero
+        for (RuleTriggerIndex.Trigger trigger : index.fire(ticker)) {
+            executing.add(trigger.ruleId());
+            ruleExecutor.submit(trigger.userId(), () -> {
                 try {
-                    checkRule(rule);
+                    checkRule(trigger, ticker);
                 } catch (Exception e) {
-                    log.error("Error checking rule {}: {}", rule.getId(), e.getMessage());
+                    log.error("Error checking rule {}: {}", trigger.ruleId(), e.getMessage());
+                } finally {
+                    executing.remove(trigger.ruleId());
                 }
-            }
-        } catch (Exception e) {
-            log.error("Error in rule monitoring: {}", e.getMessage());
+            });
         }
     }
 
-    private void checkRule(AgentRule rule) {
-        // Get current price
-        BigDecimal currentPrice;
+    private void checkRule(RuleTriggerIndex.Trigger trigger, Ticker ticker) {
+        // The lease may have moved since the rule was indexed
+        if (!leases.owns(trigger.ruleId())) {
+            return;
+        }
+        // The index can lag a cancellation made on another instance
+        AgentRule rule = ruleRepository.findById(trigger.ruleId()).orElse(null);
+        if (rule == null || !Boolean.TRUE.equals(rule.getIsActive())) {
+            return;
+        }
+
+        // An expression rule fires on ticks of every symbol it reads, but trades its own
+        BigDecimal currentPrice = rule.getSymbol().equals(ticker.symbol())
+                ? ticker.last()
+                : marketService.getLatestPrice(rule.getSymbol())
+                        .map(Ticker::last)
+                        .filter(price -> price.signum() > 0)
+                        .orElse(null);
+        if (currentPrice == null) {
+            // Nothing is claimed; the next reload re-arms the rule
+            log.error("Rule {} triggered but {} has no price, not executing", rule.getId(), rule.getSymbol());
+            return;
+        }
+
+        String executionKey = EXECUTION_PREFIX + rule.getId();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(executionKey, leases.getInstanceId(), EXECUTION_KEY_TTL))) {
+            log.info("Rule {} already executing or executed elsewhere, skipping", rule.getId());
+            return;
+        }
+
+        log.info("Rule {} triggered! Current price: {}, Condition: {}", rule.getId(), currentPrice,
+                rule.describeCondition());
+        Order order;
         try {
-            currentPrice = marketService.getCurrentPrice(rule.getSymbol());
+            order = placeOrder(rule, currentPrice);
         } catch (Exception e) {
-            log.warn("Could not get price for {}, skipping rule {}", rule.getSymbol(), rule.getId());
+            // Nothing was placed; the next reload re-arms the rule for a later crossing
+            log.error("Failed to execute rule {}: {}", rule.getId(), e.getMessage());
+            redisTemplate.delete(executionKey);
             return;
         }
-        
-        boolean shouldExecute = false;
-        
-        // Check if condition is met
-        switch (rule.getCondition()) {
-            case PRICE_ABOVE:
-                if (currentPrice.compareTo(rule.getTargetPrice()) >= 0) {
-                    shouldExecute = true;
-                }
-                break;
-            case PRICE_BELOW:
-                if (currentPrice.compareTo(rule.getTargetPrice()) <= 0) {
-                    shouldExecute = true;
-                }
-                break;
-            case PRICE_EQUALS:
-                // Use a small tolerance for equality (e.g., within 0.1%)
-                BigDecimal tolerance = rule.getTargetPrice().multiply(new BigDecimal("0.001"));
-                if (currentPrice.subtract(rule.getTargetPrice()).abs().compareTo(tolerance) <= 0) {
-                    shouldExecute = true;
-                }
-                break;
-        }
-        
-        if (shouldExecute) {
-            log.info("Rule {} triggered! Current price: {}, Target: {}", 
-                    rule.getId(), currentPrice, rule.getTargetPrice());
-            executeRule(rule, currentPrice);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                rule.setIsActive(false);
+                rule.setExecutedAt(LocalDateTime.now());
+                ruleRepository.save(rule);
+            });
+            log.info("Rule {} executed successfully. Order ID: {}", rule.getId(), order.getId());
+        } catch (Exception e) {
+            // The order is in; the execution key keeps the still-active rule from firing again
+            log.error("Rule {} executed but could not be marked inactive: {}", rule.getId(), e.getMessage());
         }
     }
 
-    private void executeRule(AgentRule rule, BigDecimal currentPrice) {
+    private RuleTriggerIndex.Trigger toTrigger(AgentRule rule) {
         try {
-            BigDecimal quantity;
-            
-            // Handle different amount types
-            if (rule.getAmountType() == null || rule.getAmountType() == AgentRule.AmountType.USD) {
-                // Dollar amount (backward compatibility for existing rules)
-                quantity = rule.getAmount().divide(currentPrice, 8, RoundingMode.HALF_UP);
-            } else if (rule.getAmountType() == AgentRule.AmountType.CRYPTO) {
-                // Crypto quantity
-                quantity = rule.getAmount();
-            } else if (rule.getAmountType() == AgentRule.AmountType.ALL) {
-                // Sell/buy entire position
-                if (rule.getAction() == AgentRule.Action.SELL) {
-                    // Query user's position
-                    List<Position> positions = tradingService.getPortfolio(rule.getUser().getId());
-                    Position position = positions.stream()
-                            .filter(p -> p.getSymbol().equals(rule.getSymbol()))
-                            .findFirst()
-                            .orElseThrow(() -> new RuntimeException("No position found for " + rule.getSymbol()));
-                    
-                    if (position.getQuantity().compareTo(BigDecimal.ZERO) <= 0) {
-                        throw new RuntimeException("Insufficient holdings for " + rule.getSymbol());
-                    }
-                    quantity = position.getQuantity();
-                } else {
-                    // ALL is only valid for SELL
-                    throw new IllegalStateException("ALL amount type is only supported for SELL rules");
+            return RuleTriggerIndex.Trigger.of(rule);
+        } catch (IllegalArgumentException e) {
+            log.error("Skipping rule {}: {}", rule.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void notifyWatchChanged(String symbol) {
+        WatchListener listener = watchListener;
+        if (listener != null) {
+            listener.onWatchChanged(symbol);
+        }
+    }
+
+    // Committed (paper) or accepted by Kraken (live) once this returns
+    private Order placeOrder(AgentRule rule, BigDecimal currentPrice) {
+        BigDecimal quantity = orderQuantity(rule, currentPrice, symbol -> tradingService.getPortfolio(rule.getUser().getId()).stream()
+                .filter(p -> p.getSymbol().equals(symbol))
+                .findFirst()
+                .map(Position::getQuantity)
+                .orElseThrow(() -> new RuntimeException("No position found for " + symbol)));
+        
+        // Create trade request
+        TradeRequest request = new TradeRequest();
+        request.setSymbol(rule.getSymbol());
+        request.setSide(rule.getAction() == AgentRule.Action.BUY ? Order.Side.BUY : Order.Side.SELL);
+        request.setType(Order.Type.MARKET);
+        request.setQuantity(quantity);
+        
+        // Execute trade
+        return tradingService.placeOrder(rule.getUser().getId(), request);
+    }
+
+    /**
+     * Quantity a triggered rule orders at the given price; shared with backtests so
+     * they size orders exactly as live execution does.
+     *
+     * @param heldQuantity position in a symbol, only asked for ALL
+     */
+    static BigDecimal orderQuantity(AgentRule rule, BigDecimal currentPrice, Function<String, BigDecimal> heldQuantity) {
+        // Handle different amount types
+        if (rule.getAmountType() == null || rule.getAmountType() == AgentRule.AmountType.USD) {
+            // Dollar amount (backward compatibility for existing rules)
+            return rule.getAmount().divide(currentPrice, 8, RoundingMode.HALF_UP);
+        } else if (rule.getAmountType() == AgentRule.AmountType.CRYPTO) {
+            // Crypto quantity
+            return rule.getAmount();
+        } else if (rule.getAmountType() == AgentRule.AmountType.ALL) {
+            // Sell/buy entire position
+            if (rule.getAction() == AgentRule.Action.SELL) {
+                BigDecimal held = heldQuantity.apply(rule.getSymbol());
+                if (held.compareTo(BigDecimal.ZERO) <= 0) {
+                    throw new RuntimeException("Insufficient holdings for " + rule.getSymbol());
                 }
+                return held;
             } else {
-                throw new IllegalArgumentException("Invalid amount type: " + rule.getAmountType());
+                // ALL is only valid for SELL
+                throw new IllegalStateException("ALL amount type is only supported for SELL rules");
             }
-            
-            // Create trade request
-            TradeRequest request = new TradeRequest();
-            request.setSymbol(rule.getSymbol());
-            request.setSide(rule.getAction() == AgentRule.Action.BUY ? Order.Side.BUY : Order.Side.SELL);
-            request.setType(Order.Type.MARKET);
-            request.setQuantity(quantity);
-            
-            // Execute trade
-            Order order = tradingService.placeOrder(rule.getUser().getId(), request);
-            
-            // Mark rule as executed
-            rule.setIsActive(false);
-            rule.setExecutedAt(LocalDateTime.now());
-            ruleRepository.save(rule);
-            
-            log.info("Rule {} executed successfully. Order ID: {}", rule.getId(), order.getId());
-            
-        } catch (Exception e) {
-            log.error("Failed to execute rule {}: {}", rule.getId(), e.getMessage());
-            // Rule remains active to retry later
+        } else {
+            throw new IllegalArgumentException("Invalid amount type: " + rule.getAmountType());
         }
     }
 }
@@ -0,0 +1,155 @@
+package com.cryptoplatform.api.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Splits agent rules into rules.shards shards by rule id and hands the shards out to
+ * API instances through Redis leases, so each rule is watched by one instance.
+ *
+ * Every instance heartbeats into a members set and aims for an equal share of the
+ * shards. On each round it renews the leases it holds, gives back any above its
+ * share so newcomers can pick them up, and takes free shards up to its share. A
+ * shard of an instance that died frees up when its lease expires
+ * (rules.lease-ms), and the survivors take it over on their next round.
+ *
+ * A lease can still lapse while its old owner is mid-execution, so shard ownership
+ * alone doesn't guarantee a single execution; {@link RuleMonitorService} also claims
+ * an idempotency key per execution.
+ */
+@Component
+public class RuleShardLeases {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleShardLeases.class);
+
+    private static final String LEASE_PREFIX = "rules:lease:";
+    private static final String MEMBERS_KEY = "rules:members";
+
+    private static final DefaultRedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final DefaultRedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    /**
+     * Told after the set of owned shards changed.
+     */
+    public interface Listener {
+        void onShardsChanged(Set<Integer> owned);
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final int shards;
+    private final long leaseMs;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile Set<Integer> owned = Set.of();
+    private volatile Listener listener;
+
+    public RuleShardLeases(StringRedisTemplate redisTemplate,
+                           @Value("${rules.shards:32}") int shards,
+                           @Value("${rules.lease-ms:15000}") long leaseMs) {
+        this.redisTemplate = redisTemplate;
+        this.shards = Math.max(1, shards);
+        this.leaseMs = leaseMs;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public int shardOf(long ruleId) {
+        // Spread sequential ids over the shards
+        return Math.floorMod(ruleId * 0x9E3779B97F4A7C15L >>> 32, shards);
+    }
+
+    public boolean owns(long ruleId) {
+        return owned.contains(shardOf(ruleId));
+    }
+
+    public Set<Integer> getOwnedShards() {
+        return owned;
+    }
+
+    @Scheduled(fixedDelayString = "${rules.lease-renew-ms:5000}")
+    public synchronized void rebalance() {
+        TreeSet<Integer> next = new TreeSet<>();
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(MEMBERS_KEY, instanceId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(MEMBERS_KEY, 0, now - leaseMs);
+            Long members = redisTemplate.opsForZSet().zCard(MEMBERS_KEY);
+            int share = (int) Math.ceil((double) shards / Math.max(1, members == null ? 1 : members));
+
+            for (int shard : owned) {
+                if (renew(shard)) next.add(shard);
+            }
+            while (next.size() > share) {
+                int extra = next.last();
+                release(extra);
+                next.remove(extra);
+            }
+            // Start from a per-instance offset so instances don't all race for shard 0
+            int offset = Math.floorMod(instanceId.hashCode(), shards);
+            for (int i = 0; i < shards && next.size() < share; i++) {
+                int shard = (offset + i) % shards;
+                if (!next.contains(shard) && acquire(shard)) next.add(shard);
+            }
+        } catch (Exception e) {
+            // Without Redis we can't prove ownership; stand down until it's back
+            log.error("Rule shard lease round failed, releasing all shards: {}", e.getMessage());
+            next.clear();
+        }
+
+        if (!next.equals(owned)) {
+            log.info("Rule shards owned by {}: {}", instanceId, next);
+            owned = Set.copyOf(next);
+            Listener current = listener;
+            if (current != null) current.onShardsChanged(owned);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void releaseAll() {
+        try {
+            for (int shard : owned) {
+                release(shard);
+            }
+            redisTemplate.opsForZSet().remove(MEMBERS_KEY, instanceId);
+        } catch (Exception e) {
+            log.warn("Failed to release rule shards, they expire in {} ms: {}", leaseMs, e.getMessage());
+        }
+        owned = Set.of();
+    }
+
+    private boolean acquire(int shard) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(LEASE_PREFIX + shard, instanceId, Duration.ofMillis(leaseMs)));
+    }
+
+    private boolean renew(int shard) {
+        Long renewed = redisTemplate.execute(RENEW, List.of(LEASE_PREFIX + shard), instanceId, String.valueOf(leaseMs));
+        return renewed != null && renewed == 1;
+    }
+
+    private void release(int shard) {
+        redisTemplate.execute(RELEASE, List.of(LEASE_PREFIX + shard), instanceId);
+    }
+}
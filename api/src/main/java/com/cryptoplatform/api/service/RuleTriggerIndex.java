@@ -0,0 +1,295 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.Ticker;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Active rules, per symbol, ordered by threshold.
+ *
+ * PRICE_ABOVE targets sit in an ascending map and PRICE_BELOW targets in a
+ * descending one, so the rules a price crosses are always a head of the map:
+ * a tick that crosses nothing costs one key comparison per map. PRICE_EQUALS
+ * targets are range-scanned around the price. VOLUME_ABOVE works like
+ * PRICE_ABOVE on the 24h volume, and percent moves keep an ascending map of
+ * percentages per window, read against the symbol's {@link SymbolIndicators}.
+ * EMA crosses are grouped by period and fire together. EXPRESSION rules live in
+ * {@link ExpressionTriggers}, under every symbol they read.
+ */
+class RuleTriggerIndex {
+
+    // Same tolerance the polling monitor used: within 0.1% of the target
+    static final BigDecimal EQUALS_TOLERANCE = new BigDecimal("0.001");
+
+    /**
+     * The part of an {@link AgentRule} needed to decide when it fires.
+     */
+    record Trigger(long ruleId, long userId, String symbol, AgentRule.Condition condition,
+                   BigDecimal targetPrice, int period, RuleExpression expression) {
+
+        /**
+         * Throws IllegalArgumentException when the rule's expression no longer parses.
+         */
+        static Trigger of(AgentRule rule) {
+            // Stored expressions are canonical, with resolved symbols
+            RuleExpression expression = rule.getCondition() == AgentRule.Condition.EXPRESSION
+                    ? RuleExpression.parse(rule.getExpression(), symbol -> symbol)
+                    : null;
+            return new Trigger(rule.getId(), rule.getUser().getId(), rule.getSymbol(), rule.getCondition(),
+                    rule.getTargetPrice(), rule.getConditionPeriod() == null ? 0 : rule.getConditionPeriod(),
+                    expression);
+        }
+
+        /**
+         * Symbols whose ticks can fire the rule.
+         */
+        Set<String> symbols() {
+            return expression != null ? expression.symbols() : Set.of(symbol);
+        }
+    }
+
+    private final SymbolIndicators.BarSource bars;
+    private final LongSupplier clock;
+    // Entries outlive their rules so indicator state survives a reload
+    private final Map<String, SymbolTriggers> bySymbol = new ConcurrentHashMap<>();
+    private final Map<Long, Trigger> byId = new ConcurrentHashMap<>();
+    private final ExpressionTriggers expressions = new ExpressionTriggers();
+
+    RuleTriggerIndex() {
+        this((symbol, from, to) -> List.of(), System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the time indicators are seeded up to; a backtest passes its start
+     */
+    RuleTriggerIndex(SymbolIndicators.BarSource bars, LongSupplier clock) {
+        this.bars = bars;
+        this.clock = clock;
+    }
+
+    void add(Trigger trigger) {
+        remove(trigger.ruleId());
+        if (trigger.expression() != null) {
+            byId.put(trigger.ruleId(), trigger);
+            expressions.add(trigger);
+            return;
+        }
+        SymbolTriggers triggers = bySymbol.computeIfAbsent(trigger.symbol(),
+                s -> new SymbolTriggers(new SymbolIndicators(s, bars)));
+        // Seeding may read history; do it before the symbol's triggers are locked
+        triggers.indicators.require(trigger.condition(), trigger.period(), clock.getAsLong());
+        byId.put(trigger.ruleId(), trigger);
+        triggers.add(trigger);
+    }
+
+    void remove(long ruleId) {
+        Trigger trigger = byId.remove(ruleId);
+        if (trigger != null && trigger.expression() != null) {
+            expressions.remove(ruleId);
+        } else if (trigger != null) {
+            SymbolTriggers triggers = bySymbol.get(trigger.symbol());
+            if (triggers != null) triggers.remove(trigger);
+        }
+    }
+
+    boolean contains(long ruleId) {
+        return byId.containsKey(ruleId);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * Whether any rule of the symbol is waiting to fire.
+     */
+    boolean hasRules(String symbol) {
+        SymbolTriggers triggers = bySymbol.get(symbol);
+        return (triggers != null && !triggers.isEmpty()) || expressions.reads(symbol);
+    }
+
+    /**
+     * Replace the whole index, e.g. with the active rules from the database.
+     */
+    synchronized void replaceAll(Collection<Trigger> triggers) {
+        for (Long ruleId : List.copyOf(byId.keySet())) {
+            remove(ruleId);
+        }
+        triggers.forEach(this::add);
+    }
+
+    /**
+     * Remove and return the rules of the symbol that the tick satisfies.
+     */
+    List<Trigger> fire(Ticker ticker) {
+        SymbolTriggers triggers = bySymbol.get(ticker.symbol());
+        List<Trigger> fired = triggers == null ? Collections.emptyList() : triggers.fire(ticker);
+        List<Trigger> firedExpressions = expressions.fire(ticker);
+        if (!firedExpressions.isEmpty()) {
+            fired = new ArrayList<>(fired);
+            fired.addAll(firedExpressions);
+        }
+        for (Trigger trigger : fired) {
+            byId.remove(trigger.ruleId(), trigger);
+        }
+        return fired;
+    }
+
+    // Threshold -> Rules at that threshold, guarded by synchronizing on the instance
+    private static final class SymbolTriggers {
+        final SymbolIndicators indicators;
+        private final NavigableMap<BigDecimal, Map<Long, Trigger>> above = new TreeMap<>();
+        private final NavigableMap<BigDecimal, Map<Long, Trigger>> below = new TreeMap<>(Collections.reverseOrder());
+        private final NavigableMap<BigDecimal, Map<Long, Trigger>> equal = new TreeMap<>();
+        private final NavigableMap<BigDecimal, Map<Long, Trigger>> volumeAbove = new TreeMap<>();
+        // Window minutes / EMA periods -> Threshold -> Rules
+        private final Map<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> drops = new HashMap<>();
+        private final Map<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> rises = new HashMap<>();
+        private final Map<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> emaAbove = new HashMap<>();
+        private final Map<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> emaBelow = new HashMap<>();
+
+        SymbolTriggers(SymbolIndicators indicators) {
+            this.indicators = indicators;
+        }
+
+        synchronized void add(Trigger trigger) {
+            mapFor(trigger, true)
+                    .computeIfAbsent(trigger.targetPrice(), p -> new LinkedHashMap<>())
+                    .put(trigger.ruleId(), trigger);
+        }
+
+        synchronized void remove(Trigger trigger) {
+            NavigableMap<BigDecimal, Map<Long, Trigger>> map = mapFor(trigger, false);
+            if (map == null) return;
+            Map<Long, Trigger> atPrice = map.get(trigger.targetPrice());
+            if (atPrice != null && atPrice.remove(trigger.ruleId()) != null && atPrice.isEmpty()) {
+                map.remove(trigger.targetPrice());
+                if (map.isEmpty() && trigger.condition().hasPeriod()) {
+                    byPeriod(trigger.condition()).remove(trigger.period());
+                }
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return above.isEmpty() && below.isEmpty() && equal.isEmpty() && volumeAbove.isEmpty()
+                    && drops.isEmpty() && rises.isEmpty() && emaAbove.isEmpty() && emaBelow.isEmpty();
+        }
+
+        synchronized List<Trigger> fire(Ticker ticker) {
+            BigDecimal price = ticker.last();
+            double last = price.doubleValue();
+            // Under this lock, so the indicators hold this tick while the rules read them
+            indicators.update(ticker.tsEpochMs(), last);
+
+            List<Trigger> fired = new ArrayList<>();
+            // Targets <= price (ascending) and targets >= price (descending) are both heads
+            drain(above.headMap(price, true), fired);
+            drain(below.headMap(price, true), fired);
+            if (ticker.volume24h() != null) {
+                drain(volumeAbove.headMap(ticker.volume24h(), true), fired);
+            }
+
+            if (!equal.isEmpty()) {
+                // |price - target| <= target * tolerance  <=>  price / (1 + tol) <= target <= price / (1 - tol),
+                // widened slightly for rounding and then checked exactly
+                BigDecimal low = price.divide(BigDecimal.ONE.add(EQUALS_TOLERANCE.multiply(new BigDecimal("1.01"))), MathContext.DECIMAL64);
+                BigDecimal high = price.divide(BigDecimal.ONE.subtract(EQUALS_TOLERANCE.multiply(new BigDecimal("1.01"))), MathContext.DECIMAL64);
+                Iterator<Map.Entry<BigDecimal, Map<Long, Trigger>>> candidates =
+                        equal.subMap(low, true, high, true).entrySet().iterator();
+                while (candidates.hasNext()) {
+                    Map.Entry<BigDecimal, Map<Long, Trigger>> entry = candidates.next();
+                    BigDecimal target = entry.getKey();
+                    if (price.subtract(target).abs().compareTo(target.multiply(EQUALS_TOLERANCE)) <= 0) {
+                        fired.addAll(entry.getValue().values());
+                        candidates.remove();
+                    }
+                }
+            }
+
+            // Percent moves: thresholds <= the move from the window's extreme are a head
+            Iterator<Map.Entry<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>>> windows = drops.entrySet().iterator();
+            while (windows.hasNext()) {
+                Map.Entry<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> entry = windows.next();
+                double high = indicators.high(entry.getKey());
+                if (high > 0) {
+                    drain(entry.getValue().headMap(BigDecimal.valueOf((high - last) / high * 100), true), fired);
+                    if (entry.getValue().isEmpty()) windows.remove();
+                }
+            }
+            windows = rises.entrySet().iterator();
+            while (windows.hasNext()) {
+                Map.Entry<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> entry = windows.next();
+                double low = indicators.low(entry.getKey());
+                if (low > 0) {
+                    drain(entry.getValue().headMap(BigDecimal.valueOf((last - low) / low * 100), true), fired);
+                    if (entry.getValue().isEmpty()) windows.remove();
+                }
+            }
+
+            Iterator<Map.Entry<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>>> crosses = emaAbove.entrySet().iterator();
+            while (crosses.hasNext()) {
+                Map.Entry<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> entry = crosses.next();
+                if (indicators.crossedAbove(entry.getKey())) {
+                    drain(entry.getValue(), fired);
+                    crosses.remove();
+                }
+            }
+            crosses = emaBelow.entrySet().iterator();
+            while (crosses.hasNext()) {
+                Map.Entry<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> entry = crosses.next();
+                if (indicators.crossedBelow(entry.getKey())) {
+                    drain(entry.getValue(), fired);
+                    crosses.remove();
+                }
+            }
+            return fired;
+        }
+
+        private static void drain(NavigableMap<BigDecimal, Map<Long, Trigger>> crossed, List<Trigger> fired) {
+            if (crossed.isEmpty()) return;
+            for (Map<Long, Trigger> atPrice : crossed.values()) {
+                fired.addAll(atPrice.values());
+            }
+            crossed.clear();
+        }
+
+        // Null when create is false and the trigger's period has no rules
+        private NavigableMap<BigDecimal, Map<Long, Trigger>> mapFor(Trigger trigger, boolean create) {
+            return switch (trigger.condition()) {
+                case PRICE_ABOVE -> above;
+                case PRICE_BELOW -> below;
+                case PRICE_EQUALS -> equal;
+                case VOLUME_ABOVE -> volumeAbove;
+                case EXPRESSION -> throw new IllegalArgumentException("Expression rules are kept in ExpressionTriggers");
+                case PERCENT_DROP, PERCENT_RISE, CROSS_ABOVE_EMA, CROSS_BELOW_EMA -> create
+                        ? byPeriod(trigger.condition()).computeIfAbsent(trigger.period(), p -> new TreeMap<>())
+                        : byPeriod(trigger.condition()).get(trigger.period());
+            };
+        }
+
+        private Map<Integer, NavigableMap<BigDecimal, Map<Long, Trigger>>> byPeriod(AgentRule.Condition condition) {
+            return switch (condition) {
+                case PERCENT_DROP -> drops;
+                case PERCENT_RISE -> rises;
+                case CROSS_ABOVE_EMA -> emaAbove;
+                case CROSS_BELOW_EMA -> emaBelow;
+                default -> throw new IllegalArgumentException("No period for " + condition);
+            };
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.Market;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Checks a rule definition before it is saved or backtested, and normalises what the
+ * evaluator reads: symbols resolve to catalog markets, windowed conditions carry a
+ * valid period and expressions are stored in canonical form.
+ */
+@Component
+public class RuleValidator {
+
+    private final MarketCatalog marketCatalog;
+
+    public RuleValidator(MarketCatalog marketCatalog) {
+        this.marketCatalog = marketCatalog;
+    }
+
+    /**
+     * Validate and normalise the rule in place.
+     *
+     * @throws IllegalArgumentException naming the first problem found
+     */
+    public void validate(AgentRule rule) {
+        if (rule.getCondition() == null || rule.getAction() == null || rule.getSymbol() == null) {
+            throw new IllegalArgumentException("symbol, condition and action are required");
+        }
+        rule.setSymbol(resolveSymbol(rule.getSymbol()));
+        if (rule.getTargetPrice() == null) {
+            rule.setTargetPrice(BigDecimal.ZERO);
+        }
+        if (rule.getAmountType() == null) {
+            rule.setAmountType(AgentRule.AmountType.USD);
+        }
+        if (rule.getAmountType() == AgentRule.AmountType.ALL) {
+            if (rule.getAction() != AgentRule.Action.SELL) {
+                throw new IllegalArgumentException("ALL amount type is only supported for SELL rules");
+            }
+            rule.setAmount(BigDecimal.ZERO);
+        } else if (rule.getAmount() == null || rule.getAmount().signum() <= 0) {
+            throw new IllegalArgumentException("amount must be positive");
+        }
+
+        rule.setConditionPeriod(conditionPeriod(rule.getCondition(), rule.getTargetPrice(), rule.getConditionPeriod()));
+        rule.setExpression(rule.getCondition() == AgentRule.Condition.EXPRESSION
+                ? RuleExpression.parse(rule.getExpression() == null ? "" : rule.getExpression(), this::resolveSymbol).toString()
+                : null);
+    }
+
+    // BTC and BTC-USD both name the BTC-USD market
+    private String resolveSymbol(String token) {
+        return marketCatalog.find(token)
+                .or(() -> marketCatalog.find(token + "-USD"))
+                .map(Market::symbol)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown symbol: " + token));
+    }
+
+    private static Integer conditionPeriod(AgentRule.Condition condition, BigDecimal threshold, Integer requested) {
+        if (!condition.hasPeriod()) {
+            return null;
+        }
+        int period = requested == null ? 0 : requested;
+        switch (condition) {
+            case PERCENT_DROP, PERCENT_RISE -> {
+                if (period < 1 || period > SymbolIndicators.MAX_WINDOW_MINUTES) {
+                    throw new IllegalArgumentException("period must be 1 to " + SymbolIndicators.MAX_WINDOW_MINUTES + " minutes for " + condition);
+                }
+                if (threshold.signum() <= 0) {
+                    throw new IllegalArgumentException("targetPrice must be a positive percentage for " + condition);
+                }
+            }
+            default -> {
+                if (period < 2 || period > SymbolIndicators.MAX_EMA_PERIODS) {
+                    throw new IllegalArgumentException("period must be 2 to " + SymbolIndicators.MAX_EMA_PERIODS + " for " + condition);
+                }
+            }
+        }
+        return period;
+    }
+}
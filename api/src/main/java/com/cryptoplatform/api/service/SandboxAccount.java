@@ -0,0 +1,131 @@
+package com.cryptoplatform.api.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Cash and positions a backtest trades against, in memory only. MARKET orders fill
+ * as in {@link PaperTradingService}: at the given price, FEE_RATE charged on the
+ * value, a BUY needs cash for value plus fee and the entry price is the weighted
+ * average of the buys.
+ *
+ * Not thread-safe; a backtest applies its fills from one thread.
+ */
+final class SandboxAccount {
+
+    private static final class Holding {
+        BigDecimal quantity = BigDecimal.ZERO;
+        BigDecimal avgEntryPrice = BigDecimal.ZERO;
+    }
+
+    private BigDecimal cash;
+    private BigDecimal fees = BigDecimal.ZERO;
+    // (sell price - average entry) * quantity over every sell, before fees
+    private BigDecimal closedGain = BigDecimal.ZERO;
+    private final Map<String, Holding> holdings = new LinkedHashMap<>();
+
+    SandboxAccount(BigDecimal startingCash) {
+        this.cash = startingCash;
+    }
+
+    BigDecimal cash() {
+        return cash;
+    }
+
+    BigDecimal fees() {
+        return fees;
+    }
+
+    BigDecimal held(String symbol) {
+        Holding holding = holdings.get(symbol);
+        return holding == null ? BigDecimal.ZERO : holding.quantity;
+    }
+
+    /**
+     * @return the fee charged
+     */
+    BigDecimal buy(String symbol, BigDecimal quantity, BigDecimal price) {
+        BigDecimal totalValue = price.multiply(quantity);
+        BigDecimal fee = totalValue.multiply(PaperTradingService.FEE_RATE);
+        BigDecimal totalCost = totalValue.add(fee);
+        if (cash.compareTo(totalCost) < 0) {
+            throw new RuntimeException("Insufficient funds");
+        }
+        cash = cash.subtract(totalCost);
+        fees = fees.add(fee);
+
+        Holding holding = holdings.computeIfAbsent(symbol, s -> new Holding());
+        BigDecimal totalQty = holding.quantity.add(quantity);
+        if (holding.quantity.compareTo(BigDecimal.ZERO) == 0) {
+            holding.avgEntryPrice = price;
+        } else {
+            BigDecimal oldVal = holding.quantity.multiply(holding.avgEntryPrice);
+            holding.avgEntryPrice = oldVal.add(totalValue).divide(totalQty, 8, RoundingMode.HALF_UP);
+        }
+        holding.quantity = totalQty;
+        return fee;
+    }
+
+    /**
+     * @return the fee charged
+     */
+    BigDecimal sell(String symbol, BigDecimal quantity, BigDecimal price) {
+        Holding holding = holdings.get(symbol);
+        if (holding == null) {
+            throw new RuntimeException("No position found");
+        }
+        if (holding.quantity.compareTo(quantity) < 0) {
+            throw new RuntimeException("Insufficient quantity");
+        }
+        BigDecimal totalValue = price.multiply(quantity);
+        BigDecimal fee = totalValue.multiply(PaperTradingService.FEE_RATE);
+        holding.quantity = holding.quantity.subtract(quantity);
+        closedGain = closedGain.add(price.subtract(holding.avgEntryPrice).multiply(quantity));
+        cash = cash.add(totalValue.subtract(fee));
+        fees = fees.add(fee);
+        return fee;
+    }
+
+    /**
+     * Gains on what was sold, net of every fee paid.
+     */
+    BigDecimal realizedPnl() {
+        return closedGain.subtract(fees);
+    }
+
+    BigDecimal unrealizedPnl(Map<String, BigDecimal> prices) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<String, Holding> entry : holdings.entrySet()) {
+            Holding holding = entry.getValue();
+            if (holding.quantity.signum() == 0) continue;
+            total = total.add(prices.get(entry.getKey()).subtract(holding.avgEntryPrice).multiply(holding.quantity));
+        }
+        return total;
+    }
+
+    BigDecimal equity(Map<String, BigDecimal> prices) {
+        BigDecimal total = cash;
+        for (Map.Entry<String, Holding> entry : holdings.entrySet()) {
+            Holding holding = entry.getValue();
+            if (holding.quantity.signum() == 0) continue;
+            total = total.add(prices.get(entry.getKey()).multiply(holding.quantity));
+        }
+        return total;
+    }
+
+    /**
+     * Equity in doubles, for sampling the curve once a minute.
+     */
+    double equity(ToDoubleFunction<String> marks) {
+        double total = cash.doubleValue();
+        for (Map.Entry<String, Holding> entry : holdings.entrySet()) {
+            Holding holding = entry.getValue();
+            if (holding.quantity.signum() == 0) continue;
+            total += holding.quantity.doubleValue() * marks.applyAsDouble(entry.getKey());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,208 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.Candle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolling indicators of one symbol, shared by every rule on it.
+ *
+ * Rules ask for an indicator when they're indexed: the high / low of the past N
+ * minutes for percent moves, or the N-period EMA of one-minute closes for crosses.
+ * Each distinct indicator is then updated once per tick in O(1) amortized, however
+ * many rules read it. New indicators, and indicators that missed ticks while the
+ * symbol had no rules, are seeded from the recorded one-minute bars, so a rule
+ * doesn't have to wait an hour of ticks before a one-hour window means anything.
+ *
+ * Guarded by synchronizing on the instance.
+ */
+class SymbolIndicators {
+
+    private static final Logger log = LoggerFactory.getLogger(SymbolIndicators.class);
+
+    static final int MAX_WINDOW_MINUTES = 1440;
+    static final int MAX_EMA_PERIODS = 1000;
+    // Seed an EMA with this many periods of bars; the initial value's weight is then e^-6
+    private static final int EMA_SEED_PERIODS = 3;
+    private static final long MINUTE_MS = 60_000L;
+
+    /**
+     * Recorded one-minute bars of the symbol starting in [from, to], in time order.
+     */
+    interface BarSource {
+        List<Candle> minuteBars(String symbol, long from, long to);
+    }
+
+    private final String symbol;
+    private final BarSource bars;
+
+    // Window minutes -> High / low over the window
+    private final Map<Integer, Window> windows = new HashMap<>();
+    // Periods -> EMA of one-minute closes
+    private final Map<Integer, Ema> emas = new HashMap<>();
+
+    SymbolIndicators(String symbol, BarSource bars) {
+        this.symbol = symbol;
+        this.bars = bars;
+    }
+
+    /**
+     * Make sure the indicator the condition reads is maintained, seeding it when needed.
+     */
+    synchronized void require(AgentRule.Condition condition, int period, long nowMs) {
+        long nowMinute = Math.floorDiv(nowMs, MINUTE_MS);
+        switch (condition) {
+            case PERCENT_DROP, PERCENT_RISE -> {
+                Window window = windows.get(period);
+                if (window == null || window.minute < nowMinute - 1) {
+                    window = new Window(period);
+                    for (Candle bar : seedBars(nowMinute - period + 1, nowMs)) {
+                        long minute = Math.floorDiv(bar.tsEpochMs(), MINUTE_MS);
+                        window.add(minute, bar.high().doubleValue(), bar.low().doubleValue());
+                    }
+                    windows.put(period, window);
+                }
+            }
+            case CROSS_ABOVE_EMA, CROSS_BELOW_EMA -> {
+                Ema ema = emas.get(period);
+                if (ema == null || ema.minute < nowMinute - 1) {
+                    ema = new Ema(period);
+                    for (Candle bar : seedBars(nowMinute - (long) EMA_SEED_PERIODS * period, nowMs)) {
+                        ema.add(Math.floorDiv(bar.tsEpochMs(), MINUTE_MS), bar.close().doubleValue());
+                    }
+                    emas.put(period, ema);
+                }
+            }
+            default -> { } // Reads the tick itself
+        }
+    }
+
+    synchronized void update(long tsEpochMs, double price) {
+        long minute = Math.floorDiv(tsEpochMs, MINUTE_MS);
+        for (Window window : windows.values()) {
+            window.add(minute, price, price);
+        }
+        for (Ema ema : emas.values()) {
+            ema.add(minute, price);
+        }
+    }
+
+    /**
+     * Highest price of the past minutes, or NaN when nothing was seen.
+     */
+    synchronized double high(int minutes) {
+        Window window = windows.get(minutes);
+        return window == null || window.highs.isEmpty() ? Double.NaN : window.highs.peekFirst().value();
+    }
+
+    /**
+     * Lowest price of the past minutes, or NaN when nothing was seen.
+     */
+    synchronized double low(int minutes) {
+        Window window = windows.get(minutes);
+        return window == null || window.lows.isEmpty() ? Double.NaN : window.lows.peekFirst().value();
+    }
+
+    /**
+     * Whether the last update moved the price from below the EMA to above it.
+     */
+    synchronized boolean crossedAbove(int periods) {
+        Ema ema = emas.get(periods);
+        return ema != null && ema.crossedAbove;
+    }
+
+    /**
+     * Whether the last update moved the price from above the EMA to below it.
+     */
+    synchronized boolean crossedBelow(int periods) {
+        Ema ema = emas.get(periods);
+        return ema != null && ema.crossedBelow;
+    }
+
+    private List<Candle> seedBars(long fromMinute, long nowMs) {
+        try {
+            return bars.minuteBars(symbol, fromMinute * MINUTE_MS, nowMs);
+        } catch (RuntimeException e) {
+            log.warn("Could not seed indicators of {} from history, starting empty: {}", symbol, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private record Point(long minute, double value) {}
+
+    // Monotonic deques over per-minute extremes: at most one point per minute, the
+    // front is the extreme of the window
+    private static final class Window {
+        final int minutes;
+        final ArrayDeque<Point> highs = new ArrayDeque<>();
+        final ArrayDeque<Point> lows = new ArrayDeque<>();
+        long minute = Long.MIN_VALUE;
+
+        Window(int minutes) {
+            this.minutes = minutes;
+        }
+
+        void add(long tickMinute, double high, double low) {
+            if (tickMinute < minute) return; // Late tick
+            minute = tickMinute;
+            push(highs, tickMinute, high, true);
+            push(lows, tickMinute, low, false);
+            long expired = tickMinute - minutes;
+            while (highs.peekFirst().minute() <= expired) highs.pollFirst();
+            while (lows.peekFirst().minute() <= expired) lows.pollFirst();
+        }
+
+        private static void push(ArrayDeque<Point> points, long minute, double value, boolean max) {
+            Point tail;
+            while ((tail = points.peekLast()) != null && (max ? tail.value() <= value : tail.value() >= value)) {
+                points.pollLast();
+            }
+            // A better point of the same minute already covers this one
+            if (tail == null || tail.minute() != minute) {
+                points.addLast(new Point(minute, value));
+            }
+        }
+    }
+
+    // EMA of closed minutes, and which side of it the price is on
+    private static final class Ema {
+        final int periods;
+        final double alpha;
+        double value;
+        int closes;
+        long minute = Long.MIN_VALUE;
+        double close;
+        int side; // 1 above, -1 below, 0 not known yet
+        boolean crossedAbove, crossedBelow;
+
+        Ema(int periods) {
+            this.periods = periods;
+            this.alpha = 2.0 / (periods + 1);
+        }
+
+        void add(long tickMinute, double price) {
+            if (tickMinute < minute) return; // Late tick
+            if (tickMinute > minute) {
+                if (minute != Long.MIN_VALUE) {
+                    value = closes == 0 ? close : value + alpha * (close - value);
+                    closes++;
+                }
+                minute = tickMinute;
+            }
+            close = price;
+
+            crossedAbove = crossedBelow = false;
+            if (closes < periods) return; // Warming up
+            int now = price > value ? 1 : price < value ? -1 : side;
+            crossedAbove = side < 0 && now > 0;
+            crossedBelow = side > 0 && now < 0;
+            side = now;
+        }
+    }
+}
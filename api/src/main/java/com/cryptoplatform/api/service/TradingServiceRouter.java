@@ -1,7 +1,6 @@
 package com.cryptoplatform.api.service;
 
 import com.cryptoplatform.api.model.User;
-import com.cryptoplatform.api.repository.UserRepository;
 import org.springframework.stereotype.Service;
 
 /**
@@ -13,25 +12,34 @@ public class TradingServiceRouter implements TradingServiceInterface {
     
     private final PaperTradingService paperTradingService;
     private final LiveTradingService liveTradingService;
-    private final UserRepository userRepository;
+    private final UserContextCache userContextCache;
     
     public TradingServiceRouter(
             PaperTradingService paperTradingService,
             LiveTradingService liveTradingService,
-            UserRepository userRepository) {
+            UserContextCache userContextCache) {
         this.paperTradingService = paperTradingService;
         this.liveTradingService = liveTradingService;
-        this.userRepository = userRepository;
+        this.userContextCache = userContextCache;
     }
     
     /**
-     * Get the appropriate trading service based on user's mode
+     * Get the appropriate trading service based on user's mode (from the cached user context)
      */
     private TradingServiceInterface getServiceForUser(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        if (user.getTradingMode() == User.TradingMode.LIVE) {
+        return serviceFor(userContextCache.getById(userId).tradingMode());
+    }
+    
+    /**
+     * Same, with the mode read from the database: a mode switched on another instance
+     * must never send an order to the wrong venue
+     */
+    private TradingServiceInterface getServiceForOrder(Long userId) {
+        return serviceFor(userContextCache.getFresh(userId).tradingMode());
+    }
+    
+    private TradingServiceInterface serviceFor(User.TradingMode mode) {
+        if (mode == User.TradingMode.LIVE) {
             return liveTradingService;
         }
         
@@ -40,7 +48,7 @@ public class TradingServiceRouter implements TradingServiceInterface {
     
     @Override
     public com.cryptoplatform.api.model.Order placeOrder(Long userId, TradeRequest request) {
-        return getServiceForUser(userId).placeOrder(userId, request);
+        return getServiceForOrder(userId).placeOrder(userId, request);
     }
     
     @Override
@@ -55,7 +63,7 @@ public class TradingServiceRouter implements TradingServiceInterface {
     
     @Override
     public void cancelOrder(Long userId, Long orderId) {
-        getServiceForUser(userId).cancelOrder(userId, orderId);
+        getServiceForOrder(userId).cancelOrder(userId, orderId);
     }
     
     @Override
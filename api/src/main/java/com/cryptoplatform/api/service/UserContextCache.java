@@ -0,0 +1,141 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.UserContext;
+import com.cryptoplatform.api.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves and caches {@link UserContext} (id, trading mode, account id).
+ *
+ * A context resolved during an HTTP request is pinned to that request, so the
+ * controller, the router and the trading service all see the same one. Across
+ * requests contexts are shared for a short TTL. Changing the trading mode must
+ * call {@link #invalidate(Long)}, which evicts the user on every instance through
+ * the "user-context:invalidate" channel. Pub/sub can drop that message, so paths
+ * that must not act on a stale mode (placing or cancelling orders) use
+ * {@link #getFresh(Long)} instead.
+ */
+@Component
+public class UserContextCache implements MessageListener {
+
+    public static final String INVALIDATE_CHANNEL = "user-context:invalidate";
+
+    private static final Logger logger = LoggerFactory.getLogger(UserContextCache.class);
+    private static final String REQUEST_ATTRIBUTE = UserContextCache.class.getName() + ".context";
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer container;
+    private final long ttlMs;
+
+    private final Map<Long, CachedContext> byId = new ConcurrentHashMap<>();
+
+    public UserContextCache(UserRepository userRepository, StringRedisTemplate redisTemplate,
+                            RedisMessageListenerContainer tickerChannelContainer,
+                            @Value("${user-context.ttl-ms:10000}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.container = tickerChannelContainer;
+        this.ttlMs = ttlMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        container.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    public UserContext getById(Long userId) {
+        UserContext pinned = fromRequest();
+        if (pinned != null && pinned.userId().equals(userId)) {
+            return pinned;
+        }
+
+        CachedContext cached = byId.get(userId);
+        if (cached != null && !cached.isExpired(System.currentTimeMillis())) {
+            pinToRequest(cached.context());
+            return cached.context();
+        }
+        return getFresh(userId);
+    }
+
+    /**
+     * The context as stored right now, skipping the shared cache (but refreshing it).
+     * Still pinned to the request, so the rest of it sees the same mode.
+     */
+    public UserContext getFresh(Long userId) {
+        UserContext context = userRepository.findContextById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        byId.put(userId, new CachedContext(context, System.currentTimeMillis() + ttlMs));
+        pinToRequest(context);
+        return context;
+    }
+
+    public void invalidate(Long userId) {
+        evict(userId);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, userId.toString());
+        } catch (RuntimeException e) {
+            // Other instances fall back to the TTL; orders re-read the mode anyway
+            logger.warn("Failed to broadcast context invalidation for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            evict(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            logger.error("Ignoring malformed context invalidation {}", body);
+        }
+    }
+
+    private void evict(Long userId) {
+        byId.remove(userId);
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        byId.values().removeIf(cached -> cached.isExpired(now));
+    }
+
+    private UserContext fromRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return null;
+        return (UserContext) attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    private void pinToRequest(UserContext context) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, context, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private record CachedContext(UserContext context, long expiresAtMs) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMs;
+        }
+    }
+}
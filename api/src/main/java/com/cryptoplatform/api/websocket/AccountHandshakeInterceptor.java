@@ -0,0 +1,45 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.security.AuthenticatedUser;
+import com.cryptoplatform.api.security.JwtUtil;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Authenticates the private account WebSocket. Browsers can't set headers on a
+ * WebSocket handshake, so the JWT comes in the "token" query parameter.
+ */
+public class AccountHandshakeInterceptor implements HandshakeInterceptor {
+
+    static final String USER_ATTRIBUTE = "user";
+
+    private final JwtUtil jwtUtil;
+
+    public AccountHandshakeInterceptor(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+        AuthenticatedUser user = token != null ? jwtUtil.authenticate(token) : null;
+        if (user == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(USER_ATTRIBUTE, user);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
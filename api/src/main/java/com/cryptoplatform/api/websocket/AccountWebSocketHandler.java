@@ -0,0 +1,251 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.AccountPnl;
+import com.cryptoplatform.api.security.AuthenticatedUser;
+import com.cryptoplatform.api.service.AccountUpdateEvent;
+import com.cryptoplatform.api.service.PnlService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Private per-user channel (/ws/account?token=...). Pushes order status changes,
+ * fills, position and balance updates from paper trading as they commit, so the
+ * frontend doesn't have to poll the account endpoints.
+ *
+ * Messages: {"type":"order","order":{...}}, {"type":"position","position":{...}},
+ * {"type":"balance","balance":available,"reserved":reserved} and, at most once per
+ * pnl.push-ms while prices move, {"type":"pnl","pnl":{...}} with the paper account
+ * marked to market.
+ *
+ * A user's tabs may be connected to other instances than the one that made the trade,
+ * so the committing instance publishes the messages on the user's pub/sub channel
+ * ("account:<userId>") and every instance forwards them to its own sessions. An
+ * instance is only subscribed to the channels of users connected to it.
+ */
+@Component
+public class AccountWebSocketHandler extends TextWebSocketHandler implements MessageListener {
+
+    public static final String CHANNEL_PREFIX = "account:";
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountWebSocketHandler.class);
+
+    private final ObjectMapper objectMapper;
+    private final PnlService pnlService;
+    private final PriceStreamProperties properties;
+    private final SessionOutbox.Counters counters;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer container;
+    private final Executor writer;
+    private final ExecutorService ownedWriter;
+
+    // User -> Outboxes of that user's open sessions (one per tab)
+    private final Map<Long, Set<SessionOutbox>> outboxesByUser = new ConcurrentHashMap<>();
+    private final Map<WebSocketSession, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+
+    // Users whose channel we're subscribed to, guarded by this
+    private final Set<Long> subscribedUsers = new HashSet<>();
+
+    @Autowired
+    public AccountWebSocketHandler(ObjectMapper objectMapper, PnlService pnlService, PriceStreamProperties properties,
+                                   MeterRegistry meterRegistry, StringRedisTemplate redisTemplate,
+                                   RedisMessageListenerContainer tickerChannelContainer) {
+        this(objectMapper, pnlService, properties, meterRegistry, redisTemplate,
+            tickerChannelContainer, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    AccountWebSocketHandler(ObjectMapper objectMapper, PnlService pnlService, PriceStreamProperties properties,
+                            MeterRegistry meterRegistry, StringRedisTemplate redisTemplate,
+                            RedisMessageListenerContainer tickerChannelContainer, Executor writer) {
+        this.objectMapper = objectMapper;
+        this.pnlService = pnlService;
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.container = tickerChannelContainer;
+        this.writer = writer;
+        this.ownedWriter = writer instanceof ExecutorService executorService ? executorService : null;
+        this.counters = new SessionOutbox.Counters(
+            evictionCounter(meterRegistry, "conflated"),
+            evictionCounter(meterRegistry, "dropped_oldest"),
+            evictionCounter(meterRegistry, "disconnected")
+        );
+    }
+
+    private static Counter evictionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("websocket.account.evictions")
+            .description("Account messages or sessions evicted by the slow-consumer policy")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ownedWriter != null) {
+            ownedWriter.shutdownNow();
+        }
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        AuthenticatedUser user = (AuthenticatedUser) session.getAttributes().get(AccountHandshakeInterceptor.USER_ATTRIBUTE);
+        SessionOutbox outbox = new SessionOutbox(session, properties, writer, counters);
+        outboxes.put(session, outbox);
+        outboxesByUser.computeIfAbsent(user.userId(), id -> ConcurrentHashMap.newKeySet()).add(outbox);
+        syncSubscription(user.userId());
+        logger.info("Account WebSocket connected for user {}: {}", user.userId(), session.getId());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        AuthenticatedUser user = (AuthenticatedUser) session.getAttributes().get(AccountHandshakeInterceptor.USER_ATTRIBUTE);
+        SessionOutbox outbox = outboxes.remove(session);
+        if (outbox == null) return;
+        outbox.close();
+        outboxesByUser.computeIfPresent(user.userId(), (id, userOutboxes) -> {
+            userOutboxes.remove(outbox);
+            return userOutboxes.isEmpty() ? null : userOutboxes;
+        });
+        syncSubscription(user.userId());
+    }
+
+    /**
+     * Reconciles the user's channel subscription with whether they have a session here
+     * right now, so a connect racing the last close still ends in the right state.
+     */
+    private synchronized void syncSubscription(Long userId) {
+        ChannelTopic topic = new ChannelTopic(CHANNEL_PREFIX + userId);
+        if (outboxesByUser.containsKey(userId)) {
+            if (subscribedUsers.add(userId)) {
+                container.addMessageListener(this, topic);
+            }
+        } else if (subscribedUsers.remove(userId)) {
+            container.removeMessageListener(this, topic);
+        }
+    }
+
+    /**
+     * Runs after the trade transaction commits, so clients never see a change that was rolled back.
+     * Local sessions get the messages back from the channel like everyone else's.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountUpdate(AccountUpdateEvent event) {
+        List<TextMessage> messages;
+        try {
+            messages = encode(event);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to encode account update for user {}", event.userId(), e);
+            return;
+        }
+        try {
+            // Published in order on one connection; the container's single dispatch thread keeps that order
+            String channel = CHANNEL_PREFIX + event.userId();
+            for (TextMessage message : messages) {
+                redisTemplate.convertAndSend(channel, message.getPayload());
+            }
+        } catch (RuntimeException e) {
+            // Without Redis at least this instance's sessions hear about it
+            logger.warn("Failed to publish account update for user {}: {}", event.userId(), e.getMessage());
+            deliver(event.userId(), messages);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        try {
+            Long userId = Long.valueOf(channel.substring(CHANNEL_PREFIX.length()));
+            deliver(userId, List.of(new TextMessage(message.getBody())));
+        } catch (NumberFormatException e) {
+            logger.error("Ignoring account update on unexpected channel {}", channel);
+        }
+    }
+
+    private void deliver(Long userId, List<TextMessage> messages) {
+        Set<SessionOutbox> userOutboxes = outboxesByUser.get(userId);
+        if (userOutboxes == null) return;
+        for (SessionOutbox outbox : userOutboxes) {
+            messages.forEach(outbox::offerControl);
+        }
+    }
+
+    /**
+     * Push the valuation of each connected user whose account changed since the last
+     * run. Ticks only update the valuation in place, so however fast prices move a
+     * session gets one pnl message per run.
+     */
+    @Scheduled(fixedDelayString = "${pnl.push-ms:1000}")
+    public void pushPnl() {
+        for (Map.Entry<Long, Set<SessionOutbox>> entry : outboxesByUser.entrySet()) {
+            TextMessage message;
+            try {
+                AccountPnl pnl = pnlService.takeChanged(entry.getKey());
+                if (pnl == null) continue;
+                Map<String, Object> payload = new LinkedHashMap<>();
+                payload.put("type", "pnl");
+                payload.put("pnl", pnl);
+                message = new TextMessage(objectMapper.writeValueAsBytes(payload));
+            } catch (IllegalArgumentException e) {
+                continue; // Live trading: no paper account to value
+            } catch (JsonProcessingException | RuntimeException e) {
+                logger.warn("Failed to push PnL to user {}: {}", entry.getKey(), e.getMessage());
+                continue;
+            }
+            entry.getValue().forEach(outbox -> outbox.offerControl(message));
+        }
+    }
+
+    private List<TextMessage> encode(AccountUpdateEvent event) throws JsonProcessingException {
+        List<TextMessage> messages = new ArrayList<>(3);
+
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("type", "order");
+        order.put("order", event.order());
+        messages.add(new TextMessage(objectMapper.writeValueAsBytes(order)));
+
+        if (event.position() != null) {
+            Map<String, Object> position = new LinkedHashMap<>();
+            position.put("type", "position");
+            position.put("position", event.position());
+            messages.add(new TextMessage(objectMapper.writeValueAsBytes(position)));
+        }
+
+        BigDecimal reserved = event.reserved();
+        Map<String, Object> balance = new LinkedHashMap<>();
+        balance.put("type", "balance");
+        balance.put("balance", event.balance().subtract(reserved));
+        balance.put("reserved", reserved);
+        messages.add(new TextMessage(objectMapper.writeValueAsBytes(balance)));
+
+        return messages;
+    }
+}
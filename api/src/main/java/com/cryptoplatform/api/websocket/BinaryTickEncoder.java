@@ -0,0 +1,133 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Ticker;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Binary, delta-encoded tick frames for one session (opt-in with "format": "binary" on subscribe).
+ *
+ * Frame layout:
+ * <pre>
+ *   byte    frame type (1 = tick)
+ *   varint  symbol id (the market's catalog id, from the "symbolIds" table in the subscribed reply)
+ *   byte    field mask: bit 0 ts, 1 bid, 2 ask, 3 last, 4 volume24h, 5 change24h
+ *   zigzag varint per set bit: value minus the value last sent for that symbol
+ * </pre>
+ * Each field is a long scaled by 10^scale, with the per-field scales of {@link #scales(Market)}
+ * (the "scales" table in the subscribed reply): ts is epoch millis, prices use the market's
+ * price decimals, volume its lot decimals, change {@value #CHANGE_SCALE} decimals. Extra
+ * digits are rounded half-up. The first frame for a symbol carries every field as a delta
+ * from zero. Fields that did not change are left out.
+ *
+ * A tick that has no binary form (a value that doesn't fit a long at its scale, or a
+ * symbol that left the catalog) goes out as the JSON tick frame instead.
+ *
+ * The market of each symbol is pinned the first time the session sees it, so ids and
+ * scales stay those announced to the client even if the catalog reloads. Otherwise not
+ * thread-safe: only the session's writer encodes, and it keeps what was actually sent so
+ * deltas stay correct when ticks are conflated.
+ */
+class BinaryTickEncoder {
+
+    static final int CHANGE_SCALE = 4;
+    static final byte FRAME_TICK = 1;
+
+    private static final int FIELDS = 6;
+    private static final int MAX_FRAME_SIZE = 1 + 5 + 1 + FIELDS * 10;
+
+    private final Function<String, Market> catalog;
+    private final Map<String, Market> markets = new ConcurrentHashMap<>();
+    private final Map<String, long[]> lastSent = new HashMap<>();
+
+    // catalog returns null for symbols it doesn't know
+    BinaryTickEncoder(Function<String, Market> catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Decimal scale of each field, in frame order.
+     */
+    static int[] scales(Market market) {
+        int price = market.priceDecimals();
+        return new int[] { 0, price, price, price, market.lotDecimals(), CHANGE_SCALE };
+    }
+
+    /**
+     * The scaled field values, or null if one doesn't fit in a long.
+     */
+    static long[] scale(Ticker ticker, Market market) {
+        int[] scales = scales(market);
+        try {
+            return new long[] {
+                ticker.tsEpochMs(),
+                scale(ticker.bid(), scales[1]),
+                scale(ticker.ask(), scales[2]),
+                scale(ticker.last(), scales[3]),
+                scale(ticker.volume24h(), scales[4]),
+                scale(ticker.change24h(), scales[5])
+            };
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static long scale(BigDecimal value, int scale) {
+        return value.movePointRight(scale).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * The market this session's frames use for a symbol, or null if it isn't in the catalog.
+     * Called for the subscribed reply as well as by the writer.
+     */
+    Market market(String symbol) {
+        return markets.computeIfAbsent(symbol, catalog);
+    }
+
+    WebSocketMessage<?> encode(EncodedTick tick) {
+        String symbol = tick.ticker().symbol();
+        Market market = market(symbol);
+        long[] values = market != null ? tick.scaled(market) : null;
+        if (values == null) {
+            return tick.json();
+        }
+        long[] previous = lastSent.computeIfAbsent(symbol, s -> new long[FIELDS]);
+
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_FRAME_SIZE);
+        buffer.put(FRAME_TICK);
+        writeVarint(buffer, market.id());
+
+        int maskPosition = buffer.position();
+        buffer.put((byte) 0);
+        int mask = 0;
+        for (int i = 0; i < FIELDS; i++) {
+            long delta = values[i] - previous[i];
+            if (delta != 0) {
+                mask |= 1 << i;
+                writeVarint(buffer, (delta << 1) ^ (delta >> 63)); // zigzag
+                previous[i] = values[i];
+            }
+        }
+        buffer.put(maskPosition, (byte) mask);
+
+        buffer.flip();
+        return new BinaryMessage(buffer);
+    }
+
+    private static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,64 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Ticker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A tick prepared for fan-out: the JSON frame is encoded once and shared by every
+ * JSON session, and the scaled-long values used by binary sessions are computed
+ * at most once, on first use.
+ */
+final class EncodedTick {
+
+    private final Ticker ticker;
+    private final TextMessage json;
+    private volatile Scaled scaled;
+
+    EncodedTick(Ticker ticker, TextMessage json) {
+        this.ticker = ticker;
+        this.json = json;
+    }
+
+    /**
+     * The JSON "tick" frame shared by the servlet and reactive endpoints.
+     */
+    static byte[] encodeJson(ObjectMapper objectMapper, Ticker ticker) throws IOException {
+        Map<String, Object> msg = new LinkedHashMap<>();
+        msg.put("type", "tick");
+        msg.put("symbol", ticker.symbol());
+        msg.put("last", ticker.last());
+        msg.put("bid", ticker.bid());
+        msg.put("ask", ticker.ask());
+        msg.put("ts", ticker.tsEpochMs());
+        msg.put("change24h", ticker.change24h());
+        return objectMapper.writeValueAsBytes(msg);
+    }
+
+    Ticker ticker() {
+        return ticker;
+    }
+
+    TextMessage json() {
+        return json;
+    }
+
+    // Null if a value doesn't fit the binary frame at the market's scales
+    long[] scaled(Market market) {
+        Scaled cached = scaled;
+        if (cached == null || cached.market() != market) {
+            // Benign race: concurrent writers compute the same values. Sessions pinned to an
+            // older catalog entry just recompute.
+            cached = new Scaled(market, BinaryTickEncoder.scale(ticker, market));
+            scaled = cached;
+        }
+        return cached.values();
+    }
+
+    private record Scaled(Market market, long[] values) {}
+}
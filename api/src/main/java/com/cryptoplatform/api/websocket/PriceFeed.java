@@ -0,0 +1,25 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Ticker;
+
+/**
+ * A local consumer of live ticks: a WebSocket endpoint streaming to its sessions, or
+ * the rule monitor watching the symbols of its rules. The Redis ticker listener feeds
+ * every feed and subscribes to a symbol's channel while any of them watches it.
+ */
+public interface PriceFeed {
+
+    /**
+     * Told when a symbol gains its first local watcher or loses its last one,
+     * so the tick feed can follow what this instance actually watches.
+     */
+    interface WatchListener {
+        void onWatchChanged(String symbol);
+    }
+
+    void onTick(Ticker ticker);
+
+    boolean isWatched(String symbol);
+
+    void setWatchListener(WatchListener watchListener);
+}
@@ -0,0 +1,86 @@
+package com.cryptoplatform.api.websocket;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the price WebSocket fan-out (websocket.prices.* in application.yml).
+ */
+@Configuration
+@ConfigurationProperties(prefix = "websocket.prices")
+public class PriceStreamProperties {
+
+    /**
+     * What to do when a session's outbound queue is full. Ticks are always
+     * conflated to the newest pending value per symbol.
+     */
+    public enum SlowConsumerPolicy {
+        CONFLATE,     // Keep updating the symbols already queued, turn away new ones
+        DROP_OLDEST,  // Evict the oldest queued message
+        DISCONNECT    // Close the session (also when one send is stuck for max-lag-ms)
+    }
+
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.CONFLATE;
+    private int maxQueueSize = 256;
+    private long maxLagMs = 5000;
+    private double maxMessagesPerSecond = 5; // Token refill rate per session, <= 0 disables throttling
+    private int burst = 5;                   // Token bucket capacity
+    private int maxSymbolsPerSession = 100;  // Symbols one session may watch at a time
+    private int reactivePort = 8082;         // Reactive endpoint port, <= 0 disables it
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+
+    public void setMaxLagMs(long maxLagMs) {
+        this.maxLagMs = maxLagMs;
+    }
+
+    public double getMaxMessagesPerSecond() {
+        return maxMessagesPerSecond;
+    }
+
+    public void setMaxMessagesPerSecond(double maxMessagesPerSecond) {
+        this.maxMessagesPerSecond = maxMessagesPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public int getMaxSymbolsPerSession() {
+        return maxSymbolsPerSession;
+    }
+
+    public void setMaxSymbolsPerSession(int maxSymbolsPerSession) {
+        this.maxSymbolsPerSession = maxSymbolsPerSession;
+    }
+
+    public int getReactivePort() {
+        return reactivePort;
+    }
+
+    public void setReactivePort(int reactivePort) {
+        this.reactivePort = reactivePort;
+    }
+}
@@ -1,11 +1,17 @@
 package com.cryptoplatform.api.websocket;
 
+import com.cryptoplatform.api.model.Market;
 import com.cryptoplatform.api.model.Ticker;
-import com.cryptoplatform.api.service.MarketService;
+import com.cryptoplatform.api.service.MarketCatalog;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
@@ -13,18 +19,21 @@ import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
-public class PriceWebSocketHandler extends TextWebSocketHandler {
+public class PriceWebSocketHandler extends TextWebSocketHandler implements PriceFeed {
 
     private static final Logger logger = LoggerFactory.getLogger(PriceWebSocketHandler.class);
     private final ObjectMapper objectMapper;
@@ -32,34 +41,100 @@ public class PriceWebSocketHandler extends TextWebSocketHandler {
     // Session -> Set of Symbols
     private final Map<WebSocketSession, Set<String>> sessionSubscriptions = new ConcurrentHashMap<>();
     
+    // Symbol -> Sessions subscribed to it (inverted index, so a tick only visits its own subscribers)
+    private final Map<String, Set<WebSocketSession>> symbolSubscribers = new ConcurrentHashMap<>();
+    
     // Session -> Symbol -> Last Ticker (to detect changes)
     private final Map<WebSocketSession, Map<String, Ticker>> lastSentTickers = new ConcurrentHashMap<>();
 
-    // Rate Limiting (Token Bucket - simplify to counter reset every second)
-    private final Map<WebSocketSession, AtomicInteger> messageCounter = new ConcurrentHashMap<>();
+    // Symbol -> Latest tick of a watched symbol, served as a snapshot to new subscribers (no Redis call)
+    private final Map<String, EncodedTick> latestTicks = new ConcurrentHashMap<>();
+    
+    // Session -> Outbound queue with per-symbol slots and token bucket, drained off the listener thread
+    private final Map<WebSocketSession, SessionOutbox> outboxes = new ConcurrentHashMap<>();
     
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final MarketCatalog marketCatalog;
+    private final PriceStreamProperties properties;
+    private final Executor writer;
+    private final ExecutorService ownedWriter;
+    private final SessionOutbox.Counters counters;
+    private volatile WatchListener watchListener;
 
-    public PriceWebSocketHandler(ObjectMapper objectMapper) {
+    @Autowired
+    public PriceWebSocketHandler(ObjectMapper objectMapper, MarketCatalog marketCatalog,
+                                 PriceStreamProperties properties, MeterRegistry meterRegistry) {
+        this(objectMapper, marketCatalog, properties, meterRegistry, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    PriceWebSocketHandler(ObjectMapper objectMapper, MarketCatalog marketCatalog, PriceStreamProperties properties,
+                          MeterRegistry meterRegistry, Executor writer) {
         this.objectMapper = objectMapper;
+        this.marketCatalog = marketCatalog;
+        this.properties = properties;
+        this.writer = writer;
+        this.ownedWriter = writer instanceof ExecutorService executorService ? executorService : null;
         
-        // Reset rate limits every second
-        scheduler.scheduleAtFixedRate(this::resetRateLimits, 0, 1, TimeUnit.SECONDS);
+        this.counters = new SessionOutbox.Counters(
+            evictionCounter(meterRegistry, "conflated"),
+            evictionCounter(meterRegistry, "dropped_oldest"),
+            evictionCounter(meterRegistry, "disconnected")
+        );
+        Gauge.builder("websocket.prices.sessions", outboxes, Map::size)
+            .description("Open price WebSocket sessions")
+            .register(meterRegistry);
+        Gauge.builder("websocket.prices.queue.depth", outboxes,
+                m -> m.values().stream().mapToInt(SessionOutbox::size).sum())
+            .description("Messages queued across all price WebSocket sessions")
+            .register(meterRegistry);
+        Gauge.builder("websocket.prices.queue.depth.max", outboxes,
+                m -> m.values().stream().mapToInt(SessionOutbox::size).max().orElse(0))
+            .description("Deepest single-session outbound queue")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void setWatchListener(WatchListener watchListener) {
+        this.watchListener = watchListener;
+    }
+
+    @Override
+    public boolean isWatched(String symbol) {
+        return symbolSubscribers.containsKey(symbol);
+    }
+
+    private static Counter evictionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("websocket.prices.evictions")
+            .description("Price messages or sessions evicted by the slow-consumer policy")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ownedWriter != null) {
+            ownedWriter.shutdownNow();
+        }
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         sessionSubscriptions.put(session, Collections.synchronizedSet(new HashSet<>()));
         lastSentTickers.put(session, new ConcurrentHashMap<>());
-        messageCounter.put(session, new AtomicInteger(0));
+        outboxes.put(session, new SessionOutbox(session, properties, writer, counters));
         logger.info("New WebSocket connection: {}", session.getId());
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessionSubscriptions.remove(session);
+        Set<String> symbols = sessionSubscriptions.remove(session);
+        if (symbols != null) {
+            unsubscribe(session, Set.copyOf(symbols));
+        }
         lastSentTickers.remove(session);
-        messageCounter.remove(session);
+        SessionOutbox outbox = outboxes.remove(session);
+        if (outbox != null) {
+            outbox.close();
+        }
         logger.info("WebSocket connection closed: {}", session.getId());
     }
 
@@ -67,21 +142,55 @@ public class PriceWebSocketHandler extends TextWebSocketHandler {
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
             JsonNode node = objectMapper.readTree(message.getPayload());
-            if (node.has("type") && "subscribe".equals(node.get("type").asText())) {
+            if (node.has("type") && "unsubscribe".equals(node.get("type").asText())) {
+                handleUnsubscribe(session, node);
+            } else if (node.has("type") && "subscribe".equals(node.get("type").asText())) {
                 if (node.has("symbols")) {
-                    Set<String> newSymbols = new HashSet<>();
+                    SessionOutbox outbox = outboxes.get(session);
+                    if (outbox == null) return;
+
+                    Set<String> requested = new LinkedHashSet<>();
                     for (JsonNode s : node.get("symbols")) {
-                        newSymbols.add(s.asText());
+                        requested.add(s.asText());
                     }
                     
-                    sessionSubscriptions.get(session).addAll(newSymbols);
+                    // Opt-in binary protocol; JSON stays the default
+                    boolean binary = "binary".equals(node.path("format").asText());
+                    BinaryTickEncoder encoder = binary ? outbox.useBinary(this::market) : null;
+                    
+                    Set<String> added = subscribe(session, requested);
+                    
+                    // Send confirmation, listing what was turned away (unknown symbol or over the cap)
+                    Set<String> subscribed = sessionSubscriptions.getOrDefault(session, Set.of());
+                    Set<String> accepted = new LinkedHashSet<>();
+                    Set<String> rejected = new LinkedHashSet<>();
+                    for (String symbol : requested) {
+                        (subscribed.contains(symbol) ? accepted : rejected).add(symbol);
+                    }
+                    Map<String, Object> response = new LinkedHashMap<>();
+                    response.put("type", "subscribed");
+                    response.put("symbols", accepted);
+                    if (!rejected.isEmpty()) {
+                        response.put("rejected", rejected);
+                    }
+                    if (encoder != null) {
+                        // Catalog ids and per-field scales, as pinned for this session
+                        Map<String, Integer> ids = new LinkedHashMap<>();
+                        Map<String, int[]> scales = new LinkedHashMap<>();
+                        for (String symbol : accepted) {
+                            Market market = encoder.market(symbol);
+                            if (market == null) continue; // Gone from the catalog since; sent as JSON
+                            ids.put(symbol, market.id());
+                            scales.put(symbol, BinaryTickEncoder.scales(market));
+                        }
+                        response.put("format", "binary");
+                        response.put("symbolIds", ids);
+                        response.put("scales", scales);
+                    }
+                    outbox.offerControl(new TextMessage(objectMapper.writeValueAsString(response)));
                     
-                    // Send confirmation
-                    Map<String, Object> response = Map.of(
-                        "type", "subscribed",
-                        "symbols", newSymbols
-                    );
-                    session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+                    // Instant first paint: current prices of the newly added symbols
+                    sendSnapshot(session, outbox, added);
                 }
             }
         } catch (Exception e) {
@@ -89,50 +198,154 @@ public class PriceWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    private void handleUnsubscribe(WebSocketSession session, JsonNode node) throws IOException {
+        SessionOutbox outbox = outboxes.get(session);
+        if (outbox == null || !node.has("symbols")) return;
+
+        Set<String> symbols = new HashSet<>();
+        for (JsonNode s : node.get("symbols")) {
+            symbols.add(s.asText());
+        }
+
+        unsubscribe(session, symbols);
+        outbox.discard(symbols);
+        Map<String, Ticker> lastSentBySymbol = lastSentTickers.get(session);
+        if (lastSentBySymbol != null) {
+            lastSentBySymbol.keySet().removeAll(symbols);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("type", "unsubscribed");
+        response.put("symbols", symbols);
+        outbox.offerControl(new TextMessage(objectMapper.writeValueAsString(response)));
+    }
+
+    private void sendSnapshot(WebSocketSession session, SessionOutbox outbox, Set<String> symbols) {
+        Map<String, Ticker> lastSentBySymbol = lastSentTickers.get(session);
+        if (lastSentBySymbol == null) return;
+
+        List<EncodedTick> snapshot = new ArrayList<>();
+        for (String symbol : symbols) {
+            EncodedTick tick = latestTicks.get(symbol);
+            if (tick != null && isDifferent(lastSentBySymbol.get(symbol), tick.ticker())) {
+                snapshot.add(tick);
+                lastSentBySymbol.put(symbol, tick.ticker());
+            }
+        }
+        outbox.offerSnapshot(snapshot);
+    }
+
+    // Returns the symbols that weren't subscribed before. Only catalog symbols are taken, and
+    // only up to the per-session cap, so clients can't grow the index or the Redis subscriptions.
+    private Set<String> subscribe(WebSocketSession session, Set<String> symbols) {
+        Set<String> subscribed = sessionSubscriptions.get(session);
+        if (subscribed == null) return Set.of(); // Already closed
+        Set<String> added = new HashSet<>();
+        for (String symbol : symbols) {
+            if (!marketCatalog.isSupported(symbol) || subscribed.contains(symbol)) continue;
+            if (subscribed.size() >= properties.getMaxSymbolsPerSession()) break;
+            subscribed.add(symbol);
+            added.add(symbol);
+        }
+        for (String symbol : added) {
+            boolean[] first = new boolean[1];
+            symbolSubscribers.compute(symbol, (s, sessions) -> {
+                if (sessions == null) {
+                    sessions = ConcurrentHashMap.newKeySet();
+                    first[0] = true;
+                }
+                sessions.add(session);
+                return sessions;
+            });
+            if (first[0]) {
+                notifyWatchChanged(symbol);
+            }
+        }
+        return added;
+    }
+
+    private void unsubscribe(WebSocketSession session, Set<String> symbols) {
+        Set<String> subscribed = sessionSubscriptions.get(session);
+        if (subscribed != null) {
+            subscribed.removeAll(symbols);
+        }
+        for (String symbol : symbols) {
+            boolean[] last = new boolean[1];
+            // Drop the symbol's entry once its last subscriber leaves
+            symbolSubscribers.computeIfPresent(symbol, (s, sessions) -> {
+                sessions.remove(session);
+                last[0] = sessions.isEmpty();
+                return last[0] ? null : sessions;
+            });
+            if (last[0]) {
+                // Ticks stop arriving for unwatched symbols, so the snapshot would go stale
+                latestTicks.remove(symbol);
+                notifyWatchChanged(symbol);
+            }
+        }
+    }
+
+    private void notifyWatchChanged(String symbol) {
+        WatchListener listener = watchListener;
+        if (listener == null) return;
+        try {
+            listener.onWatchChanged(symbol);
+        } catch (RuntimeException e) {
+            logger.error("Failed to update tick feed for {}", symbol, e);
+        }
+    }
+
+    @Override
     public void onTick(Ticker currentTicker) {
-        sessionSubscriptions.forEach((session, symbols) -> {
+        // A seeded snapshot can race a live tick; never go back in time
+        EncodedTick latest = latestTicks.get(currentTicker.symbol());
+        if (latest != null && latest.ticker().tsEpochMs() > currentTicker.tsEpochMs()) return;
+
+        Set<WebSocketSession> subscribers = symbolSubscribers.get(currentTicker.symbol());
+        if (subscribers == null) return;
+
+        // The payload is the same for every subscriber: encode it once and share the message.
+        // Also kept as the snapshot for the next subscriber.
+        EncodedTick tick;
+        try {
+            tick = new EncodedTick(currentTicker, encodeTick(currentTicker));
+        } catch (IOException e) {
+            logger.error("Failed to encode tick for {}", currentTicker.symbol(), e);
+            return;
+        }
+        latestTicks.put(currentTicker.symbol(), tick);
+
+        subscribers.forEach(session -> {
             if (!session.isOpen()) return;
-            if (!symbols.contains(currentTicker.symbol())) return;
 
-            AtomicInteger counter = messageCounter.get(session);
-            // Check rate limit (max 5 per second)
-            if (counter.get() >= 5) return;
+            SessionOutbox outbox = outboxes.get(session);
+            Map<String, Ticker> lastSentBySymbol = lastSentTickers.get(session);
+            if (outbox == null || lastSentBySymbol == null) return; // Closing
 
             // Check if changed
-            Ticker lastSent = lastSentTickers.get(session).get(currentTicker.symbol());
+            Ticker lastSent = lastSentBySymbol.get(currentTicker.symbol());
             if (isDifferent(lastSent, currentTicker)) {
-                try {
-                    // Send update
-                    Map<String, Object> msg = Map.of(
-                        "type", "tick",
-                        "symbol", currentTicker.symbol(),
-                        "last", currentTicker.last(),
-                        "bid", currentTicker.bid(),
-                        "ask", currentTicker.ask(),
-                        "ts", currentTicker.tsEpochMs(),
-                        "change24h", currentTicker.change24h()
-                    );
-                    
-                    session.sendMessage(new TextMessage(objectMapper.writeValueAsString(msg)));
-                    
-                    // Update state
-                    lastSentTickers.get(session).put(currentTicker.symbol(), currentTicker);
-                    counter.incrementAndGet();
-                    
-                } catch (IOException e) {
-                    logger.error("Failed to send message to session {}", session.getId(), e);
-                }
+                // Queue update; the session's writer sends it (rate limited) without blocking this thread
+                outbox.offer(tick);
+                
+                // Update state
+                lastSentBySymbol.put(currentTicker.symbol(), currentTicker);
             }
         });
     }
 
+    // Pre-encoded UTF-8 bytes, so the container doesn't re-encode the payload per session
+    private TextMessage encodeTick(Ticker ticker) throws IOException {
+        return new TextMessage(EncodedTick.encodeJson(objectMapper, ticker));
+    }
+
+    private Market market(String symbol) {
+        return marketCatalog.find(symbol).orElse(null);
+    }
+
     private boolean isDifferent(Ticker last, Ticker current) {
         if (last == null) return true;
         // Compare request timestamps or specific fields. 
         return last.tsEpochMs() != current.tsEpochMs();
     }
-
-    private void resetRateLimits() {
-        messageCounter.values().forEach(c -> c.set(0));
-    }
 }
@@ -0,0 +1,69 @@
+package com.cryptoplatform.api.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Runs {@link ReactivePriceWebSocketHandler} at /ws/prices on its own Reactor Netty
+ * server (websocket.prices.reactive-port), next to the servlet container that keeps
+ * serving the REST API and the servlet WebSocket. Disabled when the port is <= 0.
+ */
+@Component
+public class ReactivePriceServer implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactivePriceServer.class);
+    private static final String PATH = "/ws/prices";
+
+    private final ReactivePriceWebSocketHandler handler;
+    private final int port;
+    private volatile DisposableServer server;
+
+    public ReactivePriceServer(ReactivePriceWebSocketHandler handler, PriceStreamProperties properties) {
+        this.handler = handler;
+        this.port = properties.getReactivePort();
+    }
+
+    @Override
+    public void start() {
+        if (port <= 0) return;
+
+        HandshakeWebSocketService webSocketService = new HandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy());
+        HttpHandler httpHandler = WebHttpHandlerBuilder.webHandler(exchange -> {
+            if (PATH.equals(exchange.getRequest().getPath().value())) {
+                return webSocketService.handleRequest(exchange, handler);
+            }
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return exchange.getResponse().setComplete();
+        }).build();
+
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+        logger.info("Reactive price WebSocket listening on port {}{}", server.port(), PATH);
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        if (current != null) {
+            current.disposeNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+}
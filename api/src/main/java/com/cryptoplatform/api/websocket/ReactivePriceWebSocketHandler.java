@@ -0,0 +1,222 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.MarketCatalog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reactive variant of the price WebSocket, served by {@link ReactivePriceServer}.
+ *
+ * Each watched symbol has one multicast sink of pre-encoded JSON frames. A session's
+ * outbound stream merges the sinks of its symbols, each behind onBackpressureLatest,
+ * so a slow socket only ever holds the newest frame per symbol and Netty writes as
+ * the channel drains. Idle sessions cost no thread, just their subscriptions.
+ *
+ * Speaks the same JSON protocol as {@link PriceWebSocketHandler}: subscribe and
+ * unsubscribe messages, a snapshot of the latest tick on subscribe, then "tick" frames.
+ * Likewise only catalog symbols are taken, up to max-symbols-per-session per session.
+ */
+@Component
+public class ReactivePriceWebSocketHandler implements WebSocketHandler, PriceFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactivePriceWebSocketHandler.class);
+
+    private final ObjectMapper objectMapper;
+    private final MarketCatalog marketCatalog;
+    private final PriceStreamProperties properties;
+
+    // Symbol -> Sink and latest frame, present while at least one session watches it
+    private final Map<String, SymbolFeed> feeds = new ConcurrentHashMap<>();
+
+    private volatile WatchListener watchListener;
+
+    public ReactivePriceWebSocketHandler(ObjectMapper objectMapper, MarketCatalog marketCatalog,
+                                         PriceStreamProperties properties) {
+        this.objectMapper = objectMapper;
+        this.marketCatalog = marketCatalog;
+        this.properties = properties;
+    }
+
+    @Override
+    public void setWatchListener(WatchListener watchListener) {
+        this.watchListener = watchListener;
+    }
+
+    @Override
+    public boolean isWatched(String symbol) {
+        return feeds.containsKey(symbol);
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        Set<String> subscribed = ConcurrentHashMap.newKeySet();
+        Sinks.Many<String> unsubscribes = Sinks.many().multicast().directBestEffort();
+
+        Flux<WebSocketMessage> outbound = session.receive()
+                .map(WebSocketMessage::getPayloadAsText)
+                .flatMap(payload -> handleCommand(session, payload, subscribed, unsubscribes), Integer.MAX_VALUE)
+                .takeUntilOther(session.closeStatus());
+
+        return session.send(outbound);
+    }
+
+    @Override
+    public void onTick(Ticker ticker) {
+        SymbolFeed feed = feeds.get(ticker.symbol());
+        if (feed == null) return;
+        // A seeded snapshot can race a live tick; never go back in time
+        if (ticker.tsEpochMs() < feed.latestTs) return;
+
+        byte[] frame;
+        try {
+            frame = EncodedTick.encodeJson(objectMapper, ticker);
+        } catch (IOException e) {
+            logger.error("Failed to encode tick for {}", ticker.symbol(), e);
+            return;
+        }
+        feed.latest = frame;
+        feed.latestTs = ticker.tsEpochMs();
+        // Best effort: only fails if a seed and a live tick are emitted at the same instant
+        feed.sink.tryEmitNext(frame);
+    }
+
+    private Flux<WebSocketMessage> handleCommand(WebSocketSession session, String payload,
+                                                 Set<String> subscribed, Sinks.Many<String> unsubscribes) {
+        try {
+            JsonNode node = objectMapper.readTree(payload);
+            String type = node.path("type").asText();
+            if (!node.has("symbols") || !("subscribe".equals(type) || "unsubscribe".equals(type))) {
+                return Flux.empty();
+            }
+
+            List<String> symbols = new ArrayList<>();
+            for (JsonNode s : node.get("symbols")) {
+                symbols.add(s.asText());
+            }
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("type", type + "d");
+
+            if ("unsubscribe".equals(type)) {
+                for (String symbol : symbols) {
+                    if (subscribed.remove(symbol)) {
+                        unsubscribes.tryEmitNext(symbol);
+                    }
+                }
+                response.put("symbols", symbols);
+                return reply(session, response).flux();
+            }
+
+            // Unknown symbols and those over the cap are turned away, so clients can't grow the feeds
+            List<String> accepted = new ArrayList<>();
+            List<String> rejected = new ArrayList<>();
+            List<Flux<WebSocketMessage>> streams = new ArrayList<>();
+            for (String symbol : symbols) {
+                if (subscribed.contains(symbol)) {
+                    accepted.add(symbol);
+                    continue;
+                }
+                if (!marketCatalog.isSupported(symbol) || subscribed.size() >= properties.getMaxSymbolsPerSession()) {
+                    rejected.add(symbol);
+                    continue;
+                }
+                subscribed.add(symbol);
+                accepted.add(symbol);
+                streams.add(frames(symbol)
+                        .takeUntilOther(unsubscribes.asFlux().filter(symbol::equals))
+                        .map(frame -> new WebSocketMessage(WebSocketMessage.Type.TEXT, session.bufferFactory().wrap(frame))));
+            }
+            response.put("symbols", accepted);
+            if (!rejected.isEmpty()) {
+                response.put("rejected", rejected);
+            }
+            return Flux.concat(reply(session, response), Flux.merge(streams));
+        } catch (Exception e) {
+            logger.error("Error handling message from session {}", session.getId(), e);
+            return Flux.empty();
+        }
+    }
+
+    private Mono<WebSocketMessage> reply(WebSocketSession session, Map<String, Object> response) throws IOException {
+        return Mono.just(session.textMessage(objectMapper.writeValueAsString(response)));
+    }
+
+    // Latest frame (if any) followed by live frames, holding only the newest one while the socket is busy
+    private Flux<byte[]> frames(String symbol) {
+        return Flux.defer(() -> {
+                    SymbolFeed feed = acquire(symbol);
+                    byte[] snapshot = feed.latest;
+                    Flux<byte[]> live = feed.sink.asFlux();
+                    return (snapshot != null ? live.startWith(snapshot) : live)
+                            .doFinally(signal -> release(symbol));
+                })
+                .onBackpressureLatest();
+    }
+
+    private SymbolFeed acquire(String symbol) {
+        boolean[] first = new boolean[1];
+        SymbolFeed feed = feeds.compute(symbol, (s, existing) -> {
+            if (existing == null) {
+                existing = new SymbolFeed();
+                first[0] = true;
+            }
+            existing.subscribers++;
+            return existing;
+        });
+        if (first[0]) {
+            notifyWatchChanged(symbol);
+        }
+        return feed;
+    }
+
+    private void release(String symbol) {
+        boolean[] last = new boolean[1];
+        feeds.computeIfPresent(symbol, (s, feed) -> {
+            feed.subscribers--;
+            last[0] = feed.subscribers == 0;
+            return last[0] ? null : feed;
+        });
+        if (last[0]) {
+            notifyWatchChanged(symbol);
+        }
+    }
+
+    private void notifyWatchChanged(String symbol) {
+        WatchListener listener = watchListener;
+        if (listener == null) return;
+        // The listener talks to Redis; keep that off the event loop
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                listener.onWatchChanged(symbol);
+            } catch (RuntimeException e) {
+                logger.error("Failed to update tick feed for {}", symbol, e);
+            }
+        });
+    }
+
+    private static final class SymbolFeed {
+        final Sinks.Many<byte[]> sink = Sinks.many().multicast().directBestEffort();
+        volatile byte[] latest;
+        volatile long latestTs;
+        int subscribers; // Guarded by feeds.compute
+    }
+}
@@ -0,0 +1,303 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Market;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Bounded outbound queue for one WebSocket session.
+ *
+ * Producers (the Redis listener thread) only enqueue and never block. A single
+ * writer task per session drains the queue on the shared writer executor, so a
+ * slow browser only ever delays itself.
+ *
+ * Ticks sit in a "latest value per symbol" slot: a newer tick replaces the pending
+ * one for its symbol and keeps its place in line. Sending ticks costs a token from
+ * a per-session token bucket; when the bucket is empty the writer parks until the
+ * next token and then sends the newest pending tick of each symbol, so throttling
+ * delays updates instead of losing them. Control messages and subscribe snapshots
+ * skip the bucket.
+ *
+ * When more than max-queue-size messages are pending, or a single send has been
+ * stuck for max-lag-ms, the configured {@link PriceStreamProperties.SlowConsumerPolicy}
+ * decides what happens.
+ *
+ * Sessions use the shared JSON frame of each tick unless they switched to the
+ * binary protocol, in which case the writer delta-encodes the tick at send time.
+ */
+class SessionOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionOutbox.class);
+
+    /**
+     * Eviction counters shared by all outboxes.
+     */
+    record Counters(Counter conflated, Counter dropped, Counter disconnected) {}
+
+    private final WebSocketSession session;
+    private final PriceStreamProperties.SlowConsumerPolicy policy;
+    private final int maxQueueSize;
+    private final long maxLagNanos;
+    private final Executor writer;
+    private final Counters counters;
+
+    // Token bucket (disabled when refill rate <= 0)
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    // Guarded by this
+    private final ArrayDeque<WebSocketMessage<?>> control = new ArrayDeque<>();
+    private final ArrayDeque<EncodedTick> snapshots = new ArrayDeque<>();
+    private final LinkedHashMap<String, EncodedTick> latestBySymbol = new LinkedHashMap<>();
+    private BinaryTickEncoder binaryEncoder; // null = JSON
+    private long sendStartedAtNanos;
+    private boolean draining;
+    private boolean closed;
+
+    SessionOutbox(WebSocketSession session, PriceStreamProperties properties, Executor writer, Counters counters) {
+        this.session = session;
+        this.policy = properties.getSlowConsumerPolicy();
+        this.maxQueueSize = properties.getMaxQueueSize();
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxLagMs());
+        this.writer = writer;
+        this.counters = counters;
+        this.tokensPerNano = properties.getMaxMessagesPerSecond() / 1e9;
+        this.burst = Math.max(1, properties.getBurst());
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Queue a tick, replacing any tick for its symbol that hasn't been sent yet.
+     */
+    void offer(EncodedTick tick) {
+        String symbol = tick.ticker().symbol();
+        boolean startWriter;
+        synchronized (this) {
+            if (closed) return;
+
+            if (latestBySymbol.containsKey(symbol)) {
+                latestBySymbol.put(symbol, tick);
+                counters.conflated().increment();
+                return;
+            }
+            if (!makeRoom(true)) return;
+
+            latestBySymbol.put(symbol, tick);
+            startWriter = claimWriter();
+        }
+        if (startWriter) {
+            writer.execute(this::drain);
+        }
+    }
+
+    /**
+     * Queue a control message (confirmations), never conflated or throttled.
+     */
+    void offerControl(WebSocketMessage<?> message) {
+        boolean startWriter;
+        synchronized (this) {
+            if (closed) return;
+            if (!makeRoom(false)) return;
+
+            control.add(message);
+            startWriter = claimWriter();
+        }
+        if (startWriter) {
+            writer.execute(this::drain);
+        }
+    }
+
+    /**
+     * Queue the current ticks of newly subscribed symbols. Sent right after pending
+     * control messages, ahead of regular ticks and without spending tokens.
+     */
+    void offerSnapshot(Collection<EncodedTick> ticks) {
+        if (ticks.isEmpty()) return;
+        boolean startWriter;
+        synchronized (this) {
+            if (closed) return;
+            snapshots.addAll(ticks);
+            startWriter = claimWriter();
+        }
+        if (startWriter) {
+            writer.execute(this::drain);
+        }
+    }
+
+    /**
+     * Drop pending ticks for symbols the client no longer wants.
+     */
+    synchronized void discard(Collection<String> symbols) {
+        latestBySymbol.keySet().removeAll(symbols);
+        snapshots.removeIf(tick -> symbols.contains(tick.ticker().symbol()));
+    }
+
+    /**
+     * Switch this session to binary delta frames (starting with full values). The
+     * encoder is created on the first opt-in and kept for the rest of the session:
+     * the client decodes against the values it already has, so later subscribes must
+     * not reset the deltas.
+     */
+    synchronized BinaryTickEncoder useBinary(Function<String, Market> catalog) {
+        if (binaryEncoder == null) {
+            binaryEncoder = new BinaryTickEncoder(catalog);
+        }
+        return binaryEncoder;
+    }
+
+    synchronized int size() {
+        return control.size() + snapshots.size() + latestBySymbol.size();
+    }
+
+    synchronized void close() {
+        closed = true;
+        control.clear();
+        snapshots.clear();
+        latestBySymbol.clear();
+    }
+
+    // Called with the lock held. Applies the slow-consumer policy; false means drop the new message.
+    private boolean makeRoom(boolean isTick) {
+        if (policy == PriceStreamProperties.SlowConsumerPolicy.DISCONNECT
+                && (size() >= maxQueueSize || isStuck(System.nanoTime()))) {
+            disconnect();
+            return false;
+        }
+        if (size() < maxQueueSize) {
+            return true;
+        }
+        if (policy == PriceStreamProperties.SlowConsumerPolicy.CONFLATE && isTick) {
+            // Full: keep updating the symbols already queued, turn away new ones
+            counters.dropped().increment();
+            return false;
+        }
+        // DROP_OLDEST (and control messages under CONFLATE): evict the oldest pending tick
+        Iterator<String> oldest = latestBySymbol.keySet().iterator();
+        if (oldest.hasNext()) {
+            oldest.next();
+            oldest.remove();
+        } else if (!snapshots.isEmpty()) {
+            snapshots.poll();
+        } else {
+            control.poll();
+        }
+        counters.dropped().increment();
+        return true;
+    }
+
+    // Called with the lock held
+    private boolean claimWriter() {
+        if (draining) return false;
+        draining = true;
+        return true;
+    }
+
+    private void drain() {
+        while (true) {
+            WebSocketMessage<?> next;
+            EncodedTick tick = null;
+            BinaryTickEncoder encoder = null;
+            long waitNanos = 0;
+            synchronized (this) {
+                if (closed || (control.isEmpty() && snapshots.isEmpty() && latestBySymbol.isEmpty())) {
+                    draining = false;
+                    return;
+                }
+                long now = System.nanoTime();
+                next = control.poll();
+                if (next == null && !snapshots.isEmpty()) {
+                    tick = snapshots.poll();
+                    encoder = binaryEncoder;
+                } else if (next == null) {
+                    refill(now);
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        Iterator<EncodedTick> ticks = latestBySymbol.values().iterator();
+                        tick = ticks.next();
+                        ticks.remove();
+                        encoder = binaryEncoder;
+                    } else {
+                        waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+                    }
+                }
+                if (next != null || tick != null) {
+                    sendStartedAtNanos = now;
+                }
+            }
+
+            if (next == null && tick == null) {
+                // Out of tokens: newer ticks keep replacing the pending ones while we wait
+                LockSupport.parkNanos(waitNanos);
+                continue;
+            }
+
+            try {
+                if (tick != null) {
+                    // Only this writer touches the encoder, so its delta state needs no lock
+                    next = encoder != null ? encoder.encode(tick) : tick.json();
+                }
+                session.sendMessage(next);
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Send to session {} failed, dropping its queue: {}", session.getId(), e.getMessage());
+                synchronized (this) {
+                    draining = false;
+                }
+                close();
+                return;
+            } finally {
+                synchronized (this) {
+                    sendStartedAtNanos = 0;
+                }
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void refill(long now) {
+        if (tokensPerNano <= 0) {
+            tokens = burst; // Throttling disabled
+            return;
+        }
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    // Called with the lock held
+    private boolean isStuck(long now) {
+        return sendStartedAtNanos != 0 && now - sendStartedAtNanos > maxLagNanos;
+    }
+
+    // Called with the lock held
+    private void disconnect() {
+        closed = true;
+        control.clear();
+        snapshots.clear();
+        latestBySymbol.clear();
+        counters.disconnected().increment();
+        logger.warn("Disconnecting slow WebSocket session {}", session.getId());
+        writer.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                logger.debug("Failed to close session {}", session.getId(), e);
+            }
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.cryptoplatform.api.websocket;
 
+import com.cryptoplatform.api.security.JwtUtil;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
@@ -10,14 +11,22 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final PriceWebSocketHandler priceWebSocketHandler;
+    private final AccountWebSocketHandler accountWebSocketHandler;
+    private final JwtUtil jwtUtil;
 
-    public WebSocketConfig(PriceWebSocketHandler priceWebSocketHandler) {
+    public WebSocketConfig(PriceWebSocketHandler priceWebSocketHandler, AccountWebSocketHandler accountWebSocketHandler,
+                           JwtUtil jwtUtil) {
         this.priceWebSocketHandler = priceWebSocketHandler;
+        this.accountWebSocketHandler = accountWebSocketHandler;
+        this.jwtUtil = jwtUtil;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(priceWebSocketHandler, "/ws/prices")
                 .setAllowedOrigins("*"); // Allow all origins for this demo
+        registry.addHandler(accountWebSocketHandler, "/ws/account")
+                .addInterceptors(new AccountHandshakeInterceptor(jwtUtil))
+                .setAllowedOrigins("*");
     }
 }
@@ -0,0 +1,15 @@
+-- Equity curve of every account (cash plus marked positions), sampled each minute
+-- by EquitySnapshotService and downsampled as it ages.
+-- resolution: 0 = minute (kept a day), 1 = hour (kept 31 days), 2 = day (kept).
+-- ts: sample time in epoch ms.
+-- No foreign key to accounts, so bulk COPYs skip a lookup per row.
+CREATE TABLE equity_snapshots (
+    account_id BIGINT NOT NULL,
+    resolution SMALLINT NOT NULL,
+    ts BIGINT NOT NULL,
+    equity NUMERIC(20,2) NOT NULL,
+    PRIMARY KEY (account_id, resolution, ts)
+);
+
+-- Rollups and retention scan one resolution over a time range across all accounts
+CREATE INDEX idx_equity_snapshots_resolution_ts ON equity_snapshots(resolution, ts);
@@ -0,0 +1,9 @@
+-- accounts.reserved becomes the source of truth for limit-buy holds, adjusted in place by
+-- each order transaction instead of flushed from per-instance memory. Recompute it once
+-- from the open LIMIT BUY orders (limit price * quantity + 0.2% fee, rounded up to the cent).
+UPDATE accounts a
+SET reserved = COALESCE((
+    SELECT SUM(CEIL(o.limit_price * o.quantity * 1.002 * 100) / 100)
+    FROM orders o
+    WHERE o.user_id = a.user_id AND o.status = 'OPEN' AND o.type = 'LIMIT' AND o.side = 'BUY'
+), 0);
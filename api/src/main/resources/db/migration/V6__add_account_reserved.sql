@@ -0,0 +1,18 @@
+-- Funds held for open LIMIT BUY orders (maintained by FundReservationLedger).
+-- The column is mapped on Account, so ddl-auto may have added it already; db/schema.sql
+-- then gives it its default and NOT NULL at startup.
+ALTER TABLE accounts
+ADD COLUMN IF NOT EXISTS reserved NUMERIC(38,2) NOT NULL DEFAULT 0;
+
+-- Run once, before this version takes orders (it is not repeatable):
+-- open LIMIT BUY orders used to deduct limit_price * quantity from the balance at placement.
+-- Give that cash back; V11 then holds it again, fee included, in reserved.
+UPDATE accounts a
+SET balance = a.balance + locked.total
+FROM (
+    SELECT user_id, SUM(limit_price * quantity) AS total
+    FROM orders
+    WHERE status = 'OPEN' AND type = 'LIMIT' AND side = 'BUY'
+    GROUP BY user_id
+) locked
+WHERE a.user_id = locked.user_id;
@@ -0,0 +1,6 @@
+-- Window minutes / EMA periods of the indicator-based rule conditions
+ALTER TABLE agent_rules
+ADD COLUMN condition_period INTEGER;
+
+-- The enum check generated with the table only allows the three price conditions
+ALTER TABLE agent_rules DROP CONSTRAINT IF EXISTS agent_rules_condition_check;
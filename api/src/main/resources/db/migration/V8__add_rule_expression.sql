@@ -0,0 +1,3 @@
+-- Condition text of EXPRESSION rules
+ALTER TABLE agent_rules
+ADD COLUMN expression VARCHAR(500);
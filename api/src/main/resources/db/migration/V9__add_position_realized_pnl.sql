@@ -0,0 +1,4 @@
+-- Realized PnL of a position, net of fees, updated at each fill.
+-- Fills before this migration aren't backfilled.
+ALTER TABLE positions
+ADD COLUMN realized_pnl NUMERIC(38,8) NOT NULL DEFAULT 0;
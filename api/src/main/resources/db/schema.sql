@@ -0,0 +1,24 @@
+-- Schema Hibernate's ddl-auto can't manage, applied after it on every startup
+-- (spring.sql.init), so every statement must be safe to repeat.
+
+-- Equity curve of every account (EquitySnapshotService), see V10. There is no entity:
+-- samples are written with COPY and read with plain SQL.
+CREATE TABLE IF NOT EXISTS equity_snapshots (
+    account_id BIGINT NOT NULL,
+    resolution SMALLINT NOT NULL,
+    ts BIGINT NOT NULL,
+    equity NUMERIC(20,2) NOT NULL,
+    PRIMARY KEY (account_id, resolution, ts)
+);
+
+CREATE INDEX IF NOT EXISTS idx_equity_snapshots_resolution_ts ON equity_snapshots(resolution, ts);
+
+-- Limit-buy holds (FundReservationLedger), see V6. Where ddl-auto added the column before
+-- it was mapped with a default, accounts have NULL and every hold would fail.
+UPDATE accounts SET reserved = 0 WHERE reserved IS NULL;
+ALTER TABLE accounts ALTER COLUMN reserved SET DEFAULT 0;
+ALTER TABLE accounts ALTER COLUMN reserved SET NOT NULL;
+
+-- Rule conditions, see V7. The enum check Hibernate generated with the table only allows
+-- the conditions that existed then, and ddl-auto never widens it, so newer ones fail to save.
+ALTER TABLE agent_rules DROP CONSTRAINT IF EXISTS agent_rules_condition_check;
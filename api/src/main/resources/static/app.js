@@ -1,5 +1,6 @@
 const CONFIG = {
     websocketUrl: `ws://${window.location.host}/ws/prices`,
+    accountSocketUrl: `ws://${window.location.host}/ws/account`,
     endpoints: {
         markets: '/markets',
         latest: '/prices/latest',
@@ -18,6 +19,7 @@ const CONFIG = {
 class CryptoApp {
     constructor() {
         this.socket = null;
+        this.accountSocket = null; // Private channel: orders, fills, positions, balance
         this.markets = [];
         this.cache = {}; // Price cache
         this.token = localStorage.getItem('jwt_token') || null;
@@ -27,7 +29,8 @@ class CryptoApp {
             side: 'BUY',
             type: 'MARKET',
             orders: [],
-            portfolio: []
+            portfolio: [],
+            tradingMode: 'PAPER'
         };
 
         this.dom = {
@@ -85,13 +88,7 @@ class CryptoApp {
         await this.fetchMarkets();
         this.renderInitialCards();
         this.connect();
-
-        // Polling for user data
-        setInterval(() => {
-            if (this.token) {
-                this.fetchAccountData();
-            }
-        }, 2000);
+        // User data is loaded once on login and then pushed over the account socket
     }
 
     setupEventListeners() {
@@ -144,6 +141,7 @@ class CryptoApp {
             this.dom.authSection.style.display = 'none';
             this.dom.userSection.style.display = 'flex';
             this.fetchAccountData();
+            this.connectAccount();
             // Enable AI chat
             this.dom.aiInput.disabled = false;
             this.dom.aiSendBtn.disabled = false;
@@ -151,6 +149,7 @@ class CryptoApp {
         } else {
             this.dom.authSection.style.display = 'block';
             this.dom.userSection.style.display = 'none';
+            this.disconnectAccount();
             this.dom.portfolioContainer.innerHTML = '<div style="text-align: center; color: var(--text-muted); padding: 1rem;">Login to view assets</div>';
             // Disable AI chat
             this.dom.aiInput.disabled = true;
@@ -288,9 +287,14 @@ class CryptoApp {
             const data = await res.json();
 
             if (res.ok && data.mode === mode) {
+                if (data.token) {
+                    this.token = data.token;
+                    localStorage.setItem('jwt_token', this.token);
+                }
                 this.updateTradingModeUI(data.mode, data.krakenConnected);
                 this.showLiveModeWarning(data.mode === 'LIVE');
                 this.log('Trading Mode', data.message);
+                this.fetchAccountData(); // Balance source depends on the mode
             } else {
                 alert('Failed to switch mode: ' + data.message);
             }
@@ -301,6 +305,8 @@ class CryptoApp {
     }
 
     updateTradingModeUI(mode, krakenConnected) {
+        this.state.tradingMode = mode;
+
         // Update button states
         if (mode === 'PAPER') {
             this.dom.modePaperBtn.classList.add('active');
@@ -435,7 +441,8 @@ class CryptoApp {
             if (res.ok) {
                 const order = await res.json();
                 this.log('Trade', `Order Placed: ${this.state.side} ${qty} ${this.state.selectedSymbol}`);
-                this.fetchAccountData(); // Refresh immediately
+                // Paper orders are pushed over the account socket; live (Kraken) ones are not
+                if (this.state.tradingMode === 'LIVE') this.fetchAccountData();
                 // Clear inputs
                 this.dom.inputQty.value = '';
             } else {
@@ -540,6 +547,61 @@ class CryptoApp {
         };
     }
 
+    // --- Account updates (private WebSocket) ---
+
+    connectAccount() {
+        if (this.accountSocket) return;
+        const socket = new WebSocket(`${CONFIG.accountSocketUrl}?token=${encodeURIComponent(this.token)}`);
+        this.accountSocket = socket;
+
+        socket.onmessage = (event) => this.handleAccountEvent(JSON.parse(event.data));
+        socket.onclose = () => {
+            if (this.accountSocket !== socket) return; // Closed on purpose
+            this.accountSocket = null;
+            // Reconnect and resync whatever was missed while disconnected
+            setTimeout(() => {
+                if (this.token && !this.accountSocket) {
+                    this.fetchAccountData();
+                    this.connectAccount();
+                }
+            }, 3000);
+        };
+    }
+
+    disconnectAccount() {
+        const socket = this.accountSocket;
+        this.accountSocket = null;
+        if (socket) socket.close();
+    }
+
+    handleAccountEvent(data) {
+        if (data.type === 'order') {
+            const index = this.state.orders.findIndex(o => o.id === data.order.id);
+            if (index >= 0) {
+                this.state.orders[index] = data.order;
+            } else {
+                this.state.orders.unshift(data.order);
+            }
+            this.renderOrders();
+            if (data.order.status === 'FILLED') {
+                this.log('Trade', `Filled: ${data.order.side} ${data.order.quantity} ${data.order.symbol} @ ${data.order.filledPrice}`);
+            }
+        } else if (data.type === 'position') {
+            const index = this.state.portfolio.findIndex(p => p.symbol === data.position.symbol);
+            if (index >= 0) {
+                this.state.portfolio[index] = data.position;
+            } else {
+                this.state.portfolio.push(data.position);
+            }
+            this.renderPortfolio();
+        } else if (data.type === 'balance') {
+            // Paper balance only; in LIVE mode the balance comes from Kraken
+            if (this.state.tradingMode === 'PAPER') {
+                this.dom.balanceSpan.innerText = this.formatPrice(data.balance).replace('$', '');
+            }
+        }
+    }
+
     handleTick(data) {
         const { symbol, last, change24h } = data;
         this.cache[symbol] = { last, change24h };
@@ -7,6 +7,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Map;
@@ -14,10 +15,11 @@ import java.util.Map;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+@SpringBootTest(properties = "websocket.prices.reactive-port=0")
 @AutoConfigureMockMvc
 class MarketControllerIntegrationTest {
 
@@ -51,6 +53,39 @@ class MarketControllerIntegrationTest {
             .andExpect(jsonPath("$.last").value(50000.50));
     }
 
+    @Test
+    void shouldAnswerNotModifiedWhenPricesUnchanged() throws Exception {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(anyString())).thenReturn(Map.of());
+        when(hashOperations.entries("latest:ETH-USD")).thenReturn(Map.of(
+            "symbol", "ETH-USD",
+            "ts", "1700000000000",
+            "last", "3000.5"
+        ));
+
+        String etag = mockMvc.perform(get("/prices/latest"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$['ETH-USD'].last").value(3000.5))
+            .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/prices/latest").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldOnlyGzipWhenTheClientAcceptsIt() throws Exception {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(anyString())).thenReturn(Map.of());
+
+        mockMvc.perform(get("/prices/latest").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+        mockMvc.perform(get("/prices/latest").header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.5"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+    }
+
     @Test
     void shouldReturn404ForUnknownSymbol() throws Exception {
         mockMvc.perform(get("/prices/latest?symbol=UNKNOWN"))
@@ -0,0 +1,119 @@
+package com.cryptoplatform.api.history;
+
+import com.cryptoplatform.api.model.Candle;
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.PricePoint;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.MarketCatalog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PriceHistoryServiceTest {
+
+    private static final long T0 = 1_700_000_040_000L; // A minute boundary
+    private static final Market BTC = new Market(0, "BTC-USD", "BTC/USD", "XXBTZUSD",
+            List.of("XXBT", "XBT"), 1, 8, List.of("bitcoin", "btc"));
+
+    @TempDir
+    Path dir;
+
+    private PriceHistoryService service(TimeSeriesStore store, int maxPoints) {
+        MarketCatalog catalog = mock(MarketCatalog.class);
+        when(catalog.find("BTC-USD")).thenReturn(Optional.of(BTC));
+        return new PriceHistoryService(store, catalog, maxPoints);
+    }
+
+    private Ticker ticker(long ts, String last) {
+        return ticker(ts, last, "12.5");
+    }
+
+    private Ticker ticker(long ts, String last, String volume24h) {
+        return new Ticker("BTC-USD", ts, new BigDecimal(last), new BigDecimal(last), new BigDecimal(last),
+                new BigDecimal(volume24h), BigDecimal.ZERO);
+    }
+
+    @Test
+    void shouldReadTicksFromFlushedBlocksAndBuffer() {
+        // Two rows per block: five ticks make two blocks on disk and one buffered row
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 2, 5000);
+        PriceHistoryService service = service(store, 100);
+        for (int i = 0; i < 5; i++) {
+            service.record(ticker(T0 + i * 1000, "50000." + i));
+        }
+
+        List<PricePoint> points = service.getTicks("BTC-USD", T0 + 1000, T0 + 4000);
+
+        assertEquals(4, points.size());
+        assertEquals(T0 + 1000, points.get(0).tsEpochMs());
+        assertEquals(new BigDecimal("50000.1"), points.get(0).last());
+        assertEquals(new BigDecimal("12.50000000"), points.get(0).volume24h());
+        assertEquals(new BigDecimal("50000.4"), points.get(3).last());
+    }
+
+    @Test
+    void shouldRollMinuteBarsUpIntoCandles() {
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 1024, 5000);
+        PriceHistoryService service = service(store, 100);
+        service.record(ticker(T0, "100.0"));
+        service.record(ticker(T0 + 30_000, "105.0"));
+        service.record(ticker(T0 + 60_000, "95.0"));
+        service.record(ticker(T0 + 120_000, "101.0")); // Still open, served from memory
+        store.flushAll();
+
+        List<Candle> oneMinute = service.getCandles("BTC-USD", T0, T0 + 120_000, PriceHistoryService.Interval.M1);
+        assertEquals(3, oneMinute.size());
+        assertEquals(new BigDecimal("105.0"), oneMinute.get(0).high());
+        assertEquals(2, oneMinute.get(0).ticks());
+
+        List<Candle> daily = service.getCandles("BTC-USD", T0, T0 + 120_000, PriceHistoryService.Interval.D1);
+        assertEquals(1, daily.size());
+        Candle day = daily.get(0);
+        assertEquals(new BigDecimal("100.0"), day.open());
+        assertEquals(new BigDecimal("105.0"), day.high());
+        assertEquals(new BigDecimal("95.0"), day.low());
+        assertEquals(new BigDecimal("101.0"), day.close());
+        assertEquals(4, day.ticks());
+    }
+
+    @Test
+    void shouldReportCandleVolumeAsTheRiseOfThe24hVolume() {
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 1024, 5000);
+        PriceHistoryService service = service(store, 100);
+        service.record(ticker(T0, "100.0", "10"));
+        service.record(ticker(T0 + 30_000, "100.0", "12"));
+        service.record(ticker(T0 + 60_000, "100.0", "11.5")); // Older trades left the window
+        service.record(ticker(T0 + 120_000, "100.0", "15"));
+        store.flushAll();
+
+        // The minute before the range is only read as the base of the first candle
+        List<Candle> candles = service.getCandles("BTC-USD", T0 + 60_000, T0 + 120_000, PriceHistoryService.Interval.M1);
+        assertEquals(2, candles.size());
+        assertEquals(new BigDecimal("0E-8"), candles.get(0).volume());
+        assertEquals(new BigDecimal("3.50000000"), candles.get(1).volume());
+
+        // Nothing before the first bar, so it contributes nothing
+        Candle day = service.getCandles("BTC-USD", T0, T0 + 120_000, PriceHistoryService.Interval.D1).get(0);
+        assertEquals(new BigDecimal("3.50000000"), day.volume());
+    }
+
+    @Test
+    void shouldRejectRangesAboveMaxPoints() {
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 1024, 5000);
+        PriceHistoryService service = service(store, 2);
+        for (int i = 0; i < 3; i++) {
+            service.record(ticker(T0 + i, "1.0"));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> service.getTicks("BTC-USD", T0, T0 + 10));
+    }
+}
@@ -0,0 +1,105 @@
+package com.cryptoplatform.api.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSeriesStoreTest {
+
+    private static final long T0 = 1_700_000_040_000L;
+    private static final byte[] SCALES = {0, 1, 1, 1, 8};
+
+    @TempDir
+    Path dir;
+
+    private static long[] row(long ts) {
+        return new long[] {ts, 500001, 500000, 500002, 1250000000L};
+    }
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private static List<Long> timestamps(TimeSeriesStore store) {
+        List<Long> seen = new ArrayList<>();
+        store.scan("BTC-USD", TimeSeriesStore.Series.TICKS, T0, T0 + 60_000, 1, (values, scales) -> seen.add(values[0]));
+        return seen;
+    }
+
+    @Test
+    void shouldCutATornBlockOffBeforeAppending() throws IOException {
+        TimeSeriesStore before = new TimeSeriesStore(dir.toString(), 1024, 5000);
+        before.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0), SCALES);
+        before.flushAll();
+        Path file;
+        try (var files = Files.walk(dir)) {
+            file = files.filter(Files::isRegularFile).findFirst().orElseThrow();
+        }
+        // A crash mid-write: a length prefix promising more than made it to disk
+        Files.write(file, new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        TimeSeriesStore after = new TimeSeriesStore(dir.toString(), 1024, 5000);
+        after.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0 + 1000), SCALES);
+        after.flushAll();
+
+        assertEquals(List.of(T0, T0 + 1000), timestamps(new TimeSeriesStore(dir.toString(), 1024, 5000)));
+    }
+
+    @Test
+    void shouldSeeEachRowOnceWhileTheBufferIsFlushed() {
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 2, 5000);
+        store.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0), SCALES);
+        store.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0 + 1000), SCALES);
+        store.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0 + 2000), SCALES);
+
+        List<Long> seen = new ArrayList<>();
+        store.scan("BTC-USD", TimeSeriesStore.Series.TICKS, T0, T0 + 60_000, 1, (values, scales) -> {
+            seen.add(values[0]);
+            if (seen.size() == 1) {
+                // Fills the block holding T0 + 2000 and writes it behind the scan's cut
+                store.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0 + 3000), SCALES);
+            }
+        });
+
+        assertEquals(List.of(T0, T0 + 1000, T0 + 2000), seen);
+    }
+
+    @Test
+    void shouldDeleteDayFilesPastRetention() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 1024, 5000, 2);
+        for (int day = 0; day < 4; day++) {
+            store.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0 + day * DAY_MS), SCALES);
+        }
+        store.flushAll();
+        Files.writeString(dir.resolve("BTC-USD").resolve("notes.txt"), "kept");
+
+        // Two days back from the last day are kept, the day before that goes
+        store.deleteExpired(T0 + 3 * DAY_MS);
+
+        List<Long> seen = new ArrayList<>();
+        store.scan("BTC-USD", TimeSeriesStore.Series.TICKS, T0, T0 + 4 * DAY_MS, 1, (values, scales) -> seen.add(values[0]));
+        assertEquals(List.of(T0 + DAY_MS, T0 + 2 * DAY_MS, T0 + 3 * DAY_MS), seen);
+        assertTrue(Files.exists(dir.resolve("BTC-USD").resolve("notes.txt")));
+    }
+
+    @Test
+    void shouldKeepEverythingWithoutRetention() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 1024, 5000);
+        store.append("BTC-USD", TimeSeriesStore.Series.TICKS, row(T0), SCALES);
+        store.flushAll();
+
+        store.deleteExpired(T0 + 1000 * DAY_MS);
+
+        try (var files = Files.walk(dir)) {
+            assertFalse(files.filter(Files::isRegularFile).toList().isEmpty());
+        }
+    }
+}
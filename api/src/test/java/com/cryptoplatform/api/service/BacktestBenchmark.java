@@ -0,0 +1,87 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.history.PriceHistoryService;
+import com.cryptoplatform.api.history.TimeSeriesStore;
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.BacktestResult;
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.repository.AgentRuleRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Replay rate of a backtest over a day of recorded ticks on eight symbols, with
+ * 50 price rules per symbol that never fire (every tick is evaluated). Run with
+ * gradle benchmark (excluded from the regular test task).
+ */
+@Tag("benchmark")
+class BacktestBenchmark {
+
+    private static final long T0 = 1_700_006_400_000L; // A UTC midnight
+    private static final int SYMBOLS = 8;
+    private static final int TICKS_PER_SYMBOL = 250_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void ticksReplayedPerSecond() {
+        List<Market> markets = new ArrayList<>();
+        for (int s = 0; s < SYMBOLS; s++) {
+            markets.add(new Market(s, "SYM" + s + "-USD", "SYM" + s + "/USD", "SYM" + s, List.of(), 2, 8, List.of()));
+        }
+        MarketCatalog catalog = new MarketCatalog(markets);
+        TimeSeriesStore store = new TimeSeriesStore(dir.toString(), 1024, 5000);
+        PriceHistoryService history = new PriceHistoryService(store, catalog, 10_000);
+        RuleValidator validator = new RuleValidator(catalog);
+
+        // Random walk around 100, a tick every ~300 ms per symbol
+        Random random = new Random(42);
+        for (int s = 0; s < SYMBOLS; s++) {
+            long price = 10_000;
+            for (int i = 0; i < TICKS_PER_SYMBOL; i++) {
+                price = Math.max(9_000, Math.min(11_000, price + random.nextInt(5) - 2));
+                BigDecimal last = BigDecimal.valueOf(price, 2);
+                history.record(new Ticker("SYM" + s + "-USD", T0 + i * 300L + s, last, last, last, BigDecimal.TEN, BigDecimal.ZERO));
+            }
+        }
+        store.flushAll();
+
+        List<AgentRule> rules = new ArrayList<>();
+        for (int s = 0; s < SYMBOLS; s++) {
+            for (int r = 0; r < 50; r++) {
+                AgentRule rule = new AgentRule(null, "bench", "SYM" + s + "-USD",
+                        r % 2 == 0 ? AgentRule.Condition.PRICE_ABOVE : AgentRule.Condition.PRICE_BELOW,
+                        BigDecimal.valueOf(r % 2 == 0 ? 200 + r : 50 - r / 2), AgentRule.Action.BUY,
+                        AgentRule.AmountType.USD, BigDecimal.TEN);
+                validator.validate(rule);
+                rules.add(rule);
+            }
+        }
+        BacktestService service = new BacktestService(history, mock(AgentRuleRepository.class), validator,
+                92, 100_000_000, 1_000, 100, 0);
+        long to = T0 + 86_400_000L - 1;
+
+        service.run(rules, T0, to, new BigDecimal("10000"));
+        long start = System.nanoTime();
+        BacktestResult result = service.run(rules, T0, to, new BigDecimal("10000"));
+        long elapsedNs = System.nanoTime() - start;
+        service.shutdown();
+
+        assertEquals((long) SYMBOLS * TICKS_PER_SYMBOL, result.ticks());
+        assertEquals(0, result.fills().size());
+        System.out.printf("backtest: %d rules, %d ticks on %d symbols -> %.0f ms, %.0f ticks/s%n",
+                rules.size(), result.ticks(), SYMBOLS, elapsedNs / 1e6, result.ticks() / (elapsedNs / 1e9));
+    }
+}
@@ -0,0 +1,211 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.dto.BacktestSweepRequest;
+import com.cryptoplatform.api.history.PriceHistoryService;
+import com.cryptoplatform.api.history.TimeSeriesStore;
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.BacktestResult;
+import com.cryptoplatform.api.model.BacktestSweep;
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Order;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.repository.AgentRuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class BacktestServiceTest {
+
+    private static final long T0 = 1_700_000_040_000L; // A minute boundary
+    private static final long MINUTE_MS = 60_000L;
+
+    private final MarketCatalog catalog = new MarketCatalog(List.of(
+        new Market(0, "BTC-USD", "BTC/USD", "XXBTZUSD", List.of("XXBT", "XBT"), 1, 8, List.of("bitcoin", "btc")),
+        new Market(1, "ETH-USD", "ETH/USD", "XETHZUSD", List.of("XETH", "ETH"), 2, 8, List.of("ethereum", "eth"))));
+    private final RuleValidator validator = new RuleValidator(catalog);
+
+    @TempDir
+    Path dir;
+
+    private PriceHistoryService history;
+    private BacktestService service;
+
+    @BeforeEach
+    void setUp() {
+        history = new PriceHistoryService(new TimeSeriesStore(dir.toString(), 1024, 5000), catalog, 10_000);
+        service = new BacktestService(history, mock(AgentRuleRepository.class), validator, 92, 1_000_000, 100, 50, 2);
+    }
+
+    private void tick(String symbol, long ts, String last) {
+        BigDecimal price = new BigDecimal(last);
+        history.record(new Ticker(symbol, ts, price, price, price, BigDecimal.TEN, BigDecimal.ZERO));
+    }
+
+    private AgentRule rule(String symbol, AgentRule.Condition condition, String target, AgentRule.Action action,
+                           AgentRule.AmountType amountType, String amount) {
+        AgentRule rule = new AgentRule(null, "test", symbol, condition, new BigDecimal(target), action, amountType,
+            new BigDecimal(amount));
+        validator.validate(rule);
+        return rule;
+    }
+
+    @Test
+    void shouldBuyTheDipAndSellTheRally() {
+        tick("BTC-USD", T0, "100");
+        tick("BTC-USD", T0 + 1000, "95");
+        tick("BTC-USD", T0 + MINUTE_MS, "90");
+        tick("BTC-USD", T0 + 2 * MINUTE_MS, "110");
+
+        BacktestResult result = service.run(List.of(
+            rule("BTC-USD", AgentRule.Condition.PRICE_BELOW, "96", AgentRule.Action.BUY, AgentRule.AmountType.USD, "1000"),
+            rule("BTC-USD", AgentRule.Condition.PRICE_ABOVE, "105", AgentRule.Action.SELL, AgentRule.AmountType.ALL, "0")),
+            T0, T0 + 5 * MINUTE_MS, new BigDecimal("10000"));
+
+        assertEquals(4, result.ticks());
+        assertEquals(2, result.fills().size());
+        BacktestResult.Fill buy = result.fills().get(0);
+        assertEquals(Order.Side.BUY, buy.side());
+        assertEquals(T0 + 1000, buy.tsEpochMs());
+        assertEquals(0, new BigDecimal("95").compareTo(buy.price()));
+        assertEquals(new BigDecimal("10.52631579"), buy.quantity());
+        BacktestResult.Fill sell = result.fills().get(1);
+        assertEquals(Order.Side.SELL, sell.side());
+        assertEquals(buy.quantity(), sell.quantity());
+        assertNull(sell.rejectedReason());
+
+        // Everything was sold: all PnL is realized and fees come out of it
+        assertEquals(0, result.unrealizedPnl().signum());
+        assertEquals(0, result.totalPnl().compareTo(result.realizedPnl()));
+        assertEquals(0, buy.fee().add(sell.fee()).compareTo(result.fees()));
+        assertEquals(0, new BigDecimal("10000").add(result.totalPnl()).compareTo(result.endingEquity()));
+        assertTrue(result.totalPnl().compareTo(new BigDecimal("150")) > 0);
+        // Marked at 90 after the minute of the buy: 8998 + 10.526 * 90 against the 10000 peak
+        assertEquals(0.0055, result.maxDrawdown(), 0.0001);
+    }
+
+    @Test
+    void shouldRejectOrdersTheAccountCannotCover() {
+        tick("BTC-USD", T0, "100");
+        tick("BTC-USD", T0 + 1000, "95");
+
+        BacktestResult result = service.run(List.of(
+            rule("BTC-USD", AgentRule.Condition.PRICE_BELOW, "96", AgentRule.Action.BUY, AgentRule.AmountType.USD, "20000")),
+            T0, T0 + MINUTE_MS, new BigDecimal("10000"));
+
+        assertEquals(1, result.fills().size());
+        assertEquals("Insufficient funds", result.fills().get(0).rejectedReason());
+        assertEquals(0, new BigDecimal("10000").compareTo(result.endingEquity()));
+        assertEquals(0, result.fees().signum());
+        assertEquals(0.0, result.maxDrawdown());
+    }
+
+    @Test
+    void shouldReplayExpressionsAcrossSymbolsInTimeOrder() {
+        tick("BTC-USD", T0, "50000");
+        tick("ETH-USD", T0 + 1000, "2000");
+        tick("BTC-USD", T0 + 2000, "40000");   // ETH / BTC = 0.05
+        tick("ETH-USD", T0 + 3000, "2100");
+
+        AgentRule ratio = new AgentRule(null, "test", "ETH", AgentRule.Condition.EXPRESSION, null,
+            AgentRule.Action.BUY, AgentRule.AmountType.CRYPTO, new BigDecimal("1"));
+        ratio.setExpression("ETH / BTC >= 0.05");
+        validator.validate(ratio);
+
+        BacktestResult result = service.run(List.of(ratio), T0, T0 + MINUTE_MS, new BigDecimal("10000"));
+
+        assertEquals("ETH-USD", ratio.getSymbol());
+        assertEquals(4, result.ticks());
+        assertEquals(1, result.fills().size());
+        // Fires on the BTC tick, buying at the ETH price of that moment
+        assertEquals(T0 + 2000, result.fills().get(0).tsEpochMs());
+        assertEquals(0, new BigDecimal("2000").compareTo(result.fills().get(0).price()));
+        assertEquals(0, new BigDecimal("100").compareTo(result.unrealizedPnl()));
+    }
+
+    @Test
+    void shouldRejectRangesOverTheLimit() {
+        AgentRule rule = rule("BTC-USD", AgentRule.Condition.PRICE_ABOVE, "1", AgentRule.Action.BUY, AgentRule.AmountType.USD, "1");
+
+        assertThrows(IllegalArgumentException.class,
+            () -> service.run(List.of(rule), T0, T0 + 93 * 86_400_000L, new BigDecimal("10000")));
+        assertThrows(IllegalArgumentException.class,
+            () -> service.run(List.of(rule), T0 + 1, T0, new BigDecimal("10000")));
+    }
+
+    private static BacktestSweepRequest.Parameter parameter(int rule, String field, String... values) {
+        BacktestSweepRequest.Parameter parameter = new BacktestSweepRequest.Parameter();
+        parameter.setRule(rule);
+        parameter.setField(field);
+        parameter.setValues(Arrays.stream(values).map(BigDecimal::new).toList());
+        return parameter;
+    }
+
+    private BacktestSweepRequest dipAndRallySweep(BacktestSweepRequest.Parameter... parameters) {
+        BacktestSweepRequest request = new BacktestSweepRequest();
+        request.setRules(List.of(
+            new AgentRule(null, "buy", "BTC", AgentRule.Condition.PRICE_BELOW, BigDecimal.ZERO, AgentRule.Action.BUY,
+                AgentRule.AmountType.USD, new BigDecimal("1000")),
+            new AgentRule(null, "sell", "BTC", AgentRule.Condition.PRICE_ABOVE, BigDecimal.ZERO, AgentRule.Action.SELL,
+                AgentRule.AmountType.ALL, BigDecimal.ZERO)));
+        request.setParameters(List.of(parameters));
+        request.setFrom(T0);
+        request.setTo(T0 + 5 * MINUTE_MS);
+        request.setTop(3);
+        return request;
+    }
+
+    @Test
+    void shouldSweepTheGridAndRankRuns() {
+        tick("BTC-USD", T0, "100");
+        tick("BTC-USD", T0 + 1000, "95");
+        tick("BTC-USD", T0 + MINUTE_MS, "90");
+        tick("BTC-USD", T0 + 2 * MINUTE_MS, "110");
+        tick("BTC-USD", T0 + 3 * MINUTE_MS, "104");
+
+        BacktestService.Sweep sweep = service.planSweep(dipAndRallySweep(
+            parameter(0, "targetPrice", "96", "91", "80"),
+            parameter(1, "targetPrice", "105", "120")));
+        List<BacktestSweep.Run> streamed = Collections.synchronizedList(new ArrayList<>());
+        BacktestSweep result = service.sweep(sweep, streamed::add);
+
+        assertEquals(6, result.runs());
+        assertEquals(6, streamed.size());
+        assertEquals(5, result.ticks());
+        assertEquals(3, result.ranked().size());
+        // Buying at 90 and selling at 110 beats every other point
+        BacktestSweep.Run best = result.ranked().get(0);
+        assertEquals(2, best.run());
+        assertEquals(Map.of("rules[0].targetPrice", new BigDecimal("91"), "rules[1].targetPrice", new BigDecimal("105")),
+            best.parameters());
+        assertEquals(2, best.fills());
+        assertTrue(best.totalPnl().compareTo(result.ranked().get(1).totalPnl()) > 0);
+        // Never buying (targetPrice 80) makes nothing and isn't ranked above a gain
+        assertTrue(streamed.stream().filter(run -> run.run() >= 4).allMatch(run -> run.totalPnl().signum() == 0));
+    }
+
+    @Test
+    void shouldRejectGridsThatCannotRun() {
+        assertThrows(IllegalArgumentException.class,
+            () -> service.planSweep(dipAndRallySweep(parameter(0, "symbol", "1"))));
+        assertThrows(IllegalArgumentException.class,
+            () -> service.planSweep(dipAndRallySweep(parameter(2, "amount", "1"))));
+        // 8 x 8 points, over the limit of 50
+        assertThrows(IllegalArgumentException.class, () -> service.planSweep(dipAndRallySweep(
+            parameter(0, "targetPrice", "1", "2", "3", "4", "5", "6", "7", "8"),
+            parameter(1, "targetPrice", "1", "2", "3", "4", "5", "6", "7", "8"))));
+    }
+}
@@ -0,0 +1,95 @@
+package com.cryptoplatform.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EquitySnapshotServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MarketService marketService = mock(MarketService.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    private final EquitySnapshotService service = new EquitySnapshotService(jdbcTemplate, marketService, redisTemplate);
+
+    EquitySnapshotServiceTest() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    private static ResultSet row(long accountId, String balance, String symbol, String quantity, String avgEntryPrice)
+            throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(accountId);
+        when(rs.getBigDecimal(2)).thenReturn(new BigDecimal(balance));
+        when(rs.getString(3)).thenReturn(symbol);
+        when(rs.getBigDecimal(4)).thenReturn(quantity == null ? null : new BigDecimal(quantity));
+        when(rs.getBigDecimal(5)).thenReturn(avgEntryPrice == null ? null : new BigDecimal(avgEntryPrice));
+        return rs;
+    }
+
+    @Test
+    void shouldValueEachAccountAtLatestPrices() throws SQLException {
+        EquitySnapshotService.Valuation valuation = new EquitySnapshotService.Valuation(
+            Map.of("BTC-USD", new BigDecimal("50000"), "ETH-USD", new BigDecimal("2000")));
+
+        valuation.processRow(row(1, "1000", "BTC-USD", "0.1", "40000"));
+        valuation.processRow(row(1, "1000", "ETH-USD", "2", "1500"));
+        valuation.processRow(row(2, "500.555", null, null, null));
+        // No live price: valued at its average entry
+        valuation.processRow(row(3, "0", "SOL-USD", "10", "20"));
+        valuation.processRow(row(3, "0", "BTC-USD", "0", "45000"));
+
+        assertEquals(List.of(
+            new EquitySnapshotService.Sample(1, new BigDecimal("10000.00")),
+            new EquitySnapshotService.Sample(2, new BigDecimal("500.56")),
+            new EquitySnapshotService.Sample(3, new BigDecimal("200.00"))), valuation.finish());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldBatchInsertWhereCopyIsUnavailable() {
+        List<EquitySnapshotService.Sample> samples = List.of(
+            new EquitySnapshotService.Sample(1, new BigDecimal("10000.00")),
+            new EquitySnapshotService.Sample(2, new BigDecimal("500.56")));
+
+        // The mocked template hands out no Postgres connection, so COPY isn't attempted
+        service.write(60_000L, samples);
+
+        verify(jdbcTemplate).batchUpdate(eq(EquitySnapshotService.INSERT_SQL), eq(samples), eq(1000),
+            any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void shouldSkipMinutesClaimedByAnotherInstance() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+
+        service.snapshot();
+
+        verify(marketService, never()).getAllLatestPrices();
+    }
+
+    @Test
+    void shouldRejectInvertedRanges() {
+        assertThrows(IllegalArgumentException.class, () -> service.getCurve(1L, 2000, 1000));
+    }
+}
@@ -0,0 +1,64 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Account;
+import com.cryptoplatform.api.model.Order;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FundReservationLedgerTest {
+
+    private final FundReservationLedger ledger = new FundReservationLedger();
+
+    @Test
+    void shouldIncludeFeeInRequiredFunds() {
+        Order order = new Order(null, "BTC-USD", Order.Side.BUY, Order.Type.LIMIT,
+                new BigDecimal("2"), new BigDecimal("100"));
+
+        assertEquals(0, new BigDecimal("200.4").compareTo(FundReservationLedger.requiredFunds(order)));
+    }
+
+    @Test
+    void shouldRoundRequiredFundsUpToTheCent() {
+        Order order = new Order(null, "BTC-USD", Order.Side.BUY, Order.Type.LIMIT,
+                new BigDecimal("0.333"), new BigDecimal("10"));
+
+        // 3.33 + 0.00666 fee
+        assertEquals(new BigDecimal("3.34"), FundReservationLedger.requiredFunds(order));
+    }
+
+    @Test
+    void shouldHoldFundsWithoutTouchingTheBalance() {
+        Account account = new Account(new BigDecimal("1000"));
+
+        ledger.reserve(account, new BigDecimal("600"));
+
+        assertEquals(new BigDecimal("600"), account.getReserved());
+        assertEquals(new BigDecimal("1000"), account.getBalance());
+        assertEquals(new BigDecimal("400"), account.getAvailableBalance());
+    }
+
+    @Test
+    void shouldRejectHoldsOverTheAvailableBalance() {
+        Account account = new Account(new BigDecimal("1000"));
+        ledger.reserve(account, new BigDecimal("600"));
+
+        assertThrows(RuntimeException.class, () -> ledger.reserve(account, new BigDecimal("500")));
+        assertEquals(new BigDecimal("600"), account.getReserved());
+    }
+
+    @Test
+    void shouldNeverReleaseBelowZero() {
+        Account account = new Account(new BigDecimal("1000"));
+        ledger.reserve(account, new BigDecimal("300"));
+
+        ledger.release(account, new BigDecimal("200"));
+        assertEquals(new BigDecimal("100"), account.getReserved());
+
+        ledger.release(account, new BigDecimal("200"));
+        assertEquals(0, BigDecimal.ZERO.compareTo(account.getReserved()));
+    }
+}
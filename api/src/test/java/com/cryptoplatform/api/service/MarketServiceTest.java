@@ -0,0 +1,105 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MarketServiceTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MarketCatalog catalog = new MarketCatalog(List.of(
+        new Market(0, "BTC-USD", "BTC/USD", "XXBTZUSD", List.of("XXBT", "XBT"), 1, 8, List.of("bitcoin", "btc")),
+        new Market(1, "ETH-USD", "ETH/USD", "XETHZUSD", List.of("XETH", "ETH"), 2, 8, List.of("ethereum", "eth"))));
+
+    MarketServiceTest() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+    }
+
+    private Ticker ticker(String symbol, long ts, String last) {
+        return new Ticker(symbol, ts, BigDecimal.ONE, BigDecimal.ONE, new BigDecimal(last), BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    private double requests(String result) {
+        return registry.counter("market.ticker.cache.requests", "result", result).count();
+    }
+
+    @Test
+    void shouldServeFedTicksFromMemory() {
+        MarketService service = new MarketService(redisTemplate, catalog, registry, 60_000);
+
+        service.onTick(ticker("BTC-USD", System.currentTimeMillis(), "50000"));
+
+        assertEquals(new BigDecimal("50000"), service.getCurrentPrice("BTC-USD"));
+        verify(hashOperations, never()).entries(anyString());
+        assertEquals(1.0, requests("hit"));
+    }
+
+    @Test
+    void shouldIgnoreOutOfOrderTicks() {
+        MarketService service = new MarketService(redisTemplate, catalog, registry, 60_000);
+
+        service.onTick(ticker("BTC-USD", 2000, "50001"));
+        service.onTick(ticker("BTC-USD", 1000, "49999"));
+
+        assertEquals(new BigDecimal("50001"), service.getCurrentPrice("BTC-USD"));
+    }
+
+    @Test
+    void shouldIgnoreSymbolsOutsideTheCatalog() {
+        MarketService service = new MarketService(redisTemplate, catalog, registry, 60_000);
+
+        service.onTick(ticker("DOGE-USD", System.currentTimeMillis(), "0.1"));
+
+        assertEquals(List.of("BTC-USD", "ETH-USD"), service.getSupportedMarkets());
+        assertEquals(Optional.empty(), service.getLatestPrice("DOGE-USD"));
+        verify(hashOperations, never()).entries(anyString());
+    }
+
+    @Test
+    void shouldFallBackToRedisWhenStaleAndCacheTheResult() {
+        MarketService service = new MarketService(redisTemplate, catalog, registry, -1); // Every fed tick is already stale
+        when(hashOperations.entries("latest:ETH-USD")).thenReturn(Map.of(
+            "symbol", "ETH-USD", "ts", "1700000000000", "last", "3000.5"));
+
+        service.onTick(ticker("ETH-USD", 1, "2000"));
+
+        assertEquals(new BigDecimal("3000.5"), service.getCurrentPrice("ETH-USD"));
+        verify(hashOperations, times(1)).entries("latest:ETH-USD");
+        assertEquals(1.0, requests("miss"));
+    }
+
+    @Test
+    void shouldNotServeAnotherSymbolsTickerAfterItsIdWasReassigned() {
+        MarketCatalog changing = mock(MarketCatalog.class);
+        when(changing.find("BTC-USD")).thenReturn(Optional.of(catalog.find("BTC-USD").orElseThrow()));
+        when(changing.idLimit()).thenReturn(1);
+        MarketService service = new MarketService(redisTemplate, changing, registry, 60_000);
+        service.onTick(ticker("BTC-USD", System.currentTimeMillis(), "50000"));
+
+        // BTC delisted, SOL takes over id 0
+        when(changing.find("SOL-USD")).thenReturn(Optional.of(
+            new Market(0, "SOL-USD", "SOL/USD", "SOLUSD", List.of("SOL"), 2, 8, List.of("solana", "sol"))));
+
+        assertEquals(Optional.empty(), service.getLatestPrice("SOL-USD"));
+        verify(hashOperations).entries("latest:SOL-USD");
+    }
+}
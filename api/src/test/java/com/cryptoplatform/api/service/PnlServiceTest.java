@@ -0,0 +1,172 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.Account;
+import com.cryptoplatform.api.model.AccountPnl;
+import com.cryptoplatform.api.model.Order;
+import com.cryptoplatform.api.model.Position;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.model.User;
+import com.cryptoplatform.api.model.UserContext;
+import com.cryptoplatform.api.repository.AccountRepository;
+import com.cryptoplatform.api.repository.OrderRepository;
+import com.cryptoplatform.api.repository.PositionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PnlServiceTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final PositionRepository positionRepository = mock(PositionRepository.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final UserContextCache userContextCache = mock(UserContextCache.class);
+    private final MarketService marketService = mock(MarketService.class);
+
+    private final List<Account> accounts = new ArrayList<>();
+    private final List<Position> positions = new ArrayList<>();
+    private final List<Order> openSells = new ArrayList<>();
+    private final List<String> watchChanges = new ArrayList<>();
+    private final PnlService service = new PnlService(accountRepository, positionRepository, orderRepository,
+        userContextCache, marketService, new SimpleMeterRegistry(), 600_000, Runnable::run);
+
+    PnlServiceTest() {
+        when(accountRepository.findAllById(anyIterable())).thenAnswer(invocation -> List.copyOf(accounts));
+        when(positionRepository.findByAccountIdIn(anyCollection())).thenAnswer(invocation -> List.copyOf(positions));
+        when(orderRepository.findByUserIdInAndSideAndStatus(anyCollection(), eq(Order.Side.SELL), eq(Order.Status.OPEN)))
+            .thenAnswer(invocation -> List.copyOf(openSells));
+        when(marketService.getLatestPrice(anyString())).thenReturn(Optional.empty());
+        service.setWatchListener(watchChanges::add);
+    }
+
+    private Account account(long userId, String balance) {
+        Account account = new Account(new BigDecimal(balance));
+        account.setId(userId * 10);
+        accounts.add(account);
+        when(userContextCache.getById(userId))
+            .thenReturn(new UserContext(userId, "user" + userId + "@example.com", User.TradingMode.PAPER, account.getId()));
+        return account;
+    }
+
+    private Position position(Account account, String symbol, String quantity, String avgEntryPrice) {
+        Position position = new Position(account, symbol, new BigDecimal(quantity));
+        position.setAvgEntryPrice(new BigDecimal(avgEntryPrice));
+        positions.add(position);
+        return position;
+    }
+
+    private static Ticker ticker(String symbol, long ts, String last) {
+        BigDecimal price = new BigDecimal(last);
+        return new Ticker(symbol, ts, price, price, price, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    @Test
+    void shouldMarkHoldersToEachTick() {
+        Account btcHolder = account(1, "1000");
+        position(btcHolder, "BTC-USD", "2", "100");
+        Account ethHolder = account(2, "500");
+        position(ethHolder, "ETH-USD", "1", "50");
+
+        AccountPnl initial = service.getPnl(1L);
+        service.getPnl(2L);
+        // No price yet: valued at cost
+        assertEquals(0, new BigDecimal("200").compareTo(initial.marketValue()));
+        assertEquals(0, initial.unrealizedPnl().signum());
+        assertNotNull(service.takeChanged(2L));
+
+        service.onTick(ticker("BTC-USD", 1000, "110"));
+
+        AccountPnl pnl = service.takeChanged(1L);
+        assertEquals(new BigDecimal("220.00"), pnl.marketValue());
+        assertEquals(new BigDecimal("1220.00"), pnl.equity());
+        assertEquals(new BigDecimal("20.00"), pnl.unrealizedPnl());
+        assertEquals(0, new BigDecimal("110").compareTo(pnl.positions().get(0).markPrice()));
+        assertEquals(1000, pnl.updatedAt());
+        // The ETH holder isn't touched by a BTC tick
+        assertNull(service.takeChanged(2L));
+        assertNull(service.takeChanged(1L));
+    }
+
+    @Test
+    void shouldWatchOnlyHeldSymbols() {
+        Account account = account(1, "1000");
+        Position btc = position(account, "BTC-USD", "1", "100");
+        position(account, "ETH-USD", "0", "0");
+
+        service.getPnl(1L);
+
+        assertTrue(service.isWatched("BTC-USD"));
+        assertFalse(service.isWatched("ETH-USD"));
+        assertEquals(List.of("BTC-USD"), watchChanges);
+
+        // Sold out, on this instance: the commit reloads the account
+        btc.setQuantity(BigDecimal.ZERO);
+        btc.setRealizedPnl(new BigDecimal("9.5"));
+        service.onAccountUpdate(new AccountUpdateEvent(1L, account.getId(), new Order(), new BigDecimal("1109.5"),
+                BigDecimal.ZERO, btc));
+
+        assertFalse(service.isWatched("BTC-USD"));
+        assertEquals(List.of("BTC-USD", "BTC-USD"), watchChanges);
+        AccountPnl pnl = service.getPnl(1L);
+        assertEquals(0, new BigDecimal("9.5").compareTo(pnl.realizedPnl()));
+        assertEquals(0, pnl.marketValue().signum());
+    }
+
+    @Test
+    void shouldValueQuantityLockedByOpenLimitSells() {
+        Account account = account(1, "1000");
+        position(account, "BTC-USD", "1", "100");
+        User user = new User();
+        user.setId(1L);
+        openSells.add(new Order(user, "BTC-USD", Order.Side.SELL, Order.Type.LIMIT, new BigDecimal("0.5"),
+            new BigDecimal("150")));
+        service.onTick(ticker("BTC-USD", 1000, "120"));
+
+        AccountPnl pnl = service.getPnl(1L);
+
+        assertEquals(0, new BigDecimal("1.5").compareTo(pnl.positions().get(0).quantity()));
+        assertEquals(new BigDecimal("180.00"), pnl.marketValue());
+        assertEquals(new BigDecimal("30.00"), pnl.unrealizedPnl());
+    }
+
+    @Test
+    void shouldStopTrackingIdleAccounts() {
+        PnlService idle = new PnlService(accountRepository, positionRepository, orderRepository,
+            userContextCache, marketService, new SimpleMeterRegistry(), -1, Runnable::run);
+        Account account = account(1, "1000");
+        position(account, "BTC-USD", "1", "100");
+        idle.getPnl(1L);
+        assertTrue(idle.isWatched("BTC-USD"));
+
+        idle.refresh();
+
+        assertFalse(idle.isWatched("BTC-USD"));
+        // A trade of an untracked account doesn't load it
+        idle.onAccountUpdate(new AccountUpdateEvent(1L, account.getId(), new Order(), BigDecimal.ONE, BigDecimal.ZERO, null));
+        assertFalse(idle.isWatched("BTC-USD"));
+    }
+
+    @Test
+    void shouldRejectLiveTradingUsers() {
+        when(userContextCache.getById(3L)).thenReturn(new UserContext(3L, "live@example.com", User.TradingMode.LIVE, 30L));
+
+        assertThrows(IllegalArgumentException.class, () -> service.getPnl(3L));
+        assertThrows(IllegalArgumentException.class, () -> service.takeChanged(3L));
+    }
+}
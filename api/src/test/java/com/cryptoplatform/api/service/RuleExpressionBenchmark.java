@@ -0,0 +1,103 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.Ticker;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Evaluation rate of compiled rule expressions, alone and through ExpressionTriggers
+ * with 10k rules spread over 100 symbols (a tick only evaluates the rules reading
+ * its symbol). Run with gradle benchmark (excluded from the regular test task).
+ */
+@Tag("benchmark")
+class RuleExpressionBenchmark {
+
+    private static final int SYMBOLS = 100;
+    private static final int RULES = 10_000;
+    private static final int WARMUP_TICKS = 100_000;
+    private static final int MEASURED_TICKS = 500_000;
+
+    private static String symbol(int i) {
+        return "SYM" + i + "-USD";
+    }
+
+    // Never holds for the prices the ticks carry, so every rule keeps being evaluated
+    private static String expression(Random random) {
+        String a = symbol(random.nextInt(SYMBOLS));
+        String b = symbol(random.nextInt(SYMBOLS));
+        return switch (random.nextInt(3)) {
+            case 0 -> a + " < " + (random.nextInt(50) + 1);
+            case 1 -> a + " < 50 AND " + b + " / " + a + " > 1000";
+            default -> "NOT (" + a + ".volume > 5) OR (" + a + ".ask - " + a + ".bid) / " + a + " > 0.5 AND " + b + " > 1000";
+        };
+    }
+
+    @Test
+    void compiledEvaluationsPerSecond() {
+        Random random = new Random(42);
+        RuleExpression.Evaluator[] evaluators = new RuleExpression.Evaluator[1_000];
+        for (int i = 0; i < evaluators.length; i++) {
+            evaluators[i] = RuleExpression.parse(expression(random), s -> s)
+                    .compile(s -> Integer.parseInt(s.substring(3, s.indexOf('-'))) * RuleExpression.Field.COUNT);
+        }
+        double[] values = new double[SYMBOLS * RuleExpression.Field.COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + random.nextInt(100);
+        }
+
+        int held = 0;
+        for (int round = 0; round < 2_000; round++) {
+            for (RuleExpression.Evaluator evaluator : evaluators) {
+                if (evaluator.test(values)) held++;
+            }
+        }
+        long evaluations = 20_000L * evaluators.length;
+        long start = System.nanoTime();
+        for (int round = 0; round < 20_000; round++) {
+            values[round % values.length] += 0.01;
+            for (RuleExpression.Evaluator evaluator : evaluators) {
+                if (evaluator.test(values)) held++;
+            }
+        }
+        long elapsedNs = System.nanoTime() - start;
+
+        assertEquals(0, held);
+        System.out.printf("compiled: %d evaluations -> %.1f ns/evaluation, %.0f evaluations/s%n",
+                evaluations, (double) elapsedNs / evaluations, evaluations / (elapsedNs / 1e9));
+    }
+
+    @Test
+    void tenThousandRulesAcrossOneHundredSymbols() {
+        Random random = new Random(42);
+        RuleTriggerIndex index = new RuleTriggerIndex();
+        for (int i = 0; i < RULES; i++) {
+            index.add(new RuleTriggerIndex.Trigger(i, i % 500, symbol(0), AgentRule.Condition.EXPRESSION,
+                    BigDecimal.ZERO, 0, RuleExpression.parse(expression(random), s -> s)));
+        }
+
+        runTicks(index, WARMUP_TICKS);
+        long start = System.nanoTime();
+        int fired = runTicks(index, MEASURED_TICKS);
+        long elapsedNs = System.nanoTime() - start;
+
+        assertEquals(0, fired);
+        assertEquals(RULES, index.size());
+        System.out.printf("fire: %d rules, %d symbols, %d ticks -> %.1f ns/tick, %.0f ticks/s%n",
+                RULES, SYMBOLS, MEASURED_TICKS, (double) elapsedNs / MEASURED_TICKS, MEASURED_TICKS / (elapsedNs / 1e9));
+    }
+
+    private static int runTicks(RuleTriggerIndex index, int count) {
+        int fired = 0;
+        BigDecimal price = new BigDecimal("100");
+        for (int i = 0; i < count; i++) {
+            fired += index.fire(new Ticker(symbol(i % SYMBOLS), i, price, price, price, BigDecimal.TEN, BigDecimal.ZERO)).size();
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,82 @@
+package com.cryptoplatform.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleExpressionTest {
+
+    private static final List<String> MARKETS = List.of("BTC-USD", "ETH-USD", "SOL-USD");
+
+    // BTC and BTC-USD both resolve, as in RuleValidator
+    private static final UnaryOperator<String> RESOLVER = token -> {
+        if (MARKETS.contains(token)) return token;
+        if (MARKETS.contains(token + "-USD")) return token + "-USD";
+        throw new IllegalArgumentException("Unknown symbol in expression: " + token);
+    };
+
+    // BTC-USD at slots 0-3, ETH-USD at 4-7, SOL-USD at 8-11
+    private static boolean eval(String text, double... values) {
+        return RuleExpression.parse(text, RESOLVER)
+                .compile(symbol -> MARKETS.indexOf(symbol) * RuleExpression.Field.COUNT)
+                .test(values);
+    }
+
+    private static double[] lasts(double btc, double eth, double sol) {
+        return new double[] { btc, 0, 0, 0, eth, 0, 0, 0, sol, 0, 0, 0 };
+    }
+
+    @Test
+    void shouldEvaluateCompoundConditions() {
+        String text = "BTC < 60000 AND ETH / BTC > 0.05";
+
+        assertTrue(eval(text, lasts(55000, 3000, 0)));
+        assertFalse(eval(text, lasts(61000, 3500, 0)));
+        assertFalse(eval(text, lasts(55000, 2000, 0)));
+    }
+
+    @Test
+    void shouldFollowOperatorPrecedence() {
+        // AND binds tighter than OR, * tighter than -
+        assertTrue(eval("BTC > 1 OR ETH > 1 AND SOL > 1", lasts(2, 0, 0)));
+        assertFalse(eval("(BTC > 1 OR ETH > 1) AND SOL > 1", lasts(2, 0, 0)));
+        assertTrue(eval("BTC - 2 * ETH >= 0", lasts(4, 2, 0)));
+        assertFalse(eval("(BTC - 2) * ETH >= 5", lasts(4, 2, 0)));
+        assertTrue(eval("NOT BTC < 3 AND -ETH < 0", lasts(4, 2, 0)));
+    }
+
+    @Test
+    void shouldReadFieldsOfASymbol() {
+        double[] values = { 100, 99, 101, 5000, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+        assertTrue(eval("(btc-usd.ask - BTC-USD.bid) / BTC.last <= 0.02 AND BTC.volume > 4000", values));
+        assertThrows(IllegalArgumentException.class, () -> eval("BTC.open > 1", values));
+    }
+
+    @Test
+    void shouldRenderCanonicalTextThatParsesToTheSameExpression() {
+        RuleExpression expression = RuleExpression.parse(
+                "not (btc < 60000 or eth.bid > 2 * 1500) and ((SOL - ETH) - (BTC - 1)) / 2 > 0.5", RESOLVER);
+        String canonical = expression.toString();
+
+        assertEquals("NOT (BTC-USD < 60000 OR ETH-USD.bid > 3000) AND (SOL-USD - ETH-USD - (BTC-USD - 1)) / 2 > 0.5",
+                canonical);
+        assertEquals(canonical, RuleExpression.parse(canonical, symbol -> symbol).toString());
+        assertEquals(Set.of("BTC-USD", "ETH-USD", "SOL-USD"), expression.symbols());
+    }
+
+    @Test
+    void shouldRejectMalformedExpressions() {
+        for (String text : List.of("", "BTC", "BTC < ", "BTC < 5 AND", "(BTC < 5", "BTC < 5)",
+                "BTC + (ETH < 5) > 1", "BTC < 5 AND 3", "BTC == 5", "DOGE < 1", "BTC < 1 / 0", "BTC-ETH < 1")) {
+            assertThrows(IllegalArgumentException.class, () -> RuleExpression.parse(text, RESOLVER), text);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.history.PriceHistoryService;
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.Order;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.model.User;
+import com.cryptoplatform.api.repository.AgentRuleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RuleMonitorServiceTest {
+
+    private final AgentRuleRepository ruleRepository = mock(AgentRuleRepository.class);
+    private final TradingServiceRouter tradingService = mock(TradingServiceRouter.class);
+    private final RuleShardLeases leases = mock(RuleShardLeases.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    private final MarketService marketService = mock(MarketService.class);
+    private final RuleMonitorService monitor;
+
+    RuleMonitorServiceTest() {
+        when(leases.owns(anyLong())).thenReturn(true);
+        when(leases.getInstanceId()).thenReturn("instance-1");
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        when(tradingService.placeOrder(eq(1L), any(TradeRequest.class))).thenReturn(new Order());
+        monitor = new RuleMonitorService(ruleRepository, tradingService, leases, redisTemplate,
+                new RuleExecutor(new SimpleMeterRegistry(), 1, Runnable::run), mock(PlatformTransactionManager.class),
+                mock(PriceHistoryService.class), marketService);
+    }
+
+    private static Ticker ticker(String symbol, String last) {
+        BigDecimal price = new BigDecimal(last);
+        return new Ticker(symbol, System.currentTimeMillis(), price, price, price, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    // Buys $1000 of SOL once ETH is above 2000
+    private void armSolOnEthRule() {
+        User user = new User();
+        user.setId(1L);
+        AgentRule rule = new AgentRule(user, "test", "SOL-USD", AgentRule.Condition.EXPRESSION, BigDecimal.ZERO,
+                AgentRule.Action.BUY, AgentRule.AmountType.USD, new BigDecimal("1000"));
+        rule.setId(7L);
+        rule.setExpression("ETH-USD > 2000");
+        when(ruleRepository.findByIsActive(true)).thenReturn(List.of(rule));
+        when(ruleRepository.findById(7L)).thenReturn(Optional.of(rule));
+        monitor.reloadRules();
+    }
+
+    @Test
+    void shouldSizeCrossSymbolOrdersAtThePriceOfTheTradedSymbol() {
+        armSolOnEthRule();
+        when(marketService.getLatestPrice("SOL-USD")).thenReturn(Optional.of(ticker("SOL-USD", "100")));
+
+        monitor.onTick(ticker("ETH-USD", "1900"));
+        monitor.onTick(ticker("ETH-USD", "2500"));
+
+        ArgumentCaptor<TradeRequest> request = ArgumentCaptor.forClass(TradeRequest.class);
+        verify(tradingService).placeOrder(eq(1L), request.capture());
+        assertEquals("SOL-USD", request.getValue().getSymbol());
+        // $1000 at the SOL price, not at the ETH price of the tick
+        assertEquals(0, new BigDecimal("10").compareTo(request.getValue().getQuantity()));
+    }
+
+    @Test
+    void shouldNotExecuteWithoutAPriceForTheTradedSymbol() {
+        armSolOnEthRule();
+        when(marketService.getLatestPrice("SOL-USD")).thenReturn(Optional.empty());
+
+        monitor.onTick(ticker("ETH-USD", "1900"));
+        monitor.onTick(ticker("ETH-USD", "2500"));
+
+        verify(tradingService, never()).placeOrder(anyLong(), any(TradeRequest.class));
+        verify(valueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void shouldReArmRulesWhoseOrderFailed() {
+        armSolOnEthRule();
+        when(marketService.getLatestPrice("SOL-USD")).thenReturn(Optional.of(ticker("SOL-USD", "100")));
+        when(tradingService.placeOrder(eq(1L), any(TradeRequest.class))).thenThrow(new RuntimeException("Insufficient funds"));
+
+        monitor.onTick(ticker("ETH-USD", "2500"));
+
+        verify(redisTemplate).delete("rules:execution:7");
+        verify(ruleRepository, never()).save(any(AgentRule.class));
+    }
+
+    @Test
+    void shouldKeepTheExecutionKeyOnceTheOrderIsIn() {
+        armSolOnEthRule();
+        when(marketService.getLatestPrice("SOL-USD")).thenReturn(Optional.of(ticker("SOL-USD", "100")));
+        when(ruleRepository.save(any(AgentRule.class))).thenThrow(new RuntimeException("Connection reset"));
+
+        monitor.onTick(ticker("ETH-USD", "2500"));
+
+        verify(tradingService).placeOrder(eq(1L), any(TradeRequest.class));
+        verify(redisTemplate, never()).delete(anyString());
+    }
+}
@@ -0,0 +1,75 @@
+package com.cryptoplatform.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RuleShardLeasesTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> members = mock(ZSetOperations.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+
+    RuleShardLeasesTest() {
+        when(redisTemplate.opsForZSet()).thenReturn(members);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldTakeAllShardsAloneAndGiveHalfBackWhenAnInstanceJoins() {
+        RuleShardLeases leases = new RuleShardLeases(redisTemplate, 8, 15_000);
+        when(values.setIfAbsent(anyString(), eq(leases.getInstanceId()), any(Duration.class))).thenReturn(true);
+        when(members.zCard("rules:members")).thenReturn(1L);
+
+        leases.rebalance();
+        assertEquals(8, leases.getOwnedShards().size());
+
+        // Renewals succeed, but the fair share is now 4 of 8
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(1L);
+        when(members.zCard("rules:members")).thenReturn(2L);
+        leases.rebalance();
+
+        assertEquals(Set.of(0, 1, 2, 3), leases.getOwnedShards());
+    }
+
+    @Test
+    void shouldStandDownWhenRedisFails() {
+        RuleShardLeases leases = new RuleShardLeases(redisTemplate, 4, 15_000);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        when(members.zCard("rules:members")).thenReturn(1L);
+        leases.rebalance();
+        assertEquals(4, leases.getOwnedShards().size());
+
+        when(members.zCard("rules:members")).thenThrow(new IllegalStateException("connection lost"));
+        leases.rebalance();
+
+        assertTrue(leases.getOwnedShards().isEmpty());
+    }
+
+    @Test
+    void shouldMapEveryRuleToAShard() {
+        RuleShardLeases leases = new RuleShardLeases(redisTemplate, 8, 15_000);
+        for (long id : List.of(1L, 2L, 3L, 1_000_000L, Long.MAX_VALUE)) {
+            int shard = leases.shardOf(id);
+            assertTrue(shard >= 0 && shard < 8);
+        }
+    }
+}
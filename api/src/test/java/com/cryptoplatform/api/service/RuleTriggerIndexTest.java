@@ -0,0 +1,143 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleTriggerIndexTest {
+
+    private static final long MINUTE_MS = 60_000L;
+
+    private final RuleTriggerIndex index = new RuleTriggerIndex();
+    private final long start = System.currentTimeMillis();
+
+    private static RuleTriggerIndex.Trigger trigger(long id, AgentRule.Condition condition, String target) {
+        return trigger(id, condition, target, 0);
+    }
+
+    private static RuleTriggerIndex.Trigger trigger(long id, AgentRule.Condition condition, String target, int period) {
+        return new RuleTriggerIndex.Trigger(id, 1, "BTC-USD", condition, new BigDecimal(target), period, null);
+    }
+
+    private List<Long> fire(String price) {
+        return fire(start, price, "0");
+    }
+
+    private List<Long> fire(long ts, String price, String volume24h) {
+        return fire("BTC-USD", ts, price, volume24h);
+    }
+
+    private List<Long> fire(String symbol, long ts, String price, String volume24h) {
+        BigDecimal last = new BigDecimal(price);
+        return index.fire(new Ticker(symbol, ts, last, last, last, new BigDecimal(volume24h), BigDecimal.ZERO))
+                .stream().map(RuleTriggerIndex.Trigger::ruleId).sorted().toList();
+    }
+
+    @Test
+    void shouldFireOnlyCrossedThresholds() {
+        index.add(trigger(1, AgentRule.Condition.PRICE_ABOVE, "100"));
+        index.add(trigger(2, AgentRule.Condition.PRICE_ABOVE, "110"));
+        index.add(trigger(3, AgentRule.Condition.PRICE_BELOW, "90"));
+        index.add(trigger(4, AgentRule.Condition.PRICE_BELOW, "80"));
+
+        assertEquals(List.of(), fire("95"));
+        assertEquals(List.of(1L), fire("100.00"));
+        assertEquals(List.of(3L, 4L), fire("79"));
+        assertEquals(1, index.size());
+        assertTrue(index.contains(2));
+    }
+
+    @Test
+    void shouldFireEqualsWithinTolerance() {
+        index.add(trigger(1, AgentRule.Condition.PRICE_EQUALS, "1000"));
+        index.add(trigger(2, AgentRule.Condition.PRICE_EQUALS, "2000"));
+
+        assertEquals(List.of(), fire("1001.5"));
+        assertEquals(List.of(1L), fire("999"));
+        assertEquals(List.of(2L), fire("2002"));
+    }
+
+    @Test
+    void shouldNotFireRemovedOrOtherSymbolRules() {
+        index.add(trigger(1, AgentRule.Condition.PRICE_ABOVE, "100"));
+        index.add(new RuleTriggerIndex.Trigger(2, 1, "ETH-USD", AgentRule.Condition.PRICE_ABOVE, new BigDecimal("1"), 0, null));
+        index.remove(1);
+
+        assertEquals(List.of(), fire("200"));
+        assertFalse(index.contains(1));
+        assertTrue(index.contains(2));
+    }
+
+    @Test
+    void shouldReplaceAllOnReload() {
+        index.add(trigger(1, AgentRule.Condition.PRICE_ABOVE, "100"));
+        index.replaceAll(List.of(trigger(2, AgentRule.Condition.PRICE_BELOW, "50")));
+
+        assertEquals(List.of(), fire("150"));
+        assertEquals(List.of(2L), fire("50"));
+    }
+
+    @Test
+    void shouldFirePercentMovesAgainstTheirWindow() {
+        index.add(trigger(1, AgentRule.Condition.PERCENT_DROP, "5", 60));
+        index.add(trigger(2, AgentRule.Condition.PERCENT_DROP, "10", 60));
+        index.add(trigger(3, AgentRule.Condition.PERCENT_DROP, "5", 2));
+        index.add(trigger(4, AgentRule.Condition.PERCENT_RISE, "3", 60));
+
+        assertEquals(List.of(), fire(start, "100", "0"));
+        // 4% below the high: nothing yet
+        assertEquals(List.of(), fire(start + 10 * MINUTE_MS, "96", "0"));
+        // 5.5% below the 60-minute high; the 100 has left the 2-minute window
+        assertEquals(List.of(1L), fire(start + 11 * MINUTE_MS, "94.5", "0"));
+        // 3.2% above the 60-minute low
+        assertEquals(List.of(4L), fire(start + 12 * MINUTE_MS, "97.5", "0"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void shouldFireVolumeAboveThreshold() {
+        index.add(trigger(1, AgentRule.Condition.VOLUME_ABOVE, "1000"));
+        index.add(trigger(2, AgentRule.Condition.VOLUME_ABOVE, "5000"));
+
+        assertEquals(List.of(), fire(start, "100", "999"));
+        assertEquals(List.of(1L), fire(start, "100", "1200"));
+    }
+
+    @Test
+    void shouldFireAllRulesOfAnEmaCrossTogether() {
+        index.add(trigger(1, AgentRule.Condition.CROSS_ABOVE_EMA, "0", 3));
+        index.add(trigger(2, AgentRule.Condition.CROSS_ABOVE_EMA, "0", 3));
+        index.add(trigger(3, AgentRule.Condition.CROSS_BELOW_EMA, "0", 3));
+
+        // Falling closes warm the EMA up with the price below it
+        for (int minute = 0; minute < 4; minute++) {
+            assertEquals(List.of(), fire(start + minute * MINUTE_MS, String.valueOf(100 - minute * 5), "0"));
+        }
+        assertEquals(List.of(), fire(start + 4 * MINUTE_MS, "80", "0"));
+        assertEquals(List.of(1L, 2L), fire(start + 4 * MINUTE_MS + 1000, "99", "0"));
+        assertEquals(List.of(3L), fire(start + 4 * MINUTE_MS + 2000, "70", "0"));
+    }
+
+    @Test
+    void shouldEvaluateExpressionsOnTicksOfTheSymbolsTheyRead() {
+        RuleExpression expression = RuleExpression.parse("BTC-USD < 60000 AND ETH-USD / BTC-USD > 0.05", symbol -> symbol);
+        index.add(new RuleTriggerIndex.Trigger(1, 1, "ETH-USD", AgentRule.Condition.EXPRESSION, BigDecimal.ZERO, 0, expression));
+
+        assertTrue(index.hasRules("BTC-USD"));
+        assertTrue(index.hasRules("ETH-USD"));
+        assertFalse(index.hasRules("SOL-USD"));
+        // ETH hasn't ticked yet
+        assertEquals(List.of(), fire("BTC-USD", start, "59000", "0"));
+        assertEquals(List.of(), fire("ETH-USD", start, "2900", "0"));
+        assertEquals(List.of(1L), fire("BTC-USD", start, "57000", "0"));
+        assertFalse(index.contains(1));
+        assertFalse(index.hasRules("ETH-USD"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.AgentRule;
+import com.cryptoplatform.api.model.Candle;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolIndicatorsTest {
+
+    private static final long MINUTE_MS = 60_000L;
+
+    private final long now = System.currentTimeMillis() / MINUTE_MS * MINUTE_MS;
+
+    private static Candle bar(long ts, double high, double low, double close) {
+        return new Candle(ts, BigDecimal.valueOf(close), BigDecimal.valueOf(high), BigDecimal.valueOf(low),
+            BigDecimal.valueOf(close), BigDecimal.ZERO, 1);
+    }
+
+    @Test
+    void shouldSeedWindowsFromRecordedBars() {
+        List<long[]> requested = new ArrayList<>();
+        SymbolIndicators indicators = new SymbolIndicators("BTC-USD", (symbol, from, to) -> {
+            requested.add(new long[] { from, to });
+            return List.of(bar(now - 30 * MINUTE_MS, 120, 110, 115), bar(now - 5 * MINUTE_MS, 105, 90, 100));
+        });
+
+        indicators.require(AgentRule.Condition.PERCENT_DROP, 60, now);
+        indicators.update(now, 100);
+
+        assertEquals(now - 59 * MINUTE_MS, requested.get(0)[0]);
+        assertEquals(120, indicators.high(60));
+        assertEquals(90, indicators.low(60));
+        assertTrue(Double.isNaN(indicators.high(15)));
+    }
+
+    @Test
+    void shouldDropExtremesThatLeaveTheWindow() {
+        SymbolIndicators indicators = new SymbolIndicators("BTC-USD", (symbol, from, to) -> List.of());
+        indicators.require(AgentRule.Condition.PERCENT_RISE, 3, now);
+
+        indicators.update(now, 100);
+        indicators.update(now + MINUTE_MS, 80);
+        indicators.update(now + 2 * MINUTE_MS, 90);
+        assertEquals(100, indicators.high(3));
+        assertEquals(80, indicators.low(3));
+
+        indicators.update(now + 3 * MINUTE_MS, 85);
+        assertEquals(90, indicators.high(3));
+        assertEquals(80, indicators.low(3));
+
+        indicators.update(now + 4 * MINUTE_MS, 88);
+        assertEquals(90, indicators.high(3));
+        assertEquals(85, indicators.low(3));
+    }
+
+    @Test
+    void shouldReportAnEmaCrossOnlyOnTheTickThatCrosses() {
+        SymbolIndicators indicators = new SymbolIndicators("BTC-USD", (symbol, from, to) -> List.of(
+            bar(now - 3 * MINUTE_MS, 100, 100, 100),
+            bar(now - 2 * MINUTE_MS, 100, 100, 100),
+            bar(now - MINUTE_MS, 100, 100, 100)));
+        indicators.require(AgentRule.Condition.CROSS_ABOVE_EMA, 2, now);
+
+        indicators.update(now, 95);
+        assertFalse(indicators.crossedAbove(2));
+        indicators.update(now + 1000, 101);
+        assertTrue(indicators.crossedAbove(2));
+        indicators.update(now + 2000, 102);
+        assertFalse(indicators.crossedAbove(2));
+        assertFalse(indicators.crossedBelow(2));
+    }
+}
@@ -0,0 +1,92 @@
+package com.cryptoplatform.api.service;
+
+import com.cryptoplatform.api.model.User;
+import com.cryptoplatform.api.model.UserContext;
+import com.cryptoplatform.api.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserContextCacheTest {
+
+    private static final UserContext PAPER = new UserContext(1L, "user@example.com", User.TradingMode.PAPER, 10L);
+    private static final UserContext LIVE = new UserContext(1L, "user@example.com", User.TradingMode.LIVE, 10L);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+    private final UserContextCache cache = new UserContextCache(userRepository, redisTemplate, container, 600_000);
+
+    private static Message invalidation(String body) {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+
+    @Test
+    void shouldServeRepeatLookupsFromTheCache() {
+        when(userRepository.findContextById(1L)).thenReturn(Optional.of(PAPER));
+
+        cache.getById(1L);
+        assertEquals(PAPER, cache.getById(1L));
+
+        verify(userRepository, times(1)).findContextById(1L);
+    }
+
+    @Test
+    void shouldReadTheStoredModeForOrdersWhateverIsCached() {
+        when(userRepository.findContextById(1L)).thenReturn(Optional.of(PAPER), Optional.of(LIVE));
+        cache.getById(1L);
+
+        // Switched on another instance, whose invalidation never arrived
+        assertEquals(LIVE, cache.getFresh(1L));
+        assertEquals(LIVE, cache.getById(1L));
+    }
+
+    @Test
+    void shouldBroadcastInvalidations() {
+        when(userRepository.findContextById(1L)).thenReturn(Optional.of(PAPER), Optional.of(LIVE));
+        cache.getById(1L);
+
+        cache.invalidate(1L);
+
+        verify(redisTemplate).convertAndSend(UserContextCache.INVALIDATE_CHANNEL, "1");
+        assertEquals(LIVE, cache.getById(1L));
+    }
+
+    @Test
+    void shouldEvictOnInvalidationsFromOtherInstances() {
+        cache.init();
+        verify(container).addMessageListener(cache, new ChannelTopic(UserContextCache.INVALIDATE_CHANNEL));
+        when(userRepository.findContextById(1L)).thenReturn(Optional.of(LIVE), Optional.of(PAPER));
+        cache.getById(1L);
+
+        cache.onMessage(invalidation("1"), null);
+
+        assertEquals(PAPER, cache.getById(1L));
+    }
+
+    @Test
+    void shouldStillEvictLocallyWhenTheChannelIsUnavailable() {
+        when(userRepository.findContextById(1L)).thenReturn(Optional.of(PAPER), Optional.of(LIVE));
+        doThrow(new RuntimeException("Connection refused")).when(redisTemplate).convertAndSend(anyString(), anyString());
+        cache.getById(1L);
+
+        cache.invalidate(1L);
+
+        assertEquals(LIVE, cache.getById(1L));
+    }
+}
@@ -0,0 +1,92 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Order;
+import com.cryptoplatform.api.model.User;
+import com.cryptoplatform.api.security.AuthenticatedUser;
+import com.cryptoplatform.api.service.AccountUpdateEvent;
+import com.cryptoplatform.api.service.PnlService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.socket.CloseStatus;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountWebSocketHandlerTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+    private final AccountWebSocketHandler handler = new AccountWebSocketHandler(new ObjectMapper(), mock(PnlService.class), new PriceStreamProperties(), new SimpleMeterRegistry(), redisTemplate, container,
+            Runnable::run);
+
+    private StubWebSocketSession connect(String id, long userId) {
+        StubWebSocketSession session = new StubWebSocketSession(id);
+        session.getAttributes().put(AccountHandshakeInterceptor.USER_ATTRIBUTE,
+                new AuthenticatedUser(userId, "user@example.com", User.TradingMode.PAPER, userId));
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static Message channelMessage(String channel, String body) {
+        Message message = mock(Message.class);
+        when(message.getChannel()).thenReturn(channel.getBytes(StandardCharsets.UTF_8));
+        when(message.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+
+    @Test
+    void shouldListenOnTheUsersChannelWhileTheyAreConnected() {
+        StubWebSocketSession first = connect("s1", 1);
+        StubWebSocketSession second = connect("s2", 1);
+        verify(container).addMessageListener(handler, new ChannelTopic("account:1"));
+
+        handler.afterConnectionClosed(first, CloseStatus.NORMAL);
+        handler.afterConnectionClosed(second, CloseStatus.NORMAL);
+        verify(container).removeMessageListener(handler, new ChannelTopic("account:1"));
+    }
+
+    @Test
+    void shouldPublishUpdatesForSessionsOnAnyInstance() {
+        // Nobody is connected here; a tab on another instance still has to hear about it
+        handler.onAccountUpdate(new AccountUpdateEvent(1L, 1L, new Order(), new BigDecimal("1000"), BigDecimal.ZERO, null));
+
+        // Order and balance, no position
+        verify(redisTemplate, times(2)).convertAndSend(eq("account:1"), anyString());
+    }
+
+    @Test
+    void shouldForwardChannelMessagesToTheUsersSessions() {
+        StubWebSocketSession mine = connect("s1", 1);
+        StubWebSocketSession other = connect("s2", 2);
+
+        handler.onMessage(channelMessage("account:1", "{\"type\":\"balance\"}"), null);
+
+        assertEquals(1, mine.getSentCount());
+        assertEquals("{\"type\":\"balance\"}", mine.getMessages().get(0).getPayload());
+        assertEquals(0, other.getSentCount());
+    }
+
+    @Test
+    void shouldDeliverLocallyWhenTheChannelIsUnavailable() {
+        StubWebSocketSession session = connect("s1", 1);
+        doThrow(new RuntimeException("Connection refused")).when(redisTemplate).convertAndSend(anyString(), anyString());
+
+        handler.onAccountUpdate(new AccountUpdateEvent(1L, 1L, new Order(), new BigDecimal("1000"), BigDecimal.ZERO, null));
+
+        assertEquals(2, session.getSentCount());
+    }
+}
@@ -0,0 +1,118 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Ticker;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BinaryTickEncoderTest {
+
+    private static final Map<String, Market> MARKETS = Map.of(
+            "BTC-USD", new Market(3, "BTC-USD", "BTC/USD", "XXBTZUSD", List.of("XXBT"), 1, 8, List.of()),
+            "ETH-USD", new Market(7, "ETH-USD", "ETH/USD", "XETHZUSD", List.of("XETH"), 2, 8, List.of()));
+
+    private final BinaryTickEncoder encoder = new BinaryTickEncoder(MARKETS::get);
+
+    private EncodedTick tick(String symbol, long ts, String bid, String ask, String last) {
+        return tick(symbol, ts, bid, ask, last, "12.5");
+    }
+
+    private EncodedTick tick(String symbol, long ts, String bid, String ask, String last, String volume) {
+        return new EncodedTick(new Ticker(symbol, ts, new BigDecimal(bid), new BigDecimal(ask),
+                new BigDecimal(last), new BigDecimal(volume), new BigDecimal("-1.25")), new TextMessage("{}"));
+    }
+
+    @Test
+    void shouldSendFullValuesFirstThenOnlyChangedFields() {
+        // BTC prices have one decimal: 50000.15 rounds half-up to 500002 tenths
+        Decoded first = decode(encoder.encode(tick("BTC-USD", 1000, "50000.1", "50000.2", "50000.15")));
+        assertEquals(3, first.symbolId);
+        assertEquals(0b111111, first.mask);
+        assertArrayEquals(new long[] { 1000, 500001, 500002, 500002, 1250000000L, -12500 }, first.values);
+
+        Decoded second = decode(encoder.encode(tick("BTC-USD", 1005, "50000.1", "50000.2", "49999.99")));
+        assertEquals(0b1001, second.mask); // ts and last only
+        assertArrayEquals(new long[] { 5, 0, 0, -2, 0, 0 }, second.values);
+    }
+
+    @Test
+    void shouldTrackDeltasPerSymbol() {
+        encoder.encode(tick("BTC-USD", 1000, "1", "1", "1"));
+        Decoded eth = decode(encoder.encode(tick("ETH-USD", 1000, "2", "2", "2")));
+
+        assertEquals(7, eth.symbolId);
+        assertEquals(0b111111, eth.mask);
+        assertArrayEquals(new long[] { 1000, 200, 200, 200, 1250000000L, -12500 }, eth.values);
+    }
+
+    @Test
+    void shouldRoundDigitsBeyondTheMarketsScale() {
+        Decoded first = decode(encoder.encode(tick("ETH-USD", 1000, "3000.123456789", "3000.125", "3000.1249999999")));
+
+        assertArrayEquals(new long[] { 1000, 300012, 300013, 300012, 1250000000L, -12500 }, first.values);
+    }
+
+    @Test
+    void shouldSendVolumesTooLargeForALongAsJson() {
+        // 50 billion units at 8 decimals is 5e18, still a long
+        Decoded large = decode(encoder.encode(tick("BTC-USD", 1000, "1", "1", "1", "50000000000")));
+        assertEquals(5_000_000_000_000_000_000L, large.values[4]);
+
+        // 200 billion units is 2e19: no binary form, so the JSON frame goes instead of a wrapped value
+        EncodedTick tooLarge = tick("BTC-USD", 2000, "1", "1", "1", "200000000000");
+        assertSame(tooLarge.json(), encoder.encode(tooLarge));
+
+        // Deltas still run from the last binary frame
+        Decoded next = decode(encoder.encode(tick("BTC-USD", 3000, "1", "1", "1", "50000000001")));
+        assertEquals(0b10001, next.mask);
+        assertArrayEquals(new long[] { 2000, 0, 0, 0, 100_000_000L, 0 }, next.values);
+    }
+
+    @Test
+    void shouldSendSymbolsOutsideTheCatalogAsJson() {
+        EncodedTick unknown = tick("NOPE-USD", 1000, "1", "1", "1");
+
+        assertSame(unknown.json(), encoder.encode(unknown));
+    }
+
+    private record Decoded(int symbolId, int mask, long[] values) {}
+
+    private Decoded decode(WebSocketMessage<?> message) {
+        ByteBuffer buffer = ((BinaryMessage) message).getPayload();
+        assertEquals(BinaryTickEncoder.FRAME_TICK, buffer.get());
+        int symbolId = (int) readVarint(buffer);
+        int mask = buffer.get();
+        long[] values = new long[6];
+        for (int i = 0; i < 6; i++) {
+            if ((mask & (1 << i)) != 0) {
+                long zigzag = readVarint(buffer);
+                values[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        assertEquals(0, buffer.remaining());
+        return new Decoded(symbolId, mask, values);
+    }
+
+    private long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,134 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.MarketCatalog;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fan-out cost of PriceWebSocketHandler.onTick: 10k sessions spread over 500 symbols,
+ * and encoding cost per tick as the number of subscribers grows.
+ * Run with gradle benchmark (excluded from the regular test task).
+ */
+@Tag("benchmark")
+class PriceWebSocketHandlerBenchmark {
+
+    private static final int SESSIONS = 10_000;
+    private static final int SYMBOLS = 500;
+    private static final int SYMBOLS_PER_SESSION = 5;
+    private static final int WARMUP_TICKS = 50_000;
+    private static final int MEASURED_TICKS = 200_000;
+
+    @Test
+    void fanOutTenThousandSessionsAcrossFiveHundredSymbols() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        PriceWebSocketHandler handler = newHandler(objectMapper);
+        Random random = new Random(42);
+
+        List<StubWebSocketSession> sessions = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            StubWebSocketSession session = new StubWebSocketSession("s" + i, false);
+            handler.afterConnectionEstablished(session);
+
+            List<String> symbols = new ArrayList<>();
+            for (int j = 0; j < SYMBOLS_PER_SESSION; j++) {
+                symbols.add("\"SYM" + random.nextInt(SYMBOLS) + "-USD\"");
+            }
+            handler.handleTextMessage(session, new TextMessage(
+                    "{\"type\":\"subscribe\",\"symbols\":" + symbols + "}"));
+            sessions.add(session);
+        }
+
+        runTicks(handler, WARMUP_TICKS, 0);
+        long start = System.nanoTime();
+        runTicks(handler, MEASURED_TICKS, WARMUP_TICKS);
+        long elapsedNs = System.nanoTime() - start;
+
+        long delivered = sessions.stream().mapToLong(StubWebSocketSession::getSentCount).sum();
+        System.out.printf("onTick: %d sessions, %d symbols, %d ticks -> %.1f ns/tick, %.0f ticks/s, %d messages delivered%n",
+                SESSIONS, SYMBOLS, MEASURED_TICKS,
+                (double) elapsedNs / MEASURED_TICKS,
+                MEASURED_TICKS / (elapsedNs / 1e9),
+                delivered);
+
+        for (StubWebSocketSession session : sessions) {
+            handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        }
+    }
+
+    @Test
+    void encodingCostStaysFlatInSubscriberCount() throws Exception {
+        for (int subscribers : new int[] { 1, 10, 100, 1_000, 10_000 }) {
+            CountingObjectMapper objectMapper = new CountingObjectMapper();
+            PriceWebSocketHandler handler = newHandler(objectMapper);
+
+            for (int i = 0; i < subscribers; i++) {
+                StubWebSocketSession session = new StubWebSocketSession("s" + i, false);
+                handler.afterConnectionEstablished(session);
+                handler.handleTextMessage(session, new TextMessage("{\"type\":\"subscribe\",\"symbols\":[\"BTC-USD\"]}"));
+            }
+
+            int ticks = 20_000;
+            objectMapper.encodeNanos.set(0);
+            objectMapper.encodes.set(0);
+            for (int i = 0; i < ticks; i++) {
+                handler.onTick(new Ticker("BTC-USD", i, BigDecimal.ONE, BigDecimal.ONE,
+                        new BigDecimal("50000.5"), BigDecimal.TEN, BigDecimal.ZERO));
+            }
+
+            assertEquals(ticks, objectMapper.encodes.get(), "one encoding per tick");
+            System.out.printf("%6d subscribers: %d encodings for %d ticks, %.1f ns encoding CPU/tick%n",
+                    subscribers, objectMapper.encodes.get(), ticks,
+                    (double) objectMapper.encodeNanos.get() / ticks);
+        }
+    }
+
+    // Counts and times tick encodings done through writeValueAsBytes
+    private static class CountingObjectMapper extends ObjectMapper {
+        final AtomicLong encodes = new AtomicLong();
+        final AtomicLong encodeNanos = new AtomicLong();
+
+        @Override
+        public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+            long start = System.nanoTime();
+            byte[] bytes = super.writeValueAsBytes(value);
+            encodeNanos.addAndGet(System.nanoTime() - start);
+            encodes.incrementAndGet();
+            return bytes;
+        }
+    }
+
+    // Direct writer executor and no throttling, so sends happen inline and are part of the measurement
+    private PriceWebSocketHandler newHandler(ObjectMapper objectMapper) {
+        PriceStreamProperties properties = new PriceStreamProperties();
+        properties.setMaxMessagesPerSecond(0);
+        MarketCatalog catalog = mock(MarketCatalog.class);
+        when(catalog.isSupported(anyString())).thenReturn(true);
+        return new PriceWebSocketHandler(objectMapper, catalog, properties, new SimpleMeterRegistry(), Runnable::run);
+    }
+
+    private void runTicks(PriceWebSocketHandler handler, int count, long tsOffset) {
+        for (int i = 0; i < count; i++) {
+            handler.onTick(new Ticker(
+                    "SYM" + (i % SYMBOLS) + "-USD",
+                    tsOffset + i,
+                    BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Ticker;
+import com.cryptoplatform.api.service.MarketCatalog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PriceWebSocketHandlerTest {
+
+    private static final Map<String, Market> CATALOG = Map.of(
+            "BTC-USD", new Market(0, "BTC-USD", "BTC/USD", "XXBTZUSD", List.of("XXBT"), 1, 8, List.of()),
+            "ETH-USD", new Market(1, "ETH-USD", "ETH/USD", "XETHZUSD", List.of("XETH"), 2, 8, List.of()),
+            "SOL-USD", new Market(3, "SOL-USD", "SOL/USD", "SOLUSD", List.of("SOL"), 2, 8, List.of()));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PriceStreamProperties properties = new PriceStreamProperties();
+    private final List<String> watchChanges = new ArrayList<>();
+    private final PriceWebSocketHandler handler;
+
+    PriceWebSocketHandlerTest() {
+        MarketCatalog catalog = mock(MarketCatalog.class);
+        when(catalog.isSupported(anyString())).thenAnswer(call -> CATALOG.containsKey(call.<String>getArgument(0)));
+        when(catalog.find(anyString())).thenAnswer(call -> Optional.ofNullable(CATALOG.get(call.<String>getArgument(0))));
+        // Inline writer, no throttling: whatever is queued has been sent
+        properties.setMaxMessagesPerSecond(0);
+        properties.setMaxSymbolsPerSession(2);
+        handler = new PriceWebSocketHandler(objectMapper, catalog, properties, new SimpleMeterRegistry(), Runnable::run);
+        handler.setWatchListener(watchChanges::add);
+    }
+
+    private StubWebSocketSession connect(String id) {
+        StubWebSocketSession session = new StubWebSocketSession(id);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private void send(StubWebSocketSession session, String type, String... symbols) throws Exception {
+        handler.handleTextMessage(session, new TextMessage(objectMapper.writeValueAsString(
+                Map.of("type", type, "symbols", List.of(symbols)))));
+    }
+
+    private JsonNode lastMessage(StubWebSocketSession session) throws Exception {
+        List<?> messages = session.getMessages();
+        return objectMapper.readTree(((TextMessage) messages.get(messages.size() - 1)).getPayload());
+    }
+
+    private static Ticker tick(String symbol, long ts) {
+        return new Ticker(symbol, ts, BigDecimal.ONE, BigDecimal.TEN, new BigDecimal("50000.5"),
+                BigDecimal.TEN, BigDecimal.ZERO);
+    }
+
+    @Test
+    void shouldWatchASymbolWhileAnySessionIsSubscribed() throws Exception {
+        StubWebSocketSession first = connect("s1");
+        StubWebSocketSession second = connect("s2");
+
+        send(first, "subscribe", "BTC-USD");
+        send(second, "subscribe", "BTC-USD");
+        assertTrue(handler.isWatched("BTC-USD"));
+
+        send(first, "unsubscribe", "BTC-USD");
+        assertTrue(handler.isWatched("BTC-USD"));
+
+        handler.afterConnectionClosed(second, CloseStatus.NORMAL);
+        assertFalse(handler.isWatched("BTC-USD"));
+        // Once when the first session came, once when the last one left
+        assertEquals(List.of("BTC-USD", "BTC-USD"), watchChanges);
+    }
+
+    @Test
+    void shouldRejectSymbolsOutsideTheCatalog() throws Exception {
+        StubWebSocketSession session = connect("s1");
+
+        send(session, "subscribe", "BTC-USD", "NOPE-USD");
+
+        JsonNode reply = lastMessage(session);
+        assertEquals("[\"BTC-USD\"]", reply.get("symbols").toString());
+        assertEquals("[\"NOPE-USD\"]", reply.get("rejected").toString());
+        assertFalse(handler.isWatched("NOPE-USD"));
+        assertEquals(List.of("BTC-USD"), watchChanges);
+    }
+
+    @Test
+    void shouldCapSymbolsPerSession() throws Exception {
+        StubWebSocketSession session = connect("s1");
+        send(session, "subscribe", "BTC-USD", "ETH-USD");
+
+        send(session, "subscribe", "SOL-USD", "BTC-USD");
+
+        JsonNode reply = lastMessage(session);
+        assertEquals("[\"BTC-USD\"]", reply.get("symbols").toString());
+        assertEquals("[\"SOL-USD\"]", reply.get("rejected").toString());
+        assertFalse(handler.isWatched("SOL-USD"));
+
+        // Room again once one is dropped
+        send(session, "unsubscribe", "ETH-USD");
+        send(session, "subscribe", "SOL-USD");
+        assertTrue(handler.isWatched("SOL-USD"));
+    }
+
+    @Test
+    void shouldAnnounceCatalogIdsAndScalesToBinarySessions() throws Exception {
+        StubWebSocketSession session = connect("s1");
+
+        handler.handleTextMessage(session, new TextMessage(
+                "{\"type\":\"subscribe\",\"format\":\"binary\",\"symbols\":[\"SOL-USD\",\"NOPE-USD\"]}"));
+
+        JsonNode reply = lastMessage(session);
+        assertEquals("{\"SOL-USD\":3}", reply.get("symbolIds").toString());
+        assertEquals("{\"SOL-USD\":[0,2,2,2,8,4]}", reply.get("scales").toString());
+    }
+
+    @Test
+    void shouldEncodeATickOnceForOnlyItsSubscribers() throws Exception {
+        StubWebSocketSession first = connect("s1");
+        StubWebSocketSession second = connect("s2");
+        StubWebSocketSession other = connect("s3");
+        send(first, "subscribe", "BTC-USD");
+        send(second, "subscribe", "BTC-USD");
+        send(other, "subscribe", "ETH-USD");
+        int otherBefore = other.getSentCount();
+
+        handler.onTick(tick("BTC-USD", 1000));
+
+        // Subscribed reply, then the tick: the same message object for both sessions
+        assertEquals(2, first.getSentCount());
+        assertEquals(2, second.getSentCount());
+        assertSame(first.getMessages().get(1), second.getMessages().get(1));
+        assertEquals("tick", lastMessage(first).get("type").asText());
+        assertEquals(otherBefore, other.getSentCount());
+    }
+
+    @Test
+    void shouldStopDeliveringAfterUnsubscribe() throws Exception {
+        StubWebSocketSession session = connect("s1");
+        send(session, "subscribe", "BTC-USD");
+        handler.onTick(tick("BTC-USD", 1000));
+
+        send(session, "unsubscribe", "BTC-USD");
+        int before = session.getSentCount();
+        handler.onTick(tick("BTC-USD", 2000));
+
+        assertEquals(before, session.getSentCount());
+    }
+}
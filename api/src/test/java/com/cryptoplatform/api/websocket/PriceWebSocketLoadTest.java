@@ -0,0 +1,144 @@
+package com.cryptoplatform.api.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Load test against running instances: opens many subscribed sockets on each endpoint
+ * (e.g. the servlet one on 8080 and the reactive one on 8082), holds them, and reports
+ * connections held, tick frames per second, time to first frame and, when an actuator
+ * URL is given, the server's live threads and heap.
+ *
+ * gradle benchmark --tests '*PriceWebSocketLoadTest' \
+ *     -Dloadtest.urls=ws://localhost:8080/ws/prices,ws://localhost:8082/ws/prices \
+ *     -Dloadtest.connections=50000 -Dloadtest.actuator=http://localhost:8080/actuator
+ *
+ * Skipped when loadtest.urls is not set.
+ */
+@Tag("benchmark")
+class PriceWebSocketLoadTest {
+
+    @Test
+    void compareEndpoints() throws Exception {
+        String urls = System.getProperty("loadtest.urls");
+        assumeTrue(urls != null && !urls.isBlank(), "Set -Dloadtest.urls to run the WebSocket load test");
+
+        for (String url : urls.split(",")) {
+            run(url.trim());
+        }
+    }
+
+    private void run(String url) throws InterruptedException {
+        int connections = Integer.getInteger("loadtest.connections", 1000);
+        int connectsPerSecond = Integer.getInteger("loadtest.connects-per-second", 2000);
+        int holdSeconds = Integer.getInteger("loadtest.seconds", 30);
+        List<String> symbols = Arrays.asList(System.getProperty("loadtest.symbols", "BTC-USD,ETH-USD").split(","));
+        String actuator = System.getProperty("loadtest.actuator");
+
+        String subscribe = symbols.stream()
+                .map(symbol -> "\"" + symbol.trim() + "\"")
+                .collect(Collectors.joining(",", "{\"type\":\"subscribe\",\"symbols\":[", "]}"));
+
+        // One connection per socket, no pooling
+        ReactorNettyWebSocketClient client = new ReactorNettyWebSocketClient(HttpClient.create(ConnectionProvider.newConnection()));
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        LongAdder frames = new LongAdder();
+        ConcurrentLinkedQueue<Long> firstFrameNanos = new ConcurrentLinkedQueue<>();
+        Sinks.Empty<Void> stop = Sinks.empty();
+
+        Disposable load = Flux.range(0, connections)
+                .delayElements(Duration.ofNanos(1_000_000_000L / connectsPerSecond))
+                .flatMap(i -> client.execute(URI.create(url), session -> {
+                    long connectedAt = System.nanoTime();
+                    AtomicBoolean first = new AtomicBoolean();
+                    open.incrementAndGet();
+                    Mono<Void> inbound = session.receive()
+                            .filter(message -> message.getType() != WebSocketMessage.Type.TEXT
+                                    || message.getPayloadAsText().contains("\"tick\""))
+                            .doOnNext(message -> {
+                                frames.increment();
+                                if (first.compareAndSet(false, true)) {
+                                    firstFrameNanos.add(System.nanoTime() - connectedAt);
+                                }
+                            })
+                            .takeUntilOther(stop.asMono())
+                            .then();
+                    return session.send(Mono.just(session.textMessage(subscribe)))
+                            .then(inbound)
+                            .doFinally(signal -> open.decrementAndGet());
+                }).onErrorResume(e -> {
+                    failed.incrementAndGet();
+                    return Mono.empty();
+                }), connections)
+                .subscribe();
+
+        long rampDeadline = System.currentTimeMillis() + 1000L * connections / connectsPerSecond + 30_000;
+        while (open.get() + failed.get() < connections && System.currentTimeMillis() < rampDeadline) {
+            Thread.sleep(500);
+        }
+
+        long framesBefore = frames.sum();
+        long start = System.nanoTime();
+        Thread.sleep(holdSeconds * 1000L);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long framesDuring = frames.sum() - framesBefore;
+
+        List<Long> latencies = new ArrayList<>(firstFrameNanos);
+        Collections.sort(latencies);
+        System.out.printf("%s: %d/%d open, %d failed, %.0f frames/s, first frame p50 %.1f ms p99 %.1f ms%n",
+                url, open.get(), connections, failed.get(), framesDuring / seconds,
+                percentileMs(latencies, 0.50), percentileMs(latencies, 0.99));
+        if (actuator != null) {
+            System.out.printf("  server: %.0f live threads, %.0f MB heap used%n",
+                    metric(actuator, "jvm.threads.live", null),
+                    metric(actuator, "jvm.memory.used", "area:heap") / (1024 * 1024));
+        }
+
+        stop.tryEmitEmpty();
+        load.dispose();
+    }
+
+    private static double percentileMs(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) return Double.NaN;
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1);
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+
+    private static double metric(String actuator, String name, String tag) {
+        JsonNode body = WebClient.create(actuator).get()
+                .uri(builder -> {
+                    builder.path("/metrics/{name}");
+                    if (tag != null) builder.queryParam("tag", tag);
+                    return builder.build(name);
+                })
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .block(Duration.ofSeconds(10));
+        return body == null ? Double.NaN : body.path("measurements").path(0).path("value").asDouble(Double.NaN);
+    }
+}
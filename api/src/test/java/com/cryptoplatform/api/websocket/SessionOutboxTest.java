@@ -0,0 +1,208 @@
+package com.cryptoplatform.api.websocket;
+
+import com.cryptoplatform.api.model.Market;
+import com.cryptoplatform.api.model.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SessionOutboxTest {
+
+    // Runs queued writer tasks only when asked, to simulate a slow consumer
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor writer = tasks::add;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SessionOutbox.Counters counters = new SessionOutbox.Counters(
+            registry.counter("conflated"), registry.counter("dropped"), registry.counter("disconnected"));
+
+    private SessionOutbox outbox(StubWebSocketSession session, PriceStreamProperties.SlowConsumerPolicy policy, int maxQueueSize) {
+        PriceStreamProperties properties = new PriceStreamProperties();
+        properties.setSlowConsumerPolicy(policy);
+        properties.setMaxQueueSize(maxQueueSize);
+        return new SessionOutbox(session, properties, writer, counters);
+    }
+
+    private SessionOutbox throttledOutbox(StubWebSocketSession session, double messagesPerSecond, int burst) {
+        PriceStreamProperties properties = new PriceStreamProperties();
+        properties.setMaxMessagesPerSecond(messagesPerSecond);
+        properties.setBurst(burst);
+        return new SessionOutbox(session, properties, writer, counters);
+    }
+
+    private static final Market BTC = new Market(0, "BTC-USD", "BTC/USD", "XXBTZUSD", List.of("XXBT"), 1, 8, List.of());
+
+    private EncodedTick tick(String symbol, String payload) {
+        return new EncodedTick(new Ticker(symbol, 0, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE,
+                BigDecimal.ONE, BigDecimal.ZERO), new TextMessage(payload));
+    }
+
+    private void runWriter() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private List<Object> payloads(StubWebSocketSession session) {
+        return session.getMessages().stream().map(WebSocketMessage::getPayload).map(Object.class::cast).toList();
+    }
+
+    @Test
+    void shouldConflateToLatestTickPerSymbol() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = outbox(session, PriceStreamProperties.SlowConsumerPolicy.CONFLATE, 10);
+
+        outbox.offer(tick("BTC-USD", "btc-1"));
+        outbox.offer(tick("ETH-USD", "eth-1"));
+        outbox.offer(tick("BTC-USD", "btc-2"));
+        assertEquals(2, outbox.size());
+
+        runWriter();
+
+        assertEquals(List.of("btc-2", "eth-1"), payloads(session));
+        assertEquals(1.0, registry.counter("conflated").count());
+    }
+
+    @Test
+    void shouldTurnAwayNewSymbolsWhenFullUnderConflate() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = outbox(session, PriceStreamProperties.SlowConsumerPolicy.CONFLATE, 2);
+
+        outbox.offer(tick("BTC-USD", "btc"));
+        outbox.offer(tick("ETH-USD", "eth"));
+        outbox.offer(tick("SOL-USD", "sol"));
+
+        runWriter();
+
+        assertEquals(List.of("btc", "eth"), payloads(session));
+        assertEquals(1.0, registry.counter("dropped").count());
+    }
+
+    @Test
+    void shouldDropOldestWhenFull() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = outbox(session, PriceStreamProperties.SlowConsumerPolicy.DROP_OLDEST, 2);
+
+        outbox.offer(tick("BTC-USD", "btc"));
+        outbox.offer(tick("ETH-USD", "eth"));
+        outbox.offer(tick("SOL-USD", "sol"));
+
+        runWriter();
+
+        assertEquals(List.of("eth", "sol"), payloads(session));
+        assertEquals(1.0, registry.counter("dropped").count());
+    }
+
+    @Test
+    void shouldDisconnectWhenBufferLimitReached() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = outbox(session, PriceStreamProperties.SlowConsumerPolicy.DISCONNECT, 2);
+
+        outbox.offer(tick("BTC-USD", "btc"));
+        outbox.offer(tick("ETH-USD", "eth"));
+        outbox.offer(tick("SOL-USD", "sol"));
+        runWriter();
+
+        assertFalse(session.isOpen());
+        assertEquals(0, outbox.size());
+        assertEquals(0, session.getSentCount());
+        assertEquals(1.0, registry.counter("disconnected").count());
+    }
+
+    @Test
+    void shouldDeliverLatestTickPerSymbolOnceTokensRefill() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = throttledOutbox(session, 1000, 1);
+
+        outbox.offer(tick("BTC-USD", "btc-1"));
+        outbox.offer(tick("ETH-USD", "eth-1"));
+        outbox.offer(tick("BTC-USD", "btc-2"));
+
+        // One token in the bucket: the writer sends BTC, waits for a refill, then sends ETH
+        runWriter();
+
+        assertEquals(List.of("btc-2", "eth-1"), payloads(session));
+        assertEquals(0, registry.counter("dropped").count());
+    }
+
+    @Test
+    void shouldNotThrottleControlMessages() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = throttledOutbox(session, 0.001, 1);
+
+        outbox.offer(tick("BTC-USD", "btc"));
+        outbox.offerControl(new TextMessage("subscribed"));
+        outbox.offerControl(new TextMessage("snapshot"));
+        runWriter();
+
+        assertEquals(List.of("subscribed", "snapshot", "btc"), payloads(session));
+    }
+
+    @Test
+    void shouldNotConflateControlMessages() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = outbox(session, PriceStreamProperties.SlowConsumerPolicy.CONFLATE, 10);
+
+        outbox.offerControl(new TextMessage("a"));
+        outbox.offerControl(new TextMessage("b"));
+        runWriter();
+
+        assertEquals(List.of("a", "b"), payloads(session));
+    }
+
+    @Test
+    void shouldSendSnapshotAfterConfirmationWithoutTokens() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = throttledOutbox(session, 0.001, 1);
+
+        outbox.offer(tick("BTC-USD", "btc"));
+        outbox.offerControl(new TextMessage("subscribed"));
+        outbox.offerSnapshot(List.of(tick("ETH-USD", "eth"), tick("SOL-USD", "sol")));
+        runWriter();
+
+        assertEquals(List.of("subscribed", "eth", "sol", "btc"), payloads(session));
+    }
+
+    @Test
+    void shouldDiscardPendingTicksOnUnsubscribe() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = outbox(session, PriceStreamProperties.SlowConsumerPolicy.CONFLATE, 10);
+
+        outbox.offer(tick("BTC-USD", "btc"));
+        outbox.offer(tick("ETH-USD", "eth"));
+        outbox.discard(List.of("BTC-USD"));
+        runWriter();
+
+        assertEquals(List.of("eth"), payloads(session));
+    }
+
+    @Test
+    void shouldKeepBinaryDeltasAcrossSubscribes() {
+        StubWebSocketSession session = new StubWebSocketSession("s1");
+        SessionOutbox outbox = outbox(session, PriceStreamProperties.SlowConsumerPolicy.CONFLATE, 10);
+
+        outbox.useBinary(symbol -> BTC);
+        outbox.offer(tick("BTC-USD", "btc-1"));
+        runWriter();
+        // A second subscribe opts in again; the client still holds the values of the first frame
+        outbox.useBinary(symbol -> BTC);
+        outbox.offer(tick("BTC-USD", "btc-2"));
+        runWriter();
+
+        List<Object> frames = payloads(session);
+        assertEquals(2, frames.size());
+        // Type, symbol id and an empty field mask: nothing changed since the first frame
+        assertEquals(ByteBuffer.wrap(new byte[] { BinaryTickEncoder.FRAME_TICK, 0, 0 }), frames.get(1));
+    }
+}
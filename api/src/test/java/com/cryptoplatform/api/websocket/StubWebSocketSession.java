@@ -0,0 +1,69 @@
+package com.cryptoplatform.api.websocket;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-memory WebSocketSession for handler tests and benchmarks.
+ * Counts sent messages and optionally keeps them.
+ */
+class StubWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final boolean recordMessages;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<WebSocketMessage<?>> messages = new CopyOnWriteArrayList<>();
+    private final AtomicInteger sentCount = new AtomicInteger();
+    private volatile boolean open = true;
+
+    StubWebSocketSession(String id) {
+        this(id, true);
+    }
+
+    StubWebSocketSession(String id, boolean recordMessages) {
+        this.id = id;
+        this.recordMessages = recordMessages;
+    }
+
+    int getSentCount() { return sentCount.get(); }
+
+    List<WebSocketMessage<?>> getMessages() { return messages; }
+
+    @Override public String getId() { return id; }
+    @Override public URI getUri() { return URI.create("ws://localhost/ws/prices"); }
+    @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+    @Override public Map<String, Object> getAttributes() { return attributes; }
+    @Override public Principal getPrincipal() { return null; }
+    @Override public InetSocketAddress getLocalAddress() { return null; }
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+    @Override public String getAcceptedProtocol() { return null; }
+    @Override public void setTextMessageSizeLimit(int messageSizeLimit) {}
+    @Override public int getTextMessageSizeLimit() { return Integer.MAX_VALUE; }
+    @Override public void setBinaryMessageSizeLimit(int messageSizeLimit) {}
+    @Override public int getBinaryMessageSizeLimit() { return Integer.MAX_VALUE; }
+    @Override public List<WebSocketExtension> getExtensions() { return List.of(); }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        sentCount.incrementAndGet();
+        if (recordMessages) {
+            messages.add(message);
+        }
+    }
+
+    @Override public boolean isOpen() { return open; }
+    @Override public void close() { open = false; }
+    @Override public void close(CloseStatus status) { open = false; }
+}
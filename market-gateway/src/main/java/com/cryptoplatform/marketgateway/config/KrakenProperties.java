@@ -3,13 +3,10 @@ package com.cryptoplatform.marketgateway.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.List;
-
 @Configuration
 @ConfigurationProperties(prefix = "kraken.ws")
 public class KrakenProperties {
     private String url;
-    private List<String> symbols;
 
     public String getUrl() {
         return url;
@@ -18,12 +15,4 @@ public class KrakenProperties {
     public void setUrl(String url) {
         this.url = url;
     }
-
-    public List<String> getSymbols() {
-        return symbols;
-    }
-
-    public void setSymbols(List<String> symbols) {
-        this.symbols = symbols;
-    }
 }
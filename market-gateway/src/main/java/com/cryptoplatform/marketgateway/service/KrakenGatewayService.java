@@ -13,6 +13,7 @@ import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClien
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
@@ -25,21 +26,26 @@ public class KrakenGatewayService {
     private final ReactiveStringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper;
     private final KrakenProperties krakenProperties;
+    private final MarketCatalogLoader catalogLoader;
 
     public KrakenGatewayService(ReactiveStringRedisTemplate redisTemplate, ObjectMapper objectMapper,
-            KrakenProperties krakenProperties) {
+            KrakenProperties krakenProperties, MarketCatalogLoader catalogLoader) {
         this.client = new ReactorNettyWebSocketClient();
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
         this.krakenProperties = krakenProperties;
+        this.catalogLoader = catalogLoader;
     }
 
     @PostConstruct
     public void start() {
-        connect();
+        // Subscribe to exactly the markets in the catalog
+        catalogLoader.load()
+                .subscribe(markets -> connect(markets.stream().map(Market::wsSymbol).toList()),
+                        e -> logger.error("Failed to load market catalog", e));
     }
 
-    private void connect() {
+    private void connect(List<String> symbols) {
         logger.info("Connecting to Kraken WS v2: {}", krakenProperties.getUrl());
 
         client.execute(URI.create(krakenProperties.getUrl()), session -> {
@@ -50,7 +56,7 @@ public class KrakenGatewayService {
                     "method", "subscribe",
                     "params", Map.of(
                             "channel", "ticker",
-                            "symbol", krakenProperties.getSymbols()));
+                            "symbol", symbols));
 
             try {
                 String jsonMsg = objectMapper.writeValueAsString(subscribeMsg);
@@ -119,9 +125,20 @@ public class KrakenGatewayService {
 
         String streamKey = "stream:market_ticks";
 
+        // Per-symbol channel for WebSocket fan-out: API instances only subscribe to symbols their clients watch
+        String channel = "ticks:" + symbol;
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(hash);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize ticker for {}", symbol, e);
+            return;
+        }
+
         redisTemplate.opsForHash().putAll(key, hash)
             .then(redisTemplate.opsForStream().add(streamKey, hash))
-            .doOnSuccess(v -> logger.debug("Updated ticker and stream for {}", symbol))
+            .then(redisTemplate.convertAndSend(channel, payload))
+            .doOnSuccess(v -> logger.debug("Updated ticker, stream and channel for {}", symbol))
             .subscribe();
     }
 }
@@ -0,0 +1,26 @@
+package com.cryptoplatform.marketgateway.service;
+
+import java.util.List;
+
+/**
+ * One entry of the market catalog. The id is the market's position in the catalog
+ * file, so it stays stable as markets are appended.
+ *
+ * @param wsSymbol      symbol on the Kraken WS v2 feed (BTC/USD)
+ * @param krakenPair    Kraken REST pair name (XXBTZUSD)
+ * @param assetCodes    Kraken asset codes of the base currency, as seen in balances
+ * @param priceDecimals price scale (Kraken pair_decimals)
+ * @param lotDecimals   quantity scale (Kraken lot_decimals)
+ * @param names         names users may call the asset by
+ */
+public record Market(int id, String symbol, String wsSymbol, String krakenPair, List<String> assetCodes,
+                     int priceDecimals, int lotDecimals, List<String> names) {
+
+    Market withId(int id) {
+        return new Market(id, symbol, wsSymbol, krakenPair, assetCodes, priceDecimals, lotDecimals, names);
+    }
+
+    Market withDecimals(int priceDecimals, int lotDecimals) {
+        return new Market(id, symbol, wsSymbol, krakenPair, assetCodes, priceDecimals, lotDecimals, names);
+    }
+}
@@ -0,0 +1,121 @@
+package com.cryptoplatform.marketgateway.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the market catalog and publishes it for the other services.
+ *
+ * The catalog file lists the markets we trade. Price and quantity scales are
+ * refreshed from Kraken's AssetPairs endpoint; if Kraken can't be reached the file's
+ * values are used as they are. The result is stored as JSON under "markets:catalog"
+ * and announced on the channel of the same name.
+ */
+@Service
+public class MarketCatalogLoader {
+
+    public static final String CATALOG_KEY = "markets:catalog";
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketCatalogLoader.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final WebClient webClient;
+    private final Resource catalogFile;
+    private final String assetPairsUrl;
+
+    public MarketCatalogLoader(ReactiveStringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                               @Value("${markets.catalog-file:classpath:markets.json}") Resource catalogFile,
+                               @Value("${markets.asset-pairs-url:https://api.kraken.com/0/public/AssetPairs}") String assetPairsUrl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.webClient = WebClient.builder().build();
+        this.catalogFile = catalogFile;
+        this.assetPairsUrl = assetPairsUrl;
+    }
+
+    public Mono<List<Market>> load() {
+        List<Market> markets;
+        try {
+            markets = readFile();
+        } catch (IOException e) {
+            return Mono.error(new IllegalStateException("Cannot read market catalog " + catalogFile, e));
+        }
+
+        return withKrakenScales(markets)
+                .flatMap(this::publish);
+    }
+
+    private List<Market> readFile() throws IOException {
+        try (InputStream in = catalogFile.getInputStream()) {
+            List<Market> entries = objectMapper.readValue(in, new TypeReference<List<Market>>() {});
+            List<Market> markets = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                markets.add(entries.get(i).withId(i));
+            }
+            return markets;
+        }
+    }
+
+    private Mono<List<Market>> withKrakenScales(List<Market> markets) {
+        String pairs = markets.stream().map(Market::krakenPair).collect(Collectors.joining(","));
+        return webClient.get()
+                .uri(assetPairsUrl + "?pair={pairs}", pairs)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(Duration.ofSeconds(5))
+                .map(body -> {
+                    if (body.path("error").size() > 0) {
+                        throw new IllegalStateException(body.path("error").toString());
+                    }
+                    JsonNode result = body.path("result");
+                    return markets.stream()
+                            .map(market -> {
+                                JsonNode pair = result.path(market.krakenPair());
+                                if (pair.isMissingNode()) return market;
+                                return market.withDecimals(
+                                        pair.path("pair_decimals").asInt(market.priceDecimals()),
+                                        pair.path("lot_decimals").asInt(market.lotDecimals()));
+                            })
+                            .toList();
+                })
+                .onErrorResume(e -> {
+                    logger.warn("Kraken AssetPairs unavailable, using catalog file scales: {}", e.getMessage());
+                    return Mono.just(markets);
+                });
+    }
+
+    private Mono<List<Market>> publish(List<Market> markets) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(markets);
+        } catch (IOException e) {
+            return Mono.error(e);
+        }
+        return redisTemplate.opsForValue().set(CATALOG_KEY, json)
+                .then(redisTemplate.convertAndSend(CATALOG_KEY, json))
+                .doOnSuccess(v -> logger.info("Published market catalog with {} markets", markets.size()))
+                .thenReturn(markets)
+                .onErrorResume(e -> {
+                    // Still stream prices; the catalog is published again on the next start
+                    logger.error("Failed to publish market catalog: {}", e.getMessage());
+                    return Mono.just(markets);
+                });
+    }
+}